@@ -44,8 +44,10 @@ import java.nio.channels.spi.SelectorProvider;
 import java.util.concurrent.TimeUnit;
 
 import org.glassfish.grizzly.asyncqueue.AsyncQueueWriter;
+import org.glassfish.grizzly.asyncqueue.PendingWritesBudget;
 import org.glassfish.grizzly.attributes.AttributeBuilder;
 import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.nio.AbstractNIOAsyncQueueWriter;
 import org.glassfish.grizzly.nio.NIOChannelDistributor;
 import org.glassfish.grizzly.nio.NIOTransport;
 import org.glassfish.grizzly.nio.SelectionKeyHandler;
@@ -91,8 +93,16 @@ public abstract class NIOTransportBuilder<T extends NIOTransportBuilder> {
     protected int connectionTimeout = NIOTransport.DEFAULT_CONNECTION_TIMEOUT;
     protected boolean reuseAddress = NIOTransport.DEFAULT_REUSE_ADDRESS;
     protected int maxPendingBytesPerConnection = AsyncQueueWriter.AUTO_SIZE;
+    protected long maxPendingBytesPerTransport = -1;
+    protected PendingWritesBudget.OverflowPolicy pendingWritesOverflowPolicy =
+            PendingWritesBudget.OverflowPolicy.REJECT;
     protected boolean optimizedForMultiplexing = NIOTransport.DEFAULT_OPTIMIZED_FOR_MULTIPLEXING;
 
+    /**
+     * @see NIOTransport#getSelectorBusyPollTime(TimeUnit)
+     */
+    protected long selectorBusyPollTime = NIOTransport.DEFAULT_SELECTOR_BUSY_POLL_TIME;
+
     protected long readTimeout = TimeUnit.MILLISECONDS.convert(Transport.DEFAULT_READ_TIMEOUT, TimeUnit.SECONDS);
     protected long writeTimeout = TimeUnit.MILLISECONDS.convert(Transport.DEFAULT_WRITE_TIMEOUT, TimeUnit.SECONDS);
 
@@ -529,6 +539,44 @@ public abstract class NIOTransportBuilder<T extends NIOTransportBuilder> {
         return getThis();
     }
 
+    /**
+     * @see org.glassfish.grizzly.asyncqueue.PendingWritesBudget#getMaxPendingBytes()
+     * <p/>
+     * Note: the value is transport total, not per connection.
+     */
+    public long getMaxAsyncWriteQueueSizeInBytesPerTransport() {
+        return maxPendingBytesPerTransport;
+    }
+
+    /**
+     * @return this <code>TCPNIOTransportBuilder</code>
+     * @see org.glassfish.grizzly.asyncqueue.PendingWritesBudget#setMaxPendingBytes(long)
+     * <p/>
+     * Note: the value is transport total, not per connection.
+     */
+    public T setMaxAsyncWriteQueueSizeInBytesPerTransport(
+            final long maxPendingBytesPerTransport) {
+        this.maxPendingBytesPerTransport = maxPendingBytesPerTransport;
+        return getThis();
+    }
+
+    /**
+     * @see org.glassfish.grizzly.asyncqueue.PendingWritesBudget#getOverflowPolicy()
+     */
+    public PendingWritesBudget.OverflowPolicy getPendingWritesOverflowPolicy() {
+        return pendingWritesOverflowPolicy;
+    }
+
+    /**
+     * @return this <code>TCPNIOTransportBuilder</code>
+     * @see org.glassfish.grizzly.asyncqueue.PendingWritesBudget#setOverflowPolicy(PendingWritesBudget.OverflowPolicy)
+     */
+    public T setPendingWritesOverflowPolicy(
+            final PendingWritesBudget.OverflowPolicy pendingWritesOverflowPolicy) {
+        this.pendingWritesOverflowPolicy = pendingWritesOverflowPolicy;
+        return getThis();
+    }
+
     /**
      * @see org.glassfish.grizzly.nio.NIOTransport#isOptimizedForMultiplexing()
      */
@@ -546,6 +594,26 @@ public abstract class NIOTransportBuilder<T extends NIOTransportBuilder> {
         return getThis();
     }
 
+    /**
+     * @see org.glassfish.grizzly.nio.NIOTransport#getSelectorBusyPollTime(TimeUnit)
+     */
+    public long getSelectorBusyPollTime(final TimeUnit timeUnit) {
+        return timeUnit.convert(selectorBusyPollTime, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @see org.glassfish.grizzly.nio.NIOTransport#setSelectorBusyPollTime(long, TimeUnit)
+     *
+     * @return this <code>TCPNIOTransportBuilder</code>
+     */
+    public T setSelectorBusyPollTime(final long busyPollTime,
+            final TimeUnit timeUnit) {
+        selectorBusyPollTime = busyPollTime > 0
+                ? TimeUnit.NANOSECONDS.convert(busyPollTime, timeUnit)
+                : 0;
+        return getThis();
+    }
+
     /**
      * @return an {@link NIOTransport} based on the builder's configuration.
      */
@@ -575,10 +643,18 @@ public abstract class NIOTransportBuilder<T extends NIOTransportBuilder> {
         transport.setWriteBufferSize(writeBufferSize);
         transport.setReuseAddress(reuseAddress);
         transport.setOptimizedForMultiplexing(isOptimizedForMultiplexing());
+        transport.setSelectorBusyPollTime(selectorBusyPollTime, TimeUnit.NANOSECONDS);
         transport.getAsyncQueueIO()
                 .getWriter()
                 .setMaxPendingBytesPerConnection(
                         maxPendingBytesPerConnection);
+        final AsyncQueueWriter writer = transport.getAsyncQueueIO().getWriter();
+        if (writer instanceof AbstractNIOAsyncQueueWriter) {
+            final PendingWritesBudget budget =
+                    ((AbstractNIOAsyncQueueWriter) writer).getPendingWritesBudget();
+            budget.setMaxPendingBytes(maxPendingBytesPerTransport);
+            budget.setOverflowPolicy(pendingWritesOverflowPolicy);
+        }
         return transport;
     }
 
@@ -41,6 +41,7 @@
 package org.glassfish.grizzly;
 
 import org.glassfish.grizzly.threadpool.DefaultWorkerThread;
+import org.glassfish.grizzly.threadpool.Threads;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -90,6 +91,11 @@ public final class ThreadCache {
         } else {
             ObjectCache genericCache = genericCacheAttr.get();
             if (genericCache == null) {
+                if (Threads.isVirtual(currentThread)) {
+                    // virtual threads are short-lived, the cache won't be reused
+                    return false;
+                }
+                
                 genericCache = new ObjectCache();
                 genericCacheAttr.set(genericCache);
             }
@@ -129,6 +129,30 @@ public interface TransportProbe {
      */
     void onErrorEvent(Transport transport, Throwable error);
 
+    /**
+     * Method will be called, when the number of bytes queued by all the
+     * {@link Transport} connections exceeds the transport pending writes budget.
+     * Does nothing by default.
+     *
+     * @param transport {@link Transport}, the event belongs to.
+     * @param pendingBytes the number of bytes queued by the transport.
+     */
+    default void onPendingWritesBudgetExceededEvent(Transport transport,
+            long pendingBytes) {
+    }
+
+    /**
+     * Method will be called, when the {@link Transport} pending writes budget,
+     * which has been exceeded, has some space available again.
+     * Does nothing by default.
+     *
+     * @param transport {@link Transport}, the event belongs to.
+     * @param pendingBytes the number of bytes queued by the transport.
+     */
+    default void onPendingWritesBudgetRestoredEvent(Transport transport,
+            long pendingBytes) {
+    }
+
 
     // ---------------------------------------------------------- Nested Classes
 
@@ -205,6 +229,20 @@ public interface TransportProbe {
         @Override
         public void onErrorEvent(Transport transport, Throwable error) {}
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onPendingWritesBudgetExceededEvent(Transport transport,
+                long pendingBytes) {}
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onPendingWritesBudgetRestoredEvent(Transport transport,
+                long pendingBytes) {}
+
     } // END Adapter
 
 }
@@ -0,0 +1,186 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.asyncqueue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The memory budget shared by the async write queues of all the
+ * {@link org.glassfish.grizzly.Connection}s of a transport.
+ * Unlike {@link AsyncQueueWriter#setMaxPendingBytesPerConnection(int)},
+ * which limits the memory consumed by a single connection, the budget limits
+ * the total number of bytes queued by all the connections, so a large number
+ * of slow clients can't exhaust the heap.
+ *
+ * The budget is disabled by default, in which case the queued bytes are not
+ * counted.
+ */
+public final class PendingWritesBudget {
+    
+    /**
+     * The reaction on a write, which is going to be queued by a connection,
+     * when the budget is exceeded.
+     */
+    public enum OverflowPolicy {
+        /**
+         * The write fails with
+         * {@link org.glassfish.grizzly.PendingWriteQueueLimitExceededException},
+         * the connection stays open.
+         */
+        REJECT,
+        /**
+         * The write is queued, but the connection stops reading data until
+         * its async write queue is flushed, so the peer can't produce more
+         * responses.
+         */
+        SUSPEND_READS,
+        /**
+         * The write fails and the connection gets closed.
+         */
+        CLOSE
+    }
+    
+    private final LongAdder pendingBytes = new LongAdder();
+    private final AtomicBoolean isExceeded = new AtomicBoolean();
+    private final AtomicLong overflowsCount = new AtomicLong();
+    
+    private volatile long maxPendingBytes = -1;
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.REJECT;
+
+    /**
+     * @return the max number of bytes all the connections can queue,
+     * or <tt>-1</tt> if the budget is disabled.
+     */
+    public long getMaxPendingBytes() {
+        return maxPendingBytes;
+    }
+
+    /**
+     * Sets the max number of bytes all the connections can queue.
+     * Note: the bytes queued while the budget was disabled are not counted.
+     *
+     * @param maxPendingBytes the max number of bytes, <tt>0</tt> or negative
+     * value disables the budget.
+     */
+    public void setMaxPendingBytes(final long maxPendingBytes) {
+        this.maxPendingBytes = maxPendingBytes > 0 ? maxPendingBytes : -1;
+    }
+
+    /**
+     * @return the reaction on writes, when the budget is exceeded.
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Sets the reaction on writes, when the budget is exceeded.
+     *
+     * @param overflowPolicy {@link OverflowPolicy}.
+     */
+    public void setOverflowPolicy(final OverflowPolicy overflowPolicy) {
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("overflowPolicy can't be null");
+        }
+        
+        this.overflowPolicy = overflowPolicy;
+    }
+    
+    /**
+     * @return <tt>true</tt> if the budget is enabled.
+     */
+    public boolean isEnabled() {
+        return maxPendingBytes > 0;
+    }
+    
+    /**
+     * @return the number of bytes currently queued by all the connections.
+     */
+    public long getPendingBytes() {
+        return pendingBytes.sum();
+    }
+    
+    /**
+     * @return the number of writes the {@link OverflowPolicy} has been
+     * applied to.
+     */
+    public long getOverflowsCount() {
+        return overflowsCount.get();
+    }
+
+    /**
+     * @return <tt>true</tt> if the number of queued bytes exceeds
+     * the budget.
+     */
+    public boolean isExceeded() {
+        final long max = maxPendingBytes;
+        return max > 0 && pendingBytes.sum() > max;
+    }
+
+    /**
+     * Registers the write the {@link OverflowPolicy} is applied to.
+     *
+     * @return <tt>true</tt> if this is the first overflow since the budget
+     * has been exceeded.
+     */
+    public boolean onOverflow() {
+        overflowsCount.incrementAndGet();
+        return !isExceeded.get() && isExceeded.compareAndSet(false, true);
+    }
+
+    /**
+     * Checks if the budget, which has been exceeded before, has some
+     * space available.
+     *
+     * @return <tt>true</tt> if the budget has been exceeded and now has
+     * some space available.
+     */
+    public boolean checkRestored() {
+        return isExceeded.get() && !isExceeded()
+                && isExceeded.compareAndSet(true, false);
+    }
+    
+    void add(final long amount) {
+        pendingBytes.add(amount);
+    }
+}
@@ -72,6 +72,15 @@ public final class TaskQueue<E extends AsyncQueueRecord> {
     
     private final MutableMaxQueueSize maxQueueSizeHolder;
     
+    // the transport-wide budget, the queued bytes are accounted in
+    private final PendingWritesBudget budget;
+    // the bytes this queue holds in the budget, or BUDGET_RELEASED,
+    // if the queue has been closed
+    private static final int BUDGET_RELEASED = Integer.MIN_VALUE;
+    private static final AtomicIntegerFieldUpdater<TaskQueue> budgetedBytesUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(TaskQueue.class, "budgetedBytes");
+    private volatile int budgetedBytes;
+    
     private static final AtomicIntegerFieldUpdater<TaskQueue> writeHandlersCounterUpdater =
             AtomicIntegerFieldUpdater.newUpdater(TaskQueue.class, "writeHandlersCounter");
     private volatile int writeHandlersCounter;
@@ -81,7 +90,13 @@ public final class TaskQueue<E extends AsyncQueueRecord> {
 
 
     protected TaskQueue(final MutableMaxQueueSize maxQueueSizeHolder) {
+        this(maxQueueSizeHolder, null);
+    }
+
+    protected TaskQueue(final MutableMaxQueueSize maxQueueSizeHolder,
+            final PendingWritesBudget budget) {
         this.maxQueueSizeHolder = maxQueueSizeHolder;
+        this.budget = budget;
         queue = new ConcurrentLinkedQueue<E>();
     }
 
@@ -93,6 +108,12 @@ public final class TaskQueue<E extends AsyncQueueRecord> {
         return new TaskQueue<E>(maxQueueSizeHolder);
     }
 
+    public static <E extends AsyncQueueRecord> TaskQueue<E> createTaskQueue(
+            final MutableMaxQueueSize maxQueueSizeHolder,
+            final PendingWritesBudget budget) {
+        return new TaskQueue<E>(maxQueueSizeHolder, budget);
+    }
+
     /**
      * Returns the number of queued bytes.
      *
@@ -151,6 +172,10 @@ public final class TaskQueue<E extends AsyncQueueRecord> {
      * @return the new memory (in bytes) consumed by the queue.
      */
     public int reserveSpace(final int amount) {
+        if (budget != null && budget.isEnabled()) {
+            updateBudget(amount);
+        }
+        
         return spaceInBytesUpdater.addAndGet(this, amount);
     }
 
@@ -161,6 +186,10 @@ public final class TaskQueue<E extends AsyncQueueRecord> {
      * @return the new memory (in bytes) consumed by the queue.
      */
     public int releaseSpace(final int amount) {
+        if (budgetedBytes > 0) {
+            updateBudget(-amount);
+        }
+        
         return spaceInBytesUpdater.addAndGet(this, -amount);
     }
 
@@ -325,6 +354,14 @@ public final class TaskQueue<E extends AsyncQueueRecord> {
     public void onClose(final Throwable cause) {
         isClosed = true;
         
+        if (budget != null) {
+            // the failed records never release their space
+            final int budgeted = budgetedBytesUpdater.getAndSet(this, BUDGET_RELEASED);
+            if (budgeted > 0) {
+                budget.add(-budgeted);
+            }
+        }
+        
         IOException error = null;
         if (!isEmpty()) {
             if (error == null) {
@@ -346,6 +383,25 @@ public final class TaskQueue<E extends AsyncQueueRecord> {
         }
     }
     
+    /**
+     * Updates the bytes this queue holds in the budget. The space released
+     * before the budget has been enabled is not accounted.
+     */
+    private void updateBudget(final int delta) {
+        while (true) {
+            final int budgeted = budgetedBytes;
+            if (budgeted == BUDGET_RELEASED) {
+                return;
+            }
+            
+            final int update = Math.max(budgeted + delta, 0);
+            if (budgetedBytesUpdater.compareAndSet(this, budgeted, update)) {
+                budget.add(update - budgeted);
+                return;
+            }
+        }
+    }
+    
     private void offerWriteHandler(final WriteHandler writeHandler) {
         writeHandlersCounterUpdater.incrementAndGet(this);
         writeHandlersQueue.offer(writeHandler);
@@ -73,6 +73,13 @@ public final class DefaultFilterChain extends ListFacadeFilterChain {
     private final FiltersStateFactory filtersStateFactory =
             new FiltersStateFactory();
     
+    /**
+     * Per {@link Operation} flags, telling if the {@link Filter} with the given
+     * index has to be invoked for the operation.
+     * <tt>null</tt>, if the chain is not frozen.
+     */
+    private volatile boolean[][] dispatchTable;
+    
     /**
      * Logger
      */
@@ -86,6 +93,49 @@ public final class DefaultFilterChain extends ListFacadeFilterChain {
         super(new ArrayList<Filter>(initialFilters));
     }
 
+    /**
+     * Freezes the {@link FilterChain}, so it can not be modified anymore.
+     * The frozen chain precomputes the {@link Filter}s to be invoked for each
+     * {@link Operation} and skips the {@link BaseFilter}s, which don't override
+     * the corresponding <tt>handleXXX</tt> method, during the execution.
+     */
+    public synchronized void freeze() {
+        if (dispatchTable != null) {
+            return;
+        }
+        
+        final Operation[] operations = Operation.values();
+        final int size = size();
+        
+        final boolean[][] table = new boolean[operations.length][];
+        for (Operation operation : operations) {
+            final boolean[] handles = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                handles[i] = isHandler(get(i), operation);
+            }
+            
+            table[operation.ordinal()] = handles;
+        }
+        
+        dispatchTable = table;
+    }
+
+    /**
+     * @return <tt>true</tt>, if the {@link FilterChain} is frozen and can not
+     * be modified, or <tt>false</tt> otherwise.
+     * @see #freeze()
+     */
+    public boolean isFrozen() {
+        return dispatchTable != null;
+    }
+
+    @Override
+    protected void checkModifiable() {
+        if (dispatchTable != null) {
+            throw new IllegalStateException("FilterChain is frozen");
+        }
+    }
+    
     @Override
     public ProcessorResult process(final Context context) {
         if (isEmpty()) return ProcessorResult.createComplete();
@@ -187,8 +237,21 @@ public final class DefaultFilterChain extends ListFacadeFilterChain {
         int lastNextActionType = InvokeAction.TYPE;
         NextAction lastNextAction = null;
 
+        final boolean[][] table = dispatchTable;
+        final boolean[] handlers = table != null
+                ? table[ctx.getOperation().ordinal()]
+                : null;
+        
         while (i != end) {
 
+            if (handlers != null && !handlers[i]
+                    && ctx.predefinedNextAction == null) {
+                // the Filter doesn't process the operation - skip it
+                i = executor.getNextFilter(ctx);
+                ctx.setFilterIdx(i);
+                continue;
+            }
+            
             // current Filter to be executed
             currentFilter = get(i);
 
@@ -292,6 +355,41 @@ public final class DefaultFilterChain extends ListFacadeFilterChain {
         return nextNextAction;
     }
     
+    /**
+     * Checks if the {@link Filter} has to be invoked for the {@link Operation}.
+     * The {@link BaseFilter}'s default <tt>handleXXX</tt> methods just pass
+     * the control to the next {@link Filter}, so they could be skipped.
+     */
+    private static boolean isHandler(final Filter filter,
+            final Operation operation) {
+        if (!(filter instanceof BaseFilter)) {
+            return true;
+        }
+        
+        final String methodName;
+        Class<?>[] parameterTypes = {FilterChainContext.class};
+        switch (operation) {
+            case ACCEPT: methodName = "handleAccept"; break;
+            case CONNECT: methodName = "handleConnect"; break;
+            case READ: methodName = "handleRead"; break;
+            case WRITE: methodName = "handleWrite"; break;
+            case CLOSE: methodName = "handleClose"; break;
+            case EVENT:
+                methodName = "handleEvent";
+                parameterTypes = new Class<?>[] {FilterChainContext.class,
+                    FilterChainEvent.class};
+                break;
+            default: return true;
+        }
+        
+        try {
+            return filter.getClass().getMethod(methodName, parameterTypes)
+                    .getDeclaringClass() != BaseFilter.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+    
     /**
      * Locates a message remainder in the {@link FilterChain}, associated with the
      * {@link Connection} and prepares the {@link Context} for remainder processing.
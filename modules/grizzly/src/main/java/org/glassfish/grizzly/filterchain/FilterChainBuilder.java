@@ -52,6 +52,7 @@ import java.util.List;
  */
 public abstract class FilterChainBuilder {
     protected final List<Filter> patternFilterChain;
+    protected boolean isFrozen;
     
     private FilterChainBuilder() {
         patternFilterChain = new ArrayList<Filter>();
@@ -67,6 +68,29 @@ public abstract class FilterChainBuilder {
 
     public abstract FilterChain build();
 
+    /**
+     * @return <tt>true</tt>, if the built {@link FilterChain}s will be frozen,
+     * or <tt>false</tt> otherwise.
+     * @see DefaultFilterChain#freeze()
+     */
+    public boolean isFrozen() {
+        return isFrozen;
+    }
+
+    /**
+     * Sets the flag, which tells if the built {@link FilterChain}s have to be
+     * frozen. The frozen {@link FilterChain} can not be modified, but skips
+     * the {@link Filter}s, which don't process the current operation.
+     *
+     * @param isFrozen <tt>true</tt>, if the built {@link FilterChain}s have to
+     * be frozen.
+     * @return this {@link FilterChainBuilder}.
+     * @see DefaultFilterChain#freeze()
+     */
+    public FilterChainBuilder setFrozen(final boolean isFrozen) {
+        this.isFrozen = isFrozen;
+        return this;
+    }
 
     public FilterChainBuilder add(Filter filter) {
         return addLast(filter);
@@ -149,8 +173,12 @@ public abstract class FilterChainBuilder {
     public static class StatelessFilterChainBuilder extends FilterChainBuilder {
         @Override
         public FilterChain build() {
-            final FilterChain fc = new DefaultFilterChain();
+            final DefaultFilterChain fc = new DefaultFilterChain();
             fc.addAll(patternFilterChain);
+            if (isFrozen) {
+                fc.freeze();
+            }
+            
             return fc;
         }
     }
@@ -69,6 +69,7 @@ public abstract class ListFacadeFilterChain extends AbstractFilterChain {
      */
     @Override
     public boolean add(Filter filter) {
+        checkModifiable();
         if (filters.add(filter)) {
             filter.onAdded(this);
             notifyChangedExcept(filter);
@@ -83,6 +84,7 @@ public abstract class ListFacadeFilterChain extends AbstractFilterChain {
      */
     @Override
     public void add(int index, Filter filter){
+        checkModifiable();
         filters.add(index, filter);
         filter.onAdded(this);
         notifyChangedExcept(filter);
@@ -93,6 +95,7 @@ public abstract class ListFacadeFilterChain extends AbstractFilterChain {
      */
     @Override
     public boolean addAll(Collection<? extends Filter> c) {
+        checkModifiable();
         for(Filter filter : c) {
             filters.add(filter);
             filter.onAdded(this);
@@ -108,6 +111,7 @@ public abstract class ListFacadeFilterChain extends AbstractFilterChain {
      */
     @Override
     public boolean addAll(int index, Collection<? extends Filter> c) {
+        checkModifiable();
         int i = 0;
         for(Filter filter : c) {
             filters.add(index + (i++), filter);
@@ -124,6 +128,7 @@ public abstract class ListFacadeFilterChain extends AbstractFilterChain {
      */
     @Override
     public Filter set(final int index, final Filter filter) {
+        checkModifiable();
         final Filter oldFilter = filters.set(index, filter);
         if (oldFilter != filter) {
             if (oldFilter != null) {
@@ -207,6 +212,7 @@ public abstract class ListFacadeFilterChain extends AbstractFilterChain {
      */
     @Override
     public boolean remove(Object object) {
+        checkModifiable();
         final Filter filter = (Filter) object;
 
         if (filters.remove(filter)) {
@@ -223,6 +229,7 @@ public abstract class ListFacadeFilterChain extends AbstractFilterChain {
      */
     @Override
     public Filter remove(int index) {
+        checkModifiable();
         final Filter filter = filters.remove(index);
         if (filter != null) {
             filter.onRemoved(this);
@@ -262,6 +269,7 @@ public abstract class ListFacadeFilterChain extends AbstractFilterChain {
      */
     @Override
     public void clear() {
+        checkModifiable();
         final Object[] localFilters = filters.toArray();
         filters.clear();
         
@@ -294,6 +302,15 @@ public abstract class ListFacadeFilterChain extends AbstractFilterChain {
         return filters.listIterator(index);
     }
 
+    /**
+     * Checks if the {@link Filter} list could be modified.
+     * The default implementation allows any modification.
+     *
+     * @throws IllegalStateException if the {@link FilterChain} can not be modified.
+     */
+    protected void checkModifiable() {
+    }
+
     protected void notifyChangedExcept(Filter filter) {
         for(Filter currentFilter : filters) {
             if (currentFilter != filter) {
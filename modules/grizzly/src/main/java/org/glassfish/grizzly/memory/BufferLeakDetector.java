@@ -0,0 +1,153 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.memory;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.monitoring.DefaultMonitoringConfig;
+
+/**
+ * Sampled detector of pooled {@link Buffer}s, which got garbage collected
+ * without being disposed (returned to the pool).
+ * <p>
+ * Every n-th (on average) allocated {@link Buffer} is tracked together with
+ * its allocation stack trace. If the buffer becomes unreachable before it's
+ * disposed - the registered {@link MemoryProbe}s are notified about the leak.
+ */
+final class BufferLeakDetector {
+    private final ReferenceQueue<Buffer> queue = new ReferenceQueue<Buffer>();
+    
+    // keeps the trackers reachable until either the buffer is disposed
+    // or the leak is reported
+    private final Set<Tracker> trackers = Collections.newSetFromMap(
+            new ConcurrentHashMap<Tracker, Boolean>());
+    
+    private final DefaultMonitoringConfig<MemoryProbe> monitoringConfig;
+    
+    // 0 - leak detection is disabled, 1 - every buffer is tracked,
+    // n - every n-th buffer (on average) is tracked
+    private volatile int samplingInterval;
+
+    BufferLeakDetector(final DefaultMonitoringConfig<MemoryProbe> monitoringConfig,
+            final int samplingInterval) {
+        this.monitoringConfig = monitoringConfig;
+        setSamplingInterval(samplingInterval);
+    }
+
+    int getSamplingInterval() {
+        return samplingInterval;
+    }
+
+    void setSamplingInterval(final int samplingInterval) {
+        if (samplingInterval < 0) {
+            throw new IllegalArgumentException("samplingInterval can't be negative");
+        }
+        
+        this.samplingInterval = samplingInterval;
+    }
+    
+    /**
+     * Starts tracking the buffer, if it's sampled, and reports the leaks
+     * detected so far.
+     * 
+     * @return the {@link Tracker}, which has to be closed, when the buffer
+     *         gets disposed, or <tt>null</tt> if the buffer is not tracked
+     */
+    Tracker track(final Buffer buffer, final int size) {
+        final int interval = samplingInterval;
+        if (interval == 0) {
+            return null;
+        }
+        
+        reportLeaks();
+        
+        if (interval > 1
+                && ThreadLocalRandom.current().nextInt(interval) != 0) {
+            return null;
+        }
+        
+        final Tracker tracker = new Tracker(buffer, size);
+        trackers.add(tracker);
+        return tracker;
+    }
+
+    /**
+     * @return the number of tracked {@link Buffer}s, which haven't been
+     *         disposed yet
+     */
+    int getTrackedBuffersCount() {
+        return trackers.size();
+    }
+    
+    void reportLeaks() {
+        Tracker tracker;
+        while ((tracker = (Tracker) queue.poll()) != null) {
+            if (trackers.remove(tracker)) {
+                ProbeNotifier.notifyBufferLeaked(monitoringConfig,
+                        tracker.size, tracker.allocationSite);
+            }
+        }
+    }
+    
+    final class Tracker extends WeakReference<Buffer> {
+        private final int size;
+        private final Throwable allocationSite;
+        
+        private Tracker(final Buffer buffer, final int size) {
+            super(buffer, queue);
+            this.size = size;
+            allocationSite = new Throwable("Buffer allocation site");
+        }
+        
+        /**
+         * Stops tracking, the {@link Buffer} has been disposed.
+         */
+        void close() {
+            clear();
+            trackers.remove(this);
+        }
+    }
+}
@@ -48,6 +48,7 @@ import java.nio.ByteOrder;
 import java.nio.InvalidMarkException;
 import java.nio.charset.Charset;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import org.glassfish.grizzly.Buffer;
 import org.glassfish.grizzly.ThreadCache;
 import org.glassfish.grizzly.utils.ArrayUtils;
@@ -56,9 +57,13 @@ import org.glassfish.grizzly.utils.ArrayUtils;
  *
  * @author Alexey Stashok
  */
-public final class BuffersBuffer extends CompositeBuffer {
+public final class BuffersBuffer extends CompositeBuffer
+        implements ReferenceCountedBuffer {
     public static volatile boolean DEBUG_MODE = false;
 
+    private static final AtomicIntegerFieldUpdater<BuffersBuffer> REF_COUNT_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(BuffersBuffer.class, "refCount");
+
     private static final ThreadCache.CachedTypeIndex<BuffersBuffer> CACHE_IDX =
             ThreadCache.obtainIndex(BuffersBuffer.class,
                     Integer.getInteger(BuffersBuffer.class.getName() + ".bb-cache-size", 5));
@@ -99,6 +104,7 @@ public final class BuffersBuffer extends CompositeBuffer {
         final BuffersBuffer buffer = ThreadCache.takeFromCache(CACHE_IDX);
         if (buffer != null) {
             buffer.isDisposed = false;
+            buffer.refCount = 1;
             buffer.order(byteOrder);
             buffer.set(memoryManager, buffers, buffersSize, isReadOnly);
             return buffer;
@@ -123,6 +129,9 @@ public final class BuffersBuffer extends CompositeBuffer {
 
     private boolean isDisposed;
 
+    // the number of references to this buffer
+    private volatile int refCount = 1;
+
     private boolean isReadOnly;
 
     private int mark = -1;
@@ -202,7 +211,7 @@ public final class BuffersBuffer extends CompositeBuffer {
         if (allowBufferDispose) {
             dispose();
             return true;
-        } else if (allowInternalBuffersDispose) {
+        } else if (allowInternalBuffersDispose && !releaseShared()) {
             removeAndDisposeBuffers();
         }
 
@@ -211,6 +220,10 @@ public final class BuffersBuffer extends CompositeBuffer {
 
     @Override
     public void dispose() {
+        if (releaseShared()) {
+            return;
+        }
+        
         checkDispose();
         isDisposed = true;
         removeAndDisposeBuffers();
@@ -223,6 +236,43 @@ public final class BuffersBuffer extends CompositeBuffer {
         ThreadCache.putToCache(CACHE_IDX, this);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BuffersBuffer retain() {
+        checkDispose();
+        REF_COUNT_UPDATER.incrementAndGet(this);
+        
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The view consists of the duplicates of the composite buffer components,
+     * which are disposed together with the view.
+     */
+    @Override
+    public BuffersBuffer retainedDuplicate() {
+        final BuffersBuffer duplicate = duplicate();
+        duplicate.allowBufferDispose(true);
+        duplicate.allowInternalBuffersDispose(true);
+        
+        return duplicate;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The views of a composite buffer don't share the reference count,
+     * but reference the content of its components.
+     */
+    @Override
+    public int refCount() {
+        return isDisposed ? 0 : refCount;
+    }
+
     @Override
     public final boolean isComposite() {
         return true;
@@ -1739,6 +1789,25 @@ public final class BuffersBuffer extends CompositeBuffer {
         this.limit = limit;
     }
 
+    /*
+     * Releases one of the additional references, if any.
+     *
+     * @return true, if the buffer is still referenced, or false
+     *         if the last reference has to be released
+     */
+    private boolean releaseShared() {
+        for (;;) {
+            final int count = refCount;
+            if (count <= 1) {
+                return false;
+            }
+
+            if (REF_COUNT_UPDATER.compareAndSet(this, count, count - 1)) {
+                return true;
+            }
+        }
+    }
+
     private void checkDispose() {
         if (isDisposed) {
             throw new IllegalStateException(
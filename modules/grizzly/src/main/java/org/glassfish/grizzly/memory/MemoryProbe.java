@@ -67,6 +67,30 @@ public interface MemoryProbe {
      */
     void onBufferReleaseToPoolEvent(int size);
 
+    /**
+     * Called by {@link MemoryManager}, when the capacity of an adaptive
+     * buffer pool gets changed according to the observed allocation misses
+     * and idle buffers. Does nothing by default.
+     *
+     * @param size the size of the pooled buffers
+     * @param oldCapacity the old number of buffers the pool may hold
+     * @param newCapacity the new number of buffers the pool may hold
+     */
+    default void onBufferPoolResizeEvent(int size, int oldCapacity,
+            int newCapacity) {
+    }
+
+    /**
+     * Called by {@link MemoryManager}, when a tracked buffer got garbage
+     * collected without being disposed (returned to the pool).
+     * Does nothing by default.
+     *
+     * @param size buffer size
+     * @param allocationSite the stack trace of the buffer allocation
+     */
+    default void onBufferLeakEvent(int size, Throwable allocationSite) {
+    }
+
 
     // ---------------------------------------------------------- Nested Classes
 
@@ -100,5 +124,18 @@ public interface MemoryProbe {
         @Override
         public void onBufferReleaseToPoolEvent(int size) {}
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onBufferPoolResizeEvent(int size, int oldCapacity,
+                int newCapacity) {}
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onBufferLeakEvent(int size, Throwable allocationSite) {}
+
     } // END Adapter
 }
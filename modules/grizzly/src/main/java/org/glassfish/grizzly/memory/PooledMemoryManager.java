@@ -46,8 +46,8 @@ import org.glassfish.grizzly.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Arrays;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.LockSupport;
 
@@ -68,6 +68,7 @@ import org.glassfish.grizzly.monitoring.MonitoringUtils;
  *     <li>The percentage of the heap that this manager will use when populating the pools</li>
  *     <li>The percentage of buffers to be pre-allocated during MemoryManager initialization</li>
  *     <li>The flag indicating whether direct or heap based {@link Buffer}s will be allocated</li>
+ *     <li>The flag indicating whether the pool slices capacity adapts to the observed load</li>
  * </ul>
  *
  * If no explicit configuration is provided, the following defaults will be used:
@@ -79,8 +80,26 @@ import org.glassfish.grizzly.monitoring.MonitoringUtils;
  *     <li>Percentage of heap: 3% ({@link #DEFAULT_HEAP_USAGE_PERCENTAGE})</li>
  *     <li>Percentage of buffers to be pre-allocated: 100% ({@link #DEFAULT_PREALLOCATED_BUFFERS_PERCENTAGE})</li>
  *     <li>Heap based {@link Buffer}s will be allocated</li>
+ *     <li>Pool slices capacity is fixed</li>
  * </ul>
  *
+ * Every thread allocates from its own (home) pool slice, so a buffer is
+ * usually allocated and released to the same slice by the same thread.
+ * If the home slice is empty, the buffer is stolen from the other slices of
+ * the pool before a new one is allocated.
+ *
+ * In adaptive mode every slice starts with the pre-allocated number of
+ * buffers and grows, up to the configured percentage of the heap, when
+ * allocation requests miss the slice too often; if the slice keeps more idle
+ * buffers than needed, its capacity shrinks and the excess buffers are
+ * released. Capacity changes are reported to the registered
+ * {@link MemoryProbe}s.
+ *
+ * Pooled {@link Buffer}s are {@link ReferenceCountedBuffer}s, so the same
+ * buffer could be shared by several owners. Optionally, a sample of the
+ * allocated buffers could be tracked to detect the buffers, which got garbage
+ * collected without being disposed, see {@link #setLeakDetectionSamplingInterval(int)}.
+ *
  * The main advantage of this manager over {@link org.glassfish.grizzly.memory.HeapMemoryManager} or
  * {@link org.glassfish.grizzly.memory.ByteBufferManager} is that this implementation doesn't use ThreadLocal pools
  * and as such, doesn't suffer from the memory fragmentation/reallocation cycle that can impact the ThreadLocal versions.
@@ -101,6 +120,15 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
 
     private static final long BACK_OFF_DELAY = Long.getLong(
             PooledMemoryManager.class + ".back-off-delay", 0L);
+
+    private static final int LEAK_DETECTION_SAMPLING_INTERVAL = Integer.getInteger(
+            PooledMemoryManager.class.getName() + ".leak-detection-sampling-interval", 0);
+
+    // the number of allocations (power of two), after which an adaptive
+    // pool slice re-evaluates its capacity
+    private static final int ADAPTIVE_WINDOW = Integer.highestOneBit(Math.max(16,
+            Integer.getInteger(PooledMemoryManager.class.getName()
+                    + ".adaptive-window", 1024)));
     /**
      * Basic monitoring support.  Concrete implementations of this class need
      * only to implement the {@link #createJmxManagementObject()}  method
@@ -122,6 +150,16 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
     // the max buffer size pooled by this memory manager
     private final int maxPooledBufferSize;
 
+    // true, if the pooled buffers are direct
+    private final boolean isDirect;
+
+    // true, if the pool slices capacity adapts to the observed load
+    private final boolean isAdaptive;
+
+    // detector of the buffers, which haven't been returned to the pool
+    private final BufferLeakDetector leakDetector = new BufferLeakDetector(
+            monitoringConfig, LEAK_DETECTION_SAMPLING_INTERVAL);
+
 
     // ------------------------------------------------------------ Constructors
 
@@ -182,6 +220,32 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
             final float percentOfHeap,
             final float percentPreallocated,
             final boolean isDirect) {
+        this(baseBufferSize, numberOfPools, growthFactor, numberOfPoolSlices,
+                percentOfHeap, percentPreallocated, isDirect, false);
+    }
+
+    /**
+     * Creates a new <code>PooledMemoryManager</code> using the specified parameters for configuration.
+     *
+     * @param baseBufferSize the base size of the buffer for the 1st pool, every next pool n will have buffer size equal to bufferSize(n-1) * 2^growthFactor
+     * @param numberOfPools the number of pools, responsible for allocation of buffers of a pool-specific size
+     * @param growthFactor the buffer size growth factor, that defines 2^x multiplier, used to calculate buffer size for next allocated pool
+     * @param numberOfPoolSlices the number of pool slices that every pool will stripe allocation requests across
+     * @param percentOfHeap percentage of the heap, that limits the memory the pools may hold
+     * @param percentPreallocated percentage of buffers to be pre-allocated during MemoryManager initialization
+     * @param isDirect flag, indicating whether direct or heap based {@link Buffer}s will be allocated
+     * @param isAdaptive flag, indicating whether the pool slices capacity
+     *        grows and shrinks according to the observed allocation misses and idle buffers
+     */
+    public PooledMemoryManager(
+            final int baseBufferSize,
+            final int numberOfPools,
+            final int growthFactor,
+            final int numberOfPoolSlices,
+            final float percentOfHeap,
+            final float percentPreallocated,
+            final boolean isDirect,
+            final boolean isAdaptive) {
         if (baseBufferSize <= 0) {
             throw new IllegalArgumentException("baseBufferSize must be greater than zero");
         }
@@ -217,9 +281,11 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
         for (int i = 0, bufferSize = baseBufferSize; i < numberOfPools; i++, bufferSize <<= growthFactor) {
             pools[i] = new Pool(bufferSize, memoryPerSubPool,
                     numberOfPoolSlices, percentPreallocated, isDirect,
-                    monitoringConfig);
+                    isAdaptive, leakDetector, monitoringConfig);
         }
         maxPooledBufferSize = pools[numberOfPools - 1].bufferSize;
+        this.isDirect = isDirect;
+        this.isAdaptive = isAdaptive;
     }
 
     
@@ -352,7 +418,38 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
      */
     @Override
     public boolean willAllocateDirect(final int size) {
-        return false;
+        return isDirect;
+    }
+
+    /**
+     * @return <tt>true</tt>, if the pool slices capacity adapts to the observed
+     * load, or <tt>false</tt> if it's fixed
+     */
+    public boolean isAdaptive() {
+        return isAdaptive;
+    }
+
+    /**
+     * @return the leak detection sampling interval: <tt>0</tt> if the leak
+     * detection is disabled, or <tt>n</tt> if every n-th allocated
+     * {@link Buffer} (on average) is tracked
+     */
+    public int getLeakDetectionSamplingInterval() {
+        return leakDetector.getSamplingInterval();
+    }
+
+    /**
+     * Sets the leak detection sampling interval. If the interval is
+     * <tt>n</tt> - every n-th allocated {@link Buffer} (on average) is tracked
+     * along with its allocation stack trace, and if it gets garbage collected
+     * without being disposed, the {@link MemoryProbe}s are notified via
+     * {@link MemoryProbe#onBufferLeakEvent(int, Throwable)}.
+     * <tt>0</tt> disables the leak detection.
+     *
+     * @param samplingInterval the leak detection sampling interval
+     */
+    public void setLeakDetectionSamplingInterval(final int samplingInterval) {
+        leakDetector.setSamplingInterval(samplingInterval);
     }
 
     /**
@@ -487,18 +584,22 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
     static final class Pool {
         private final PoolSlice[] slices;
         private final int bufferSize;
+        private final BufferLeakDetector leakDetector;
 
         public Pool(final int bufferSize, final long memoryPerSubPool,
                 final int numberOfPoolSlices, final float percentPreallocated,
-                final boolean isDirect,
+                final boolean isDirect, final boolean isAdaptive,
+                final BufferLeakDetector leakDetector,
                 final DefaultMonitoringConfig<MemoryProbe> monitoringConfig) {
             this.bufferSize = bufferSize;
+            this.leakDetector = leakDetector;
             slices = new PoolSlice[numberOfPoolSlices];
             final long memoryPerSlice = memoryPerSubPool / numberOfPoolSlices;
             
             for (int i = 0; i < numberOfPoolSlices; i++) {
                 slices[i] = new PoolSlice(this, memoryPerSlice, bufferSize,
-                        percentPreallocated, isDirect, monitoringConfig);
+                        percentPreallocated, isDirect, isAdaptive,
+                        monitoringConfig);
             }
         }
 
@@ -524,13 +625,22 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
         }
         
         public Buffer allocate() {
-            final PoolSlice slice = getSlice();
-            PoolBuffer b = slice.poll();
-            if (b == null) {
-                b = slice.allocate();
+            final int homeIdx = getHomeSliceIndex();
+            final PoolSlice home = slices[homeIdx];
+            PoolBuffer b = home.poll();
+            final boolean isMiss = b == null;
+            if (isMiss) {
+                b = steal(homeIdx);
+                if (b == null) {
+                    b = home.allocate();
+                }
             }
             
-            return b.prepare();
+            if (home.isAdaptive) {
+                home.onAllocate(isMiss);
+            }
+            
+            return b.prepare(leakDetector.track(b, bufferSize));
         }
 
         @Override
@@ -553,9 +663,34 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
             return sb.toString();
         }
         
-        @SuppressWarnings("unchecked")
-        private PoolSlice getSlice() {
-            return slices[ThreadLocalRandom.current().nextInt(slices.length)];
+        /*
+         * The slice the current thread allocates from and (usually) releases
+         * buffers to, so the slice's indexes and buffers stay in the caches of
+         * the core the thread runs on.
+         */
+        private int getHomeSliceIndex() {
+            return (int) (Thread.currentThread().getId() % slices.length);
+        }
+
+        /*
+         * The home slice is empty, try to take a buffer from the other slices.
+         */
+        private PoolBuffer steal(final int homeIdx) {
+            for (int i = homeIdx + 1; i < slices.length; i++) {
+                final PoolBuffer b = slices[i].poll();
+                if (b != null) {
+                    return b;
+                }
+            }
+            
+            for (int i = 0; i < homeIdx; i++) {
+                final PoolBuffer b = slices[i].poll();
+                if (b != null) {
+                    return b;
+                }
+            }
+            
+            return null;
         }
     }
 
@@ -586,6 +721,14 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
         // Apply this mask to get/set the wrap status bit.
         private static final int WRAP_BIT_MASK = 0x40000000;
 
+        // The adaptive slice grows, if more than 1/2^MISS_RATIO_SHIFT
+        // allocations during the window missed the slice.
+        private static final int MISS_RATIO_SHIFT = 4;
+
+        // The number of subsequent idle windows, after which
+        // the adaptive slice shrinks.
+        private static final int IDLE_WINDOWS_TO_SHRINK = 2;
+
         // Using an AtomicReferenceArray to ensure proper visibility of items
         // within the pool which will be shared across threads.
         private final PaddedAtomicReferenceArray<PoolBuffer> pool1, pool2;
@@ -610,6 +753,24 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
         // flag, indicating if heap or direct Buffers will be allocated
         private final boolean isDirect;
 
+        // flag, indicating if the slice capacity adapts to the observed load
+        private final boolean isAdaptive;
+
+        // The max number of buffers the slice may currently hold.
+        // Fixed to maxPoolSize unless the slice is adaptive.
+        private volatile int capacity;
+
+        // The min capacity of the adaptive slice
+        private final int minCapacity;
+
+        // The number of allocations and misses observed by the adaptive slice
+        private final PaddedAtomicInteger allocationsCount;
+        private final AtomicInteger missesCount;
+
+        // The number of subsequent windows with no misses and
+        // mostly idle buffers.
+        private int idleWindowsCount;
+
         // MemoryProbe configuration.
         private final DefaultMonitoringConfig<MemoryProbe> monitoringConfig;
 
@@ -622,11 +783,13 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
                    final int bufferSize,
                    final float percentPreallocated,
                    final boolean isDirect,
+                   final boolean isAdaptive,
                    final DefaultMonitoringConfig<MemoryProbe> monitoringConfig) {
 
             this.owner = owner;
             this.bufferSize = bufferSize;
             this.isDirect = isDirect;
+            this.isAdaptive = isAdaptive;
             this.monitoringConfig = monitoringConfig;
             int initialSize = (int) (totalPoolSize / ((long) bufferSize));
 
@@ -657,6 +820,13 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
             
             pollIdx = new PaddedAtomicInteger(0);
             offerIdx = new PaddedAtomicInteger(idx);
+            
+            minCapacity = Math.min(STRIDE, maxPoolSize);
+            capacity = isAdaptive
+                    ? Math.max(minCapacity, preallocatedBufs)
+                    : maxPoolSize;
+            allocationsCount = isAdaptive ? new PaddedAtomicInteger(0) : null;
+            missesCount = isAdaptive ? new AtomicInteger() : null;
         }
 
 
@@ -664,38 +834,13 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
 
 
         public final PoolBuffer poll() {
-            int pollIdx;
-            for (;;) {
-                pollIdx = this.pollIdx.get();
-                final int offerIdx = this.offerIdx.get();
-                
-                // weak isEmpty check, might return false positives
-                if (isEmpty(pollIdx, offerIdx)) {
-                    return null;
-                }
-                
-                final int nextPollIdx = nextIndex(pollIdx);
-                if (this.pollIdx.compareAndSet(pollIdx, nextPollIdx)) {
-                    break;
-                }
-                
-                LockSupport.parkNanos(BACK_OFF_DELAY);
+            final PoolBuffer pb = poll0();
+            if (pb != null) {
+                ProbeNotifier.notifyBufferAllocatedFromPool(monitoringConfig,
+                                                            bufferSize);
             }
             
-            final int unmaskedPollIdx = unmask(pollIdx);
-            final AtomicReferenceArray<PoolBuffer> pool = pool(pollIdx);
-            for (;;) {
-                // unmask the current read value to the actual array index.
-                final PoolBuffer pb = pool.getAndSet(unmaskedPollIdx, null);
-                if (pb != null) {
-                    ProbeNotifier.notifyBufferAllocatedFromPool(monitoringConfig,
-                                                                bufferSize);
-                    return pb;
-                }
-                
-                // give offer at this index time to complete...
-                Thread.yield();
-            }
+            return pb;
         }
 
         public final boolean offer(final PoolBuffer b) {
@@ -705,7 +850,9 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
                 final int pollIdx = this.pollIdx.get();
                 
                 // weak isFull check, might return false positives
-                if (isFull(pollIdx, offerIdx)) {
+                if (isFull(pollIdx, offerIdx)
+                        || (isAdaptive
+                        && elementsCount(pollIdx, offerIdx) >= capacity)) {
                     return false;
                 }
                 final int nextOfferIndex = nextIndex(offerIdx);
@@ -735,6 +882,42 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
             return elementsCount(pollIdx.get(), offerIdx.get());
         }
 
+        /*
+         * Takes a buffer out of the slice without notifying probes.
+         */
+        private PoolBuffer poll0() {
+            int pollIdx;
+            for (;;) {
+                pollIdx = this.pollIdx.get();
+                final int offerIdx = this.offerIdx.get();
+                
+                // weak isEmpty check, might return false positives
+                if (isEmpty(pollIdx, offerIdx)) {
+                    return null;
+                }
+                
+                final int nextPollIdx = nextIndex(pollIdx);
+                if (this.pollIdx.compareAndSet(pollIdx, nextPollIdx)) {
+                    break;
+                }
+                
+                LockSupport.parkNanos(BACK_OFF_DELAY);
+            }
+            
+            final int unmaskedPollIdx = unmask(pollIdx);
+            final AtomicReferenceArray<PoolBuffer> pool = pool(pollIdx);
+            for (;;) {
+                // unmask the current read value to the actual array index.
+                final PoolBuffer pb = pool.getAndSet(unmaskedPollIdx, null);
+                if (pb != null) {
+                    return pb;
+                }
+                
+                // give offer at this index time to complete...
+                Thread.yield();
+            }
+        }
+
         /*
          * There are two cases to consider.
          *  1) When both indexes are on the same array.
@@ -763,6 +946,15 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
         public int getMaxElementsCount() {
             return maxPoolSize;
         }
+
+        /**
+         * @return the max number of {@link Buffer}s, that could be currently
+         * pooled in this <tt>PoolSlice</tt>. Unless the slice is adaptive,
+         * the value is equal to {@link #getMaxElementsCount()}
+         */
+        public int getCapacity() {
+            return capacity;
+        }
         
         public final long size() {
             return (long) elementsCount() * (long) bufferSize;
@@ -790,10 +982,60 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
             return buffer;
         }
 
+        /**
+         * Collects the allocation statistics of the adaptive slice and
+         * re-evaluates the slice capacity once per window.
+         *
+         * @param isMiss <tt>true</tt>, if the allocation request couldn't be
+         *        served by this slice
+         */
+        void onAllocate(final boolean isMiss) {
+            if (isMiss) {
+                missesCount.incrementAndGet();
+            }
+            
+            if ((allocationsCount.incrementAndGet() & (ADAPTIVE_WINDOW - 1)) == 0) {
+                adapt(missesCount.getAndSet(0));
+            }
+        }
+
 
         // ----------------------------------------------------- Private Methods
 
 
+        private synchronized void adapt(final int misses) {
+            final int oldCapacity = capacity;
+            
+            if (misses > (ADAPTIVE_WINDOW >> MISS_RATIO_SHIFT)) {
+                idleWindowsCount = 0;
+                if (oldCapacity < maxPoolSize) {
+                    resize(oldCapacity, Math.min(maxPoolSize, oldCapacity << 1));
+                }
+            } else if (misses == 0 && elementsCount() > (oldCapacity >> 1)) {
+                if (++idleWindowsCount >= IDLE_WINDOWS_TO_SHRINK
+                        && oldCapacity > minCapacity) {
+                    idleWindowsCount = 0;
+                    resize(oldCapacity, Math.max(minCapacity, oldCapacity >> 1));
+                    
+                    // release the buffers, which don't fit the new capacity
+                    for (int i = elementsCount() - capacity; i > 0; i--) {
+                        if (poll0() == null) {
+                            break;
+                        }
+                    }
+                }
+            } else {
+                idleWindowsCount = 0;
+            }
+        }
+
+        private void resize(final int oldCapacity, final int newCapacity) {
+            capacity = newCapacity;
+            ProbeNotifier.notifyBufferPoolResized(monitoringConfig, bufferSize,
+                    oldCapacity, newCapacity);
+        }
+
+
         private static boolean isFull(final int pollIdx, final int offerIdx) {
             return (pollIdx ^ offerIdx) == WRAP_BIT_MASK;
         }
@@ -860,6 +1102,7 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
                                 ", offer index=" + unmask(widx) +
                                 ", offer wrap bit=" + (fillHighestOneBitRight(
                     getWrappingBit(widx)) & 1) +
+                                ", capacity=" + capacity +
                                 ", maxPoolSize=" + maxPoolSize +
                                 '}';
         }
@@ -901,8 +1144,8 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
     } // END BufferPool
 
 
-    interface PoolBuffer extends Buffer {
-        PoolBuffer prepare();
+    interface PoolBuffer extends ReferenceCountedBuffer {
+        PoolBuffer prepare(BufferLeakDetector.Tracker leakTracker);
         boolean free();
         PoolBuffer free(boolean free);
 
@@ -912,6 +1155,9 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
     private static final class PoolHeapBuffer extends HeapBuffer
             implements PoolBuffer {
 
+        private static final AtomicIntegerFieldUpdater<PoolHeapBuffer> REF_COUNT_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(PoolHeapBuffer.class, "refCount");
+
         // The pool slice to which this Buffer instance will be returned.
         private final PoolSlice owner;
 
@@ -920,7 +1166,8 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
         boolean free;
 
         // represents the number of 'child' buffers that have been created using
-        // this as the foundation.  This source buffer can't be returned
+        // this as the foundation, plus the additional references retained
+        // on this and the 'child' buffers.  This source buffer can't be returned
         // to the pool unless this value is zero.
         protected final AtomicInteger shareCount;
 
@@ -928,6 +1175,14 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
         // non-null in any 'child' buffers created from the original.
         protected final PoolHeapBuffer source;
 
+        // the number of references to this buffer instance, each reference
+        // is also accounted in the shareCount
+        private volatile int refCount = 1;
+
+        // tracks the buffer, if the leak detection is enabled and the
+        // buffer has been sampled
+        private BufferLeakDetector.Tracker leakTracker;
+
         
         // ------------------------------------------------------------ Constructors
 
@@ -979,9 +1234,11 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
         }
 
         @Override
-        public PoolBuffer prepare() {
+        public PoolBuffer prepare(final BufferLeakDetector.Tracker leakTracker) {
             allowBufferDispose = true;
             free = false;
+            refCount = 1;
+            this.leakTracker = leakTracker;
             
             return this;
         }
@@ -1001,6 +1258,25 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
             this.free = free;
             return this;
         }
+
+        @Override
+        public ReferenceCountedBuffer retain() {
+            checkDispose();
+            REF_COUNT_UPDATER.incrementAndGet(this);
+            shareCount.incrementAndGet();
+            
+            return this;
+        }
+
+        @Override
+        public int refCount() {
+            return free ? 0 : shareCount.get() + 1;
+        }
+
+        @Override
+        public ReferenceCountedBuffer retainedDuplicate() {
+            return (ReferenceCountedBuffer) duplicate();
+        }
         
         // ------------------------------------------ Methods from HeapBuffer
 
@@ -1049,11 +1325,34 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
             if (free) {
                 return;
             }
-            free = true;
+            
+            if (!releaseShared()) {
+                // the last reference to this buffer instance
+                free = true;
+            }
             
             dispose0();
         }
 
+        /*
+         * Releases one of the additional references, if any.
+         *
+         * @return true, if the buffer is still referenced, or false
+         *         if the last reference has to be released
+         */
+        private boolean releaseShared() {
+            for (;;) {
+                final int count = refCount;
+                if (count <= 1) {
+                    return false;
+                }
+                
+                if (REF_COUNT_UPDATER.compareAndSet(this, count, count - 1)) {
+                    return true;
+                }
+            }
+        }
+
         private void dispose0() {
             // check shared counter optimistically
             boolean isNotShared = shareCount.get() == 0;
@@ -1075,6 +1374,8 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
 
 
         private void returnToPool() {
+            closeLeakTracker();
+            
             // restore capacity
             cap = heap.length;
             // clear
@@ -1082,6 +1383,13 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
             
             owner.offer(this);
         }
+
+        private void closeLeakTracker() {
+            if (leakTracker != null) {
+                leakTracker.close();
+                leakTracker = null;
+            }
+        }
         
         // ----------------------------------------------------- Protected Methods
         
@@ -1133,6 +1441,9 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
     private static final class PoolByteBufferWrapper extends ByteBufferWrapper
             implements PoolBuffer {
 
+        private static final AtomicIntegerFieldUpdater<PoolByteBufferWrapper> REF_COUNT_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(PoolByteBufferWrapper.class, "refCount");
+
         // The pool slice to which this Buffer instance will be returned.
         private final PoolSlice owner;
 
@@ -1141,7 +1452,8 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
         boolean free;
 
         // represents the number of 'child' buffers that have been created using
-        // this as the foundation.  This source buffer can't be returned
+        // this as the foundation, plus the additional references retained
+        // on this and the 'child' buffers.  This source buffer can't be returned
         // to the pool unless this value is zero.
         protected final AtomicInteger shareCount;
 
@@ -1149,6 +1461,14 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
         // non-null in any 'child' buffers created from the original.
         protected final PoolByteBufferWrapper source;
 
+        // the number of references to this buffer instance, each reference
+        // is also accounted in the shareCount
+        private volatile int refCount = 1;
+
+        // tracks the buffer, if the leak detection is enabled and the
+        // buffer has been sampled
+        private BufferLeakDetector.Tracker leakTracker;
+
         // Used for the special case of the split() method.  This maintains
         // the original wrapper from the pool which must ultimately be returned.
         private final ByteBuffer origVisible;
@@ -1206,9 +1526,12 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
         }
 
         @Override
-        public PoolBuffer prepare() {
+        public PoolBuffer prepare(final BufferLeakDetector.Tracker leakTracker) {
             allowBufferDispose = true;
             free = false;
+            refCount = 1;
+            this.leakTracker = leakTracker;
+            
             return this;
         }
 
@@ -1227,6 +1550,25 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
             this.free = free;
             return this;
         }
+
+        @Override
+        public ReferenceCountedBuffer retain() {
+            checkDispose();
+            REF_COUNT_UPDATER.incrementAndGet(this);
+            shareCount.incrementAndGet();
+            
+            return this;
+        }
+
+        @Override
+        public int refCount() {
+            return free ? 0 : shareCount.get() + 1;
+        }
+
+        @Override
+        public ReferenceCountedBuffer retainedDuplicate() {
+            return (ReferenceCountedBuffer) duplicate();
+        }
         
         // ------------------------------------------ Methods from ByteBufferWrapper
         
@@ -1235,11 +1577,34 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
             if (free) {
                 return;
             }
-            free = true;
+            
+            if (!releaseShared()) {
+                // the last reference to this buffer instance
+                free = true;
+            }
             
             dispose0();
         }
 
+        /*
+         * Releases one of the additional references, if any.
+         *
+         * @return true, if the buffer is still referenced, or false
+         *         if the last reference has to be released
+         */
+        private boolean releaseShared() {
+            for (;;) {
+                final int count = refCount;
+                if (count <= 1) {
+                    return false;
+                }
+                
+                if (REF_COUNT_UPDATER.compareAndSet(this, count, count - 1)) {
+                    return true;
+                }
+            }
+        }
+
         private void dispose0() {
             // check shared counter optimistically
             boolean isNotShared = shareCount.get() == 0;
@@ -1294,9 +1659,18 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
         
         private void returnToPool() {
             // should be called on "source" only
+            closeLeakTracker();
+            
             visible = origVisible;
             visible.clear();
             owner.offer(this);
         }
+
+        private void closeLeakTracker() {
+            if (leakTracker != null) {
+                leakTracker.close();
+                leakTracker = null;
+            }
+        }
     } // END PoolBuffer    
 }
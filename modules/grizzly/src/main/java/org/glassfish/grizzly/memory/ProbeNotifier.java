@@ -101,4 +101,41 @@ final class ProbeNotifier {
         }
     }
 
+    /**
+     * Notify registered {@link MemoryProbe}s about the "pool resize" event.
+     *
+     * @param size buffer size
+     * @param oldCapacity the old pool capacity (number of buffers)
+     * @param newCapacity the new pool capacity (number of buffers)
+     */
+    static void notifyBufferPoolResized(
+            final DefaultMonitoringConfig<MemoryProbe> config,
+            final int size, final int oldCapacity, final int newCapacity) {
+
+        final MemoryProbe[] probes = config.getProbesUnsafe();
+        if (probes != null) {
+            for (MemoryProbe probe : probes) {
+                probe.onBufferPoolResizeEvent(size, oldCapacity, newCapacity);
+            }
+        }
+    }
+
+    /**
+     * Notify registered {@link MemoryProbe}s about the "buffer leak" event.
+     *
+     * @param size buffer size
+     * @param allocationSite the stack trace of the leaked buffer allocation
+     */
+    static void notifyBufferLeaked(
+            final DefaultMonitoringConfig<MemoryProbe> config,
+            final int size, final Throwable allocationSite) {
+
+        final MemoryProbe[] probes = config.getProbesUnsafe();
+        if (probes != null) {
+            for (MemoryProbe probe : probes) {
+                probe.onBufferLeakEvent(size, allocationSite);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,92 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.memory;
+
+import org.glassfish.grizzly.Buffer;
+
+/**
+ * {@link Buffer}, which could be shared by several owners, for example, when
+ * the same content has to be written to several connections.
+ * <p>
+ * The owners must not share the same {@link Buffer} instance, because they
+ * would share its position and limit as well: the first asynchronous write
+ * would consume the buffer and the other writes would send nothing. Instead,
+ * every owner has to get its own view, created using
+ * {@link #retainedDuplicate()}. The view has independent position, limit and
+ * mark, but shares the content and the reference count with the original
+ * buffer. Each view is released independently, using
+ * {@link Buffer#tryDispose()}, {@link Buffer#dispose()} or
+ * {@link Buffer#release()} (an asynchronous write releases the written
+ * {@link Buffer} once it's completed), and the memory gets actually disposed,
+ * when the last reference is released.
+ * <p>
+ * {@link #retain()} adds a reference to the same buffer instance, it could be
+ * used to pass the buffer to another owner, when the owners don't access
+ * the buffer concurrently. Every retained reference has to be released
+ * separately.
+ */
+public interface ReferenceCountedBuffer extends Buffer {
+
+    /**
+     * Adds a reference to the buffer instance.
+     *
+     * @return this buffer
+     * @throws IllegalStateException if the buffer has already been disposed
+     */
+    ReferenceCountedBuffer retain();
+
+    /**
+     * Creates a view of the buffer, which has its own position, limit and mark,
+     * and holds its own reference to the buffer content, so the view has to
+     * be released independently of this buffer.
+     *
+     * @return the view of this buffer
+     * @throws IllegalStateException if the buffer has already been disposed
+     */
+    ReferenceCountedBuffer retainedDuplicate();
+
+    /**
+     * @return the number of references to the buffer content, held by this
+     * buffer and the views sharing its content, or <tt>0</tt> if this buffer
+     * has been disposed
+     */
+    int refCount();
+}
@@ -0,0 +1,862 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.memory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.monitoring.DefaultMonitoringConfig;
+import org.glassfish.grizzly.monitoring.MonitoringConfig;
+import org.glassfish.grizzly.monitoring.MonitoringUtils;
+
+/**
+ * A {@link MemoryManager} implementation, which carves large direct (off-heap)
+ * memory slabs into power-of-two sized chunks using a buddy allocator.
+ *
+ * The slabs are allocated on demand, up to the configured max number of slabs,
+ * and are never released, so the allocated {@link Buffer}s don't add to the
+ * garbage collector work no matter how many connections use them. Once all
+ * the slabs are full, the buffers are allocated on the heap, or, if
+ * {@link #setDirectFallback(boolean) direct fallback} is enabled, using
+ * {@link ByteBuffer#allocateDirect(int)}. The latter is neither pooled nor
+ * bounded, and is released only when the garbage collector gets to it, so it
+ * only makes sense if the slabs fill up rarely.
+ *
+ * The max number of slabs caps the direct memory used by the buffers, so it
+ * has to fit the number of connections: every connection usually holds a
+ * read buffer, rounded up to the chunk size, while it's being processed,
+ * and a chunk per queued async write. For example, 10000 connections, each
+ * holding an 8 KiB chunk at a time, need 80 MiB - 20 slabs of 4 MiB. The
+ * {@link #getFallbackAllocationsCount() fallback allocations count} growing
+ * under the normal load means the cap is too low.
+ *
+ * There are several tuning options for this {@link MemoryManager} implementation.
+ * <ul>
+ *     <li>The slab size, which is also the max size of a chunk</li>
+ *     <li>The min chunk size, every chunk is the min chunk size multiplied by a power of two</li>
+ *     <li>The max number of slabs</li>
+ * </ul>
+ *
+ * If no explicit configuration is provided, the following defaults will be used:
+ * <ul>
+ *     <li>Slab size: 4 MiB ({@link #DEFAULT_SLAB_SIZE})</li>
+ *     <li>Min chunk size: 512 bytes ({@link #DEFAULT_MIN_CHUNK_SIZE})</li>
+ *     <li>Max number of slabs: 64 ({@link #DEFAULT_MAX_SLABS_COUNT})</li>
+ *     <li>Direct fallback: disabled, unless the
+ *     <tt>org.glassfish.grizzly.memory.SlabMemoryManager.direct-fallback</tt>
+ *     system property is <tt>true</tt></li>
+ * </ul>
+ *
+ * Allocated {@link Buffer}s are {@link ReferenceCountedBuffer}s, the chunk
+ * gets returned to its slab, when the last reference is released. Requests
+ * larger than the slab size are served by {@link CompositeBuffer}s.
+ */
+public class SlabMemoryManager implements MemoryManager<Buffer>, WrapperAware {
+
+    public static final int DEFAULT_SLAB_SIZE = 4 * 1024 * 1024;
+    public static final int DEFAULT_MIN_CHUNK_SIZE = 512;
+    public static final int DEFAULT_MAX_SLABS_COUNT = 64;
+
+    private static final boolean DIRECT_FALLBACK = Boolean.getBoolean(
+            SlabMemoryManager.class.getName() + ".direct-fallback");
+
+    /**
+     * Basic monitoring support.  Concrete implementations of this class need
+     * only to implement the {@link #createJmxManagementObject()}  method
+     * to plug into the Grizzly 2.0 JMX framework.
+     */
+    protected final DefaultMonitoringConfig<MemoryProbe> monitoringConfig =
+            new DefaultMonitoringConfig<MemoryProbe>(MemoryProbe.class) {
+
+                @Override
+                public Object createManagementObject() {
+                    return createJmxManagementObject();
+                }
+
+            };
+
+    // the size of a slab and the max chunk size
+    private final int slabSize;
+
+    // the min chunk size
+    private final int minChunkSize;
+    private final int log2MinChunkSize;
+
+    // the order of the slab-size chunk, the chunk of order n has size
+    // minChunkSize * 2^n
+    private final int maxOrder;
+
+    // the max number of slabs
+    private final int maxSlabsCount;
+
+    // copy-on-write array of the allocated slabs
+    private volatile Slab[] slabs = new Slab[0];
+    private final Object slabsSync = new Object();
+
+    // the number of buffers, which couldn't be allocated from the slabs
+    private final AtomicLong fallbackAllocationsCount = new AtomicLong();
+
+    // true, if the buffers, which don't fit the slabs, are allocated in the
+    // direct memory, otherwise on the heap
+    private volatile boolean isDirectFallback = DIRECT_FALLBACK;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * Creates a new <code>SlabMemoryManager</code> using the following defaults:
+     * <ul>
+     *     <li>4 MiB slab size</li>
+     *     <li>512 bytes min chunk size</li>
+     *     <li>64 slabs max</li>
+     * </ul>
+     */
+    public SlabMemoryManager() {
+        this(DEFAULT_SLAB_SIZE, DEFAULT_MIN_CHUNK_SIZE, DEFAULT_MAX_SLABS_COUNT);
+    }
+
+    /**
+     * Creates a new <code>SlabMemoryManager</code> using the specified parameters for configuration.
+     *
+     * @param slabSize the size of a direct memory slab, which is also the max chunk size
+     * @param minChunkSize the min size of a chunk the slab is split into
+     * @param maxSlabsCount the max number of slabs to be allocated
+     */
+    public SlabMemoryManager(final int slabSize, final int minChunkSize,
+            final int maxSlabsCount) {
+        if (minChunkSize <= 0) {
+            throw new IllegalArgumentException("minChunkSize must be greater than zero");
+        }
+        if (slabSize < minChunkSize) {
+            throw new IllegalArgumentException("slabSize must be greater or equal to minChunkSize");
+        }
+        if (!isPowerOfTwo(slabSize) || !isPowerOfTwo(minChunkSize)) {
+            throw new IllegalArgumentException("slabSize and minChunkSize must be a power of two");
+        }
+        if (maxSlabsCount <= 0) {
+            throw new IllegalArgumentException("maxSlabsCount must be greater than zero");
+        }
+
+        this.slabSize = slabSize;
+        this.minChunkSize = minChunkSize;
+        this.maxSlabsCount = maxSlabsCount;
+        log2MinChunkSize = Integer.numberOfTrailingZeros(minChunkSize);
+        maxOrder = Integer.numberOfTrailingZeros(slabSize) - log2MinChunkSize;
+    }
+
+
+    // ---------------------------------------------- Methods from MemoryManager
+
+
+    /**
+     * For this implementation, this method simply calls through to
+     * {@link #allocateAtLeast(int)};
+     */
+    @Override
+    public Buffer allocate(final int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Requested allocation size must be greater than or equal to zero.");
+        }
+        return allocateAtLeast(size).limit(size);
+    }
+
+    /**
+     * Allocates a buffer of at least the size requested.
+     * <p/>
+     * Keep in mind that the capacity of the buffer may be greater than the
+     * allocation request, it's rounded up to the nearest chunk size.
+     *
+     * @param size the min {@link Buffer} size to be allocated.
+     * @return a buffer of at least the specified <tt>size</tt>.
+     */
+    @Override
+    public Buffer allocateAtLeast(final int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Requested allocation size must be greater than or equal to zero.");
+        }
+
+        if (size == 0) {
+            return Buffers.EMPTY_BUFFER;
+        }
+
+        return size <= slabSize ?
+                allocateChunk(size) :
+                allocateToCompositeBuffer(newCompositeBuffer(), size);
+    }
+
+    /**
+     * Reallocates an existing buffer to at least the specified size.
+     *
+     * @param oldBuffer old {@link Buffer} to be reallocated.
+     * @param newSize   new {@link Buffer} required size.
+     *
+     * @return potentially a new buffer of at least the specified size.
+     */
+    @Override
+    public Buffer reallocate(final Buffer oldBuffer, final int newSize) {
+        if (newSize == 0) {
+            oldBuffer.tryDispose();
+            return Buffers.EMPTY_BUFFER;
+        }
+
+        final int curBufSize = oldBuffer.capacity();
+
+        if (oldBuffer.isComposite()) {
+            final CompositeBuffer oldCompositeBuffer = (CompositeBuffer) oldBuffer;
+            if (curBufSize > newSize) {
+                final int oldPos = oldCompositeBuffer.position();
+                Buffers.setPositionLimit(oldBuffer, newSize, newSize);
+                oldCompositeBuffer.trim();
+                oldCompositeBuffer.position(Math.min(oldPos, newSize));
+
+                return oldCompositeBuffer;
+            } else {
+                return allocateToCompositeBuffer(oldCompositeBuffer,
+                        newSize - curBufSize);
+            }
+        }
+
+        if (curBufSize >= newSize) {
+            return oldBuffer.limit(newSize);
+        }
+
+        final int pos = oldBuffer.position();
+        Buffers.setPositionLimit(oldBuffer, 0, curBufSize);
+
+        final Buffer newBuffer = allocateAtLeast(newSize);
+        newBuffer.put(oldBuffer);
+        Buffers.setPositionLimit(newBuffer, pos, newSize);
+
+        oldBuffer.tryDispose();
+
+        return newBuffer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void release(final Buffer buffer) {
+        buffer.tryDispose();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean willAllocateDirect(final int size) {
+        if (isDirectFallback) {
+            return true;
+        }
+
+        final Slab[] current = slabs;
+        if (current.length < maxSlabsCount) {
+            return true;
+        }
+
+        final int chunkSize = minChunkSize << getOrder(Math.min(size, slabSize));
+        for (Slab slab : current) {
+            if (slab.freeBytes >= chunkSize) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MonitoringConfig<MemoryProbe> getMonitoringConfig() {
+        return monitoringConfig;
+    }
+
+
+    // ----------------------------------------------- Methods from WrapperAware
+
+
+    @Override
+    public Buffer wrap(final byte[] data) {
+        return wrap(ByteBuffer.wrap(data));
+    }
+
+    @Override
+    public Buffer wrap(byte[] data, int offset, int length) {
+        return wrap(ByteBuffer.wrap(data, offset, length));
+    }
+
+    @Override
+    public Buffer wrap(final String s) {
+        return wrap(s.getBytes(Charset.defaultCharset()));
+    }
+
+    @Override
+    public Buffer wrap(final String s, final Charset charset) {
+        return wrap(s.getBytes(charset));
+    }
+
+    @Override
+    public Buffer wrap(final ByteBuffer byteBuffer) {
+        return new ByteBufferWrapper(byteBuffer);
+    }
+
+
+    // ---------------------------------------------------------- Public Methods
+
+
+    /**
+     * @return the size of a direct memory slab, which is also the max chunk size
+     */
+    public int getSlabSize() {
+        return slabSize;
+    }
+
+    /**
+     * @return the min size of a chunk the slab is split into
+     */
+    public int getMinChunkSize() {
+        return minChunkSize;
+    }
+
+    /**
+     * @return the max number of slabs to be allocated
+     */
+    public int getMaxSlabsCount() {
+        return maxSlabsCount;
+    }
+
+    /**
+     * @return the number of currently allocated slabs
+     */
+    public int getSlabsCount() {
+        return slabs.length;
+    }
+
+    /**
+     * @return the total size of the allocated slabs
+     */
+    public long getTotalBytes() {
+        return (long) slabs.length * slabSize;
+    }
+
+    /**
+     * @return the total size of the chunks, which are currently in use
+     */
+    public long getUsedBytes() {
+        long used = 0;
+        for (Slab slab : slabs) {
+            used += slabSize - slab.freeBytes;
+        }
+
+        return used;
+    }
+
+    /**
+     * @return the share (from <tt>0</tt> to <tt>1</tt>) of the slabs memory,
+     * which is currently in use
+     */
+    public double getUtilization() {
+        final long total = getTotalBytes();
+        return total != 0 ? (double) getUsedBytes() / total : 0;
+    }
+
+    /**
+     * Returns the internal fragmentation: the share (from <tt>0</tt> to <tt>1</tt>)
+     * of the used chunks memory, which is wasted, because the requested
+     * sizes are rounded up to the chunk size.
+     *
+     * @return the internal fragmentation
+     */
+    public double getInternalFragmentation() {
+        long used = 0;
+        long requested = 0;
+        for (Slab slab : slabs) {
+            synchronized (slab) {
+                used += slabSize - slab.freeBytes;
+                requested += slab.requestedBytes;
+            }
+        }
+
+        return used != 0 ? 1 - (double) requested / used : 0;
+    }
+
+    /**
+     * Returns the external fragmentation: the share (from <tt>0</tt> to <tt>1</tt>)
+     * of the free slabs memory, which is not part of the largest free
+     * chunk of its slab.
+     *
+     * @return the external fragmentation
+     */
+    public double getExternalFragmentation() {
+        long free = 0;
+        long largestChunks = 0;
+        for (Slab slab : slabs) {
+            synchronized (slab) {
+                free += slab.freeBytes;
+                largestChunks += slab.getLargestFreeChunkSize();
+            }
+        }
+
+        return free != 0 ? 1 - (double) largestChunks / free : 0;
+    }
+
+    /**
+     * @return the number of {@link Buffer}s, which couldn't be allocated
+     * from the slabs, because all the slabs were full
+     */
+    public long getFallbackAllocationsCount() {
+        return fallbackAllocationsCount.get();
+    }
+
+    /**
+     * @return <tt>true</tt>, if the {@link Buffer}s, which couldn't be allocated
+     * from the slabs, are allocated in the direct memory, or <tt>false</tt>
+     * if they're allocated on the heap
+     */
+    public boolean isDirectFallback() {
+        return isDirectFallback;
+    }
+
+    /**
+     * Sets the memory the {@link Buffer}s are allocated in, when all the slabs
+     * are full: the direct memory if <tt>true</tt>, or the heap if <tt>false</tt>.
+     *
+     * @param isDirectFallback <tt>true</tt> to allocate the {@link Buffer}s,
+     * which don't fit the slabs, in the direct memory
+     */
+    public void setDirectFallback(final boolean isDirectFallback) {
+        this.isDirectFallback = isDirectFallback;
+    }
+
+
+    // ------------------------------------------------------- Protected Methods
+
+
+    protected Object createJmxManagementObject() {
+
+        return MonitoringUtils.loadJmxObject(
+                "org.glassfish.grizzly.memory.jmx.SlabMemoryManager", this,
+                SlabMemoryManager.class);
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private Buffer allocateChunk(final int size) {
+        final int order = getOrder(size);
+
+        for (;;) {
+            final Slab[] current = slabs;
+            final int length = current.length;
+            if (length > 0) {
+                // start from the thread's home slab to spread the
+                // allocations (and slab locks) across the slabs
+                final int homeIdx = (int) (Thread.currentThread().getId() % length);
+                for (int i = 0; i < length; i++) {
+                    final Buffer b = current[(homeIdx + i) % length]
+                            .allocate(order, size);
+                    if (b != null) {
+                        return b;
+                    }
+                }
+            }
+
+            if (!addSlab(current)) {
+                break;
+            }
+        }
+
+        // all the slabs are full
+        fallbackAllocationsCount.incrementAndGet();
+        final int chunkSize = minChunkSize << order;
+        ProbeNotifier.notifyBufferAllocated(monitoringConfig, chunkSize);
+
+        final ByteBufferWrapper b = new ByteBufferWrapper(isDirectFallback
+                ? ByteBuffer.allocateDirect(chunkSize)
+                : ByteBuffer.allocate(chunkSize));
+        b.allowBufferDispose(true);
+        return b;
+    }
+
+    /*
+     * Adds a new slab, unless the slabs have already been changed by another
+     * thread.
+     *
+     * @return false, if the max number of slabs has been reached
+     */
+    private boolean addSlab(final Slab[] current) {
+        synchronized (slabsSync) {
+            if (slabs != current) {
+                return true;
+            }
+
+            if (current.length >= maxSlabsCount) {
+                return false;
+            }
+
+            final Slab[] newSlabs = Arrays.copyOf(current, current.length + 1);
+            newSlabs[current.length] = new Slab();
+            slabs = newSlabs;
+        }
+
+        ProbeNotifier.notifyBufferAllocated(monitoringConfig, slabSize);
+        return true;
+    }
+
+    private int getOrder(final int size) {
+        // ceil(log2(size)) - log2(minChunkSize)
+        final int log2Size = 32 - Integer.numberOfLeadingZeros(size - 1);
+        return Math.max(0, log2Size - log2MinChunkSize);
+    }
+
+    private CompositeBuffer allocateToCompositeBuffer(
+            final CompositeBuffer cb, int size) {
+
+        assert size >= 0;
+
+        while (size >= slabSize) {
+            cb.append(allocateChunk(slabSize));
+            size -= slabSize;
+        }
+
+        if (size > 0) {
+            cb.append(allocateChunk(size).limit(size));
+        }
+
+        return cb;
+    }
+
+    private CompositeBuffer newCompositeBuffer() {
+        final CompositeBuffer cb = CompositeBuffer.newBuffer(this);
+        cb.allowInternalBuffersDispose(true);
+        cb.allowBufferDispose(true);
+        return cb;
+    }
+
+    private static boolean isPowerOfTwo(final int valueToCheck) {
+        return ((valueToCheck & (valueToCheck - 1)) == 0);
+    }
+
+
+    // ---------------------------------------------------------- Nested Classes
+
+
+    /*
+     * The direct memory slab managed by the buddy allocator: every free chunk
+     * of order n (size minChunkSize * 2^n) is marked in the n-th BitSet by
+     * its index (offset / chunk size). The chunk is split in two halves
+     * ("buddies") to serve smaller requests, and the free buddies are merged
+     * back once both of them are released.
+     */
+    final class Slab {
+        private final ByteBuffer memory;
+
+        // free chunks per order, guarded by this
+        private final BitSet[] freeChunks;
+
+        // updated under the lock, but could be read without it
+        private volatile int freeBytes;
+
+        // the sum of the requested sizes of the used chunks, guarded by this
+        private long requestedBytes;
+
+        private Slab() {
+            memory = ByteBuffer.allocateDirect(slabSize);
+            freeChunks = new BitSet[maxOrder + 1];
+            for (int i = 0; i <= maxOrder; i++) {
+                freeChunks[i] = new BitSet(1 << (maxOrder - i));
+            }
+
+            freeChunks[maxOrder].set(0);
+            freeBytes = slabSize;
+        }
+
+        /**
+         * @return the chunk {@link Buffer}, or <tt>null</tt> if there is no
+         * free chunk of the given order in the slab
+         */
+        Buffer allocate(final int order, final int requestedSize) {
+            final int chunkSize = minChunkSize << order;
+            if (freeBytes < chunkSize) {
+                return null;
+            }
+
+            final int offset;
+            synchronized (this) {
+                int o = order;
+                int idx = -1;
+                for (; o <= maxOrder; o++) {
+                    idx = freeChunks[o].nextSetBit(0);
+                    if (idx >= 0) {
+                        break;
+                    }
+                }
+
+                if (idx < 0) {
+                    return null;
+                }
+
+                freeChunks[o].clear(idx);
+
+                // split the chunk, keeping the second halves free
+                while (o > order) {
+                    o--;
+                    idx <<= 1;
+                    freeChunks[o].set(idx + 1);
+                }
+
+                freeBytes -= chunkSize;
+                requestedBytes += requestedSize;
+                offset = idx << (order + log2MinChunkSize);
+            }
+
+            final ByteBuffer dup = memory.duplicate();
+            dup.limit(offset + chunkSize).position(offset);
+
+            ProbeNotifier.notifyBufferAllocatedFromPool(monitoringConfig,
+                    chunkSize);
+            return new SlabBuffer(dup.slice(), this, offset, order,
+                    requestedSize);
+        }
+
+        void release(final int offset, final int order, final int requestedSize) {
+            final int chunkSize = minChunkSize << order;
+
+            synchronized (this) {
+                int o = order;
+                int idx = offset >> (order + log2MinChunkSize);
+
+                // merge the chunk with its free buddies
+                while (o < maxOrder) {
+                    final int buddyIdx = idx ^ 1;
+                    if (!freeChunks[o].get(buddyIdx)) {
+                        break;
+                    }
+
+                    freeChunks[o].clear(buddyIdx);
+                    idx >>= 1;
+                    o++;
+                }
+
+                freeChunks[o].set(idx);
+                freeBytes += chunkSize;
+                requestedBytes -= requestedSize;
+            }
+
+            ProbeNotifier.notifyBufferReleasedToPool(monitoringConfig,
+                    chunkSize);
+        }
+
+        // should be called under the lock
+        int getLargestFreeChunkSize() {
+            for (int o = maxOrder; o >= 0; o--) {
+                if (!freeChunks[o].isEmpty()) {
+                    return minChunkSize << o;
+                }
+            }
+
+            return 0;
+        }
+    } // END Slab
+
+    private static final class SlabBuffer extends ByteBufferWrapper
+            implements ReferenceCountedBuffer {
+
+        private static final AtomicIntegerFieldUpdater<SlabBuffer> REF_COUNT_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(SlabBuffer.class, "refCount");
+
+        // The slab the chunk will be returned to, null for 'child' buffers.
+        private final Slab slab;
+
+        // The chunk offset within the slab, order and the originally
+        // requested size.
+        private final int offset;
+        private final int order;
+        private final int requestedSize;
+
+        // When the chunk has been returned to the slab, this flag will be true.
+        private boolean free;
+
+        // represents the number of 'child' buffers that have been created using
+        // this as the foundation, plus the additional references retained
+        // on this and the 'child' buffers.  The chunk can't be returned
+        // to the slab unless this value is zero.
+        private final AtomicInteger shareCount;
+
+        // represents the original chunk buffer.  This value will be
+        // non-null in any 'child' buffers created from the original.
+        private final SlabBuffer source;
+
+        // the number of references to this buffer instance, each reference
+        // is also accounted in the shareCount
+        private volatile int refCount = 1;
+
+        private SlabBuffer(final ByteBuffer chunk, final Slab slab,
+                final int offset, final int order, final int requestedSize) {
+            this(chunk, slab, offset, order, requestedSize, null,
+                    new AtomicInteger());
+        }
+
+        private SlabBuffer(final ByteBuffer chunk, final Slab slab,
+                final int offset, final int order, final int requestedSize,
+                final SlabBuffer source, final AtomicInteger shareCount) {
+            super(chunk);
+            this.slab = slab;
+            this.offset = offset;
+            this.order = order;
+            this.requestedSize = requestedSize;
+            this.shareCount = shareCount;
+            this.source = source != null ? source : this;
+            allowBufferDispose = true;
+        }
+
+        @Override
+        public ReferenceCountedBuffer retain() {
+            checkDispose();
+            REF_COUNT_UPDATER.incrementAndGet(this);
+            shareCount.incrementAndGet();
+
+            return this;
+        }
+
+        @Override
+        public int refCount() {
+            return free ? 0 : shareCount.get() + 1;
+        }
+
+        @Override
+        public ReferenceCountedBuffer retainedDuplicate() {
+            return (ReferenceCountedBuffer) duplicate();
+        }
+
+        // ------------------------------------------ Methods from ByteBufferWrapper
+
+        @Override
+        public void dispose() {
+            if (free) {
+                return;
+            }
+            
+            if (!releaseShared()) {
+                // the last reference to this buffer instance
+                free = true;
+            }
+            
+            dispose0();
+        }
+
+        /*
+         * Releases one of the additional references, if any.
+         *
+         * @return true, if the buffer is still referenced, or false
+         *         if the last reference has to be released
+         */
+        private boolean releaseShared() {
+            for (;;) {
+                final int count = refCount;
+                if (count <= 1) {
+                    return false;
+                }
+
+                if (REF_COUNT_UPDATER.compareAndSet(this, count, count - 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void dispose0() {
+            // check shared counter optimistically
+            boolean isNotShared = shareCount.get() == 0;
+            if (!isNotShared) {
+                // try pessimistic check using CAS loop
+                isNotShared = (shareCount.getAndDecrement() == 0);
+                if (isNotShared) {
+                    // if the former check is true - the shared counter is negative,
+                    // so we have to reset it
+                    shareCount.set(0);
+                }
+            }
+
+            if (isNotShared) {
+                // we can now safely return the chunk back to the slab
+                source.slab.release(source.offset, source.order,
+                        source.requestedSize);
+            }
+        }
+
+        // ----------------------------------------------------- Protected Methods
+
+
+        @Override
+        protected ByteBufferWrapper wrapByteBuffer(final ByteBuffer buffer) {
+            final SlabBuffer b = new SlabBuffer(buffer,
+                    null, // don't keep track of the slab for child buffers
+                    offset, order, requestedSize,
+                    source, // pass the 'parent' buffer along
+                    shareCount); // pass the shareCount
+            shareCount.incrementAndGet();
+
+            return b;
+        }
+
+        /**
+         * Override the default implementation to check the <tt>free</tt> status
+         * of this buffer (i.e., once released, operations on the buffer will no
+         * longer succeed).
+         */
+        @Override
+        protected final void checkDispose() {
+            if (free) {
+                throw new IllegalStateException(
+                        "SlabBuffer has already been disposed",
+                        disposeStackTrace);
+            }
+        }
+    } // END SlabBuffer
+}
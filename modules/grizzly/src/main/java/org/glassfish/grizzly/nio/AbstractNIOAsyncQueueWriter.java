@@ -50,11 +50,13 @@ import org.glassfish.grizzly.Connection;
 import org.glassfish.grizzly.Context;
 import org.glassfish.grizzly.Grizzly;
 import org.glassfish.grizzly.IOEvent;
+import org.glassfish.grizzly.PendingWriteQueueLimitExceededException;
 import org.glassfish.grizzly.WriteHandler;
 import org.glassfish.grizzly.WriteResult;
 import org.glassfish.grizzly.asyncqueue.AsyncQueueWriter;
 import org.glassfish.grizzly.asyncqueue.AsyncWriteQueueRecord;
 import org.glassfish.grizzly.asyncqueue.MessageCloner;
+import org.glassfish.grizzly.asyncqueue.PendingWritesBudget;
 import org.glassfish.grizzly.asyncqueue.PushBackHandler;
 import org.glassfish.grizzly.asyncqueue.RecordWriteResult;
 import org.glassfish.grizzly.asyncqueue.TaskQueue;
@@ -83,6 +85,9 @@ public abstract class AbstractNIOAsyncQueueWriter
     
     private volatile boolean isAllowDirectWrite = true;
     
+    protected final PendingWritesBudget pendingWritesBudget =
+            new PendingWritesBudget();
+    
     public AbstractNIOAsyncQueueWriter(NIOTransport transport) {
         this.transport = transport;
     }
@@ -147,6 +152,17 @@ public abstract class AbstractNIOAsyncQueueWriter
         return maxPendingBytes;
     }
 
+    /**
+     * Returns the memory budget shared by the async write queues of all
+     * the transport connections. The budget could be used to limit the
+     * total number of bytes queued by the transport.
+     *
+     * @return the {@link PendingWritesBudget}.
+     */
+    public PendingWritesBudget getPendingWritesBudget() {
+        return pendingWritesBudget;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -219,11 +235,19 @@ public abstract class AbstractNIOAsyncQueueWriter
         final TaskQueue<AsyncWriteQueueRecord> writeTaskQueue =
                 nioConnection.getAsyncWriteQueue();
 
+        // the connection, which already has data queued, is a slow consumer
+        if (pendingWritesBudget.isExceeded() && !writeTaskQueue.isEmpty()
+                && !onPendingWritesBudgetExceeded(nioConnection, queueRecord)) {
+            return;
+        }
+
         // For empty buffer reserve 1 byte space
         final int bytesToReserve = (int) queueRecord.getBytesToReserve();
 
         final int pendingBytes = writeTaskQueue.reserveSpace(bytesToReserve);
         final boolean isCurrent = (pendingBytes == bytesToReserve);
+        // the bytes the record holds in the queue
+        int reservedBytes = bytesToReserve;
 
         final boolean isLogFine = LOGGER.isLoggable(Level.FINEST);
 
@@ -241,6 +265,11 @@ public abstract class AbstractNIOAsyncQueueWriter
             if (!reentrants.inc()) {
                 // Max number of reentrants is reached
 
+                if (isCurrent && !checkPendingWritesBudget(nioConnection,
+                        writeTaskQueue, queueRecord, reservedBytes)) {
+                    return;
+                }
+                
                 queueRecord.setMessage(
                         cloneRecordIfNeeded(nioConnection, cloner, message));
 
@@ -259,6 +288,7 @@ public abstract class AbstractNIOAsyncQueueWriter
                 // If we can write directly - do it w/o creating queue record (simple)
                 final RecordWriteResult writeResult = write0(nioConnection, queueRecord);
                 final int bytesToRelease = (int) writeResult.bytesToReleaseAfterLastWrite();
+                reservedBytes -= bytesToRelease;
 
                 final boolean isFinished = queueRecord.isFinished();
                 
@@ -266,6 +296,7 @@ public abstract class AbstractNIOAsyncQueueWriter
                         writeTaskQueue.releaseSpaceAndNotify(bytesToRelease);
 
                 final boolean isQueueEmpty = (pendingBytesAfterRelease == 0);
+                onSpaceReleased(nioConnection, isQueueEmpty);
 
                 if (isLogFine) {
                     doFineLog("AsyncQueueWriter.write directWrite connection={0}, record={1}, "
@@ -284,6 +315,13 @@ public abstract class AbstractNIOAsyncQueueWriter
                 }
             }
 
+            // the first write on the connection is not stalled, but the bytes,
+            // which haven't been written directly, are going to be queued
+            if (isCurrent && !checkPendingWritesBudget(nioConnection,
+                    writeTaskQueue, queueRecord, reservedBytes)) {
+                return;
+            }
+            
             queueRecord.setMessage(
                     cloneRecordIfNeeded(nioConnection, cloner, message));
 
@@ -393,6 +431,7 @@ public abstract class AbstractNIOAsyncQueueWriter
                 }
                 
                 isComplete = (writeTaskQueue.releaseSpace(bytesReleased) == 0);
+                onSpaceReleased(nioConnection, isComplete);
             }
 
             if (isLogFine) {
@@ -429,6 +468,96 @@ public abstract class AbstractNIOAsyncQueueWriter
         return AsyncResult.COMPLETE;
     }
 
+    /**
+     * Applies the {@link PendingWritesBudget.OverflowPolicy} to the write,
+     * which is about to be queued, when the transport pending writes budget
+     * is exceeded.
+     *
+     * @return <tt>true</tt> if the write could be queued, or <tt>false</tt>
+     * if it has been failed.
+     */
+    private boolean onPendingWritesBudgetExceeded(
+            final NIOConnection nioConnection,
+            final AsyncWriteQueueRecord queueRecord) {
+        final PendingWritesBudget budget = pendingWritesBudget;
+        if (budget.onOverflow()) {
+            NIOTransport.notifyProbesPendingWritesBudgetExceeded(transport,
+                    budget.getPendingBytes());
+        }
+        
+        switch (budget.getOverflowPolicy()) {
+            case SUSPEND_READS: {
+                try {
+                    nioConnection.suspendRead();
+                    return true;
+                } catch (IOException e) {
+                    onWriteFailure(nioConnection, queueRecord, e);
+                    return false;
+                }
+            }
+            case CLOSE: {
+                onWriteFailure(nioConnection, queueRecord,
+                        new PendingWriteQueueLimitExceededException(
+                        "Transport pending writes budget is exceeded: "
+                        + budget.getMaxPendingBytes()));
+                return false;
+            }
+            default: {
+                queueRecord.notifyFailure(
+                        new PendingWriteQueueLimitExceededException(
+                        "Transport pending writes budget is exceeded: "
+                        + budget.getMaxPendingBytes()));
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Checks the transport pending writes budget before the current record
+     * remainder gets queued. If the record is failed by the
+     * {@link PendingWritesBudget.OverflowPolicy}, the space it holds in the
+     * queue is released and the records, queued by other threads meanwhile,
+     * get processed.
+     *
+     * @return <tt>true</tt> if the record could be queued, or <tt>false</tt>
+     * if it has been failed.
+     */
+    private boolean checkPendingWritesBudget(final NIOConnection nioConnection,
+            final TaskQueue<AsyncWriteQueueRecord> writeTaskQueue,
+            final AsyncWriteQueueRecord queueRecord, final int reservedBytes) {
+        if (!pendingWritesBudget.isExceeded()
+                || onPendingWritesBudgetExceeded(nioConnection, queueRecord)) {
+            return true;
+        }
+        
+        try {
+            final int pendingBytesAfterRelease =
+                    writeTaskQueue.releaseSpaceAndNotify(reservedBytes);
+            final boolean isQueueEmpty = (pendingBytesAfterRelease == 0);
+            onSpaceReleased(nioConnection, isQueueEmpty);
+            
+            if (!isQueueEmpty) {
+                nioConnection.simulateIOEvent(IOEvent.WRITE);
+            }
+        } catch (IOException e) {
+            nioConnection.closeSilently();
+        }
+        
+        return false;
+    }
+    
+    private void onSpaceReleased(final NIOConnection nioConnection,
+            final boolean isQueueEmpty) throws IOException {
+        if (isQueueEmpty) {
+            nioConnection.resumeRead();
+        }
+        
+        if (pendingWritesBudget.checkRestored()) {
+            NIOTransport.notifyProbesPendingWritesBudgetRestored(transport,
+                    pendingWritesBudget.getPendingBytes());
+        }
+    }
+
     private static void finishQueueRecord(final NIOConnection nioConnection,
             final AsyncWriteQueueRecord queueRecord) {
         final boolean isLogFine = LOGGER.isLoggable(Level.FINEST);
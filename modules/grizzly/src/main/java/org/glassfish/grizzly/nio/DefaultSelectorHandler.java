@@ -110,8 +110,15 @@ public class DefaultSelectorHandler implements SelectorHandler {
         // The selector.select(...) returns the *new* SelectionKey count,
         // so it may return 0 even in the case, when there are unprocessed, but
         // ready SelectionKeys in the Selector's selected key set.
+        boolean isBusyPollHit = false;
         if (!hasPostponedTasks) {
-            selector.select(selectTimeout);
+            final long busyPollTime = selectorRunner.getTransport()
+                    .getSelectorBusyPollTime(TimeUnit.NANOSECONDS);
+            isBusyPollHit = busyPollTime > 0
+                    && busyPoll(selectorRunner, selector, busyPollTime);
+            if (!isBusyPollHit) {
+                selector.select(selectTimeout);
+            }
         } else {
             selector.selectNow();
         }
@@ -119,8 +126,10 @@ public class DefaultSelectorHandler implements SelectorHandler {
         final Set<SelectionKey> selectedKeys = selector.selectedKeys();
 
         if (IS_WORKAROUND_SELECTOR_SPIN) {
+            // the empty selectNow() calls made by the busy poll are intentional,
+            // so only the result of the blocking select() is taken into account
             selectorRunner.checkSelectorSpin(
-                    !selectedKeys.isEmpty() || hasPostponedTasks,
+                    !selectedKeys.isEmpty() || hasPostponedTasks || isBusyPollHit,
                     SPIN_RATE_THRESHOLD);
         }
 
@@ -131,6 +140,36 @@ public class DefaultSelectorHandler implements SelectorHandler {
     public void postSelect(final SelectorRunner selectorRunner) throws IOException {
     }
 
+    /**
+     * Spins on {@link Selector#selectNow()} up to busyPollTime nanoseconds.
+     * Since selectNow() clears the effect of a {@link Selector#wakeup()},
+     * pending tasks and the runner state have to be checked explicitly
+     * on each iteration.
+     *
+     * @return <tt>true</tt> if the busy poll has been interrupted by ready keys,
+     * pending tasks or the runner stop, or <tt>false</tt> if the time is out
+     * and the runner has to park in a blocking select().
+     */
+    private static boolean busyPoll(final SelectorRunner selectorRunner,
+            final Selector selector, final long busyPollTime) throws IOException {
+        final long startTime = System.nanoTime();
+        long spinTime = 0;
+        
+        do {
+            if (selector.selectNow() > 0
+                    || selectorRunner.hasPendingTasks
+                    || selectorRunner.isStop()) {
+                selectorRunner.onBusyPollHit(spinTime);
+                return true;
+            }
+            
+            spinTime = System.nanoTime() - startTime;
+        } while (spinTime < busyPollTime);
+        
+        selectorRunner.onBusyPollPark();
+        return false;
+    }
+
     @Override
     public void registerKeyInterest(final SelectorRunner selectorRunner,
             final SelectionKey key, final int interest) throws IOException {
@@ -141,13 +180,41 @@ public class DefaultSelectorHandler implements SelectorHandler {
         }
     }
 
-    private static void registerKey0(final SelectionKey selectionKey, final int interest) {
+    private static void registerKey0(final SelectionKey selectionKey,
+            final int interest) throws IOException {
         if (selectionKey.isValid()) {
             final int currentOps = selectionKey.interestOps();
             if ((currentOps & interest) != interest) {
                 selectionKey.interestOps(currentOps | interest);
             }
+        } else {
+            final NIOConnection connection = getMigratedConnection(selectionKey);
+            if (connection != null) {
+                connection.transport.getSelectorHandler().registerKeyInterest(
+                        connection.getSelectorRunner(),
+                        connection.getSelectionKey(), interest);
+            }
+        }
+    }
+
+    /**
+     * Returns the {@link NIOConnection}, which was registered using the given
+     * (now invalid) {@link SelectionKey}, but has been moved to another
+     * {@link SelectorRunner} since then, so the interest change has to be
+     * applied to the connection's current {@link SelectionKey}.
+     */
+    private static NIOConnection getMigratedConnection(final SelectionKey selectionKey) {
+        final Object attachment = selectionKey.attachment();
+        if (attachment instanceof NIOConnection) {
+            final NIOConnection connection = (NIOConnection) attachment;
+            final SelectionKey currentKey = connection.getSelectionKey();
+            if (currentKey != null && currentKey != selectionKey
+                    && currentKey.isValid()) {
+                return connection;
+            }
         }
+
+        return null;
     }
     
     /**
@@ -161,6 +228,12 @@ public class DefaultSelectorHandler implements SelectorHandler {
             if ((currentOps & interest) != 0) {
                 key.interestOps(currentOps & (~interest));
             }
+        } else {
+            final NIOConnection connection = getMigratedConnection(key);
+            if (connection != null) {
+                deregisterKeyInterest(connection.getSelectorRunner(),
+                        connection.getSelectionKey(), interest);
+            }
         }
     }
 
@@ -289,7 +362,33 @@ public class DefaultSelectorHandler implements SelectorHandler {
         return processPendingTaskQueue(selectorRunner, selectorRunner.obtainPostponedTasks())
                 &&
                 (!selectorRunner.hasPendingTasks ||
-                processPendingTaskQueue(selectorRunner, selectorRunner.getPendingTasks()));
+                processPendingTasksBatch(selectorRunner));
+    }
+
+    private boolean processPendingTasksBatch(final SelectorRunner selectorRunner)
+            throws IOException {
+        final Queue<SelectorHandlerTask> pendingTasks =
+                selectorRunner.getPendingTasks();
+        
+        // process only the tasks, which were added before the processing
+        // started, so the producers can't keep the Selector thread from select()
+        int batchSize = pendingTasks.size();
+        boolean result = true;
+        
+        SelectorHandlerTask selectorHandlerTask;
+        while (batchSize-- > 0
+                && (selectorHandlerTask = pendingTasks.poll()) != null) {
+            if (!selectorHandlerTask.run(selectorRunner)) {
+                result = false;
+                break;
+            }
+        }
+        
+        if (!pendingTasks.isEmpty()) {
+            selectorRunner.hasPendingTasks = true;
+        }
+        
+        return result;
     }
 
     private boolean processPendingTaskQueue(final SelectorRunner selectorRunner,
@@ -0,0 +1,598 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.nio;
+
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.CompletionHandler;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.EmptyCompletionHandler;
+import org.glassfish.grizzly.Grizzly;
+
+/**
+ * Load-aware {@link NIOChannelDistributor} implementation, which assigns
+ * a new channel to the {@link SelectorRunner} with the lowest load.
+ * Depending on the {@link LoadMetric}, the load is either the number of
+ * channels registered with the runner, or the share of time the runner
+ * spent processing events during the last sampling interval.
+ * 
+ * Optionally the distributor moves idle connections (the ones, which only
+ * wait for data to be read) from the most loaded {@link SelectorRunner} to
+ * the least loaded one, so long-lived connections don't pile up unevenly.
+ * 
+ * @see SelectorRunner#getRegisteredKeysCount()
+ * @see SelectorRunner#getBusyTime(java.util.concurrent.TimeUnit)
+ */
+public final class LeastLoadedConnectionDistributor
+        extends AbstractNIOConnectionDistributor {
+    private static final Logger LOGGER = Grizzly.logger(LeastLoadedConnectionDistributor.class);
+
+    /**
+     * The metric used to compare {@link SelectorRunner}s.
+     */
+    public enum LoadMetric {
+        /**
+         * The number of channels registered with the {@link SelectorRunner}.
+         */
+        REGISTERED_KEYS,
+        /**
+         * The recent {@link SelectorRunner} busy time, the number of
+         * registered channels is used to choose among equally busy runners.
+         */
+        BUSY_TIME
+    }
+
+    public static final long DEFAULT_SAMPLE_INTERVAL_MILLIS = 100;
+    public static final int DEFAULT_MAX_MIGRATIONS = 64;
+
+    // the minimal difference in registered keys, which triggers migration
+    private static final int MIN_IMBALANCE = 4;
+
+    private final boolean useDedicatedAcceptor;
+    private final LoadMetric loadMetric;
+
+    private volatile boolean isMigrationEnabled;
+    private volatile long sampleIntervalNanos =
+            TimeUnit.MILLISECONDS.toNanos(DEFAULT_SAMPLE_INTERVAL_MILLIS);
+    private volatile int maxMigrations = DEFAULT_MAX_MIGRATIONS;
+
+    private final AtomicInteger counter = new AtomicInteger();
+    private final AtomicLong nextSampleNanos = new AtomicLong(System.nanoTime());
+    private final AtomicLong migratedConnectionsCount = new AtomicLong();
+    private volatile RunnersLoad runnersLoad;
+
+    public LeastLoadedConnectionDistributor(final NIOTransport transport) {
+        this(transport, false, LoadMetric.REGISTERED_KEYS);
+    }
+
+    /**
+     * Constructs LeastLoadedConnectionDistributor with the given configuration.
+     * 
+     * @param transport
+     * @param useDedicatedAcceptor depending on this flag server {@link Connection}s,
+     *          responsible for accepting client connections, will or will not
+     *          use dedicated {@link SelectorRunner}
+     * @param loadMetric the {@link LoadMetric} used to compare {@link SelectorRunner}s
+     */
+    public LeastLoadedConnectionDistributor(final NIOTransport transport,
+            final boolean useDedicatedAcceptor, final LoadMetric loadMetric) {
+        super(transport);
+        if (loadMetric == null) {
+            throw new IllegalArgumentException("loadMetric can't be null");
+        }
+        
+        this.useDedicatedAcceptor = useDedicatedAcceptor;
+        this.loadMetric = loadMetric;
+    }
+
+    /**
+     * @return the {@link LoadMetric} used to compare {@link SelectorRunner}s.
+     */
+    public LoadMetric getLoadMetric() {
+        return loadMetric;
+    }
+
+    /**
+     * @return <tt>true</tt> if idle connections are moved from the most loaded
+     * {@link SelectorRunner} to the least loaded one.
+     */
+    public boolean isMigrationEnabled() {
+        return isMigrationEnabled;
+    }
+
+    /**
+     * Enables or disables automatic migration of idle connections. If enabled,
+     * the distributor checks the load balance every sampling interval, when
+     * a new channel is being registered, and calls {@link #rebalance()} if
+     * needed.
+     * 
+     * @param isMigrationEnabled <tt>true</tt> to enable migration.
+     */
+    public void setMigrationEnabled(final boolean isMigrationEnabled) {
+        this.isMigrationEnabled = isMigrationEnabled;
+    }
+
+    /**
+     * @param timeUnit the {@link TimeUnit} of the result.
+     * @return the interval the {@link SelectorRunner}s load is sampled at.
+     */
+    public long getSampleInterval(final TimeUnit timeUnit) {
+        return timeUnit.convert(sampleIntervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets the interval the {@link SelectorRunner}s load is sampled at.
+     * 
+     * @param sampleInterval the interval.
+     * @param timeUnit the {@link TimeUnit} of the interval.
+     */
+    public void setSampleInterval(final long sampleInterval,
+            final TimeUnit timeUnit) {
+        if (sampleInterval <= 0) {
+            throw new IllegalArgumentException("sampleInterval has to be positive");
+        }
+        
+        sampleIntervalNanos = timeUnit.toNanos(sampleInterval);
+    }
+
+    /**
+     * @return the max number of connections moved by one {@link #rebalance()}.
+     */
+    public int getMaxMigrations() {
+        return maxMigrations;
+    }
+
+    /**
+     * Sets the max number of connections moved by one {@link #rebalance()}.
+     * 
+     * @param maxMigrations the max number of connections to move.
+     */
+    public void setMaxMigrations(final int maxMigrations) {
+        this.maxMigrations = maxMigrations;
+    }
+
+    /**
+     * @return the total number of connections moved between
+     * {@link SelectorRunner}s.
+     */
+    public long getMigratedConnectionsCount() {
+        return migratedConnectionsCount.get();
+    }
+
+    /**
+     * @return the number of channels registered with each {@link SelectorRunner}.
+     */
+    public int[] getRegisteredKeysCounts() {
+        final SelectorRunner[] runners = getTransportSelectorRunners();
+        if (runners == null) {
+            return new int[0];
+        }
+        
+        final int[] counts = new int[runners.length];
+        for (int i = 0; i < runners.length; i++) {
+            counts[i] = runners[i].getRegisteredKeysCount();
+        }
+        
+        return counts;
+    }
+
+    /**
+     * @return the share of time (0..1) each {@link SelectorRunner} spent
+     * processing events during the last sampling interval.
+     */
+    public float[] getBusyRatios() {
+        final RunnersLoad load = obtainRunnersLoad();
+        return load != null ? load.busyRatios.clone() : new float[0];
+    }
+
+    @Override
+    public void registerChannel(final SelectableChannel channel,
+            final int interestOps, final Object attachment) throws IOException {
+        final RunnersLoad load = obtainRunnersLoad();
+        final int idx = next(load);
+        load.pendingRegistrations.incrementAndGet(idx);
+        try {
+            transport.getSelectorHandler().registerChannel(load.runners[idx],
+                    channel, interestOps, attachment);
+        } finally {
+            load.pendingRegistrations.decrementAndGet(idx);
+        }
+    }
+
+    @Override
+    public void registerChannelAsync(
+            final SelectableChannel channel, final int interestOps,
+            final Object attachment,
+            final CompletionHandler<RegisterChannelResult> completionHandler) {
+        final RunnersLoad load = obtainRunnersLoad();
+        final int idx = next(load);
+        load.pendingRegistrations.incrementAndGet(idx);
+        transport.getSelectorHandler().registerChannelAsync(load.runners[idx],
+                channel, interestOps, attachment,
+                new PendingRegistrationHandler(load, idx, completionHandler));
+    }
+
+    @Override
+    public void registerServiceChannelAsync(
+            final SelectableChannel channel, final int interestOps,
+            final Object attachment,
+            final CompletionHandler<RegisterChannelResult> completionHandler) {
+        final RunnersLoad load = obtainRunnersLoad();
+        if (useDedicatedAcceptor) {
+            transport.getSelectorHandler().registerChannelAsync(
+                    load.runners[0], channel, interestOps,
+                    attachment, completionHandler);
+        } else {
+            registerChannelAsync(channel, interestOps, attachment,
+                    completionHandler);
+        }
+    }
+
+    /**
+     * Moves idle connections from the {@link SelectorRunner} with the most
+     * registered channels to the one with the fewest, if the difference is
+     * significant. A connection is considered idle if it's only interested
+     * in reading, which means it's neither being processed nor has pending
+     * writes. The connections are moved asynchronously by the runner threads.
+     */
+    public void rebalance() {
+        final RunnersLoad load = obtainRunnersLoad();
+        if (load == null) {
+            return;
+        }
+        
+        final SelectorRunner[] runners = load.runners;
+        final int first = firstClientRunner(runners);
+        
+        int maxIdx = -1;
+        int minIdx = -1;
+        int maxKeys = Integer.MIN_VALUE;
+        int minKeys = Integer.MAX_VALUE;
+        for (int i = first; i < runners.length; i++) {
+            final int keys = runners[i].getRegisteredKeysCount()
+                    + load.pendingRegistrations.get(i);
+            if (keys > maxKeys) {
+                maxKeys = keys;
+                maxIdx = i;
+            }
+            if (keys < minKeys) {
+                minKeys = keys;
+                minIdx = i;
+            }
+        }
+        
+        final int surplus = (maxKeys - minKeys) / 2;
+        if (maxIdx == minIdx || surplus < MIN_IMBALANCE / 2) {
+            return;
+        }
+        
+        final SelectorRunner source = runners[maxIdx];
+        transport.getSelectorHandler().execute(source,
+                new MigrateTask(source, runners[minIdx],
+                        Math.min(surplus, maxMigrations)), null);
+    }
+
+    private int next(final RunnersLoad load) {
+        final SelectorRunner[] runners = load.runners;
+        final int first = firstClientRunner(runners);
+        final int count = runners.length - first;
+        if (count == 1) {
+            return first;
+        }
+        
+        final float[] busyRatios = sample(load);
+        
+        // start from a different runner every time, so equally loaded
+        // runners get new channels in round-robin fashion
+        final int offset = (counter.getAndIncrement() & 0x7fffffff) % count;
+        
+        int bestIdx = first;
+        long bestLoad = Long.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            final int idx = first + (offset + i) % count;
+            long runnerLoad = runners[idx].getRegisteredKeysCount()
+                    + load.pendingRegistrations.get(idx);
+            if (loadMetric == LoadMetric.BUSY_TIME) {
+                // busy time in percents is the primary criteria
+                runnerLoad += ((long) (busyRatios[idx] * 100)) << 32;
+            }
+            
+            if (runnerLoad < bestLoad) {
+                bestLoad = runnerLoad;
+                bestIdx = idx;
+            }
+        }
+        
+        return bestIdx;
+    }
+
+    private float[] sample(final RunnersLoad load) {
+        if (loadMetric != LoadMetric.BUSY_TIME && !isMigrationEnabled) {
+            return load.busyRatios;
+        }
+        
+        final long now = System.nanoTime();
+        final long nextSample = nextSampleNanos.get();
+        if (now - nextSample >= 0
+                && nextSampleNanos.compareAndSet(nextSample, now + sampleIntervalNanos)) {
+            load.update(now);
+            
+            if (isMigrationEnabled) {
+                rebalance();
+            }
+        }
+        
+        return load.busyRatios;
+    }
+
+    private int firstClientRunner(final SelectorRunner[] runners) {
+        return useDedicatedAcceptor && runners.length > 1 ? 1 : 0;
+    }
+
+    private RunnersLoad obtainRunnersLoad() {
+        final SelectorRunner[] runners = getTransportSelectorRunners();
+        if (runners == null) {
+            return null;
+        }
+        
+        RunnersLoad load = runnersLoad;
+        if (load == null || load.runners != runners) {
+            // the transport has been (re)started
+            load = new RunnersLoad(runners);
+            runnersLoad = load;
+        }
+        
+        return load;
+    }
+
+    /**
+     * The load statistics of the transport {@link SelectorRunner}s.
+     */
+    private static final class RunnersLoad {
+        private final SelectorRunner[] runners;
+        // channels assigned to a runner, but not registered yet
+        private final AtomicIntegerArray pendingRegistrations;
+        
+        // sampling state, updated by a single thread at a time
+        private final long[] lastBusyTimes;
+        private long lastSampleNanos;
+        
+        private volatile float[] busyRatios;
+        
+        private RunnersLoad(final SelectorRunner[] runners) {
+            this.runners = runners;
+            pendingRegistrations = new AtomicIntegerArray(runners.length);
+            lastBusyTimes = new long[runners.length];
+            busyRatios = new float[runners.length];
+            
+            lastSampleNanos = System.nanoTime();
+            for (int i = 0; i < runners.length; i++) {
+                lastBusyTimes[i] = runners[i].getBusyTime(TimeUnit.NANOSECONDS);
+            }
+        }
+        
+        private synchronized void update(final long now) {
+            final long interval = now - lastSampleNanos;
+            if (interval <= 0) {
+                return;
+            }
+            
+            final float[] ratios = new float[runners.length];
+            for (int i = 0; i < runners.length; i++) {
+                final long busyTime = runners[i].getBusyTime(TimeUnit.NANOSECONDS);
+                ratios[i] = Math.min(1f,
+                        (float) (busyTime - lastBusyTimes[i]) / interval);
+                lastBusyTimes[i] = busyTime;
+            }
+            
+            lastSampleNanos = now;
+            busyRatios = ratios;
+        }
+
+        @Override
+        public String toString() {
+            return "RunnersLoad{pendingRegistrations=" + pendingRegistrations
+                    + ", busyRatios=" + Arrays.toString(busyRatios) + '}';
+        }
+    }
+    
+    private static final class PendingRegistrationHandler
+            implements CompletionHandler<RegisterChannelResult> {
+        private final RunnersLoad load;
+        private final int idx;
+        private final CompletionHandler<RegisterChannelResult> completionHandler;
+
+        private PendingRegistrationHandler(final RunnersLoad load, final int idx,
+                final CompletionHandler<RegisterChannelResult> completionHandler) {
+            this.load = load;
+            this.idx = idx;
+            this.completionHandler = completionHandler;
+        }
+
+        @Override
+        public void cancelled() {
+            load.pendingRegistrations.decrementAndGet(idx);
+            if (completionHandler != null) {
+                completionHandler.cancelled();
+            }
+        }
+
+        @Override
+        public void failed(final Throwable throwable) {
+            load.pendingRegistrations.decrementAndGet(idx);
+            if (completionHandler != null) {
+                completionHandler.failed(throwable);
+            }
+        }
+
+        @Override
+        public void completed(final RegisterChannelResult result) {
+            load.pendingRegistrations.decrementAndGet(idx);
+            if (completionHandler != null) {
+                completionHandler.completed(result);
+            }
+        }
+
+        @Override
+        public void updated(final RegisterChannelResult result) {
+            if (completionHandler != null) {
+                completionHandler.updated(result);
+            }
+        }
+    }
+    
+    /**
+     * Picks idle connections on the source {@link SelectorRunner} thread and
+     * registers them with the target {@link SelectorRunner} (with no interest).
+     * Once registered, the connection is switched over to the new
+     * {@link SelectionKey} back on the source thread, so all the interest
+     * changes made to the old key in the meantime are carried over.
+     */
+    private final class MigrateTask implements SelectorHandler.Task {
+        private final SelectorRunner source;
+        private final SelectorRunner target;
+        private final int count;
+
+        private MigrateTask(final SelectorRunner source,
+                final SelectorRunner target, final int count) {
+            this.source = source;
+            this.target = target;
+            this.count = count;
+        }
+
+        @Override
+        public boolean run() throws Exception {
+            final SelectionKeyHandler selectionKeyHandler =
+                    transport.getSelectionKeyHandler();
+            
+            int scheduled = 0;
+            for (SelectionKey key : source.getSelector().keys()) {
+                if (scheduled == count) {
+                    break;
+                }
+                
+                if (!isIdle(key)) {
+                    continue;
+                }
+                
+                final NIOConnection connection =
+                        selectionKeyHandler.getConnectionForKey(key);
+                if (connection == null || connection.getSelectionKey() != key) {
+                    continue;
+                }
+                
+                transport.getSelectorHandler().registerChannelAsync(target,
+                        key.channel(), 0, connection,
+                        new MigrateCompletionHandler(connection, key, source));
+                scheduled++;
+            }
+            
+            return true;
+        }
+    }
+    
+    private final class MigrateCompletionHandler
+            extends EmptyCompletionHandler<RegisterChannelResult> {
+        private final NIOConnection connection;
+        private final SelectionKey oldKey;
+        private final SelectorRunner source;
+
+        private MigrateCompletionHandler(final NIOConnection connection,
+                final SelectionKey oldKey, final SelectorRunner source) {
+            this.connection = connection;
+            this.oldKey = oldKey;
+            this.source = source;
+        }
+
+        @Override
+        public void completed(final RegisterChannelResult result) {
+            final SelectionKey newKey = result.getSelectionKey();
+            final SelectorRunner target = result.getSelectorRunner();
+            
+            transport.getSelectorHandler().execute(source,
+                    new SelectorHandler.Task() {
+                        @Override
+                        public boolean run() throws Exception {
+                            switchKeys(newKey, target);
+                            return true;
+                        }
+                    }, null);
+        }
+
+        @Override
+        public void failed(final Throwable throwable) {
+            LOGGER.log(Level.FINE, "Unable to move the connection to another SelectorRunner",
+                    throwable);
+        }
+        
+        private void switchKeys(final SelectionKey newKey,
+                final SelectorRunner target) throws IOException {
+            // the connection might become busy (or closed) in the meantime
+            if (!isIdle(oldKey) || connection.getSelectionKey() != oldKey) {
+                newKey.cancel();
+                return;
+            }
+            
+            final int interestOps = oldKey.interestOps();
+            connection.setSelectionKey(newKey);
+            connection.setSelectorRunner(target);
+            oldKey.cancel();
+            
+            transport.getSelectorHandler().registerKeyInterest(target,
+                    newKey, interestOps);
+            migratedConnectionsCount.incrementAndGet();
+        }
+    }
+    
+    private static boolean isIdle(final SelectionKey key) {
+        return key.isValid() && key.interestOps() == SelectionKey.OP_READ
+                && key.channel() instanceof SocketChannel;
+    }
+}
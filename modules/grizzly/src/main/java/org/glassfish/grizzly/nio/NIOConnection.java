@@ -79,7 +79,10 @@ import org.glassfish.grizzly.StandaloneProcessorSelector;
 import org.glassfish.grizzly.Transport;
 import org.glassfish.grizzly.WriteResult;
 import org.glassfish.grizzly.asyncqueue.AsyncReadQueueRecord;
+import org.glassfish.grizzly.asyncqueue.AsyncQueueIO;
+import org.glassfish.grizzly.asyncqueue.AsyncQueueWriter;
 import org.glassfish.grizzly.asyncqueue.AsyncWriteQueueRecord;
+import org.glassfish.grizzly.asyncqueue.PendingWritesBudget;
 import org.glassfish.grizzly.asyncqueue.TaskQueue;
 import org.glassfish.grizzly.attributes.AttributeHolder;
 import org.glassfish.grizzly.impl.FutureImpl;
@@ -133,6 +136,12 @@ public abstract class NIOConnection implements Connection<SocketAddress> {
     
     // closeTypeFlag, "null" value means the connection is open.
     private final AtomicBoolean isCloseScheduled = new AtomicBoolean();
+
+    // OP_READ is suspended, because the transport pending writes budget
+    // is exceeded
+    private volatile boolean isReadSuspended;
+    // OP_READ has to be enabled, when reading gets resumed
+    private volatile boolean isReadResumeRequired;
     
     private static final AtomicReferenceFieldUpdater<NIOConnection, CloseReason> closeReasonUpdater =
             AtomicReferenceFieldUpdater.newUpdater(NIOConnection.class,
@@ -167,7 +176,7 @@ public abstract class NIOConnection implements Connection<SocketAddress> {
                     public int getMaxQueueSize() {
                         return maxAsyncWriteQueueSize;
                     }
-                });
+                }, getPendingWritesBudget(transport));
         
         attributes = transport.getAttributeBuilder().createSafeAttributeHolder();
     }
@@ -950,6 +959,14 @@ public abstract class NIOConnection implements Connection<SocketAddress> {
             return;
         }
         
+        if (isOpRead && isReadSuspended) {
+            // OP_READ will be registered, when reading gets resumed
+            isReadResumeRequired = true;
+            if (isReadSuspended) {
+                return;
+            }
+        }
+        
         notifyIOEventEnabled(this, ioEvent);
         
         // if OP_READ was enabled at least once - isInitialReadRequired should be false
@@ -993,6 +1010,62 @@ public abstract class NIOConnection implements Connection<SocketAddress> {
         selectorHandler.deregisterKeyInterest(selectorRunner, selectionKey, interest);
     }
 
+    /**
+     * Stops reading data from the connection, until {@link #resumeRead()}
+     * is called. Used by the async write queue to stop the peer, which
+     * doesn't read the responses, from producing new ones.
+     */
+    final void suspendRead() throws IOException {
+        if (isReadSuspended) {
+            return;
+        }
+        
+        isReadSuspended = true;
+        
+        final SelectionKey key = selectionKey;
+        if (key != null && key.isValid()
+                && (key.interestOps() & SelectionKey.OP_READ) != 0) {
+            isReadResumeRequired = true;
+            disableIOEvent(IOEvent.READ);
+        }
+    }
+    
+    /**
+     * Resumes reading data from the connection, suspended by
+     * {@link #suspendRead()}.
+     */
+    final void resumeRead() throws IOException {
+        if (!isReadSuspended) {
+            return;
+        }
+        
+        isReadSuspended = false;
+        
+        if (isReadResumeRequired) {
+            isReadResumeRequired = false;
+            enableIOEvent(IOEvent.READ);
+        }
+    }
+    
+    /**
+     * @return <tt>true</tt> if reading has been suspended by the
+     * async write queue.
+     */
+    public boolean isReadSuspended() {
+        return isReadSuspended;
+    }
+    
+    private static PendingWritesBudget getPendingWritesBudget(
+            final NIOTransport transport) {
+        final AsyncQueueIO asyncQueueIO = transport.getAsyncQueueIO();
+        final AsyncQueueWriter writer =
+                asyncQueueIO != null ? asyncQueueIO.getWriter() : null;
+        
+        return writer instanceof AbstractNIOAsyncQueueWriter
+                ? ((AbstractNIOAsyncQueueWriter) writer).getPendingWritesBudget()
+                : null;
+    }
+    
     protected final void checkEmptyRead(final int size) {
         if (WIN32) {
             if (size == 0) {
@@ -91,6 +91,7 @@ public abstract class NIOTransport extends AbstractTransport
             SocketConnectorHandler.DEFAULT_CONNECTION_TIMEOUT;
     public static final int DEFAULT_SELECTOR_RUNNER_COUNT = -1;
     public static final boolean DEFAULT_OPTIMIZED_FOR_MULTIPLEXING = false;
+    public static final long DEFAULT_SELECTOR_BUSY_POLL_TIME = 0;
 
     private static final Logger LOGGER = Grizzly.logger(NIOTransport.class);
 
@@ -118,6 +119,11 @@ public abstract class NIOTransport extends AbstractTransport
     private int selectorRunnersCount = DEFAULT_SELECTOR_RUNNER_COUNT;
 
     private boolean optimizedForMultiplexing = DEFAULT_OPTIMIZED_FOR_MULTIPLEXING;
+    /**
+     * The time (in nanoseconds) a {@link SelectorRunner} spins on
+     * selectNow() before blocking in select()
+     */
+    private volatile long selectorBusyPollTimeNanos = DEFAULT_SELECTOR_BUSY_POLL_TIME;
 
     protected SelectorRunner[] selectorRunners;
     
@@ -280,6 +286,38 @@ public abstract class NIOTransport extends AbstractTransport
         getAsyncQueueIO().getWriter().setAllowDirectWrite(!optimizedForMultiplexing);
     }
 
+    /**
+     * Returns the time a {@link SelectorRunner} spins on
+     * {@link java.nio.channels.Selector#selectNow()} waiting for new events,
+     * before it parks in a blocking {@link java.nio.channels.Selector#select(long)}.
+     *
+     * @param timeUnit the {@link TimeUnit} of the result.
+     * @return the busy poll time, or <tt>0</tt> if busy polling is disabled.
+     */
+    public long getSelectorBusyPollTime(final TimeUnit timeUnit) {
+        return timeUnit.convert(selectorBusyPollTimeNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets the time a {@link SelectorRunner} spins on
+     * {@link java.nio.channels.Selector#selectNow()} waiting for new events,
+     * before it parks in a blocking {@link java.nio.channels.Selector#select(long)}.
+     * Busy polling trades CPU for latency: the selector thread doesn't have
+     * to be woken up if an event or a task arrives within the spin window.
+     * By default busy polling is disabled.
+     *
+     * @param busyPollTime the busy poll time, <tt>0</tt> or negative value
+     *  disables busy polling.
+     * @param timeUnit the {@link TimeUnit} of the busyPollTime.
+     */
+    public void setSelectorBusyPollTime(final long busyPollTime,
+            final TimeUnit timeUnit) {
+        selectorBusyPollTimeNanos = busyPollTime > 0
+                ? TimeUnit.NANOSECONDS.convert(busyPollTime, timeUnit)
+                : 0;
+        notifyProbesConfigChanged(this);
+    }
+
     protected synchronized void startSelectorRunners() throws IOException {
         selectorRunners = new SelectorRunner[selectorRunnersCount];
         
@@ -332,6 +370,42 @@ public abstract class NIOTransport extends AbstractTransport
      *
      * @param transport the <tt>Transport</tt> event occurred on.
      */
+    /**
+     * Notify registered {@link TransportProbe}s, that the transport pending
+     * writes budget has been exceeded.
+     *
+     * @param transport the <tt>Transport</tt> event occurred on.
+     * @param pendingBytes the number of bytes queued by the transport.
+     */
+    protected static void notifyProbesPendingWritesBudgetExceeded(
+            final NIOTransport transport, final long pendingBytes) {
+        final TransportProbe[] probes =
+                transport.transportMonitoringConfig.getProbesUnsafe();
+        if (probes != null) {
+            for (TransportProbe probe : probes) {
+                probe.onPendingWritesBudgetExceededEvent(transport, pendingBytes);
+            }
+        }
+    }
+
+    /**
+     * Notify registered {@link TransportProbe}s, that the transport pending
+     * writes budget, which has been exceeded, has some space available again.
+     *
+     * @param transport the <tt>Transport</tt> event occurred on.
+     * @param pendingBytes the number of bytes queued by the transport.
+     */
+    protected static void notifyProbesPendingWritesBudgetRestored(
+            final NIOTransport transport, final long pendingBytes) {
+        final TransportProbe[] probes =
+                transport.transportMonitoringConfig.getProbesUnsafe();
+        if (probes != null) {
+            for (TransportProbe probe : probes) {
+                probe.onPendingWritesBudgetRestoredEvent(transport, pendingBytes);
+            }
+        }
+    }
+
     protected static void notifyProbesError(final NIOTransport transport,
             final Throwable error) {
         final TransportProbe[] probes =
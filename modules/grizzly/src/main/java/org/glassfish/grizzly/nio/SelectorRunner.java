@@ -58,7 +58,6 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.WeakHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.concurrent.TimeUnit;
@@ -78,6 +77,7 @@ public final class SelectorRunner implements Runnable {
     private final static Logger LOGGER = Grizzly.logger(SelectorRunner.class);
     
     private final static String THREAD_MARKER = " SelectorRunner";
+    private final static int BUSY_POLL_LATENCY_BUCKETS = 16;
     
     private final NIOTransport transport;
     private final AtomicReference<State> stateHolder;
@@ -104,6 +104,17 @@ public final class SelectorRunner implements Runnable {
     private final AtomicBoolean selectorWakeupFlag = new AtomicBoolean();
     private final AtomicInteger runnerThreadActivityCounter = new AtomicInteger();
 
+    // Load statistics, updated by the runner thread only
+    private volatile long busyTimeNanos;
+    // the time the last select() returned, or 0 if the runner is in select()
+    private volatile long selectReturnNanos;
+
+    // Busy poll statistics, updated by the runner thread only
+    private volatile long busyPollHitsCount;
+    private volatile long busyPollParksCount;
+    private final long[] busyPollHitLatencies =
+            new long[BUSY_POLL_LATENCY_BUCKETS];
+
     public static SelectorRunner create(final NIOTransport transport)
             throws IOException {
         return new SelectorRunner(transport,
@@ -118,7 +129,7 @@ public final class SelectorRunner implements Runnable {
         this.selector = selector;
         stateHolder = new AtomicReference<State>(State.STOPPED);
 
-        pendingTasks = new ConcurrentLinkedQueue<SelectorHandlerTask>();
+        pendingTasks = new SelectorTaskQueue<SelectorHandlerTask>();
         evenPostponedTasks = new ArrayDeque<SelectorHandlerTask>();
         oddPostponedTasks = new ArrayDeque<SelectorHandlerTask>();
         currentPostponedTasks = evenPostponedTasks;
@@ -128,7 +139,11 @@ public final class SelectorRunner implements Runnable {
         pendingTasks.offer(task);
         hasPendingTasks = true;
 
-        wakeupSelector();
+        // if the runner is awake - it will see the task before the next
+        // select(), so the wakeup is redundant
+        if (isInSelect()) {
+            wakeupSelector();
+        }
     }
 
     private void wakeupSelector() {
@@ -287,6 +302,8 @@ public final class SelectorRunner implements Runnable {
                 }
             }
         } finally {
+            // the runner isn't busy anymore
+            onSelectEnter();
             runnerThreadActivityCounter.compareAndSet(1, 0);
 
             if (isStop()) {
@@ -336,7 +353,18 @@ public final class SelectorRunner implements Runnable {
                 return false;
             }
 
-            readyKeySet = selectorHandler.select(this);
+            onSelectEnter();
+            if (hasPendingTasks) {
+                // the tasks, which were added while the runner was awake,
+                // didn't wake up the selector
+                wakeupSelector();
+            }
+            
+            try {
+                readyKeySet = selectorHandler.select(this);
+            } finally {
+                selectReturnNanos = System.nanoTime();
+            }
             selectorWakeupFlag.set(false);
 
             if (stateHolder.get() == State.STOPPING) return true;
@@ -488,6 +516,99 @@ public final class SelectorRunner implements Runnable {
         }
     }
 
+    /**
+     * Returns the number of {@link SelectionKey}s registered with this
+     * runner's {@link Selector}, including the cancelled keys, which haven't
+     * been deregistered yet.
+     * The method could be called from any thread, but the result is
+     * an estimate if the registrations are changing concurrently.
+     *
+     * @return the number of registered {@link SelectionKey}s.
+     */
+    public int getRegisteredKeysCount() {
+        final Selector localSelector = getSelector();
+        return localSelector != null ? localSelector.keys().size() : 0;
+    }
+
+    /**
+     * Returns the total time this runner spent processing events and tasks,
+     * in other words the time it spent outside of <tt>select()</tt>.
+     * The method could be called from any thread.
+     *
+     * @param timeUnit the {@link TimeUnit} of the result.
+     * @return the total busy time.
+     */
+    public long getBusyTime(final TimeUnit timeUnit) {
+        final long selectReturn = selectReturnNanos;
+        final long busyTime = busyTimeNanos
+                + (selectReturn != 0 ? System.nanoTime() - selectReturn : 0);
+        return timeUnit.convert(busyTime, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the number of times the selector busy poll has been interrupted
+     * by new events or tasks before the busy poll time expired.
+     *
+     * @see NIOTransport#setSelectorBusyPollTime(long, TimeUnit)
+     */
+    public long getBusyPollHitsCount() {
+        return busyPollHitsCount;
+    }
+
+    /**
+     * Returns the number of times the selector busy poll time expired and
+     * the runner had to park in a blocking select().
+     *
+     * @see NIOTransport#setSelectorBusyPollTime(long, TimeUnit)
+     */
+    public long getBusyPollParksCount() {
+        return busyPollParksCount;
+    }
+
+    /**
+     * Returns the histogram of the time the busy poll spun before it's been
+     * interrupted by new events or tasks. The element <tt>i</tt> holds the number
+     * of hits, which took less than <tt>2<sup>i</sup></tt> microseconds
+     * (the last element collects all the longer hits).
+     * The method could be called from any thread, but the result is
+     * an estimate if the runner is active.
+     *
+     * @return the busy poll hit latency histogram.
+     */
+    public long[] getBusyPollHitLatencies() {
+        return busyPollHitLatencies.clone();
+    }
+
+    void onBusyPollHit(final long spinTimeNanos) {
+        final long spinTimeMicros = spinTimeNanos / 1000;
+        final int bucket = spinTimeMicros == 0
+                ? 0
+                : Math.min(64 - Long.numberOfLeadingZeros(spinTimeMicros),
+                        BUSY_POLL_LATENCY_BUCKETS - 1);
+        busyPollHitLatencies[bucket]++;
+        busyPollHitsCount++;
+    }
+
+    void onBusyPollPark() {
+        busyPollParksCount++;
+    }
+
+    /**
+     * @return <tt>true</tt> if the runner is (about to be) blocked in select(),
+     * or <tt>false</tt> if the runner is awake and processing events.
+     */
+    private boolean isInSelect() {
+        return selectReturnNanos == 0;
+    }
+
+    private void onSelectEnter() {
+        final long selectReturn = selectReturnNanos;
+        if (selectReturn != 0) {
+            busyTimeNanos += System.nanoTime() - selectReturn;
+            selectReturnNanos = 0;
+        }
+    }
+
     /**
      * Number of {@link SelectionKey}s, which were selected last time.
      * Operation is not thread-safe.
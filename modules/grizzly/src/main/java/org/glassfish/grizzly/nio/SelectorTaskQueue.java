@@ -0,0 +1,342 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.nio;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Unbounded multi-producer/single-consumer queue, which is used by the
+ * {@link SelectorRunner} to receive {@link SelectorHandlerTask}s from
+ * other threads.
+ * 
+ * The elements are stored in linked fixed-size array segments. A producer
+ * claims a slot with a single atomic increment and then publishes the element
+ * into the slot, so unlike {@link java.util.concurrent.ConcurrentLinkedQueue}
+ * no node is allocated per element and producers don't compete in CAS loops
+ * on the queue tail.
+ * 
+ * Only one thread at a time is allowed to consume the queue
+ * ({@link #poll()}, {@link #peek()}), the other methods are thread-safe.
+ * {@link #size()}, {@link #isEmpty()} and {@link #iterator()} are weakly
+ * consistent.
+ * 
+ * @param <E> the type of elements held in this queue
+ */
+public final class SelectorTaskQueue<E> extends AbstractQueue<E> {
+    private static final int SEGMENT_SIZE = 256;
+    
+    // marks the slots, which elements have been removed by remove(Object)
+    private static final Object REMOVED = new Object();
+    
+    private static final AtomicReferenceFieldUpdater<SelectorTaskQueue, Segment> TAIL_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(SelectorTaskQueue.class,
+                    Segment.class, "tailSegment");
+    
+    // the index of the next slot to be claimed by a producer
+    private final AtomicLong producerIndex = new AtomicLong();
+    // the segment the producers are (or were recently) filling
+    private volatile Segment tailSegment;
+    
+    // the index of the next slot to be consumed
+    private volatile long consumerIndex;
+    // the segment containing the consumerIndex slot
+    private volatile Segment headSegment;
+
+    public SelectorTaskQueue() {
+        final Segment segment = new Segment(0);
+        headSegment = segment;
+        tailSegment = segment;
+    }
+
+    @Override
+    public boolean offer(final E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        
+        // the tail segment has to be read before the index is claimed,
+        // so the segment's base can't be greater than the claimed index
+        Segment segment = tailSegment;
+        final long index = producerIndex.getAndIncrement();
+        
+        while (index >= segment.base + SEGMENT_SIZE) {
+            segment = nextSegment(segment);
+        }
+        
+        segment.set((int) (index - segment.base), e);
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        while (true) {
+            final long index = consumerIndex;
+            final Segment segment = consumerSegment(index);
+            if (segment == null) {
+                return null;
+            }
+            
+            final int offset = (int) (index - segment.base);
+            final Object e = awaitElement(segment, offset, index);
+            if (e == null) {
+                return null;
+            }
+            
+            consumerIndex = index + 1;
+            
+            // the element might be concurrently removed
+            if (e != REMOVED && segment.compareAndSet(offset, e, null)) {
+                return (E) e;
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        while (true) {
+            final long index = consumerIndex;
+            final Segment segment = consumerSegment(index);
+            if (segment == null) {
+                return null;
+            }
+            
+            final Object e = awaitElement(segment,
+                    (int) (index - segment.base), index);
+            if (e != REMOVED) {
+                return (E) e;
+            }
+
+            // skip the removed element
+            consumerIndex = index + 1;
+        }
+    }
+
+    /**
+     * Removes a single instance of the specified element from this queue,
+     * if it is present and hasn't been consumed yet.
+     * Could be called by any thread.
+     */
+    @Override
+    public boolean remove(final Object o) {
+        if (o == null) {
+            return false;
+        }
+        
+        for (Segment segment = headSegment; segment != null;
+                segment = segment.next) {
+            for (int i = 0; i < SEGMENT_SIZE; i++) {
+                final Object e = segment.get(i);
+                if (e != null && e != REMOVED && o.equals(e)
+                        && segment.compareAndSet(i, e, REMOVED)) {
+                    return true;
+                }
+            }
+        }
+        
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The returned value includes the elements, which have been removed by
+     * {@link #remove(Object)}, but not yet skipped by the consumer.
+     */
+    @Override
+    public int size() {
+        final long size = producerIndex.get() - consumerIndex;
+        return size <= 0 ? 0 : (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return producerIndex.get() <= consumerIndex;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    private Segment nextSegment(final Segment segment) {
+        Segment next = segment.next;
+        if (next == null) {
+            final Segment newSegment = new Segment(segment.base + SEGMENT_SIZE);
+            next = Segment.NEXT_UPDATER.compareAndSet(segment, null, newSegment)
+                    ? newSegment
+                    : segment.next;
+        }
+        
+        // help to move the tail forward
+        if (tailSegment == segment) {
+            TAIL_UPDATER.compareAndSet(this, segment, next);
+        }
+        
+        return next;
+    }
+
+    /**
+     * Returns the segment, which contains the consumer index slot, or
+     * <tt>null</tt> if the queue is empty.
+     */
+    private Segment consumerSegment(final long index) {
+        final Segment segment = headSegment;
+        if (index < segment.base + SEGMENT_SIZE) {
+            return segment;
+        }
+        
+        Segment next = segment.next;
+        if (next == null) {
+            if (index >= producerIndex.get()) {
+                return null;
+            }
+            
+            // the producer, which claimed the slot, is linking the segment
+            while ((next = segment.next) == null) {
+                Thread.yield();
+            }
+        }
+        
+        headSegment = next;
+        return next;
+    }
+
+    /**
+     * Returns the element in the slot, or <tt>null</tt> if the slot hasn't
+     * been claimed by a producer. If the slot has been claimed, but the
+     * element is not published yet - waits for the producer to publish it.
+     */
+    private Object awaitElement(final Segment segment, final int offset,
+            final long index) {
+        Object e = segment.get(offset);
+        if (e == null) {
+            if (index >= producerIndex.get()) {
+                return null;
+            }
+            
+            while ((e = segment.get(offset)) == null) {
+                Thread.yield();
+            }
+        }
+        
+        return e;
+    }
+
+    private static final class Segment extends AtomicReferenceArray<Object> {
+        private static final long serialVersionUID = 1L;
+        
+        private static final AtomicReferenceFieldUpdater<Segment, Segment> NEXT_UPDATER =
+                AtomicReferenceFieldUpdater.newUpdater(Segment.class,
+                        Segment.class, "next");
+
+        // the queue index of the segment's first slot
+        private final long base;
+        private volatile Segment next;
+
+        private Segment(final long base) {
+            super(SEGMENT_SIZE);
+            this.base = base;
+        }
+    }
+
+    private final class Itr implements Iterator<E> {
+        private Segment segment = headSegment;
+        private long index = Math.max(consumerIndex, segment.base);
+        private final long end = producerIndex.get();
+        
+        private Object next;
+        private Object last;
+
+        private Itr() {
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            
+            last = next;
+            advance();
+            return (E) last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            
+            SelectorTaskQueue.this.remove(last);
+            last = null;
+        }
+
+        private void advance() {
+            next = null;
+            while (index < end && segment != null) {
+                if (index >= segment.base + SEGMENT_SIZE) {
+                    segment = segment.next;
+                    continue;
+                }
+                
+                final Object e = segment.get((int) (index++ - segment.base));
+                if (e != null && e != REMOVED) {
+                    next = e;
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -47,6 +47,7 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.glassfish.grizzly.Buffer;
@@ -79,10 +80,72 @@ import org.glassfish.grizzly.nio.NIOTransport;
 public final class TCPNIOAsyncQueueWriter extends AbstractNIOAsyncQueueWriter {
     private final static Logger LOGGER = Grizzly.logger(TCPNIOAsyncQueueWriter.class);
 
+    /**
+     * The default max number of queued records, which could be gathered
+     * into one vectored write.
+     */
+    public static final int DEFAULT_MAX_GATHERED_RECORDS = Integer.getInteger(
+            TCPNIOAsyncQueueWriter.class.getName() + ".max-gathered-records", 64);
+
+    private volatile int maxGatheredRecords = DEFAULT_MAX_GATHERED_RECORDS;
+
+    // the number of write operations performed by this writer
+    private final AtomicLong writesCount = new AtomicLong();
+    // the number of queue records, which took part in the write operations
+    private final AtomicLong writtenRecordsCount = new AtomicLong();
+
     public TCPNIOAsyncQueueWriter(final NIOTransport transport) {
         super(transport);
     }
 
+    /**
+     * @return the max number of queued records, which could be gathered
+     * into one vectored write.
+     */
+    public int getMaxGatheredRecords() {
+        return maxGatheredRecords;
+    }
+
+    /**
+     * Sets the max number of queued records, which could be gathered into one
+     * vectored write. The amount of bytes written at once is additionally
+     * limited by the {@link Connection}'s write buffer size.
+     * <tt>1</tt> means the queued records will be written one by one.
+     *
+     * @param maxGatheredRecords the max number of records per write
+     */
+    public void setMaxGatheredRecords(final int maxGatheredRecords) {
+        if (maxGatheredRecords < 1) {
+            throw new IllegalArgumentException("maxGatheredRecords must be greater than zero");
+        }
+        
+        this.maxGatheredRecords = maxGatheredRecords;
+    }
+
+    /**
+     * @return the number of write operations performed by this writer.
+     */
+    public long getWritesCount() {
+        return writesCount.get();
+    }
+
+    /**
+     * @return the number of queue records, which took part in the write
+     * operations performed by this writer.
+     */
+    public long getWrittenRecordsCount() {
+        return writtenRecordsCount.get();
+    }
+
+    /**
+     * @return the average number of queue records written by one write
+     * operation.
+     */
+    public double getRecordsPerWrite() {
+        final long writes = writesCount.get();
+        return writes > 0 ? (double) writtenRecordsCount.get() / writes : 0;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     protected RecordWriteResult write0(final NIOConnection connection,
@@ -106,6 +169,9 @@ public final class TCPNIOAsyncQueueWriter extends AbstractNIOAsyncQueueWriter {
         final long written = write0(connection,
                 queueRecord.getWritableMessage(), writeResult);
         
+        writesCount.incrementAndGet();
+        writtenRecordsCount.incrementAndGet();
+        
         return writeResult.lastWriteResult(written, written);
     }
 
@@ -179,7 +245,8 @@ public final class TCPNIOAsyncQueueWriter extends AbstractNIOAsyncQueueWriter {
             try {
                 final SocketChannel socketChannel = (SocketChannel) connection.getChannel();
 
-                fill(queueRecord, bufferSize, directByteBufferRecord);
+                final int records = fill(queueRecord, bufferSize,
+                        maxGatheredRecords, directByteBufferRecord);
                 directByteBufferRecord.finishBufferSlice();
 
                 final int arraySize = directByteBufferRecord.getArraySize();
@@ -192,6 +259,8 @@ public final class TCPNIOAsyncQueueWriter extends AbstractNIOAsyncQueueWriter {
                         TCPNIOUtils.flushByteBuffers(
                         socketChannel, directByteBufferRecord.getArray(), 0, arraySize) ;
 
+                writesCount.incrementAndGet();
+                writtenRecordsCount.addAndGet(records);
             } catch (IOException e) {
                 // Mark connection as closed remotely.
                 ((TCPNIOConnection) connection).terminate0(null,
@@ -205,8 +274,14 @@ public final class TCPNIOAsyncQueueWriter extends AbstractNIOAsyncQueueWriter {
         return update(queueRecord, written);
     }
     
-    private static void fill(final CompositeQueueRecord queueRecord,
-            final int totalBufferSize,            
+    /**
+     * Fills the {@link DirectByteBufferRecord} with the content of the
+     * {@link CompositeQueueRecord}'s records.
+     * 
+     * @return the number of records, which have been added
+     */
+    private static int fill(final CompositeQueueRecord queueRecord,
+            final int totalBufferSize, final int maxRecords,
             final DirectByteBufferRecord ioRecord) {
         
 //        int dstBufferRemaining = dstByteBuffer.remaining();
@@ -214,11 +289,12 @@ public final class TCPNIOAsyncQueueWriter extends AbstractNIOAsyncQueueWriter {
 //        dstByteBuffer.limit(0);
 
         int totalRemaining = totalBufferSize;
+        int records = 0;
         final Deque<AsyncWriteQueueRecord> queue = queueRecord.queue;
         final ArrayList<BufferArray> savedBufferStates = queueRecord.savedBufferStates;
         
         for (final Iterator<AsyncWriteQueueRecord> it = queue.iterator();
-                it.hasNext() && totalRemaining > 0; ) {
+                it.hasNext() && totalRemaining > 0 && records < maxRecords; ) {
             
             final AsyncWriteQueueRecord record = it.next();
             
@@ -240,7 +316,10 @@ public final class TCPNIOAsyncQueueWriter extends AbstractNIOAsyncQueueWriter {
             TCPNIOUtils.fill(bufferArray, totalRemaining, ioRecord);
             
             totalRemaining -= messageRemaining;
+            records++;
         }
+        
+        return records;
     }
     
     private RecordWriteResult update(final CompositeQueueRecord queueRecord,
@@ -333,7 +412,8 @@ public final class TCPNIOAsyncQueueWriter extends AbstractNIOAsyncQueueWriter {
 
         if (currentRecord == null ||
                 !canBeAggregated(currentRecord) ||
-                queueSize == currentRecord.remaining()) {
+                queueSize == currentRecord.remaining() ||
+                recordsCount(currentRecord) >= maxGatheredRecords) {
             return currentRecord;
         }
         
@@ -349,6 +429,7 @@ public final class TCPNIOAsyncQueueWriter extends AbstractNIOAsyncQueueWriter {
         do {
             compositeQueueRecord.append(nextRecord);
         } while(compositeQueueRecord.remaining() < queueSize &&
+                compositeQueueRecord.queue.size() < maxGatheredRecords &&
                 (nextRecord = checkAndGetNextRecord(writeTaskQueue)) != null);
         
         return compositeQueueRecord;
@@ -372,6 +453,12 @@ public final class TCPNIOAsyncQueueWriter extends AbstractNIOAsyncQueueWriter {
         return record.canBeAggregated();
     }
     
+    private static int recordsCount(final AsyncWriteQueueRecord record) {
+        return record instanceof CompositeQueueRecord
+                ? ((CompositeQueueRecord) record).queue.size()
+                : 1;
+    }
+    
     private static final Attribute<CompositeQueueRecord> COMPOSITE_BUFFER_ATTR =
             Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(
                     TCPNIOAsyncQueueWriter.class.getName() + ".compositeBuffer");
@@ -42,13 +42,18 @@ package org.glassfish.grizzly.nio.transport;
 
 import org.glassfish.grizzly.AbstractBindingHandler;
 import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.Grizzly;
 import org.glassfish.grizzly.utils.Exceptions;
 
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.SocketAddress;
 import java.nio.channels.ServerSocketChannel;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.locks.Lock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * This class may be used to apply a custom {@link org.glassfish.grizzly.Processor} and/or {@link org.glassfish.grizzly.ProcessorSelector}
@@ -64,6 +69,8 @@ import java.util.concurrent.locks.Lock;
  */
 public class TCPNIOBindingHandler extends AbstractBindingHandler {
 
+    private static final Logger LOGGER = Grizzly.logger(TCPNIOBindingHandler.class);
+
     private final TCPNIOTransport tcpTransport;
 
     // ------------------------------------------------------------ Constructors
@@ -85,10 +92,19 @@ public class TCPNIOBindingHandler extends AbstractBindingHandler {
 
     @Override
     public TCPNIOServerConnection bind(SocketAddress socketAddress, int backlog) throws IOException {
+        if (tcpTransport.isReusePort() && socketAddress != null) {
+            if (TCPNIOTransport.isReusePortSupported()) {
+                return bindReusePortGroup(socketAddress, backlog);
+            }
+
+            LOGGER.log(Level.WARNING, "SO_REUSEPORT is not supported,"
+                    + " binding a single acceptor to {0}", socketAddress);
+        }
+
         return bindToChannelAndAddress(
                 tcpTransport.getSelectorProvider().openServerSocketChannel(),
                 socketAddress,
-                backlog);
+                backlog, null, -1);
     }
 
     @Override
@@ -96,7 +112,7 @@ public class TCPNIOBindingHandler extends AbstractBindingHandler {
         return bindToChannelAndAddress(
                 this.<ServerSocketChannel>getSystemInheritedChannel(ServerSocketChannel.class),
                 null,
-                -1);
+                -1, null, -1);
     }
 
     @Override
@@ -109,12 +125,67 @@ public class TCPNIOBindingHandler extends AbstractBindingHandler {
     }
 
 
+    // --------------------------------------------------------- Package Methods
+
+
+    /**
+     * Binds a single SO_REUSEPORT acceptor and adds it to the given group.
+     */
+    TCPNIOServerConnection bindReusePortAcceptor(final SocketAddress socketAddress,
+                                                 final int backlog,
+                                                 final Collection<TCPNIOServerConnection> reusePortGroup,
+                                                 final int acceptorIndex)
+    throws IOException {
+        return bindToChannelAndAddress(
+                tcpTransport.getSelectorProvider().openServerSocketChannel(),
+                socketAddress,
+                backlog, reusePortGroup, acceptorIndex);
+    }
+
+
     // --------------------------------------------------------- Private Methods
 
 
+    /**
+     * Binds one acceptor per {@link org.glassfish.grizzly.nio.SelectorRunner}
+     * to the same address and returns the first one, which represents the group.
+     */
+    private TCPNIOServerConnection bindReusePortGroup(final SocketAddress socketAddress,
+                                                      final int backlog)
+    throws IOException {
+        final int acceptorsCount = tcpTransport.getSelectorRunnersCount();
+        final Collection<TCPNIOServerConnection> reusePortGroup =
+                new ConcurrentLinkedQueue<TCPNIOServerConnection>();
+
+        final Lock lock = tcpTransport.getState().getStateLocker().writeLock();
+        lock.lock();
+        try {
+            final TCPNIOServerConnection serverConnection = bindReusePortAcceptor(
+                    socketAddress, backlog, reusePortGroup, 0);
+
+            // if the port was ephemeral - make sure the rest of acceptors
+            // bind to the one picked for the first acceptor
+            final SocketAddress boundAddress = serverConnection.getLocalAddress();
+            try {
+                for (int i = 1; i < acceptorsCount; i++) {
+                    bindReusePortAcceptor(boundAddress, backlog, reusePortGroup, i);
+                }
+            } catch (IOException e) {
+                tcpTransport.unbind(serverConnection);
+                throw e;
+            }
+
+            return serverConnection;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     private TCPNIOServerConnection bindToChannelAndAddress(final ServerSocketChannel serverSocketChannel,
                                                            final SocketAddress socketAddress,
-                                                           final int backlog)
+                                                           final int backlog,
+                                                           final Collection<TCPNIOServerConnection> reusePortGroup,
+                                                           final int acceptorIndex)
     throws IOException {
         TCPNIOServerConnection serverConnection = null;
 
@@ -127,6 +198,10 @@ public class TCPNIOBindingHandler extends AbstractBindingHandler {
             tcpTransport.getChannelConfigurator().preConfigure(transport,
                     serverSocketChannel);
             
+            if (reusePortGroup != null) {
+                serverSocketChannel.setOption(TCPNIOTransport.SO_REUSEPORT, true);
+            }
+
             if (socketAddress != null) {
                 serverSocket.bind(socketAddress, backlog);
             }
@@ -137,6 +212,11 @@ public class TCPNIOBindingHandler extends AbstractBindingHandler {
             serverConnection = tcpTransport.obtainServerNIOConnection(serverSocketChannel);
             serverConnection.setProcessor(getProcessor());
             serverConnection.setProcessorSelector(getProcessorSelector());
+            if (reusePortGroup != null) {
+                serverConnection.reusePortGroup = reusePortGroup;
+                serverConnection.acceptorIndex = acceptorIndex;
+                reusePortGroup.add(serverConnection);
+            }
             tcpTransport.serverConnections.add(serverConnection);
             serverConnection.resetProperties();
 
@@ -148,6 +228,9 @@ public class TCPNIOBindingHandler extends AbstractBindingHandler {
         } catch (Exception e) {
             if (serverConnection != null) {
                 tcpTransport.serverConnections.remove(serverConnection);
+                if (reusePortGroup != null) {
+                    reusePortGroup.remove(serverConnection);
+                }
 
                 serverConnection.closeSilently();
             } else {
@@ -69,9 +69,18 @@ public class TCPNIOConnection extends NIOConnection {
     Holder<SocketAddress> localSocketAddressHolder;
     Holder<SocketAddress> peerSocketAddressHolder;
 
+    private static final int MIN_ADAPTIVE_READ_SIZE = 512;
+    private static final int INITIAL_ADAPTIVE_READ_SIZE = 2048;
+
     private int readBufferSize = -1;
     private int writeBufferSize = -1;
 
+    // the predicted size of the next read (adaptive read buffer size mode).
+    // reads on a connection don't overlap, so no synchronization is needed
+    private int adaptiveReadSize = INITIAL_ADAPTIVE_READ_SIZE;
+    // the number of consecutive reads, which used less than half of the buffer
+    private int smallReadsCount;
+
     private AtomicReference<ConnectResultHandler> connectHandlerRef;
 
     public TCPNIOConnection(TCPNIOTransport transport,
@@ -124,6 +133,41 @@ public class TCPNIOConnection extends NIOConnection {
         return localSocketAddressHolder.get();
     }
 
+    /**
+     * Returns the size of the buffer to be allocated for the next read,
+     * if {@link TCPNIOTransport#isAdaptiveReadBufferSize()} is enabled.
+     *
+     * @param maxSize the max read buffer size
+     * @return the size of the buffer to be allocated for the next read
+     */
+    int getAdaptiveReadSize(final int maxSize) {
+        return Math.min(adaptiveReadSize, maxSize);
+    }
+
+    /**
+     * Updates the next read size prediction based on the read result.
+     *
+     * @param readSize the size of the buffer the data has been read into
+     * @param read the number of bytes read
+     * @param maxSize the max read buffer size
+     */
+    void onAdaptiveRead(final int readSize, final int read, final int maxSize) {
+        if (read >= readSize) {
+            // the buffer has been filled up - grow fast
+            smallReadsCount = 0;
+            adaptiveReadSize = (int) Math.min((long) readSize << 2, maxSize);
+        } else if (read <= readSize >> 1) {
+            // shrink slowly, if the buffer is repeatedly too large
+            if (++smallReadsCount >= 2) {
+                smallReadsCount = 0;
+                adaptiveReadSize = Math.max(readSize >> 1,
+                        MIN_ADAPTIVE_READ_SIZE);
+            }
+        } else {
+            smallReadsCount = 0;
+        }
+    }
+
     protected void resetProperties() {
         if (channel != null) {
             setReadBufferSize(transport.getReadBufferSize());
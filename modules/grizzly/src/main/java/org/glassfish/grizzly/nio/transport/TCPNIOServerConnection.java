@@ -42,6 +42,7 @@ package org.glassfish.grizzly.nio.transport;
 
 import java.io.IOException;
 import java.net.SocketAddress;
+import java.util.Collection;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
@@ -55,6 +56,7 @@ import org.glassfish.grizzly.impl.FutureImpl;
 import org.glassfish.grizzly.impl.SafeFutureImpl;
 import org.glassfish.grizzly.nio.RegisterChannelResult;
 import org.glassfish.grizzly.nio.SelectionKeyHandler;
+import org.glassfish.grizzly.nio.SelectorRunner;
 import org.glassfish.grizzly.utils.CompletionHandlerAdapter;
 import org.glassfish.grizzly.utils.Exceptions;
 import org.glassfish.grizzly.utils.Holder;
@@ -75,6 +77,17 @@ public final class TCPNIOServerConnection extends TCPNIOConnection {
     private final RegisterAcceptedChannelCompletionHandler defaultCompletionHandler;
     private final Object acceptSync = new Object();
 
+    /**
+     * The SO_REUSEPORT acceptors group this server connection belongs to,
+     * or <tt>null</tt> if it's a standalone listener.
+     */
+    Collection<TCPNIOServerConnection> reusePortGroup;
+    /**
+     * The index of this SO_REUSEPORT acceptor within its group, used to pin
+     * it to a {@link org.glassfish.grizzly.nio.SelectorRunner}.
+     */
+    int acceptorIndex = -1;
+
     public TCPNIOServerConnection(TCPNIOTransport transport,
             ServerSocketChannel serverSocketChannel) {
         super(transport, serverSocketChannel);
@@ -88,11 +101,19 @@ public final class TCPNIOServerConnection extends TCPNIOConnection {
 
         final FutureImpl<RegisterChannelResult> future =
                 SafeFutureImpl.create();
-        
-        transport.getNIOChannelDistributor().registerServiceChannelAsync(
-                channel, SelectionKey.OP_ACCEPT, this,
+        final CompletionHandler<RegisterChannelResult> completionHandler =
                 new CompletionHandlerAdapter<RegisterChannelResult, RegisterChannelResult>(
-                future, registerCompletionHandler));
+                future, registerCompletionHandler);
+        
+        if (acceptorIndex >= 0) {
+            // each SO_REUSEPORT acceptor gets its own SelectorRunner
+            transport.getSelectorHandler().registerChannelAsync(
+                    ((TCPNIOTransport) transport).getAcceptorSelectorRunner(acceptorIndex),
+                    channel, SelectionKey.OP_ACCEPT, this, completionHandler);
+        } else {
+            transport.getNIOChannelDistributor().registerServiceChannelAsync(
+                    channel, SelectionKey.OP_ACCEPT, this, completionHandler);
+        }
         try {
             future.get(10, TimeUnit.SECONDS);
         } catch (ExecutionException e) {
@@ -209,10 +230,21 @@ public final class TCPNIOServerConnection extends TCPNIOConnection {
             throws IOException {
 
         final TCPNIOTransport tcpNIOTransport = (TCPNIOTransport) transport;
-
-        tcpNIOTransport.getNIOChannelDistributor().registerChannelAsync(
-                acceptedConnection.getChannel(), initialSelectionKeyInterest,
-                acceptedConnection, completionHandler);
+        final SelectorRunner acceptorRunner = getSelectorRunner();
+
+        if (reusePortGroup != null && acceptorRunner != null) {
+            // the kernel has already balanced the connections between the
+            // SO_REUSEPORT acceptors, so keep the accepted channel on the
+            // acceptor's own SelectorRunner
+            tcpNIOTransport.getSelectorHandler().registerChannelAsync(
+                    acceptorRunner, acceptedConnection.getChannel(),
+                    initialSelectionKeyInterest, acceptedConnection,
+                    completionHandler);
+        } else {
+            tcpNIOTransport.getNIOChannelDistributor().registerChannelAsync(
+                    acceptedConnection.getChannel(), initialSelectionKeyInterest,
+                    acceptedConnection, completionHandler);
+        }
     }
 
     @Override
@@ -46,6 +46,8 @@ import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
 import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
@@ -99,6 +101,14 @@ public final class TCPNIOTransport extends NIOTransport implements
     public static final boolean DEFAULT_KEEP_ALIVE = true;
     public static final int DEFAULT_LINGER = -1;
     public static final int DEFAULT_SERVER_CONNECTION_BACKLOG = 4096;
+    public static final boolean DEFAULT_REUSE_PORT = false;
+    public static final boolean DEFAULT_ADAPTIVE_READ_BUFFER_SIZE = true;
+
+    /**
+     * <tt>SO_REUSEPORT</tt> socket option, or <tt>null</tt> if the JDK doesn't
+     * expose it (it's available starting from JDK 9).
+     */
+    static final SocketOption<Boolean> SO_REUSEPORT = lookupReusePortOption();
 
     private static final String DEFAULT_TRANSPORT_NAME = "TCPNIOTransport";
     /**
@@ -128,6 +138,14 @@ public final class TCPNIOTransport extends NIOTransport implements
      * The socket keepAlive mode.
      */
     boolean isKeepAlive = DEFAULT_KEEP_ALIVE;
+    /**
+     * The SO_REUSEPORT multi-acceptor mode.
+     */
+    boolean reusePort = DEFAULT_REUSE_PORT;
+    /**
+     * The per-connection adaptive read buffer size mode.
+     */
+    boolean adaptiveReadBufferSize = DEFAULT_ADAPTIVE_READ_BUFFER_SIZE;
 
     private final Filter defaultTransportFilter;
     final RegisterChannelCompletionHandler selectorRegistrationHandler;
@@ -193,6 +211,15 @@ public final class TCPNIOTransport extends NIOTransport implements
         serverConnection.listen();
     }
 
+    /**
+     * Returns the {@link SelectorRunner}, which is responsible for accepting
+     * connections on the SO_REUSEPORT acceptor with the given index.
+     */
+    SelectorRunner getAcceptorSelectorRunner(final int acceptorIndex) {
+        final SelectorRunner[] runners = getSelectorRunners();
+        return runners[acceptorIndex % runners.length];
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -281,6 +308,17 @@ public final class TCPNIOTransport extends NIOTransport implements
                             LogMessages.WARNING_GRIZZLY_TRANSPORT_UNBINDING_CONNECTION_EXCEPTION(connection),
                             e);
                 }
+
+                // SO_REUSEPORT acceptors listen on the same address, so
+                // they're unbound together
+                final Collection<TCPNIOServerConnection> reusePortGroup =
+                        ((TCPNIOServerConnection) connection).reusePortGroup;
+                if (reusePortGroup != null) {
+                    reusePortGroup.remove(connection);
+                    for (TCPNIOServerConnection acceptor : reusePortGroup) {
+                        unbind(acceptor);
+                    }
+                }
             }
         } finally {
             lock.unlock();
@@ -489,6 +527,88 @@ public final class TCPNIOTransport extends NIOTransport implements
         this.serverConnectionBackLog = serverConnectionBackLog;
     }
 
+    /**
+     * @return <tt>true</tt> if each bind operation opens one listening socket
+     * per {@link SelectorRunner} using SO_REUSEPORT, or <tt>false</tt> otherwise.
+     */
+    public boolean isReusePort() {
+        return reusePort;
+    }
+
+    /**
+     * Enables or disables the SO_REUSEPORT multi-acceptor mode.
+     * If enabled, every subsequent bind operation opens
+     * {@link #getSelectorRunnersCount()} listening sockets on the same address
+     * and registers each of them with its own {@link SelectorRunner}, so the
+     * kernel load-balances incoming connections between the acceptors instead
+     * of a single accept loop handing them out. The accepted connections stay
+     * on the {@link SelectorRunner} of the acceptor, which accepted them.
+     * The {@link TCPNIOServerConnection} returned by the bind operation
+     * represents the whole group: unbinding it unbinds all the acceptors.
+     *
+     * If the JDK or the operating system doesn't support SO_REUSEPORT the
+     * setting is ignored and a single listening socket is bound.
+     *
+     * @param reusePort <tt>true</tt> to enable the multi-acceptor mode
+     *
+     * @see #isReusePortSupported()
+     */
+    public void setReusePort(final boolean reusePort) {
+        this.reusePort = reusePort;
+        notifyProbesConfigChanged(this);
+    }
+
+    /**
+     * @return <tt>true</tt> if the size of the buffers allocated to read
+     * incoming data is adapted to each {@link TCPNIOConnection}'s recent reads,
+     * or <tt>false</tt> if the connection read buffer size is always used.
+     */
+    public boolean isAdaptiveReadBufferSize() {
+        return adaptiveReadBufferSize;
+    }
+
+    /**
+     * Enables or disables the adaptive read buffer size mode.
+     * If enabled, and the {@link org.glassfish.grizzly.memory.MemoryManager}
+     * allocates direct buffers, the size of the buffer allocated for the next
+     * read is predicted per {@link TCPNIOConnection}: it grows when the
+     * previous read filled the buffer and shrinks after consecutive reads,
+     * which used less than half of it. The size never exceeds the connection
+     * read buffer size.
+     * So mostly idle or small-request connections don't hold large buffers,
+     * while bulk transfers quickly reach the full read buffer size.
+     * Heap buffers are read through a thread-local direct buffer and copied
+     * into a buffer of the exact size, so for them the setting has no effect.
+     *
+     * @param adaptiveReadBufferSize <tt>true</tt> to enable the adaptive mode
+     */
+    public void setAdaptiveReadBufferSize(final boolean adaptiveReadBufferSize) {
+        this.adaptiveReadBufferSize = adaptiveReadBufferSize;
+        notifyProbesConfigChanged(this);
+    }
+
+    /**
+     * @return <tt>true</tt> if the JDK exposes the SO_REUSEPORT socket option
+     * and the default {@link java.nio.channels.spi.SelectorProvider}
+     * supports it for server sockets.
+     */
+    public static boolean isReusePortSupported() {
+        if (SO_REUSEPORT == null) {
+            return false;
+        }
+
+        try {
+            final ServerSocketChannel channel = ServerSocketChannel.open();
+            try {
+                return channel.supportedOptions().contains(SO_REUSEPORT);
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
     @Override
     public Filter getTransportFilter() {
         return defaultTransportFilter;
@@ -850,10 +970,31 @@ public final class TCPNIOTransport extends NIOTransport implements
             //noinspection SuspiciousMethodCalls
             if (serverConnections.remove(connection)) {
                 final SocketAddress address = (SocketAddress) connection.getLocalAddress();
-                bind(address);
+                final TCPNIOServerConnection serverConnection =
+                        (TCPNIOServerConnection) connection;
+                if (serverConnection.reusePortGroup != null) {
+                    // replace just this acceptor, the rest of the group is fine
+                    serverConnection.reusePortGroup.remove(serverConnection);
+                    bindingHandler.bindReusePortAcceptor(address,
+                            serverConnectionBackLog,
+                            serverConnection.reusePortGroup,
+                            serverConnection.acceptorIndex);
+                } else {
+                    bind(address);
+                }
             }
         } finally {
             lock.unlock();
         }
     }
+
+    @SuppressWarnings("unchecked")
+    private static SocketOption<Boolean> lookupReusePortOption() {
+        try {
+            return (SocketOption<Boolean>) StandardSocketOptions.class
+                    .getField("SO_REUSEPORT").get(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
 }
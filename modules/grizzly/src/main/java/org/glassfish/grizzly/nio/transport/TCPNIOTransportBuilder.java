@@ -56,6 +56,8 @@ public class TCPNIOTransportBuilder extends NIOTransportBuilder<TCPNIOTransportB
     protected int serverConnectionBackLog = TCPNIOTransport.DEFAULT_SERVER_CONNECTION_BACKLOG;
     protected int serverSocketSoTimeout = TCPNIOTransport.DEFAULT_SERVER_SOCKET_SO_TIMEOUT;
     protected boolean tcpNoDelay = TCPNIOTransport.DEFAULT_TCP_NO_DELAY;
+    protected boolean reusePort = TCPNIOTransport.DEFAULT_REUSE_PORT;
+    protected boolean adaptiveReadBufferSize = TCPNIOTransport.DEFAULT_ADAPTIVE_READ_BUFFER_SIZE;
 
     // ------------------------------------------------------------ Constructors
 
@@ -157,6 +159,40 @@ public class TCPNIOTransportBuilder extends NIOTransportBuilder<TCPNIOTransportB
         return getThis();
     }
 
+    /**
+     * @see TCPNIOTransport#isReusePort()
+     */
+    public boolean isReusePort() {
+        return reusePort;
+    }
+
+    /**
+     * @see TCPNIOTransport#setReusePort(boolean)
+     *
+     * @return this <code>TCPNIOTransportBuilder</code>
+     */
+    public TCPNIOTransportBuilder setReusePort(boolean reusePort) {
+        this.reusePort = reusePort;
+        return getThis();
+    }
+
+    /**
+     * @see TCPNIOTransport#isAdaptiveReadBufferSize()
+     */
+    public boolean isAdaptiveReadBufferSize() {
+        return adaptiveReadBufferSize;
+    }
+
+    /**
+     * @see TCPNIOTransport#setAdaptiveReadBufferSize(boolean)
+     *
+     * @return this <code>TCPNIOTransportBuilder</code>
+     */
+    public TCPNIOTransportBuilder setAdaptiveReadBufferSize(boolean adaptiveReadBufferSize) {
+        this.adaptiveReadBufferSize = adaptiveReadBufferSize;
+        return getThis();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -168,6 +204,8 @@ public class TCPNIOTransportBuilder extends NIOTransportBuilder<TCPNIOTransportB
         transport.setServerConnectionBackLog(serverConnectionBackLog);
         transport.setTcpNoDelay(tcpNoDelay);
         transport.setServerSocketSoTimeout(serverSocketSoTimeout);
+        transport.setReusePort(reusePort);
+        transport.setAdaptiveReadBufferSize(adaptiveReadBufferSize);
         return transport;
     }
 
@@ -245,8 +245,19 @@ public class TCPNIOUtils {
                     ioRecord.release();
                 }
             } else {
-                buffer = memoryManager.allocateAtLeast(receiveBufferSize);
+                final boolean isAdaptive = ((TCPNIOTransport)
+                        connection.getTransport()).isAdaptiveReadBufferSize();
+                
+                buffer = memoryManager.allocateAtLeast(isAdaptive
+                        ? connection.getAdaptiveReadSize(receiveBufferSize)
+                        : receiveBufferSize);
+                
+                final int readSize = buffer.remaining();
                 read = readBuffer(connection, buffer);
+                
+                if (isAdaptive && read > 0) {
+                    connection.onAdaptiveRead(readSize, read, receiveBufferSize);
+                }
             }
         } catch (Throwable e) {
             error = e;
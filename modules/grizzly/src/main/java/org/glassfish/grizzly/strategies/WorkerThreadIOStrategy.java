@@ -47,6 +47,7 @@ import org.glassfish.grizzly.Grizzly;
 import org.glassfish.grizzly.IOEvent;
 import org.glassfish.grizzly.IOEventLifeCycleListener;
 import org.glassfish.grizzly.Processor;
+import org.glassfish.grizzly.threadpool.GrizzlyExecutorService;
 import java.util.logging.Logger;
 
 /**
@@ -97,7 +98,12 @@ public final class WorkerThreadIOStrategy extends AbstractIOStrategy {
         }
 
         final Executor threadPool = getThreadPoolFor(connection, ioEvent);
-        if (threadPool != null) {
+        if (threadPool instanceof GrizzlyExecutorService) {
+            // pin the connection to a worker, if the thread pool is partitioned
+            ((GrizzlyExecutorService) threadPool).execute(
+                    System.identityHashCode(connection),
+                    new WorkerThreadRunnable(connection, ioEvent, listener));
+        } else if (threadPool != null) {
             threadPool.execute(
                     new WorkerThreadRunnable(connection, ioEvent, listener));
         } else {
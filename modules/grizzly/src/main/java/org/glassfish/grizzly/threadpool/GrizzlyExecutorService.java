@@ -94,7 +94,11 @@ public class GrizzlyExecutorService extends AbstractExecutorService
         }
         
         final Queue<Runnable> queue = cfg.getQueue();
-        if ((queue == null || queue instanceof BlockingQueue) &&
+        if (cfg.isVirtualThreads() && Threads.isVirtualThreadSupported()) {
+            this.pool = new VirtualThreadPool(cfg);
+        } else if (cfg.isPartitioned()) {
+            this.pool = new PartitionedThreadPool(cfg);
+        } else if ((queue == null || queue instanceof BlockingQueue) &&
                 (cfg.getCorePoolSize() < 0 || cfg.getCorePoolSize() == cfg.getMaxPoolSize())) {
 
             this.pool = cfg.getQueueLimit() < 0
@@ -161,6 +165,25 @@ public class GrizzlyExecutorService extends AbstractExecutorService
         pool.execute(r);
     }
 
+    /**
+     * Executes the task using the worker thread the partition is mapped to,
+     * if the thread pool is partitioned, or the same way as
+     * {@link #execute(Runnable)} otherwise.
+     *
+     * @param partition the partition, could be any int value.
+     * @param r the task.
+     *
+     * @see ThreadPoolConfig#setPartitioned(boolean)
+     */
+    public void execute(final int partition, final Runnable r) {
+        final AbstractThreadPool localPool = pool;
+        if (localPool instanceof PartitionedThreadPool) {
+            ((PartitionedThreadPool) localPool).execute(partition, r);
+        } else {
+            localPool.execute(r);
+        }
+    }
+
     @Override
     public boolean awaitTermination(long timeout, TimeUnit unit)
             throws InterruptedException {
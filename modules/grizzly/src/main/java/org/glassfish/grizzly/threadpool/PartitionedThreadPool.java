@@ -0,0 +1,335 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.threadpool;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed thread pool, where each worker thread has its own task queue.
+ * Tasks, submitted using {@link #execute(int, Runnable)}, are pinned to
+ * the worker the partition is mapped to, so the tasks related to the same
+ * partition (for example the same connection) are likely to be executed
+ * by the same thread and reuse its CPU cache.
+ * An idle worker steals tasks from the queues of the workers busy executing
+ * a task, so a long running task doesn't delay the tasks queued after it.
+ *
+ * Tasks submitted using {@link #execute(Runnable)} are distributed among the
+ * workers in round-robin fashion.
+ */
+public class PartitionedThreadPool extends AbstractThreadPool {
+
+    // the time an idle worker gives a busy worker to pick up its own task,
+    // before the task gets stolen
+    private static final long STEAL_DELAY_NANOS = TimeUnit.MICROSECONDS.toNanos(
+            Integer.getInteger(PartitionedThreadPool.class.getName()
+                    + ".steal-delay-micros", 100));
+
+    private final PartitionWorker[] partitionWorkers;
+    private final Queue<Runnable> queueView = new PartitionsQueue();
+    
+    private final AtomicInteger roundRobinCounter = new AtomicInteger();
+    private final AtomicLong stolenTasksCount = new AtomicLong();
+
+    public PartitionedThreadPool(final ThreadPoolConfig config) {
+        super(config);
+
+        final Queue<Runnable> queue = config.getQueue();
+        if (queue != null && !(queue instanceof PartitionedThreadPool.PartitionsQueue)) {
+            throw new IllegalArgumentException(
+                    "Partitioned thread pool doesn't support custom task queue");
+        }
+        
+        config.setQueue(queueView);
+        
+        final int poolSize = config.getMaxPoolSize();
+        partitionWorkers = new PartitionWorker[poolSize];
+        
+        synchronized (stateLock) {
+            for (int i = 0; i < poolSize; i++) {
+                partitionWorkers[i] = new PartitionWorker(i);
+            }
+            
+            for (PartitionWorker worker : partitionWorkers) {
+                startWorker(worker);
+            }
+        }
+
+        ProbeNotifier.notifyThreadPoolStarted(this);
+        super.onMaxNumberOfThreadsReached();
+    }
+
+    /**
+     * @return the number of partitions (worker threads) in the pool.
+     */
+    public int getPartitionsCount() {
+        return partitionWorkers.length;
+    }
+
+    /**
+     * @return the number of tasks, which were executed by a worker, different
+     * from the worker the task has been originally submitted to.
+     */
+    public long getStolenTasksCount() {
+        return stolenTasksCount.get();
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        execute(roundRobinCounter.getAndIncrement(), command);
+    }
+
+    /**
+     * Executes the task using the worker thread, the partition is mapped to,
+     * unless the task gets stolen by an idle worker.
+     *
+     * @param partition the partition, could be any int value.
+     * @param command the task.
+     */
+    public void execute(final int partition, final Runnable command) {
+        if (!running) {
+            throw new RejectedExecutionException("ThreadPool is not running");
+        }
+        
+        offer(partitionWorkers[(partition & Integer.MAX_VALUE)
+                % partitionWorkers.length], command);
+    }
+
+    private void offer(final PartitionWorker worker, final Runnable command) {
+        worker.tasks.offer(command);
+        if (command != poison) {
+            onTaskQueued(command);
+        }
+        
+        if (worker.unpark()) {
+            return;
+        }
+        
+        if (command != poison) {
+            // the worker is busy or has already been woken up to process
+            // another task, let an idle worker steal the task
+            unparkIdleWorker(worker.index);
+        }
+    }
+
+    private void unparkIdleWorker(final int busyWorkerIdx) {
+        final int length = partitionWorkers.length;
+        for (int i = 1; i < length; i++) {
+            final PartitionWorker worker =
+                    partitionWorkers[(busyWorkerIdx + i) % length];
+            if (worker.unpark()) {
+                return;
+            }
+        }
+    }
+    
+    private Runnable steal(final int thiefIdx) {
+        final int length = partitionWorkers.length;
+        for (int i = 1; i < length; i++) {
+            final PartitionWorker victim = partitionWorkers[(thiefIdx + i) % length];
+            if (!victim.isBusy) {
+                // the worker is about to take its own task
+                continue;
+            }
+            
+            final Queue<Runnable> tasks = victim.tasks;
+            final Runnable task = tasks.poll();
+            if (task == poison) {
+                // the poison is addressed to the owner
+                tasks.offer(poison);
+            } else if (task != null) {
+                stolenTasksCount.incrementAndGet();
+                return task;
+            }
+        }
+        
+        return null;
+    }
+    
+    private boolean hasTasks(final PartitionWorker worker) {
+        if (!worker.tasks.isEmpty()) {
+            return true;
+        }
+        
+        for (PartitionWorker victim : partitionWorkers) {
+            if (victim.isBusy && !victim.tasks.isEmpty()) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    private final class PartitionWorker extends Worker {
+        private final int index;
+        private final Queue<Runnable> tasks =
+                new ConcurrentLinkedQueue<Runnable>();
+        // true, if the worker is parked and hasn't been woken up yet
+        private final AtomicBoolean isParked = new AtomicBoolean();
+        // true, if the worker is executing a task, so its queued tasks
+        // could be stolen
+        private volatile boolean isBusy;
+
+        private PartitionWorker(final int index) {
+            this.index = index;
+        }
+        
+        @Override
+        protected Runnable getTask() throws InterruptedException {
+            isBusy = false;
+            while (true) {
+                Runnable task = tasks.poll();
+                if (task != null) {
+                    isBusy = true;
+                    if (!tasks.isEmpty()) {
+                        // the rest of the tasks would wait for this one
+                        // to complete, let an idle worker steal them
+                        unparkIdleWorker(index);
+                    }
+                    
+                    return task;
+                }
+                
+                task = steal(index);
+                if (task != null) {
+                    isBusy = true;
+                    return task;
+                }
+                
+                isParked.set(true);
+                // recheck the queues to not miss the unpark
+                if (!hasTasks(this)) {
+                    LockSupport.park(this);
+                    if (tasks.isEmpty()) {
+                        // woken up to steal, but the busy worker might
+                        // be just about to take the task
+                        LockSupport.parkNanos(this, STEAL_DELAY_NANOS);
+                    }
+                }
+                isParked.set(false);
+            }
+        }
+
+        /**
+         * Wakes up the worker, if it's parked and hasn't been woken up by
+         * another thread yet, so every wake up is accounted for a single task.
+         *
+         * @return <tt>true</tt>, if the worker has been woken up.
+         */
+        private boolean unpark() {
+            if (isParked.get() && isParked.compareAndSet(true, false)) {
+                LockSupport.unpark(t);
+                return true;
+            }
+            
+            return false;
+        }
+    }
+    
+    /**
+     * The {@link Queue} view of the workers' queues, used for the pool
+     * management operations like draining or poisoning.
+     */
+    private final class PartitionsQueue extends AbstractQueue<Runnable> {
+
+        @Override
+        public boolean offer(final Runnable task) {
+            final int idx = (roundRobinCounter.getAndIncrement() & Integer.MAX_VALUE)
+                    % partitionWorkers.length;
+            PartitionedThreadPool.this.offer(partitionWorkers[idx], task);
+            return true;
+        }
+
+        @Override
+        public Runnable poll() {
+            for (PartitionWorker worker : partitionWorkers) {
+                final Runnable task = worker.tasks.poll();
+                if (task != null) {
+                    return task;
+                }
+            }
+            
+            return null;
+        }
+
+        @Override
+        public Runnable peek() {
+            for (PartitionWorker worker : partitionWorkers) {
+                final Runnable task = worker.tasks.peek();
+                if (task != null) {
+                    return task;
+                }
+            }
+            
+            return null;
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (PartitionWorker worker : partitionWorkers) {
+                size += worker.tasks.size();
+            }
+            
+            return size;
+        }
+
+        @Override
+        public Iterator<Runnable> iterator() {
+            final List<Runnable> snapshot = new ArrayList<Runnable>();
+            for (PartitionWorker worker : partitionWorkers) {
+                snapshot.addAll(worker.tasks);
+            }
+            
+            return snapshot.iterator();
+        }
+    }
+}
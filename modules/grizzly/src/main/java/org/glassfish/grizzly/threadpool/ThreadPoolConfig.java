@@ -97,6 +97,8 @@ public final class ThreadPoolConfig {
     protected DelayedExecutor transactionMonitor;
     protected long transactionTimeoutMillis;
     protected ClassLoader initialClassLoader;
+    protected boolean isPartitioned;
+    protected boolean isVirtualThreads;
 
     /**
      * Thread pool probes
@@ -155,6 +157,8 @@ public final class ThreadPoolConfig {
         this.keepAliveTimeMillis   = cfg.keepAliveTimeMillis;
         this.mm              = cfg.mm;
         this.initialClassLoader = cfg.initialClassLoader;
+        this.isPartitioned   = cfg.isPartitioned;
+        this.isVirtualThreads = cfg.isVirtualThreads;
         
         this.threadPoolMonitoringConfig =
                 new DefaultMonitoringConfig<ThreadPoolProbe>(ThreadPoolProbe.class);
@@ -420,6 +424,58 @@ public final class ThreadPoolConfig {
         return this;
     }
 
+    /**
+     * @return <tt>true</tt>, if the thread pool has a task queue per worker
+     * thread, or <tt>false</tt> if all the workers share the same task queue.
+     *
+     * @see PartitionedThreadPool
+     */
+    public boolean isPartitioned() {
+        return isPartitioned;
+    }
+
+    /**
+     * Specifies if the thread pool should have a task queue per worker thread
+     * (see {@link PartitionedThreadPool}) rather than a task queue shared
+     * by all the workers. The partitioned thread pool has a fixed size of
+     * {@link #getMaxPoolSize()} threads and doesn't support custom task
+     * queues and queue limits.
+     *
+     * @param isPartitioned <tt>true</tt> to create a partitioned thread pool.
+     *
+     * @return the {@link ThreadPoolConfig}
+     */
+    public ThreadPoolConfig setPartitioned(final boolean isPartitioned) {
+        this.isPartitioned = isPartitioned;
+        return this;
+    }
+
+    /**
+     * @return <tt>true</tt>, if the thread pool should run each task
+     * in a new virtual thread, or <tt>false</tt> otherwise.
+     *
+     * @see VirtualThreadPool
+     */
+    public boolean isVirtualThreads() {
+        return isVirtualThreads;
+    }
+
+    /**
+     * Specifies if the thread pool should run each task in a new virtual
+     * thread (see {@link VirtualThreadPool}), which is the best fit for
+     * the tasks doing blocking I/O. If the JVM doesn't support virtual
+     * threads (JDK 21+), the setting is ignored and the regular thread pool
+     * is used.
+     *
+     * @param isVirtualThreads <tt>true</tt> to run tasks in virtual threads.
+     *
+     * @return the {@link ThreadPoolConfig}
+     */
+    public ThreadPoolConfig setVirtualThreads(final boolean isVirtualThreads) {
+        this.isVirtualThreads = isVirtualThreads;
+        return this;
+    }
+
     @Override
     public String toString() {
         return ThreadPoolConfig.class.getSimpleName() + " :\r\n"
@@ -434,6 +490,8 @@ public final class ThreadPoolConfig {
                 + "  transactionTimeoutMillis: " + transactionTimeoutMillis + "\r\n"
                 + "  priority: " + priority + "\r\n"
                 + "  isDaemon: " + isDaemon + "\r\n"
-                + "  initialClassLoader: " + initialClassLoader;
+                + "  initialClassLoader: " + initialClassLoader + "\r\n"
+                + "  isPartitioned: " + isPartitioned + "\r\n"
+                + "  isVirtualThreads: " + isVirtualThreads;
     }
 }
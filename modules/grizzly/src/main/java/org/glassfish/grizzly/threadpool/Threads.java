@@ -40,15 +40,31 @@
 
 package org.glassfish.grizzly.threadpool;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Grizzly;
+
 /**
  * Set of {@link Thread} utilities.
  * 
  * @author Alexey Stashok
  */
 public class Threads {
+    private static final Logger LOGGER = Grizzly.logger(Threads.class);
+
     private static final ThreadLocal<Boolean> SERVICE_THREAD =
             new ThreadLocal<Boolean>();
     
+    // Thread.isVirtual(), available since JDK 21
+    private static final MethodHandle IS_VIRTUAL = findIsVirtual();
+    
     public static boolean isService() {
         return Boolean.TRUE.equals(SERVICE_THREAD.get());
     }
@@ -60,5 +76,97 @@ public class Threads {
             SERVICE_THREAD.remove();
         }
     }
+
+    /**
+     * @return <tt>true</tt> if the JVM supports virtual threads,
+     * or <tt>false</tt> otherwise.
+     */
+    public static boolean isVirtualThreadSupported() {
+        return VirtualThreadsSupport.IS_SUPPORTED;
+    }
     
+    /**
+     * @param thread the {@link Thread} to check.
+     * @return <tt>true</tt> if the thread is a virtual thread,
+     * or <tt>false</tt> otherwise.
+     */
+    public static boolean isVirtual(final Thread thread) {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(thread);
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+    
+    /**
+     * Creates an {@link ExecutorService}, which starts a new virtual thread
+     * for each task. The JDK API is looked up reflectively, so the method
+     * could be called on any JVM.
+     *
+     * @param namePrefix the virtual threads name prefix.
+     * @return the {@link ExecutorService}, or <tt>null</tt> if the JVM
+     * doesn't support virtual threads.
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor(final String namePrefix) {
+        if (!isVirtualThreadSupported()) {
+            return null;
+        }
+        
+        try {
+            return createVirtualThreadPerTaskExecutor(namePrefix);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Can not create virtual thread executor", e);
+            return null;
+        }
+    }
+    
+    private static ExecutorService createVirtualThreadPerTaskExecutor(
+            final String namePrefix) throws Exception {
+        final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+        Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+        builder = builderClass.getMethod("name", String.class, long.class)
+                .invoke(builder, namePrefix, 1L);
+        final ThreadFactory threadFactory = (ThreadFactory)
+                builderClass.getMethod("factory").invoke(builder);
+        
+        final Method newExecutorMethod = Executors.class.getMethod(
+                "newThreadPerTaskExecutor", ThreadFactory.class);
+        return (ExecutorService) newExecutorMethod.invoke(null, threadFactory);
+    }
+    
+    /**
+     * Checks the virtual threads support once, by creating the virtual thread
+     * executor. {@link Thread} may have the virtual threads API, which is
+     * not available (for example the JDK 19 and 20 preview API).
+     */
+    private static final class VirtualThreadsSupport {
+        private static final boolean IS_SUPPORTED = checkSupported();
+
+        private static boolean checkSupported() {
+            if (IS_VIRTUAL == null) {
+                return false;
+            }
+            
+            try {
+                createVirtualThreadPerTaskExecutor("grizzly-virtual-").shutdown();
+                return true;
+            } catch (Throwable t) {
+                LOGGER.log(Level.FINE, "Virtual threads are not supported", t);
+                return false;
+            }
+        }
+    }
+    
+    private static MethodHandle findIsVirtual() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Thread.class,
+                    "isVirtual", MethodType.methodType(boolean.class));
+        } catch (Exception e) {
+            return null;
+        }
+    }
 }
@@ -0,0 +1,180 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.threadpool;
+
+import java.util.AbstractQueue;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread pool, which runs each task in a new virtual thread.
+ * The pool is suitable for the tasks, which spend most of the time
+ * blocked, for example waiting for a database response, so the number of
+ * the concurrently executed tasks is not limited by the number of platform
+ * threads. The {@link ThreadPoolConfig} pool size, queue and keep-alive
+ * settings are not applicable to this pool.
+ *
+ * Virtual threads are available since JDK 21 and are created reflectively,
+ * use {@link Threads#isVirtualThreadSupported()} to check if the pool
+ * could be created.
+ *
+ * Note: virtual threads are not {@link DefaultWorkerThread}s, so the tasks
+ * don't have access to the thread-local memory pools and object caches.
+ */
+public class VirtualThreadPool extends AbstractThreadPool {
+
+    private final ExecutorService executor;
+    private final Queue<Runnable> queueView = new ExecutorQueue();
+    
+    public VirtualThreadPool(final ThreadPoolConfig config) {
+        super(config);
+        
+        executor = Threads.newVirtualThreadPerTaskExecutor(
+                config.getPoolName() + "-virtual-");
+        if (executor == null) {
+            throw new UnsupportedOperationException(
+                    "Virtual threads are not supported by the JVM");
+        }
+        
+        config.setQueue(queueView);
+        ProbeNotifier.notifyThreadPoolStarted(this);
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        if (!running) {
+            throw new RejectedExecutionException("ThreadPool is not running");
+        }
+        
+        onTaskQueued(command);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                onTaskDequeued(command);
+                
+                final ClassLoader initial = config.getInitialClassLoader();
+                if (initial != null) {
+                    Thread.currentThread().setContextClassLoader(initial);
+                }
+                
+                try {
+                    command.run();
+                } finally {
+                    onTaskCompletedEvent(command);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        synchronized (stateLock) {
+            if (running) {
+                running = false;
+                executor.shutdown();
+                ProbeNotifier.notifyThreadPoolStopped(this);
+            }
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        synchronized (stateLock) {
+            if (running) {
+                running = false;
+                executor.shutdownNow();
+                ProbeNotifier.notifyThreadPoolStopped(this);
+            }
+            
+            // the tasks are never queued
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return executor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+    
+    /**
+     * The {@link Queue} facade of the pool, the tasks offered to the queue
+     * are executed immediately.
+     */
+    private final class ExecutorQueue extends AbstractQueue<Runnable> {
+
+        @Override
+        public boolean offer(final Runnable task) {
+            execute(task);
+            return true;
+        }
+
+        @Override
+        public Runnable poll() {
+            return null;
+        }
+
+        @Override
+        public Runnable peek() {
+            return null;
+        }
+
+        @Override
+        public int size() {
+            return 0;
+        }
+
+        @Override
+        public Iterator<Runnable> iterator() {
+            return Collections.<Runnable>emptyList().iterator();
+        }
+    }
+}
@@ -40,11 +40,10 @@
 
 package org.glassfish.grizzly.utils;
 
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Queue;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -128,42 +127,13 @@ public class DelayedExecutor {
 
     private class DelayedRunnable implements Runnable {
 
-        @SuppressWarnings("unchecked")
         @Override
         public void run() {
             while(isStarted) {
                 final long currentTimeMillis = System.currentTimeMillis();
                 
                 for (final DelayQueue delayQueue : queues) {
-                    if (delayQueue.queue.isEmpty()) continue;
-                    
-                    final Resolver resolver = delayQueue.resolver;
-
-                    for (Iterator it = delayQueue.queue.keySet().iterator(); it.hasNext(); ) {
-                        final Object element = it.next();
-                        final long timeoutMillis = resolver.getTimeoutMillis(element);
-                        
-                        if (timeoutMillis == UNSET_TIMEOUT) {
-                            it.remove();
-                            if (wasModified(timeoutMillis,
-                                    resolver.getTimeoutMillis(element))) {                                
-                                delayQueue.queue.put(element, delayQueue);
-                            }
-                        } else if (currentTimeMillis - timeoutMillis >= 0) {
-                            it.remove();
-                            if (wasModified(timeoutMillis,
-                                    resolver.getTimeoutMillis(element))) {
-                                delayQueue.queue.put(element, delayQueue);
-                            } else {
-                                try {
-                                    if (!delayQueue.worker.doWork(element)) {
-                                        delayQueue.queue.put(element, delayQueue);
-                                    }
-                                } catch (Exception ignored) {
-                                }
-                            }
-                        }
-                    }
+                    delayQueue.expire(currentTimeMillis);
                 }
 
                 synchronized(sync) {
@@ -178,15 +148,65 @@ public class DelayedExecutor {
         }
     }
 
+    /**
+     * The queue of elements, which have to be processed by the {@link Worker}
+     * once their timeout, returned by the {@link Resolver}, expires.
+     * 
+     * Internally elements are kept in a hashed timing wheel, whose bucket size
+     * matches the <tt>DelayedExecutor</tt> check interval, so each check
+     * touches only the elements, whose timeout might have expired, instead of
+     * all the registered elements. The {@link #add(java.lang.Object, long, java.util.concurrent.TimeUnit)},
+     * {@link #remove(java.lang.Object)} and {@link #update(java.lang.Object)}
+     * operations are O(1).
+     * 
+     * The elements, whose timeout is more than one wheel rotation ahead (like
+     * the ones registered with an infinite timeout), are kept in an overflow
+     * list, which is checked every time, so they are moved to the wheel once
+     * their timeout gets close.
+     * 
+     * If an element's timeout is changed directly via {@link Resolver} and the
+     * new timeout is later than the current one - the element will be
+     * rescheduled lazily, when the old timeout expires. If the new timeout is
+     * earlier - the element is processed on the first check after the new
+     * timeout, if the old one was in the overflow list, or no later than the
+     * old timeout otherwise. {@link #update(java.lang.Object)} lets the queue
+     * reschedule the element according to the new timeout right away.
+     * 
+     * @param <E> the element type
+     */
     public class DelayQueue<E> {
-        final ConcurrentMap<E, DelayQueue> queue = new ConcurrentHashMap<>();
-
+        private static final int WHEEL_SIZE = 512;
+        private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+        // the wheel's extra bucket, which holds the overflow list
+        private static final int OVERFLOW = WHEEL_SIZE;
+        
+        /**
+         * Elements added, removed or updated since the last check.
+         * The queue is drained by the DelayedExecutor thread.
+         */
+        final Queue<E> pending = new ConcurrentLinkedQueue<E>();
+        
         final Worker<E> worker;
         final Resolver<E> resolver;
 
+        // the fields below are accessed by the DelayedExecutor thread only
+        // (under the DelayQueue monitor)
+        private final long tickMillis = Math.max(1, checkIntervalMillis);
+        private final Slot<E>[] wheel;
+        private final Map<E, Slot<E>> slots = new HashMap<E, Slot<E>>();
+        private long lastTick;
+        // the last tick, which can be linked to the wheel buckets,
+        // the later ones go to the overflow list
+        private long horizonTick;
+
+        @SuppressWarnings("unchecked")
         public DelayQueue(final Worker<E> worker, final Resolver<E> resolver) {
             this.worker = worker;
             this.resolver = resolver;
+            
+            wheel = new Slot[WHEEL_SIZE + 1];
+            lastTick = System.currentTimeMillis() / tickMillis;
+            horizonTick = lastTick + WHEEL_MASK;
         }
 
         public void add(final E elem, final long delay, final TimeUnit timeUnit) {
@@ -194,17 +214,215 @@ public class DelayedExecutor {
                 final long delayWithSysTime =
                         System.currentTimeMillis() + TimeUnit.MILLISECONDS.convert(delay, timeUnit);
                 resolver.setTimeoutMillis(elem, ((delayWithSysTime < 0) ? Long.MAX_VALUE : delayWithSysTime));
-                queue.put(elem, this);
+                pending.offer(elem);
             }
         }
 
+        /**
+         * Notifies the queue, that the element's timeout has been changed
+         * directly via {@link Resolver}, so the element has to be rescheduled
+         * according to its new timeout.
+         * 
+         * @param elem the element, whose timeout has been changed
+         */
+        public void update(final E elem) {
+            pending.offer(elem);
+        }
+        
         public void remove(final E elem) {
             resolver.removeTimeout(elem);
+            pending.offer(elem);
         }
 
         public void destroy() {
             queues.remove(this);
         }
+        
+        synchronized void expire(final long currentTimeMillis) {
+            final long currentTick = currentTimeMillis / tickMillis;
+            horizonTick = Math.max(lastTick, currentTick) + WHEEL_MASK;
+            
+            drainPending(lastTick + 1);
+            
+            if (slots.isEmpty()) {
+                lastTick = Math.max(lastTick, currentTick);
+                return;
+            }
+            
+            checkOverflow(lastTick + 1);
+            
+            // if the check was delayed for more than a wheel rotation -
+            // each bucket has to be processed just once
+            long tick = Math.max(lastTick + 1, currentTick - WHEEL_MASK);
+            for (; tick <= currentTick; tick++) {
+                expireBucket((int) (tick & WHEEL_MASK), currentTimeMillis,
+                        currentTick + 1);
+            }
+            
+            lastTick = Math.max(lastTick, currentTick);
+        }
+
+        private void drainPending(final long minTick) {
+            E elem;
+            while ((elem = pending.poll()) != null) {
+                final long timeoutMillis = resolver.getTimeoutMillis(elem);
+                Slot<E> slot = slots.get(elem);
+                
+                if (slot == null) {
+                    if (timeoutMillis == UNSET_TIMEOUT) {
+                        continue;
+                    }
+                    
+                    slot = new Slot<E>(elem);
+                    slots.put(elem, slot);
+                } else {
+                    unlink(slot);
+                }
+                
+                // unset timeout means the element will be removed during
+                // the next check
+                link(slot, timeoutMillis == UNSET_TIMEOUT
+                        ? minTick
+                        : Math.max(minTick, toTick(timeoutMillis)));
+            }
+        }
+        
+        /**
+         * Moves the overflow list elements, whose timeout is within the wheel
+         * rotation now, to the wheel.
+         */
+        private void checkOverflow(final long minTick) {
+            Slot<E> slot = wheel[OVERFLOW];
+            
+            while (slot != null) {
+                final Slot<E> next = slot.next;
+                final long timeoutMillis = resolver.getTimeoutMillis(slot.element);
+                
+                if (timeoutMillis == UNSET_TIMEOUT) {
+                    unlink(slot);
+                    link(slot, minTick);
+                } else {
+                    final long tick = Math.max(minTick, toTick(timeoutMillis));
+                    if (tick <= horizonTick) {
+                        unlink(slot);
+                        link(slot, tick);
+                    }
+                }
+                
+                slot = next;
+            }
+        }
+        
+        private void expireBucket(final int bucket, final long currentTimeMillis,
+                final long minTick) {
+            Slot<E> slot = wheel[bucket];
+            
+            while (slot != null) {
+                final Slot<E> next = slot.next;
+                final E element = slot.element;
+                final long timeoutMillis = resolver.getTimeoutMillis(element);
+
+                if (timeoutMillis == UNSET_TIMEOUT) {
+                    unlink(slot);
+                    if (wasModified(timeoutMillis,
+                            resolver.getTimeoutMillis(element))) {
+                        link(slot, minTick);
+                    } else {
+                        slots.remove(element);
+                    }
+                } else if (currentTimeMillis - timeoutMillis >= 0) {
+                    unlink(slot);
+                    if (wasModified(timeoutMillis,
+                            resolver.getTimeoutMillis(element))) {
+                        link(slot, minTick);
+                    } else {
+                        boolean isDone = false;
+                        try {
+                            isDone = worker.doWork(element);
+                        } catch (Exception ignored) {
+                        }
+                        
+                        if (isDone) {
+                            slots.remove(element);
+                        } else {
+                            reschedule(slot, minTick);
+                        }
+                    }
+                } else {
+                    final long tick = toTick(timeoutMillis);
+                    if ((tick & WHEEL_MASK) != bucket) {
+                        // the timeout has been prolonged - move to the new bucket
+                        unlink(slot);
+                        link(slot, Math.max(minTick, tick));
+                    }
+                    // otherwise the timeout belongs to one of the next rotations
+                }
+                
+                slot = next;
+            }
+        }
+        
+        private void reschedule(final Slot<E> slot, final long minTick) {
+            final long timeoutMillis = resolver.getTimeoutMillis(slot.element);
+            link(slot, timeoutMillis == UNSET_TIMEOUT
+                    ? minTick
+                    : Math.max(minTick, toTick(timeoutMillis)));
+        }
+        
+        /**
+         * Returns the first tick, which starts at or after the given time.
+         */
+        private long toTick(final long timeMillis) {
+            final long tick = timeMillis / tickMillis;
+            return (timeMillis % tickMillis == 0) ? tick : tick + 1;
+        }
+        
+        private void link(final Slot<E> slot, final long tick) {
+            final int bucket = tick > horizonTick
+                    ? OVERFLOW
+                    : (int) (tick & WHEEL_MASK);
+            final Slot<E> head = wheel[bucket];
+            
+            slot.bucket = bucket;
+            slot.prev = null;
+            slot.next = head;
+            if (head != null) {
+                head.prev = slot;
+            }
+            
+            wheel[bucket] = slot;
+        }
+
+        private void unlink(final Slot<E> slot) {
+            final Slot<E> prev = slot.prev;
+            final Slot<E> next = slot.next;
+            
+            if (prev != null) {
+                prev.next = next;
+            } else {
+                wheel[slot.bucket] = next;
+            }
+            
+            if (next != null) {
+                next.prev = prev;
+            }
+            
+            slot.prev = slot.next = null;
+        }
+    }
+
+    /**
+     * The timing wheel bucket entry.
+     */
+    private static final class Slot<E> {
+        private final E element;
+        private int bucket;
+        private Slot<E> prev;
+        private Slot<E> next;
+
+        Slot(final E element) {
+            this.element = element;
+        }
     }
 
     public interface Worker<E> {
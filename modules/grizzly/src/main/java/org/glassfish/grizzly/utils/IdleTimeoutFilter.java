@@ -298,8 +298,13 @@ public class IdleTimeoutFilter extends BaseFilter {
                             System.currentTimeMillis() + timeout;
                 }
 
-                IdleRecord.timeoutMillisUpdater.compareAndSet(
-                        idleRecord, FOREVER_SPECIAL, timeoutToSet);
+                if (IdleRecord.timeoutMillisUpdater.compareAndSet(
+                        idleRecord, FOREVER_SPECIAL, timeoutToSet)
+                        && timeoutToSet != FOREVER) {
+                    // the timeout is shorter than the one the connection
+                    // has been scheduled with, so let the queue know
+                    queue.update(connection);
+                }
             }
         }
     } // END ContextCompletionListener
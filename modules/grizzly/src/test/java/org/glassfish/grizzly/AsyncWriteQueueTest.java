@@ -41,6 +41,10 @@
 package org.glassfish.grizzly;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.net.SocketAddress;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -49,12 +53,15 @@ import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.glassfish.grizzly.asyncqueue.AsyncQueueWriter;
+import org.glassfish.grizzly.asyncqueue.PendingWritesBudget;
 import org.glassfish.grizzly.asyncqueue.TaskQueue;
 import org.glassfish.grizzly.asyncqueue.WritableMessage;
 import org.glassfish.grizzly.filterchain.BaseFilter;
@@ -68,6 +75,7 @@ import org.glassfish.grizzly.impl.SafeFutureImpl;
 import org.glassfish.grizzly.memory.Buffers;
 import org.glassfish.grizzly.memory.MemoryManager;
 import org.glassfish.grizzly.nio.NIOConnection;
+import org.glassfish.grizzly.nio.transport.TCPNIOAsyncQueueWriter;
 import org.glassfish.grizzly.nio.transport.TCPNIOConnectorHandler;
 import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
 import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
@@ -578,6 +586,99 @@ public class AsyncWriteQueueTest {
         }
     }
     
+    @Test
+    public void testGatheringWrites() throws Exception {
+        Connection connection = null;
+
+        final int packetNumber = 1000;
+        final int maxGatheredRecords = 16;
+        
+        final AtomicInteger serverRcvdBytes = new AtomicInteger();
+        final FutureImpl<Integer> serverRcvdFuture = SafeFutureImpl.create();
+        
+        FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless();
+        filterChainBuilder.add(new TransportFilter());
+        filterChainBuilder.add(new BaseFilter() {
+
+            @Override
+            public NextAction handleRead(FilterChainContext ctx)
+                    throws IOException {
+                final int rcvd = serverRcvdBytes.addAndGet(
+                        ((Buffer) ctx.getMessage()).remaining());
+                if (rcvd == packetNumber * 4) {
+                    serverRcvdFuture.result(rcvd);
+                }
+                return ctx.getStopAction();
+            }
+        });
+
+        TCPNIOTransport transport = createTransport(isOptimizedForMultiplexing);
+        transport.setProcessor(filterChainBuilder.build());
+
+        try {
+            final TCPNIOAsyncQueueWriter asyncQueueWriter =
+                    (TCPNIOAsyncQueueWriter) transport.getAsyncQueueIO().getWriter();
+            asyncQueueWriter.setMaxPendingBytesPerConnection(-1);
+            // queue all the records, so they could be gathered
+            asyncQueueWriter.setAllowDirectWrite(false);
+            asyncQueueWriter.setMaxGatheredRecords(maxGatheredRecords);
+
+            transport.bind(PORT);
+            transport.start();
+
+            Future<Connection> future = transport.connect("localhost", PORT);
+            connection = future.get(10, TimeUnit.SECONDS);
+            assertTrue(connection != null);
+
+            final MemoryManager mm = transport.getMemoryManager();
+            final AtomicInteger completedCounter = new AtomicInteger();
+            final AtomicInteger outOfOrderCounter = new AtomicInteger();
+            final FutureImpl<Boolean> sentFuture = Futures.createSafeFuture();
+
+            for (int i = 0; i < packetNumber; i++) {
+                final int packetIdx = i;
+                final Buffer buffer = mm.allocate(4);
+                buffer.putInt(i);
+                buffer.flip();
+                
+                asyncQueueWriter.write(connection, buffer,
+                        new EmptyCompletionHandler<WriteResult<WritableMessage, SocketAddress>>() {
+                    @Override
+                    public void completed(WriteResult<WritableMessage, SocketAddress> result) {
+                        if (completedCounter.getAndIncrement() != packetIdx) {
+                            outOfOrderCounter.incrementAndGet();
+                        }
+                        
+                        if (packetIdx == packetNumber - 1) {
+                            sentFuture.result(true);
+                        }
+                    }
+
+                    @Override
+                    public void failed(Throwable throwable) {
+                        sentFuture.failure(throwable);
+                    }
+                });
+            }
+
+            assertTrue(sentFuture.get(10, TimeUnit.SECONDS));
+            assertEquals(packetNumber * 4,
+                    (int) serverRcvdFuture.get(10, TimeUnit.SECONDS));
+            assertEquals(packetNumber, completedCounter.get());
+            assertEquals(0, outOfOrderCounter.get());
+            
+            final double recordsPerWrite = asyncQueueWriter.getRecordsPerWrite();
+            assertTrue("recordsPerWrite=" + recordsPerWrite,
+                    recordsPerWrite > 1 && recordsPerWrite <= maxGatheredRecords);
+        } finally {
+            if (connection != null) {
+                connection.closeSilently();
+            }
+
+            transport.shutdownNow();
+        }
+    }
+    
     // ---------------------------------------------------------- Nested Classes
 
 
@@ -609,4 +710,218 @@ public class AsyncWriteQueueTest {
         }
 
     } // END WriteQueueFreeSpaceMonitor
+
+    @Test
+    public void testPendingWritesBudgetReject() throws Exception {
+        final int maxPendingBytes = 256 * 1024;
+        
+        final TCPNIOTransport transport = createTransport(isOptimizedForMultiplexing);
+        transport.setProcessor(FilterChainBuilder.stateless()
+                .add(new TransportFilter()).build());
+        transport.setWriteBufferSize(8192);
+        
+        final PendingWritesBudget budget =
+                ((TCPNIOAsyncQueueWriter) transport.getAsyncQueueIO().getWriter())
+                .getPendingWritesBudget();
+        budget.setMaxPendingBytes(maxPendingBytes);
+        budget.setOverflowPolicy(PendingWritesBudget.OverflowPolicy.REJECT);
+        
+        // the peer, which doesn't read
+        final ServerSocket serverSocket = new ServerSocket();
+        serverSocket.setReceiveBufferSize(8192);
+        serverSocket.bind(new InetSocketAddress("localhost", PORT));
+        
+        Connection connection = null;
+        Socket peer = null;
+        try {
+            transport.start();
+            connection = transport.connect("localhost", PORT).get(10, TimeUnit.SECONDS);
+            peer = serverSocket.accept();
+            
+            final AtomicReference<Throwable> rejected = new AtomicReference<Throwable>();
+            final MemoryManager mm = transport.getMemoryManager();
+            for (int i = 0; i < 1000 && rejected.get() == null; i++) {
+                connection.write(Buffers.wrap(mm, new byte[64 * 1024]),
+                        new EmptyCompletionHandler<WriteResult>() {
+                    @Override
+                    public void failed(final Throwable throwable) {
+                        rejected.set(throwable);
+                    }
+                });
+            }
+            
+            assertTrue("error=" + rejected.get(),
+                    rejected.get() instanceof PendingWriteQueueLimitExceededException);
+            assertTrue(connection.isOpen());
+            assertTrue(budget.getPendingBytes() > 0);
+            assertTrue(budget.getOverflowsCount() > 0);
+            
+            // the closed connection releases its budget
+            connection.closeSilently();
+            for (int i = 0; i < 100 && budget.getPendingBytes() > 0; i++) {
+                Thread.sleep(100);
+            }
+            assertEquals(0, budget.getPendingBytes());
+        } finally {
+            if (connection != null) {
+                connection.closeSilently();
+            }
+            if (peer != null) {
+                peer.close();
+            }
+            serverSocket.close();
+            transport.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testPendingWritesBudgetFirstWrite() throws Exception {
+        final int maxPendingBytes = 256 * 1024;
+        
+        final TCPNIOTransport transport = createTransport(isOptimizedForMultiplexing);
+        transport.setProcessor(FilterChainBuilder.stateless()
+                .add(new TransportFilter()).build());
+        transport.setWriteBufferSize(8192);
+        
+        final PendingWritesBudget budget =
+                ((TCPNIOAsyncQueueWriter) transport.getAsyncQueueIO().getWriter())
+                .getPendingWritesBudget();
+        budget.setMaxPendingBytes(maxPendingBytes);
+        budget.setOverflowPolicy(PendingWritesBudget.OverflowPolicy.REJECT);
+        
+        // the peer, which doesn't read
+        final ServerSocket serverSocket = new ServerSocket();
+        serverSocket.setReceiveBufferSize(8192);
+        serverSocket.bind(new InetSocketAddress("localhost", PORT));
+        
+        Connection connection = null;
+        Socket peer = null;
+        try {
+            transport.start();
+            connection = transport.connect("localhost", PORT).get(10, TimeUnit.SECONDS);
+            peer = serverSocket.accept();
+            
+            // the first write on the connection, which remainder exceeds
+            // the budget
+            final FutureImpl<WriteResult> future = Futures.createSafeFuture();
+            connection.write(Buffers.wrap(transport.getMemoryManager(),
+                    new byte[4 * maxPendingBytes]),
+                    Futures.toCompletionHandler(future));
+            
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                fail("The write remainder had to be rejected");
+            } catch (ExecutionException e) {
+                assertTrue("error=" + e.getCause(), e.getCause()
+                        instanceof PendingWriteQueueLimitExceededException);
+            }
+            
+            assertTrue(connection.isOpen());
+            assertEquals(0, budget.getPendingBytes());
+            assertEquals(1, budget.getOverflowsCount());
+        } finally {
+            if (connection != null) {
+                connection.closeSilently();
+            }
+            if (peer != null) {
+                peer.close();
+            }
+            serverSocket.close();
+            transport.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testPendingWritesBudgetSuspendReads() throws Exception {
+        final int maxPendingBytes = 256 * 1024;
+        final int packetsCount = 64;
+        final int packetSize = 64 * 1024;
+        
+        final TCPNIOTransport transport = createTransport(isOptimizedForMultiplexing);
+        transport.setProcessor(FilterChainBuilder.stateless()
+                .add(new TransportFilter()).build());
+        transport.setWriteBufferSize(8192);
+        
+        final PendingWritesBudget budget =
+                ((TCPNIOAsyncQueueWriter) transport.getAsyncQueueIO().getWriter())
+                .getPendingWritesBudget();
+        budget.setMaxPendingBytes(maxPendingBytes);
+        budget.setOverflowPolicy(PendingWritesBudget.OverflowPolicy.SUSPEND_READS);
+        
+        final AtomicInteger exceededEvents = new AtomicInteger();
+        final AtomicInteger restoredEvents = new AtomicInteger();
+        transport.getMonitoringConfig().addProbes(new TransportProbe.Adapter() {
+            @Override
+            public void onPendingWritesBudgetExceededEvent(Transport transport,
+                    long pendingBytes) {
+                exceededEvents.incrementAndGet();
+            }
+
+            @Override
+            public void onPendingWritesBudgetRestoredEvent(Transport transport,
+                    long pendingBytes) {
+                restoredEvents.incrementAndGet();
+            }
+        });
+        
+        final ServerSocket serverSocket = new ServerSocket();
+        serverSocket.setReceiveBufferSize(8192);
+        serverSocket.bind(new InetSocketAddress("localhost", PORT));
+        
+        Connection connection = null;
+        Socket peer = null;
+        try {
+            transport.start();
+            connection = transport.connect("localhost", PORT).get(10, TimeUnit.SECONDS);
+            peer = serverSocket.accept();
+            
+            final AtomicInteger failures = new AtomicInteger();
+            final MemoryManager mm = transport.getMemoryManager();
+            for (int i = 0; i < packetsCount; i++) {
+                connection.write(Buffers.wrap(mm, new byte[packetSize]),
+                        new EmptyCompletionHandler<WriteResult>() {
+                    @Override
+                    public void failed(final Throwable throwable) {
+                        failures.incrementAndGet();
+                    }
+                });
+            }
+            
+            // the writes are queued, but the connection stops reading
+            assertEquals(0, failures.get());
+            assertTrue("pendingBytes=" + budget.getPendingBytes()
+                    + " overflows=" + budget.getOverflowsCount(),
+                    ((NIOConnection) connection).isReadSuspended());
+            assertTrue(exceededEvents.get() > 0);
+            
+            // the peer reads the data, so reading gets resumed
+            final InputStream in = peer.getInputStream();
+            final byte[] readBuffer = new byte[packetSize];
+            int remaining = packetsCount * packetSize;
+            peer.setSoTimeout(10000);
+            while (remaining > 0) {
+                final int read = in.read(readBuffer);
+                assertTrue(read > 0);
+                remaining -= read;
+            }
+            
+            for (int i = 0; i < 100 && ((NIOConnection) connection).isReadSuspended(); i++) {
+                Thread.sleep(100);
+            }
+            assertFalse(((NIOConnection) connection).isReadSuspended());
+            assertEquals(0, budget.getPendingBytes());
+            // each exceeded event is followed by the restored one
+            assertEquals(exceededEvents.get(), restoredEvents.get());
+            assertTrue(connection.isOpen());
+        } finally {
+            if (connection != null) {
+                connection.closeSilently();
+            }
+            if (peer != null) {
+                peer.close();
+            }
+            serverSocket.close();
+            transport.shutdownNow();
+        }
+    }
 }
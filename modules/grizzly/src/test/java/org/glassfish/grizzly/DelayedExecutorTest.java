@@ -0,0 +1,234 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.glassfish.grizzly.utils.DelayedExecutor;
+
+/**
+ * Test {@link DelayedExecutor}
+ */
+public class DelayedExecutorTest extends GrizzlyTestCase {
+
+    private ExecutorService threadPool;
+    private DelayedExecutor delayedExecutor;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        threadPool = Executors.newSingleThreadExecutor();
+        delayedExecutor = new DelayedExecutor(threadPool, 10, TimeUnit.MILLISECONDS);
+        delayedExecutor.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delayedExecutor.destroy();
+        threadPool.shutdownNow();
+        super.tearDown();
+    }
+
+    public void testExpiration() throws Exception {
+        final int count = 100000;
+        final CountDownLatch latch = new CountDownLatch(count);
+        final DelayedExecutor.DelayQueue<Element> queue =
+                delayedExecutor.createDelayQueue(new LatchWorker(latch),
+                        new ElementResolver());
+
+        for (int i = 0; i < count; i++) {
+            queue.add(new Element(), i % 200, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+
+    public void testRemove() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final DelayedExecutor.DelayQueue<Element> queue =
+                delayedExecutor.createDelayQueue(new LatchWorker(latch),
+                        new ElementResolver());
+
+        final Element element = new Element();
+        queue.add(element, 100, TimeUnit.MILLISECONDS);
+        queue.remove(element);
+
+        assertFalse(latch.await(500, TimeUnit.MILLISECONDS));
+    }
+
+    public void testReschedule() throws Exception {
+        final ConcurrentHashMap<Element, Long> processed =
+                new ConcurrentHashMap<Element, Long>();
+        final CountDownLatch latch = new CountDownLatch(2);
+        final DelayedExecutor.DelayQueue<Element> queue =
+                delayedExecutor.createDelayQueue(
+                new DelayedExecutor.Worker<Element>() {
+                    @Override
+                    public boolean doWork(final Element element) {
+                        processed.put(element, System.currentTimeMillis());
+                        latch.countDown();
+                        return true;
+                    }
+                }, new ElementResolver());
+
+        final Element prolonged = new Element();
+        final Element shortened = new Element();
+
+        final long startTime = System.currentTimeMillis();
+        queue.add(prolonged, 100, TimeUnit.MILLISECONDS);
+        queue.add(shortened, 1, TimeUnit.DAYS);
+
+        // prolong the timeout silently, the queue has to reschedule the element lazily
+        prolonged.timeoutMillis = startTime + 500;
+        // shorten the timeout and notify the queue
+        shortened.timeoutMillis = startTime + 200;
+        queue.update(shortened);
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertTrue(processed.get(prolonged) - startTime >= 500);
+        assertTrue(processed.get(shortened) - startTime >= 200);
+    }
+
+    public void testShortenInfiniteTimeoutWithoutUpdate() throws Exception {
+        final AtomicInteger counter = new AtomicInteger();
+        final DelayedExecutor.DelayQueue<Element> queue =
+                delayedExecutor.createDelayQueue(
+                new DelayedExecutor.Worker<Element>() {
+                    @Override
+                    public boolean doWork(final Element element) {
+                        counter.incrementAndGet();
+                        // wait for the next transaction, like the thread
+                        // pool workers do
+                        element.timeoutMillis = Long.MAX_VALUE;
+                        return false;
+                    }
+                }, new ElementResolver());
+
+        final Element element = new Element();
+        queue.add(element, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+        // the wheel rotation is 512 * 10ms, the shortened timeouts have to
+        // expire way before the rotation completes
+        for (int i = 1; i <= 3; i++) {
+            Thread.sleep(50);
+            final long startTime = System.currentTimeMillis();
+            element.timeoutMillis = startTime + 50;
+            
+            while (counter.get() < i
+                    && System.currentTimeMillis() - startTime < 2000) {
+                Thread.sleep(5);
+            }
+            assertEquals(i, counter.get());
+        }
+    }
+
+    public void testWorkerReschedule() throws Exception {
+        final AtomicInteger counter = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final DelayedExecutor.DelayQueue<Element> queue =
+                delayedExecutor.createDelayQueue(
+                new DelayedExecutor.Worker<Element>() {
+                    @Override
+                    public boolean doWork(final Element element) {
+                        if (counter.incrementAndGet() < 3) {
+                            element.timeoutMillis = System.currentTimeMillis() + 20;
+                            return false;
+                        }
+
+                        latch.countDown();
+                        return true;
+                    }
+                }, new ElementResolver());
+
+        queue.add(new Element(), 20, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(3, counter.get());
+    }
+
+    private static final class Element {
+        private volatile long timeoutMillis = DelayedExecutor.UNSET_TIMEOUT;
+    }
+
+    private static final class LatchWorker
+            implements DelayedExecutor.Worker<Element> {
+        private final CountDownLatch latch;
+
+        LatchWorker(final CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public boolean doWork(final Element element) {
+            latch.countDown();
+            return true;
+        }
+    }
+
+    private static final class ElementResolver
+            implements DelayedExecutor.Resolver<Element> {
+
+        @Override
+        public boolean removeTimeout(final Element element) {
+            if (element.timeoutMillis != DelayedExecutor.UNSET_TIMEOUT) {
+                element.timeoutMillis = DelayedExecutor.UNSET_TIMEOUT;
+                return true;
+            }
+
+            return false;
+        }
+
+        @Override
+        public long getTimeoutMillis(final Element element) {
+            return element.timeoutMillis;
+        }
+
+        @Override
+        public void setTimeoutMillis(final Element element,
+                final long timeoutMillis) {
+            element.timeoutMillis = timeoutMillis;
+        }
+    }
+}
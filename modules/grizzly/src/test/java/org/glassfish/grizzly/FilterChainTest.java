@@ -55,6 +55,7 @@ import org.glassfish.grizzly.asyncqueue.MessageCloner;
 import org.glassfish.grizzly.attributes.Attribute;
 import org.glassfish.grizzly.attributes.AttributeBuilder;
 import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.DefaultFilterChain;
 import org.glassfish.grizzly.filterchain.FilterChain;
 import org.glassfish.grizzly.filterchain.FilterChainBuilder;
 import org.glassfish.grizzly.filterchain.FilterChainContext;
@@ -262,6 +263,50 @@ public class FilterChainTest extends TestCase {
         resultFuture.get(10, TimeUnit.SECONDS);
     }
 
+    public void testFrozenChainEvents() throws Exception {
+        final Connection connection =
+                new TCPNIOConnection(TCPNIOTransportBuilder.newInstance().build(), null);
+
+        counterAttr.set(connection, new AtomicInteger(0));
+
+        final FilterChain chain = FilterChainBuilder.stateless()
+                .add(new BaseFilter())
+                .add(new EventCounterFilter(0))
+                .add(new EchoFilter())
+                .add(new EventCounterFilter(1))
+                .add(new BaseFilter())
+                .add(new BaseFilter())
+                .add(new EventCounterFilter(2))
+                .add(new BaseFilter())
+                .setFrozen(true)
+                .build();
+
+        assertTrue(((DefaultFilterChain) chain).isFrozen());
+        
+        try {
+            chain.add(new BaseFilter());
+            fail("Frozen FilterChain has been modified");
+        } catch (IllegalStateException expected) {
+        }
+        
+        assertEquals(8, chain.size());
+        
+        final FutureImpl<FilterChainContext> upstreamFuture =
+                Futures.createSafeFuture();
+        chain.fireEventUpstream(connection, INC_EVENT,
+                Futures.toCompletionHandler(upstreamFuture));
+        upstreamFuture.get(10, TimeUnit.SECONDS);
+        assertEquals(3, counterAttr.get(connection).get());
+
+        final FutureImpl<FilterChainContext> downstreamFuture =
+                Futures.createSafeFuture();
+        counterAttr.get(connection).set(2);
+        chain.fireEventDownstream(connection, DEC_EVENT,
+                Futures.toCompletionHandler(downstreamFuture));
+        downstreamFuture.get(10, TimeUnit.SECONDS);
+        assertEquals(-1, counterAttr.get(connection).get());
+    }
+
     public void testFlush() throws Exception {
         final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance().build();
         final MemoryManager mm = transport.getMemoryManager();
@@ -0,0 +1,281 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly;
+
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeUnit;
+import org.glassfish.grizzly.attributes.Attribute;
+import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.nio.AbstractNIOConnectionDistributor;
+import org.glassfish.grizzly.nio.LeastLoadedConnectionDistributor;
+import org.glassfish.grizzly.nio.LeastLoadedConnectionDistributor.LoadMetric;
+import org.glassfish.grizzly.nio.NIOTransport;
+import org.glassfish.grizzly.nio.RegisterChannelResult;
+import org.glassfish.grizzly.nio.SelectorRunner;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.glassfish.grizzly.utils.EchoFilter;
+import org.glassfish.grizzly.utils.StringFilter;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link LeastLoadedConnectionDistributor} tests.
+ */
+public class LeastLoadedConnectionDistributorTest {
+    private static final int PORT = 7782;
+    private static final int SELECTOR_RUNNERS_COUNT = 4;
+    private static final int CONNECTIONS_COUNT = 40;
+
+    private static final Attribute<BlockingQueue<String>> RESPONSES =
+            Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute("responses");
+
+    @Test
+    public void testRegisteredKeysDistribution() throws Exception {
+        final TCPNIOTransport server = createServer();
+        server.setNIOChannelDistributor(new LeastLoadedConnectionDistributor(
+                server, true, LoadMetric.REGISTERED_KEYS));
+        final TCPNIOTransport client = createClient();
+        try {
+            server.bind(PORT);
+            server.start();
+            client.start();
+
+            final List<Connection> connections = connect(client);
+            assertEchoes(connections);
+
+            final int[] counts = ((LeastLoadedConnectionDistributor)
+                    server.getNIOChannelDistributor()).getRegisteredKeysCounts();
+            assertEquals(SELECTOR_RUNNERS_COUNT, counts.length);
+            // the dedicated acceptor gets the server connection only
+            assertEquals(1, counts[0]);
+            assertBalanced(Arrays.copyOfRange(counts, 1, counts.length), 1);
+        } finally {
+            client.shutdownNow();
+            server.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBusyTimeDistribution() throws Exception {
+        final TCPNIOTransport server = createServer();
+        server.setNIOChannelDistributor(new LeastLoadedConnectionDistributor(
+                server, false, LoadMetric.BUSY_TIME));
+        final TCPNIOTransport client = createClient();
+        try {
+            server.bind(PORT);
+            server.start();
+            client.start();
+
+            final List<Connection> connections = connect(client);
+            assertEchoes(connections);
+
+            final LeastLoadedConnectionDistributor distributor =
+                    (LeastLoadedConnectionDistributor) server.getNIOChannelDistributor();
+            final float[] busyRatios = distributor.getBusyRatios();
+            assertEquals(SELECTOR_RUNNERS_COUNT, busyRatios.length);
+            for (float ratio : busyRatios) {
+                assertTrue(ratio >= 0 && ratio <= 1);
+            }
+
+            int total = 0;
+            for (int count : distributor.getRegisteredKeysCounts()) {
+                total += count;
+            }
+            // accepted connections + server connection
+            assertEquals(CONNECTIONS_COUNT + 1, total);
+        } finally {
+            client.shutdownNow();
+            server.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testIdleConnectionsMigration() throws Exception {
+        final TCPNIOTransport server = createServer();
+        // register all the accepted connections with the last runner
+        server.setNIOChannelDistributor(new SingleRunnerDistributor(server));
+        final TCPNIOTransport client = createClient();
+        try {
+            server.bind(PORT);
+            server.start();
+            client.start();
+
+            final List<Connection> connections = connect(client);
+            assertEchoes(connections);
+
+            final LeastLoadedConnectionDistributor distributor =
+                    new LeastLoadedConnectionDistributor(server);
+            server.setNIOChannelDistributor(distributor);
+            assertEquals(CONNECTIONS_COUNT,
+                    distributor.getRegisteredKeysCounts()[SELECTOR_RUNNERS_COUNT - 1]);
+
+            for (int i = 0; i < 100 && !isBalanced(distributor.getRegisteredKeysCounts(), 4); i++) {
+                distributor.rebalance();
+                Thread.sleep(50);
+            }
+            assertBalanced(distributor.getRegisteredKeysCounts(), 4);
+            assertTrue(distributor.getMigratedConnectionsCount() > 0);
+
+            // the moved connections have to keep working
+            assertEchoes(connections);
+        } finally {
+            client.shutdownNow();
+            server.shutdownNow();
+        }
+    }
+
+    private static TCPNIOTransport createServer() {
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance()
+                .setSelectorRunnersCount(SELECTOR_RUNNERS_COUNT)
+                .build();
+        transport.setProcessor(FilterChainBuilder.stateless()
+                .add(new TransportFilter())
+                .add(new StringFilter())
+                .add(new EchoFilter())
+                .build());
+        return transport;
+    }
+
+    private static TCPNIOTransport createClient() {
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance().build();
+        transport.setProcessor(FilterChainBuilder.stateless()
+                .add(new TransportFilter())
+                .add(new StringFilter())
+                .add(new BaseFilter() {
+                    @Override
+                    public NextAction handleRead(final FilterChainContext ctx)
+                            throws IOException {
+                        RESPONSES.get(ctx.getConnection()).offer(
+                                (String) ctx.getMessage());
+                        return ctx.getStopAction();
+                    }
+                })
+                .build());
+        return transport;
+    }
+
+    private static List<Connection> connect(final TCPNIOTransport client)
+            throws Exception {
+        final List<Connection> connections = new ArrayList<Connection>();
+        for (int i = 0; i < CONNECTIONS_COUNT; i++) {
+            final Connection connection = client.connect("localhost", PORT)
+                    .get(10, TimeUnit.SECONDS);
+            RESPONSES.set(connection, new LinkedTransferQueue<String>());
+            connections.add(connection);
+        }
+        return connections;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void assertEchoes(final List<Connection> connections)
+            throws Exception {
+        for (int i = 0; i < connections.size(); i++) {
+            final Connection connection = connections.get(i);
+            connection.write("ping-" + i);
+            assertEquals("ping-" + i,
+                    RESPONSES.get(connection).poll(10, TimeUnit.SECONDS));
+        }
+    }
+
+    private static boolean isBalanced(final int[] counts, final int delta) {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int count : counts) {
+            min = Math.min(min, count);
+            max = Math.max(max, count);
+        }
+        return max - min <= delta;
+    }
+
+    private static void assertBalanced(final int[] counts, final int delta) {
+        assertTrue(Arrays.toString(counts), isBalanced(counts, delta));
+    }
+
+    private static final class SingleRunnerDistributor
+            extends AbstractNIOConnectionDistributor {
+
+        private SingleRunnerDistributor(final NIOTransport transport) {
+            super(transport);
+        }
+
+        @Override
+        public void registerChannel(final SelectableChannel channel,
+                final int interestOps, final Object attachment) throws IOException {
+            transport.getSelectorHandler().registerChannel(lastRunner(),
+                    channel, interestOps, attachment);
+        }
+
+        @Override
+        public void registerChannelAsync(final SelectableChannel channel,
+                final int interestOps, final Object attachment,
+                final CompletionHandler<RegisterChannelResult> completionHandler) {
+            transport.getSelectorHandler().registerChannelAsync(lastRunner(),
+                    channel, interestOps, attachment, completionHandler);
+        }
+
+        @Override
+        public void registerServiceChannelAsync(final SelectableChannel channel,
+                final int interestOps, final Object attachment,
+                final CompletionHandler<RegisterChannelResult> completionHandler) {
+            transport.getSelectorHandler().registerChannelAsync(
+                    getTransportSelectorRunners()[0], channel, interestOps,
+                    attachment, completionHandler);
+        }
+
+        private SelectorRunner lastRunner() {
+            final SelectorRunner[] runners =
+                    getTransportSelectorRunners();
+            return runners[runners.length - 1];
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly;
+
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.glassfish.grizzly.nio.SelectorTaskQueue;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link SelectorTaskQueue} tests.
+ */
+public class SelectorTaskQueueTest {
+
+    @Test
+    public void testFifo() {
+        final SelectorTaskQueue<Integer> queue = new SelectorTaskQueue<Integer>();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        
+        // cross a few segments
+        final int count = 1000;
+        for (int i = 0; i < count; i++) {
+            queue.offer(i);
+        }
+        
+        assertEquals(count, queue.size());
+        assertEquals(Integer.valueOf(0), queue.peek());
+        
+        for (int i = 0; i < count; i++) {
+            assertEquals(Integer.valueOf(i), queue.poll());
+        }
+        
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        assertNull(queue.peek());
+    }
+
+    @Test
+    public void testRemove() {
+        final SelectorTaskQueue<String> queue = new SelectorTaskQueue<String>();
+        queue.offer("a");
+        queue.offer("b");
+        queue.offer("c");
+        queue.offer("d");
+        
+        assertTrue(queue.remove("b"));
+        assertFalse(queue.remove("b"));
+        
+        final Iterator<String> it = queue.iterator();
+        assertEquals("a", it.next());
+        assertEquals("c", it.next());
+        it.remove();
+        assertEquals("d", it.next());
+        assertFalse(it.hasNext());
+        
+        assertEquals("a", queue.poll());
+        // consumed elements can't be removed
+        assertFalse(queue.remove("a"));
+        assertEquals("d", queue.peek());
+        assertEquals("d", queue.poll());
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testMultipleProducers() throws Exception {
+        final int producersCount = 8;
+        final int elementsPerProducer = 100000;
+        
+        final SelectorTaskQueue<long[]> queue = new SelectorTaskQueue<long[]>();
+        final ExecutorService executor = Executors.newFixedThreadPool(producersCount);
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        
+        try {
+            for (int i = 0; i < producersCount; i++) {
+                final int producer = i;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            startLatch.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        
+                        for (int j = 0; j < elementsPerProducer; j++) {
+                            queue.offer(new long[] {producer, j});
+                        }
+                    }
+                });
+            }
+            
+            startLatch.countDown();
+            
+            // the elements of each producer have to be consumed in order
+            final int[] expected = new int[producersCount];
+            int consumed = 0;
+            final long deadline = System.currentTimeMillis() + 30000;
+            while (consumed < producersCount * elementsPerProducer) {
+                final long[] e = queue.poll();
+                if (e == null) {
+                    assertTrue("Timeout. consumed=" + consumed,
+                            System.currentTimeMillis() < deadline);
+                    Thread.yield();
+                    continue;
+                }
+                
+                assertEquals(expected[(int) e[0]]++, e[1]);
+                consumed++;
+            }
+            
+            assertNull(queue.poll());
+            for (int i = 0; i < producersCount; i++) {
+                assertEquals(elementsPerProducer, expected[i]);
+            }
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -45,7 +45,11 @@ import java.lang.reflect.Field;
 import java.net.InetSocketAddress;
 import java.nio.channels.SelectableChannel;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
@@ -65,6 +69,7 @@ import org.glassfish.grizzly.filterchain.TransportFilter;
 import org.glassfish.grizzly.impl.FutureImpl;
 import org.glassfish.grizzly.impl.SafeFutureImpl;
 import org.glassfish.grizzly.memory.ByteBufferWrapper;
+import org.glassfish.grizzly.memory.PooledMemoryManager;
 import org.glassfish.grizzly.nio.AbstractNIOConnectionDistributor;
 import org.glassfish.grizzly.nio.NIOConnection;
 import org.glassfish.grizzly.nio.NIOTransport;
@@ -90,6 +95,7 @@ import org.junit.Test;
 import static junit.framework.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 
@@ -198,6 +204,224 @@ public class TCPNIOTransportTest {
         }
     }
 
+    @Test
+    public void testReusePortBind() throws Exception {
+        final boolean isSupported = TCPNIOTransport.isReusePortSupported();
+        final int acceptorsCount = 4;
+        final AtomicInteger bindCounter = new AtomicInteger();
+        final Set<Connection> acceptors =
+                Collections.newSetFromMap(new ConcurrentHashMap<Connection, Boolean>());
+        final Map<Connection, Connection> acceptedBy =
+                new ConcurrentHashMap<Connection, Connection>();
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance()
+                .setSelectorRunnersCount(acceptorsCount)
+                .setReusePort(true)
+                .build();
+        transport.getConnectionMonitoringConfig().addProbes(new ConnectionProbe.Adapter() {
+            @Override
+            public void onBindEvent(Connection connection) {
+                bindCounter.incrementAndGet();
+            }
+
+            @Override
+            public void onAcceptEvent(Connection serverConnection,
+                    Connection clientConnection) {
+                acceptors.add(serverConnection);
+                acceptedBy.put(clientConnection, serverConnection);
+            }
+        });
+
+        try {
+            transport.start();
+            final Connection serverConnection = transport.bind(PORT);
+            assertEquals(isSupported ? acceptorsCount : 1, bindCounter.get());
+
+            for (int i = 0; i < 64; i++) {
+                final Connection connection = transport.connect("localhost", PORT)
+                        .get(10, TimeUnit.SECONDS);
+                connection.closeSilently();
+            }
+
+            if (isSupported) {
+                // the kernel spreads the connections between the acceptors
+                assertTrue(acceptors.size() > 1);
+
+                // the accepted connections stay on their acceptor's SelectorRunner
+                for (Map.Entry<Connection, Connection> entry : acceptedBy.entrySet()) {
+                    final NIOConnection accepted = (NIOConnection) entry.getKey();
+                    final long deadline = System.currentTimeMillis() + 10000;
+                    while (accepted.getSelectorRunner() == null
+                            && System.currentTimeMillis() < deadline) {
+                        Thread.sleep(5);
+                    }
+                    assertSame(((NIOConnection) entry.getValue()).getSelectorRunner(),
+                            accepted.getSelectorRunner());
+                }
+            }
+
+            transport.unbind(serverConnection);
+            try {
+                transport.connect("localhost", PORT).get(10, TimeUnit.SECONDS);
+                fail("Server connections should be closed!");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        } finally {
+            transport.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAdaptiveReadBufferSize() throws Exception {
+        final int readBufferSize = 128 * 1024;
+        
+        // small requests are read into small buffers, bulk data - into large ones
+        final int[] adaptive = readBufferCapacities(true, readBufferSize);
+        assertTrue("small read buffer capacity=" + adaptive[0],
+                adaptive[0] <= 4096);
+        assertTrue("bulk read buffer capacity=" + adaptive[1],
+                adaptive[1] > 4096);
+        
+        // w/o adaptive sizing even small requests get large buffers
+        final int[] fixed = readBufferCapacities(false, readBufferSize);
+        assertTrue("small read buffer capacity=" + fixed[0],
+                fixed[0] > 4096);
+    }
+
+    /**
+     * @return the max buffer capacity observed by the server for small
+     * requests and for a bulk transfer
+     */
+    private static int[] readBufferCapacities(final boolean isAdaptive,
+            final int readBufferSize) throws Exception {
+        final BlockingQueue<Integer> capacities = new LinkedTransferQueue<>();
+        final AtomicInteger bytesRead = new AtomicInteger();
+        
+        final FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless();
+        filterChainBuilder.add(new TransportFilter());
+        filterChainBuilder.add(new BaseFilter() {
+            @Override
+            public NextAction handleRead(final FilterChainContext ctx)
+                    throws IOException {
+                final Buffer buffer = ctx.getMessage();
+                bytesRead.addAndGet(buffer.remaining());
+                capacities.offer(buffer.capacity());
+                return ctx.getStopAction();
+            }
+        });
+        
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance()
+                .setMemoryManager(new PooledMemoryManager(true))
+                .setReadBufferSize(readBufferSize)
+                .setAdaptiveReadBufferSize(isAdaptive)
+                .build();
+        transport.setProcessor(filterChainBuilder.build());
+        
+        final java.net.Socket socket = new java.net.Socket();
+        try {
+            transport.bind(PORT);
+            transport.start();
+            
+            socket.connect(new InetSocketAddress("localhost", PORT));
+            final java.io.OutputStream out = socket.getOutputStream();
+            
+            int expected = 0;
+            int maxSmallCapacity = 0;
+            for (int i = 0; i < 10; i++) {
+                out.write(new byte[100]);
+                out.flush();
+                expected += 100;
+                while (bytesRead.get() < expected) {
+                    final Integer capacity = capacities.poll(10, TimeUnit.SECONDS);
+                    assertNotNull("Read timeout", capacity);
+                    maxSmallCapacity = Math.max(maxSmallCapacity, capacity);
+                }
+            }
+            
+            final byte[] bulk = new byte[4 * 1024 * 1024];
+            out.write(bulk);
+            out.flush();
+            expected += bulk.length;
+            int maxBulkCapacity = 0;
+            while (bytesRead.get() < expected || !capacities.isEmpty()) {
+                final Integer capacity = capacities.poll(10, TimeUnit.SECONDS);
+                assertNotNull("Read timeout", capacity);
+                maxBulkCapacity = Math.max(maxBulkCapacity, capacity);
+            }
+            
+            assertEquals(expected, bytesRead.get());
+            return new int[] {maxSmallCapacity, maxBulkCapacity};
+        } finally {
+            socket.close();
+            transport.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSelectorBusyPoll() throws Exception {
+        final BlockingQueue<SelectorRunner> runners = new LinkedTransferQueue<>();
+        
+        final FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless();
+        filterChainBuilder.add(new TransportFilter());
+        filterChainBuilder.add(new BaseFilter() {
+            @Override
+            public NextAction handleAccept(final FilterChainContext ctx)
+                    throws IOException {
+                runners.offer(((NIOConnection) ctx.getConnection()).getSelectorRunner());
+                return ctx.getInvokeAction();
+            }
+        });
+        filterChainBuilder.add(new EchoFilter());
+        
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance()
+                .setSelectorBusyPollTime(500, TimeUnit.MILLISECONDS)
+                .setIOStrategy(SameThreadIOStrategy.getInstance())
+                .build();
+        transport.setProcessor(filterChainBuilder.build());
+        assertEquals(500, transport.getSelectorBusyPollTime(TimeUnit.MILLISECONDS));
+        
+        final java.net.Socket socket = new java.net.Socket();
+        try {
+            transport.bind(PORT);
+            transport.start();
+            
+            socket.connect(new InetSocketAddress("localhost", PORT));
+            socket.setSoTimeout(10000);
+            final SelectorRunner runner = runners.poll(10, TimeUnit.SECONDS);
+            assertNotNull("Accept timeout", runner);
+            final java.nio.channels.Selector selector = runner.getSelector();
+            
+            final java.io.OutputStream out = socket.getOutputStream();
+            final java.io.InputStream in = socket.getInputStream();
+            for (int i = 0; i < 20; i++) {
+                out.write(i);
+                out.flush();
+                assertEquals(i, in.read());
+            }
+            
+            // the requests arrived while the runner was spinning
+            final long hits = runner.getBusyPollHitsCount();
+            assertTrue("hits=" + hits, hits > 0);
+            long histogramHits = 0;
+            for (long bucketHits : runner.getBusyPollHitLatencies()) {
+                histogramHits += bucketHits;
+            }
+            assertEquals(hits, histogramHits);
+            
+            // the runner parks, once the busy poll time is out
+            Thread.sleep(1000);
+            assertTrue(runner.getBusyPollParksCount() > 0);
+            
+            // empty selectNow() calls are not considered as a selector spin
+            assertTrue(selector == runner.getSelector());
+        } finally {
+            socket.close();
+            final long stopStart = System.currentTimeMillis();
+            transport.shutdownNow();
+            assertTrue(System.currentTimeMillis() - stopStart < 5000);
+        }
+    }
+
     @Test
     public void testClose() throws Exception {
         final BlockingQueue<Connection> acceptedQueue = new LinkedTransferQueue<>();
@@ -42,19 +42,31 @@ package org.glassfish.grizzly;
 
 import org.glassfish.grizzly.threadpool.AbstractThreadPool;
 import org.glassfish.grizzly.threadpool.FixedThreadPool;
+import org.glassfish.grizzly.threadpool.GrizzlyExecutorService;
+import org.glassfish.grizzly.threadpool.PartitionedThreadPool;
 import org.glassfish.grizzly.threadpool.SyncThreadPool;
 import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+import org.glassfish.grizzly.threadpool.Threads;
 import org.junit.Test;
 
 import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.TransportFilter;
 import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
 import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
 import org.glassfish.grizzly.strategies.SameThreadIOStrategy;
 import org.glassfish.grizzly.strategies.WorkerThreadIOStrategy;
+import org.glassfish.grizzly.utils.EchoFilter;
 
 public class ThreadPoolsTest {
 
@@ -121,4 +133,182 @@ public class ThreadPoolsTest {
             tcpTransport.shutdownNow();
         }
     }    
+
+    @Test
+    public void testPartitionedThreadPoolAffinity() throws Exception {
+        final ThreadPoolConfig config = ThreadPoolConfig.defaultConfig()
+                .setCorePoolSize(4).setMaxPoolSize(4).setPartitioned(true);
+        final PartitionedThreadPool pool = new PartitionedThreadPool(config);
+        try {
+            assertEquals(4, pool.getPartitionsCount());
+            
+            final Map<Thread, Integer> threads = new java.util.HashMap<Thread, Integer>();
+            for (int i = 0; i < 50; i++) {
+                final CountDownLatch latch = new CountDownLatch(1);
+                final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+                pool.execute(7, new Runnable() {
+                    @Override
+                    public void run() {
+                        thread.set(Thread.currentThread());
+                        latch.countDown();
+                    }
+                });
+                
+                assertTrue(latch.await(10, TimeUnit.SECONDS));
+                final Integer count = threads.get(thread.get());
+                threads.put(thread.get(), count == null ? 1 : count + 1);
+            }
+            
+            // the partition tasks mostly stick to the same worker
+            int maxCount = 0;
+            for (Integer count : threads.values()) {
+                maxCount = Math.max(maxCount, count);
+            }
+            assertTrue("threads=" + threads.values(), maxCount >= 40);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testPartitionedThreadPoolWorkStealing() throws Exception {
+        final ThreadPoolConfig config = ThreadPoolConfig.defaultConfig()
+                .setCorePoolSize(2).setMaxPoolSize(2).setPartitioned(true);
+        final PartitionedThreadPool pool = new PartitionedThreadPool(config);
+        try {
+            final CountDownLatch blockLatch = new CountDownLatch(1);
+            final CountDownLatch stolenLatch = new CountDownLatch(1);
+            
+            pool.execute(0, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        blockLatch.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            });
+            
+            // the partition's worker is blocked, so the task has to be stolen
+            pool.execute(0, new Runnable() {
+                @Override
+                public void run() {
+                    stolenLatch.countDown();
+                }
+            });
+            
+            assertTrue(stolenLatch.await(10, TimeUnit.SECONDS));
+            assertEquals(1, pool.getStolenTasksCount());
+            blockLatch.countDown();
+        } finally {
+            pool.shutdown();
+        }
+        
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testPartitionedThreadPoolShutdownNow() throws Exception {
+        final ThreadPoolConfig config = ThreadPoolConfig.defaultConfig()
+                .setCorePoolSize(1).setMaxPoolSize(1).setPartitioned(true);
+        final GrizzlyExecutorService executor =
+                GrizzlyExecutorService.createInstance(config);
+        
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch blockLatch = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                startLatch.countDown();
+                try {
+                    blockLatch.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        
+        assertTrue(startLatch.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) {
+            executor.execute(i, new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+        }
+        
+        final List<Runnable> notExecuted = executor.shutdownNow();
+        assertEquals(5, notExecuted.size());
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testPartitionedThreadPoolWorkerThreadStrategy() throws Exception {
+        final ThreadPoolConfig workerPoolCfg = ThreadPoolConfig.defaultConfig()
+                .setCorePoolSize(4).setMaxPoolSize(4).setPartitioned(true);
+        
+        final FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless();
+        filterChainBuilder.add(new TransportFilter());
+        filterChainBuilder.add(new EchoFilter());
+
+        final TCPNIOTransport tcpTransport = TCPNIOTransportBuilder.newInstance()
+                .setReuseAddress(true)
+                .setIOStrategy(WorkerThreadIOStrategy.getInstance())
+                .setWorkerThreadPoolConfig(workerPoolCfg)
+                .setProcessor(filterChainBuilder.build())
+                .build();
+        
+        final java.net.Socket socket = new java.net.Socket();
+        try {
+            tcpTransport.bind(7777);
+            tcpTransport.start();
+            
+            socket.connect(new InetSocketAddress("localhost", 7777));
+            socket.setSoTimeout(10000);
+            for (int i = 0; i < 20; i++) {
+                socket.getOutputStream().write(i);
+                assertEquals(i, socket.getInputStream().read());
+            }
+        } finally {
+            socket.close();
+            tcpTransport.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        final int tasksCount = Threads.isVirtualThreadSupported() ? 1000 : 2;
+        final ThreadPoolConfig config = ThreadPoolConfig.defaultConfig()
+                .setCorePoolSize(2).setMaxPoolSize(2).setVirtualThreads(true);
+        final GrizzlyExecutorService executor =
+                GrizzlyExecutorService.createInstance(config);
+        
+        final CountDownLatch startedLatch = new CountDownLatch(tasksCount);
+        final CountDownLatch blockLatch = new CountDownLatch(1);
+        final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+        try {
+            // with virtual threads blocked tasks don't occupy pool threads
+            for (int i = 0; i < tasksCount; i++) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        thread.set(Thread.currentThread());
+                        startedLatch.countDown();
+                        try {
+                            blockLatch.await(10, TimeUnit.SECONDS);
+                        } catch (InterruptedException ignored) {
+                        }
+                    }
+                });
+            }
+            
+            assertTrue(startedLatch.await(10, TimeUnit.SECONDS));
+            assertEquals(Threads.isVirtualThreadSupported(),
+                    Threads.isVirtual(thread.get()));
+            blockLatch.countDown();
+        } finally {
+            executor.shutdown();
+        }
+        
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
 }
@@ -50,6 +50,8 @@ import java.nio.ByteOrder;
 import java.nio.InvalidMarkException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -241,6 +243,41 @@ public class BuffersBufferTest extends AbstractMemoryManagerTest {
         assertEquals("Hello world!", new String(bytes));
     }
 
+    @Test
+    public void testRetainRelease() throws Exception {
+        final BuffersBuffer b = createOneSevenBuffer(mm);
+        b.allowBufferDispose(true);
+        assertEquals(1, b.refCount());
+        
+        assertSame(b, b.retain());
+        assertSame(b, b.retain());
+        assertEquals(3, b.refCount());
+        
+        // the buffer, which is not allowed to be disposed, keeps its references
+        b.allowBufferDispose(false);
+        b.allowInternalBuffersDispose(false);
+        assertFalse(b.tryDispose());
+        assertEquals(3, b.refCount());
+        b.allowBufferDispose(true);
+        b.allowInternalBuffersDispose(true);
+        
+        // shared owners release their references
+        assertTrue(b.tryDispose());
+        assertTrue(b.release());
+        assertEquals(1, b.refCount());
+        b.putInt(0, 1);
+        
+        // the last reference disposes the buffer
+        assertTrue(b.release());
+        assertEquals(0, b.refCount());
+        
+        try {
+            b.retain();
+            fail("IllegalStateException is expected");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
 
     // ------------------------------------------------------- Protected Methods
 
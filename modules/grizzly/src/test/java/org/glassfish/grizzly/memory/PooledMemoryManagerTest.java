@@ -42,6 +42,9 @@ package org.glassfish.grizzly.memory;
 
 import org.junit.Test;
 
+import java.io.DataInputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -56,6 +59,13 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.EmptyCompletionHandler;
+import org.glassfish.grizzly.WriteResult;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
 
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
@@ -832,6 +842,266 @@ public class PooledMemoryManagerTest {
     }
 
 
+    @Test
+    public void testHomeSliceAffinityAndStealing() throws Exception {
+        final PooledMemoryManager mm = new PooledMemoryManager(
+                4096, 1, 0, 4, DEFAULT_HEAP_USAGE_PERCENTAGE, 0.0f, isDirect);
+        final TestProbe probe = new TestProbe();
+        mm.getMonitoringConfig().addProbes(probe);
+        
+        Buffer b = mm.allocate(4096);
+        final PoolSlice home = ((PoolBuffer) b).owner();
+        b.tryDispose();
+        
+        // the same thread keeps allocating from its home slice
+        for (int i = 0; i < 100; i++) {
+            b = mm.allocate(4096);
+            assertSame(home, ((PoolBuffer) b).owner());
+            b.tryDispose();
+        }
+        
+        // other threads steal the buffer from the slice instead of allocating
+        for (int i = 0; i < 8; i++) {
+            final Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    mm.allocate(4096).tryDispose();
+                }
+            });
+            t.start();
+            t.join(10000);
+        }
+        
+        assertEquals(1, probe.bufferAllocated.get());
+        assertEquals(108, probe.bufferAllocatedFromPool.get());
+        assertEquals(1, home.elementsCount());
+    }
+
+    @Test
+    public void testAdaptiveSliceCapacity() {
+        final PooledMemoryManager mm = new PooledMemoryManager(
+                4096, 1, 0, 1, DEFAULT_HEAP_USAGE_PERCENTAGE, 0.0f, isDirect,
+                true);
+        final TestProbe probe = new TestProbe();
+        mm.getMonitoringConfig().addProbes(probe);
+        
+        assertTrue(mm.isAdaptive());
+        final PoolSlice slice = mm.getPools()[0].getSlices()[0];
+        final int minCapacity = slice.getCapacity();
+        assertTrue(minCapacity > 0);
+        assertTrue(minCapacity < slice.getMaxElementsCount());
+        
+        // allocate more buffers at once than the slice may hold,
+        // the misses make the slice grow
+        final int burst = minCapacity * 4;
+        final Buffer[] buffers = new Buffer[burst];
+        for (int i = 0; i < 64; i++) {
+            for (int j = 0; j < burst; j++) {
+                buffers[j] = mm.allocate(4096);
+            }
+            for (int j = 0; j < burst; j++) {
+                buffers[j].tryDispose();
+            }
+        }
+        
+        assertTrue(probe.bufferPoolGrown.get() > 0);
+        assertTrue(slice.getCapacity() >= burst);
+        assertEquals(burst, slice.elementsCount());
+        
+        // the slice buffers are mostly idle, so the slice shrinks
+        for (int i = 0; i < 16 * 1024; i++) {
+            mm.allocate(4096).tryDispose();
+        }
+        
+        assertTrue(probe.bufferPoolShrunk.get() > 0);
+        assertEquals(minCapacity, slice.getCapacity());
+        assertTrue(slice.elementsCount() <= minCapacity);
+    }
+
+
+    @Test
+    public void testRetainRelease() {
+        final PooledMemoryManager mm = new PooledMemoryManager(
+                4096, 1, 0, 1, DEFAULT_HEAP_USAGE_PERCENTAGE, 0.0f, isDirect);
+        final PoolSlice slice = mm.getPools()[0].getSlices()[0];
+        
+        final Buffer b = mm.allocate(4096);
+        assertTrue(b instanceof ReferenceCountedBuffer);
+        final ReferenceCountedBuffer rcb = (ReferenceCountedBuffer) b;
+        assertEquals(1, rcb.refCount());
+        
+        rcb.retain().retain();
+        assertEquals(3, rcb.refCount());
+        
+        // the buffer is shared, so it's not returned to the pool
+        b.tryDispose();
+        b.release();
+        assertEquals(1, rcb.refCount());
+        assertEquals(0, slice.elementsCount());
+        b.put(0, (byte) 1);
+        
+        b.release();
+        assertEquals(0, rcb.refCount());
+        assertEquals(1, slice.elementsCount());
+        b.release();
+        assertEquals(1, slice.elementsCount());
+        
+        // the buffer taken from the pool again has a single reference
+        final ReferenceCountedBuffer b2 = (ReferenceCountedBuffer) mm.allocate(4096);
+        assertSame(b, b2);
+        assertEquals(1, b2.refCount());
+        b2.dispose();
+        assertEquals(1, slice.elementsCount());
+    }
+
+    @Test
+    public void testRetainedDuplicate() {
+        final PooledMemoryManager mm = new PooledMemoryManager(
+                4096, 1, 0, 1, DEFAULT_HEAP_USAGE_PERCENTAGE, 0.0f, isDirect);
+        final PoolSlice slice = mm.getPools()[0].getSlices()[0];
+        
+        final ReferenceCountedBuffer b = (ReferenceCountedBuffer) mm.allocate(4096);
+        for (int i = 0; i < 4096; i++) {
+            b.put(i, (byte) i);
+        }
+        
+        final ReferenceCountedBuffer view1 = b.retainedDuplicate();
+        final ReferenceCountedBuffer view2 = b.retainedDuplicate();
+        assertEquals(3, b.refCount());
+        assertEquals(3, view1.refCount());
+        
+        // the views have independent positions
+        view1.position(4096);
+        assertEquals(0, view2.position());
+        assertEquals(4096, view2.remaining());
+        assertEquals(0, b.position());
+        
+        assertTrue(b.tryDispose());
+        assertEquals(0, b.refCount());
+        assertEquals(2, view2.refCount());
+        assertEquals(0, slice.elementsCount());
+        assertEquals((byte) 100, view2.get(100));
+        
+        assertTrue(view1.release());
+        assertEquals(0, slice.elementsCount());
+        
+        view2.dispose();
+        assertEquals(1, slice.elementsCount());
+    }
+
+    @Test
+    public void testRetainedDuplicateWrites() throws Exception {
+        final PooledMemoryManager mm = new PooledMemoryManager(
+                4096, 1, 0, 1, DEFAULT_HEAP_USAGE_PERCENTAGE, 0.0f, isDirect);
+        final PoolSlice slice = mm.getPools()[0].getSlices()[0];
+        final int size = 4096;
+        
+        final ReferenceCountedBuffer b = (ReferenceCountedBuffer) mm.allocate(size);
+        for (int i = 0; i < size; i++) {
+            b.put(i, (byte) i);
+        }
+        
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance().build();
+        transport.setProcessor(FilterChainBuilder.stateless()
+                .add(new TransportFilter()).build());
+        final ServerSocket serverSocket = new ServerSocket(0);
+        final Connection[] connections = new Connection[2];
+        final Socket[] peers = new Socket[2];
+        try {
+            transport.start();
+            for (int i = 0; i < 2; i++) {
+                connections[i] = transport.connect("localhost",
+                        serverSocket.getLocalPort()).get(10, TimeUnit.SECONDS);
+                peers[i] = serverSocket.accept();
+                peers[i].setSoTimeout(10000);
+            }
+            
+            // each connection writes its own view of the same buffer
+            final CountDownLatch latch = new CountDownLatch(2);
+            for (Connection connection : connections) {
+                connection.write(b.retainedDuplicate(),
+                        new EmptyCompletionHandler<WriteResult>() {
+                    @Override
+                    public void completed(final WriteResult result) {
+                        latch.countDown();
+                    }
+                });
+            }
+            b.release();
+            
+            for (Socket peer : peers) {
+                final DataInputStream in = new DataInputStream(peer.getInputStream());
+                final byte[] content = new byte[size];
+                in.readFully(content);
+                for (int i = 0; i < size; i++) {
+                    assertEquals((byte) i, content[i]);
+                }
+            }
+            
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            // the buffer is returned to the pool once both writes complete
+            for (int i = 0; i < 100 && slice.elementsCount() == 0; i++) {
+                Thread.sleep(50);
+            }
+            assertEquals(1, slice.elementsCount());
+        } finally {
+            for (int i = 0; i < 2; i++) {
+                if (connections[i] != null) {
+                    connections[i].closeSilently();
+                }
+                if (peers[i] != null) {
+                    peers[i].close();
+                }
+            }
+            serverSocket.close();
+            transport.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLeakDetection() throws Exception {
+        final PooledMemoryManager mm = new PooledMemoryManager(
+                4096, 1, 0, 1, DEFAULT_HEAP_USAGE_PERCENTAGE, 0.0f, isDirect);
+        final TestProbe probe = new TestProbe();
+        mm.getMonitoringConfig().addProbes(probe);
+        
+        assertEquals(0, mm.getLeakDetectionSamplingInterval());
+        mm.setLeakDetectionSamplingInterval(1);
+        
+        // disposed buffers are not reported
+        for (int i = 0; i < 10; i++) {
+            mm.allocate(4096).tryDispose();
+        }
+        
+        leakBuffer(mm);
+        
+        for (int i = 0; i < 50 && probe.bufferLeaked.get() == 0; i++) {
+            System.gc();
+            Thread.sleep(100);
+            // leaks are reported on allocation
+            mm.allocate(4096).tryDispose();
+        }
+        
+        assertEquals(1, probe.bufferLeaked.get());
+        boolean isLeakSiteFound = false;
+        for (StackTraceElement e : probe.lastLeakAllocationSite.getStackTrace()) {
+            if ("leakBuffer".equals(e.getMethodName())) {
+                isLeakSiteFound = true;
+                break;
+            }
+        }
+        assertTrue(isLeakSiteFound);
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private static void leakBuffer(final PooledMemoryManager mm) {
+        mm.allocate(4096).put(0, (byte) 1);
+    }
+
+
     // ---------------------------------------------------------- Nested Classes
 
 
@@ -839,6 +1109,10 @@ public class PooledMemoryManagerTest {
         final AtomicInteger bufferAllocated = new AtomicInteger();
         final AtomicInteger bufferAllocatedFromPool = new AtomicInteger();
         final AtomicInteger bufferReleasedToPool = new AtomicInteger();
+        final AtomicInteger bufferPoolGrown = new AtomicInteger();
+        final AtomicInteger bufferPoolShrunk = new AtomicInteger();
+        final AtomicInteger bufferLeaked = new AtomicInteger();
+        volatile Throwable lastLeakAllocationSite;
 
         @Override
         public void onBufferAllocateEvent(int size) {
@@ -854,5 +1128,21 @@ public class PooledMemoryManagerTest {
         public void onBufferReleaseToPoolEvent(int size) {
             bufferReleasedToPool.incrementAndGet();
         }
+
+        @Override
+        public void onBufferPoolResizeEvent(int size, int oldCapacity,
+                int newCapacity) {
+            if (newCapacity > oldCapacity) {
+                bufferPoolGrown.incrementAndGet();
+            } else {
+                bufferPoolShrunk.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void onBufferLeakEvent(int size, Throwable allocationSite) {
+            lastLeakAllocationSite = allocationSite;
+            bufferLeaked.incrementAndGet();
+        }
     }
 }
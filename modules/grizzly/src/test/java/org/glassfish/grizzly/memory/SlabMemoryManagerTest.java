@@ -0,0 +1,245 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.glassfish.grizzly.Buffer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SlabMemoryManagerTest {
+
+    @Test
+    public void testInvalidConfiguration() {
+        try {
+            new SlabMemoryManager(4096, 0, 1);
+            fail("IllegalArgumentException is expected");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        try {
+            new SlabMemoryManager(4096, 8192, 1);
+            fail("IllegalArgumentException is expected");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        try {
+            new SlabMemoryManager(4000, 512, 1);
+            fail("IllegalArgumentException is expected");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        try {
+            new SlabMemoryManager(4096, 512, 0);
+            fail("IllegalArgumentException is expected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testChunkSizes() {
+        final SlabMemoryManager mm = new SlabMemoryManager(64 * 1024, 512, 1);
+        assertEquals(0, mm.getSlabsCount());
+
+        final Buffer b1 = mm.allocate(1);
+        assertEquals(512, b1.capacity());
+        assertEquals(1, b1.limit());
+        assertTrue(b1.isDirect());
+        assertEquals(1, mm.getSlabsCount());
+
+        final Buffer b2 = mm.allocateAtLeast(513);
+        assertEquals(1024, b2.capacity());
+
+        final Buffer b3 = mm.allocate(64 * 1024);
+        assertEquals(64 * 1024, b3.capacity());
+        // there is no room in the slab for the max size chunk
+        assertEquals(1, mm.getFallbackAllocationsCount());
+
+        assertEquals(1536, mm.getUsedBytes());
+        assertEquals(64 * 1024, mm.getTotalBytes());
+
+        b1.tryDispose();
+        b2.tryDispose();
+        b3.tryDispose();
+        assertEquals(0, mm.getUsedBytes());
+    }
+
+    @Test
+    public void testBuddiesMerge() {
+        final SlabMemoryManager mm = new SlabMemoryManager(8 * 1024, 512, 1);
+        final List<Buffer> buffers = new ArrayList<Buffer>();
+        for (int i = 0; i < 16; i++) {
+            buffers.add(mm.allocate(512));
+        }
+
+        assertEquals(1.0, mm.getUtilization(), 0.0001);
+        assertEquals(0, mm.getFallbackAllocationsCount());
+
+        // release every second chunk: the free memory is fragmented
+        for (int i = 0; i < 16; i += 2) {
+            buffers.get(i).tryDispose();
+        }
+
+        assertEquals(0.5, mm.getUtilization(), 0.0001);
+        assertEquals(1 - 512.0 / 4096, mm.getExternalFragmentation(), 0.0001);
+        mm.allocate(1024).tryDispose();
+        assertEquals(1, mm.getFallbackAllocationsCount());
+
+        for (int i = 1; i < 16; i += 2) {
+            buffers.get(i).tryDispose();
+        }
+
+        // all the buddies are merged back into the slab-size chunk
+        assertEquals(0, mm.getUsedBytes());
+        assertEquals(0, mm.getExternalFragmentation(), 0.0001);
+        final Buffer b = mm.allocate(8 * 1024);
+        assertEquals(1, mm.getFallbackAllocationsCount());
+        b.tryDispose();
+    }
+
+    @Test
+    public void testInternalFragmentation() {
+        final SlabMemoryManager mm = new SlabMemoryManager(8 * 1024, 512, 1);
+        final Buffer b = mm.allocate(768);
+        assertEquals(1024, b.capacity());
+        assertEquals(0.25, mm.getInternalFragmentation(), 0.0001);
+        b.tryDispose();
+        assertEquals(0, mm.getInternalFragmentation(), 0.0001);
+    }
+
+    @Test
+    public void testSlabsGrowth() {
+        final SlabMemoryManager mm = new SlabMemoryManager(4096, 512, 2);
+        final Buffer b1 = mm.allocate(4096);
+        final Buffer b2 = mm.allocate(4096);
+        assertEquals(2, mm.getSlabsCount());
+        assertEquals(0, mm.getFallbackAllocationsCount());
+
+        final Buffer b3 = mm.allocate(4096);
+        assertEquals(2, mm.getSlabsCount());
+        assertEquals(1, mm.getFallbackAllocationsCount());
+
+        b1.tryDispose();
+        b2.tryDispose();
+        b3.tryDispose();
+        assertEquals(0, mm.getUsedBytes());
+    }
+
+    @Test
+    public void testFallback() {
+        final SlabMemoryManager mm = new SlabMemoryManager(4096, 512, 1);
+        assertFalse(mm.isDirectFallback());
+        assertTrue(mm.willAllocateDirect(4096));
+
+        final Buffer b1 = mm.allocate(4096);
+        assertTrue(b1.isDirect());
+        assertFalse(mm.willAllocateDirect(512));
+
+        // the slabs are full, the buffers are allocated on the heap by default
+        final Buffer b2 = mm.allocate(1000);
+        assertFalse(b2.isDirect());
+        assertEquals(1024, b2.capacity());
+        assertEquals(1, mm.getFallbackAllocationsCount());
+
+        mm.setDirectFallback(true);
+        assertTrue(mm.willAllocateDirect(512));
+        final Buffer b3 = mm.allocate(1000);
+        assertTrue(b3.isDirect());
+        assertEquals(2, mm.getFallbackAllocationsCount());
+
+        b1.tryDispose();
+        b2.tryDispose();
+        b3.tryDispose();
+        assertEquals(0, mm.getUsedBytes());
+    }
+
+    @Test
+    public void testCompositeAllocation() {
+        final SlabMemoryManager mm = new SlabMemoryManager(4096, 512, 4);
+        final Buffer b = mm.allocate(4096 * 2 + 100);
+        assertTrue(b.isComposite());
+        assertEquals(4096 * 2 + 100, b.limit());
+        assertEquals(4096 * 2 + 512, mm.getUsedBytes());
+
+        b.tryDispose();
+        assertEquals(0, mm.getUsedBytes());
+    }
+
+    @Test
+    public void testSharedChunk() {
+        final SlabMemoryManager mm = new SlabMemoryManager(4096, 512, 1);
+        final Buffer b = mm.allocate(512);
+        final ReferenceCountedBuffer rcb = (ReferenceCountedBuffer) b;
+        rcb.retain();
+        assertEquals(2, rcb.refCount());
+
+        final Buffer slice = b.slice(0, 10);
+
+        b.tryDispose();
+        assertEquals(512, mm.getUsedBytes());
+        b.tryDispose();
+        assertEquals(0, rcb.refCount());
+        // the slice still refers to the chunk
+        assertEquals(512, mm.getUsedBytes());
+
+        slice.tryDispose();
+        assertEquals(0, mm.getUsedBytes());
+    }
+
+    @Test
+    public void testReallocate() {
+        final SlabMemoryManager mm = new SlabMemoryManager(4096, 512, 1);
+        Buffer b = mm.allocate(512);
+        b.put((byte) 1).put((byte) 2);
+
+        b = mm.reallocate(b, 2048);
+        assertEquals(2048, b.capacity());
+        assertEquals(2, b.position());
+        assertEquals(1, b.get(0));
+        assertEquals(2, b.get(1));
+        assertEquals(2048, mm.getUsedBytes());
+
+        b.tryDispose();
+        assertEquals(0, mm.getUsedBytes());
+    }
+}
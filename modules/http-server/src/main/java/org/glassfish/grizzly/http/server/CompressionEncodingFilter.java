@@ -49,6 +49,7 @@ import org.glassfish.grizzly.http.HttpRequestPacket;
 import org.glassfish.grizzly.http.HttpResponsePacket;
 import org.glassfish.grizzly.http.util.DataChunk;
 import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.http.util.HttpStatus;
 import org.glassfish.grizzly.http.util.MimeHeaders;
 
 import java.util.Arrays;
@@ -172,6 +173,11 @@ public class CompressionEncodingFilter implements EncodingFilter {
             return false;
         }
 
+        // The Content-Range refers to the not encoded resource
+        if (HttpStatus.PARTIAL_CONTENT_206.statusMatches(response.getStatus())) {
+            return false;
+        }
+
         final MimeHeaders responseHeaders = response.getHeaders();
         // Check if content is already encoded (no matter which encoding)
         final DataChunk contentEncodingMB =
@@ -43,7 +43,9 @@ package org.glassfish.grizzly.http.server;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.glassfish.grizzly.Buffer;
@@ -64,8 +66,13 @@ import org.glassfish.grizzly.http.Method;
 import org.glassfish.grizzly.http.server.filecache.FileCache;
 import org.glassfish.grizzly.http.server.filecache.FileCache.CacheType;
 import org.glassfish.grizzly.http.server.filecache.FileCacheEntry;
+import org.glassfish.grizzly.http.server.util.ByteRange;
 import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.http.util.HttpStatus;
 import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.CompositeBuffer;
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.utils.Charsets;
 
 /**
  *
@@ -74,6 +81,9 @@ import org.glassfish.grizzly.memory.Buffers;
 public class FileCacheFilter extends BaseFilter {
     private static final Logger LOGGER = Grizzly.logger(FileCacheFilter.class);
     
+    private static final byte[] GZIP_BYTES = "gzip".getBytes(Charsets.ASCII_CHARSET);
+    private static final byte[] BYTES_BYTES = "bytes".getBytes(Charsets.ASCII_CHARSET);
+    
     private final FileCache fileCache;
 
     public FileCacheFilter(FileCache fileCache) {
@@ -96,6 +106,18 @@ public class FileCacheFilter extends BaseFilter {
             final FileCacheEntry cacheEntry = fileCache.get(request);
             if (cacheEntry != null) {
                 final HttpResponsePacket response = request.getResponse();
+                
+                List<ByteRange> ranges = null;
+                if (response.getStatus() == 200) {
+                    ranges = getRequestedRanges(request, cacheEntry);
+                    if (ranges != null && ranges.size() > 1
+                            && cacheEntry.type == CacheType.FILE) {
+                        // let the HttpHandler send multipart/byteranges
+                        // for the files, which are not in memory
+                        return ctx.getInvokeAction();
+                    }
+                }
+                
                 prepareResponse(cacheEntry, response);
                 
                 if (response.getStatus() != 200) {
@@ -108,6 +130,10 @@ public class FileCacheFilter extends BaseFilter {
                     return flush(ctx);
                 }
 
+                if (ranges != null) {
+                    return sendRanges(ctx, response, cacheEntry, ranges);
+                }
+                
                 // check if we can send plain or compressed data back.
                 // depends on client request headers and file cache entry
                 final boolean isServeCompressed =
@@ -131,11 +157,9 @@ public class FileCacheFilter extends BaseFilter {
                     return flush(ctx);
                 }
                 
-                return fileCache.isFileSendEnabled() && !request.isSecure()
-                        ? sendFileZeroCopy(ctx, response, cacheEntry,
-                            isServeCompressed)
-                        : sendFileUsingBuffers(ctx, response, cacheEntry,
-                            isServeCompressed);
+                return sendFile(ctx, request, response, cacheEntry,
+                        isServeCompressed, 0,
+                        cacheEntry.getFileSize(isServeCompressed));
             }
         }
 
@@ -154,11 +178,109 @@ public class FileCacheFilter extends BaseFilter {
             final HttpResponsePacket response) throws IOException {
         response.setContentType(entry.contentType.prepare());
 
-        if (entry.server != null) {
-            response.addHeader(Header.Server, entry.server);
+        // the header values are pre-encoded, so the codec just copies the bytes
+        addHeader(response, Header.Server, entry.getServerBytes());
+    }
+    
+    
+    /**
+     * Returns the byte ranges requested by the <tt>Range</tt> header, an
+     * empty list if the ranges can't be satisfied, or <tt>null</tt> if the
+     * entire resource has to be sent.
+     */
+    private static List<ByteRange> getRequestedRanges(
+            final HttpRequestPacket request, final FileCacheEntry entry) {
+        final String rangeHeader = request.getHeader(Header.Range);
+        if (rangeHeader == null || !ByteRange.isIfRangeMatched(
+                request.getHeader(Header.IfRange), entry.Etag,
+                entry.lastModified)) {
+            return null;
         }
+        
+        return ByteRange.parse(rangeHeader, entry.getFileSize(false));
     }
     
+    /**
+     * Sends the ranges of the plain (not compressed) resource as a single
+     * part or <tt>multipart/byteranges</tt> 206 response.
+     */
+    private NextAction sendRanges(final FilterChainContext ctx,
+            final HttpResponsePacket response, final FileCacheEntry entry,
+            final List<ByteRange> ranges) {
+        final long length = entry.getFileSize(false);
+        
+        if (ranges.isEmpty()) {
+            HttpStatus.REQUEST_RANGE_NOT_SATISFIABLE_416.setValues(response);
+            response.setHeader(Header.ContentRange,
+                    ByteRange.unsatisfiedContentRange(length));
+            ctx.write(HttpContent.builder(response)
+                    .content(Buffers.EMPTY_BUFFER)
+                    .last(true)
+                    .build());
+
+            return flush(ctx);
+        }
+        
+        HttpStatus.PARTIAL_CONTENT_206.setValues(response);
+        addHeader(response, Header.ETag, entry.getEtagBytes());
+        addHeader(response, Header.LastModified,
+                entry.getLastModifiedHeaderBytes());
+        addHeader(response, Header.AcceptRanges, BYTES_BYTES);
+        
+        final MemoryManager mm = ctx.getMemoryManager();
+        
+        if (ranges.size() == 1) {
+            final ByteRange range = ranges.get(0);
+            response.setHeader(Header.ContentRange, range.toContentRange(length));
+            response.setContentLengthLong(range.getLength());
+            
+            if (entry.type != CacheType.FILE) {
+                ctx.write(HttpContent.builder(response)
+                        .content(slice(mm, entry.getByteBuffer(false), range))
+                        .last(true)
+                        .build());
+
+                return flush(ctx);
+            }
+            
+            return sendFile(ctx, response.getRequest(), response, entry, false,
+                    range.getFirst(), range.getLength());
+        }
+        
+        // the multipart response is sent only for the entries in memory
+        assert entry.type != CacheType.FILE;
+        
+        final String boundary = ByteRange.generateBoundary();
+        final String contentType = response.getContentType();
+        final ByteBuffer bb = entry.getByteBuffer(false);
+        
+        final CompositeBuffer body = CompositeBuffer.newBuffer(mm);
+        for (ByteRange range : ranges) {
+            body.append(Buffers.wrap(mm,
+                    range.toPartHeader(boundary, contentType, length)));
+            body.append(slice(mm, bb, range));
+        }
+        body.append(Buffers.wrap(mm, ByteRange.toClosingBoundary(boundary)));
+        
+        response.setContentType(ByteRange.multipartContentType(boundary));
+        response.setContentLengthLong(body.remaining());
+        
+        ctx.write(HttpContent.builder(response)
+                .content(body)
+                .last(true)
+                .build());
+        
+        return flush(ctx);
+    }
+    
+    private static Buffer slice(final MemoryManager mm, final ByteBuffer bb,
+            final ByteRange range) {
+        final ByteBuffer slice = bb.duplicate();
+        slice.position((int) range.getFirst());
+        slice.limit((int) range.getLast() + 1);
+        
+        return Buffers.wrap(mm, slice);
+    }
     
     /**
      * Prepare response with payload headers.
@@ -166,23 +288,44 @@ public class FileCacheFilter extends BaseFilter {
     private void prepareResponseWithPayload(final FileCacheEntry entry,
             final HttpResponsePacket response, final boolean isServeCompressed)
             throws IOException {
-        response.addHeader(Header.ETag, entry.Etag);
-        response.addHeader(Header.LastModified, entry.lastModifiedHeader);
+        addHeader(response, Header.ETag, entry.getEtagBytes());
+        addHeader(response, Header.LastModified,
+                entry.getLastModifiedHeaderBytes());
+        addHeader(response, Header.AcceptRanges, BYTES_BYTES);
 
         response.setContentLengthLong(entry.getFileSize(isServeCompressed));
         
         if (isServeCompressed) {
-            response.addHeader(Header.ContentEncoding, "gzip");
+            addHeader(response, Header.ContentEncoding, GZIP_BYTES);
+        }
+    }
+
+    private static void addHeader(final HttpResponsePacket response,
+            final Header header, final byte[] value) {
+        if (value != null) {
+            response.getHeaders().addValue(header).setBytes(value);
         }
     }
 
+    private NextAction sendFile(final FilterChainContext ctx,
+            final HttpRequestPacket request,
+            final HttpResponsePacket response, final FileCacheEntry cacheEntry,
+            final boolean isServeCompressed,
+            final long offset, final long length) {
+        return fileCache.isFileSendEnabled() && !request.isSecure()
+                ? sendFileZeroCopy(ctx, response, cacheEntry,
+                    isServeCompressed, offset, length)
+                : sendFileUsingBuffers(ctx, response, cacheEntry,
+                    isServeCompressed, offset, length);
+    }
+    
     private NextAction sendFileUsingBuffers(final FilterChainContext ctx,
             final HttpResponsePacket response, final FileCacheEntry cacheEntry,
-            final boolean isServeCompressed) {
+            final boolean isServeCompressed,
+            final long offset, final long length) {
         try {
             final FileSendEntry sendEntry = FileSendEntry.create(ctx, response,
-                    cacheEntry.getFile(isServeCompressed),
-                    cacheEntry.getFileSize(isServeCompressed));
+                    cacheEntry.getFile(isServeCompressed), offset, length);
             
             ctx.suspend();
             sendEntry.send();
@@ -196,15 +339,15 @@ public class FileCacheFilter extends BaseFilter {
     
     private NextAction sendFileZeroCopy(final FilterChainContext ctx,
             final HttpResponsePacket response, final FileCacheEntry cacheEntry,
-            final boolean isServeCompressed) {
+            final boolean isServeCompressed,
+            final long offset, final long length) {
         
         // flush response
         ctx.write(response);
 
         // send-file
         final FileTransfer f = new FileTransfer(
-                cacheEntry.getFile(isServeCompressed),
-                0, cacheEntry.getFileSize(isServeCompressed));
+                cacheEntry.getFile(isServeCompressed), offset, length);
         ctx.write(f, new EmptyCompletionHandler<WriteResult>() {
             @Override
             public void failed(Throwable throwable) {
@@ -262,10 +405,14 @@ public class FileCacheFilter extends BaseFilter {
 
         public static FileSendEntry create(final FilterChainContext ctx,
                 final HttpResponsePacket response,
-                final File file, final long size) throws IOException {
+                final File file, final long offset, final long size)
+                throws IOException {
             
             final FileInputStream fis = new FileInputStream(file);
             final FileChannel fc = fis.getChannel();
+            if (offset > 0) {
+                fc.position(offset);
+            }
             
             return new FileSendEntry(ctx, response, fis, fc, size);
         }
@@ -300,7 +447,8 @@ public class FileCacheFilter extends BaseFilter {
             try {
                 boolean isLast;
                 do {
-                    final Buffer buffer = ctx.getMemoryManager().allocate(chunkSize);
+                    final Buffer buffer = ctx.getMemoryManager().allocate(
+                            (int) Math.min(chunkSize, remaining));
                     buffer.allowBufferDispose(true);
                     
                     final long readNow = Buffers.readFromFileChannel(fc, buffer);
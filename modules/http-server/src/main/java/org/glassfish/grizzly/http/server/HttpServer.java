@@ -679,6 +679,8 @@ public class HttpServer {
                     serverConfig.isAllowPayloadForUndefinedHttpMethods());
             httpServerCodecFilter.setMaxPayloadRemainderToSkip(
                     serverConfig.getMaxPayloadRemainderToSkip());
+            httpServerCodecFilter.setOutputMemoryManager(
+                    listener.getOutputMemoryManager());
             
             httpServerCodecFilter.getMonitoringConfig().addProbes(
                     serverConfig.getMonitoringConfig().getHttpConfig().getProbes());
@@ -715,6 +717,10 @@ public class HttpServer {
                 config.setSessionManager(listener.getSessionManager());
             }
 
+            if (listener.getOutputMemoryManager() != null) {
+                config.setOutputMemoryManager(listener.getOutputMemoryManager());
+            }
+
             config.setTraceEnabled(config.isTraceEnabled() || listener.isTraceEnabled());
             
             config.setMaxFormPostSize(listener.getMaxFormPostSize());
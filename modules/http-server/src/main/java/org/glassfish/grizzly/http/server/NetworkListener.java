@@ -76,6 +76,7 @@ import org.glassfish.grizzly.http.KeepAlive;
 import org.glassfish.grizzly.http.server.filecache.FileCache;
 import org.glassfish.grizzly.http.util.MimeHeaders;
 import org.glassfish.grizzly.impl.FutureImpl;
+import org.glassfish.grizzly.memory.MemoryManager;
 import org.glassfish.grizzly.monitoring.MonitoringUtils;
 import org.glassfish.grizzly.nio.transport.TCPNIOServerConnection;
 import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
@@ -160,6 +161,11 @@ public class NetworkListener {
      * The HTTP server {@link SessionManager}.
      */
     private SessionManager sessionManager;
+
+    /**
+     * The {@link MemoryManager} used to allocate outgoing HTTP messages.
+     */
+    private MemoryManager outputMemoryManager;
     
     {
         final TCPNIOTransportBuilder builder = TCPNIOTransportBuilder.newInstance();
@@ -1201,6 +1207,31 @@ public class NetworkListener {
     public void setSessionManager(SessionManager sessionManager) {
         this.sessionManager = sessionManager;
     }
+
+    /**
+     * @return the {@link MemoryManager} used to allocate outgoing HTTP
+     * messages, or <tt>null</tt> if the transport's {@link MemoryManager}
+     * is used.
+     *
+     * @see #setOutputMemoryManager
+     */
+    public MemoryManager getOutputMemoryManager() {
+        return outputMemoryManager;
+    }
+
+    /**
+     * Sets the {@link MemoryManager} used to allocate the encoded HTTP headers
+     * and the response content buffers. If a direct {@link MemoryManager}
+     * (for example <tt>new PooledMemoryManager(true)</tt>) is set, the
+     * response bytes are serialized straight into direct memory and written
+     * to the socket without an extra heap-to-direct copy.
+     *
+     * @param outputMemoryManager {@link MemoryManager}, or <tt>null</tt> to
+     *        use the transport's {@link MemoryManager}.
+     */
+    public void setOutputMemoryManager(final MemoryManager outputMemoryManager) {
+        this.outputMemoryManager = outputMemoryManager;
+    }
     
     boolean isSendFileExplicitlyConfigured() {
         return (sendFileEnabled != null);
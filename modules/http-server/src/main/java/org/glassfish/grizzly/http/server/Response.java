@@ -268,7 +268,9 @@ public class Response {
         this.response = response;
         sendFileEnabled = ((serverFilter != null)
                 && serverFilter.getConfiguration().isSendFileEnabled());
-        outputBuffer.initialize(this, ctx);
+        outputBuffer.initialize(this, serverFilter != null
+                ? serverFilter.getConfiguration().getOutputMemoryManager()
+                : null, ctx);
         this.ctx = ctx;
         this.httpContext = HttpContext.get(ctx);
         this.delayQueue = delayQueue;
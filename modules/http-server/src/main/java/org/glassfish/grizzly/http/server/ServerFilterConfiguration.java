@@ -42,6 +42,7 @@ package org.glassfish.grizzly.http.server;
 
 import java.nio.charset.Charset;
 import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.memory.MemoryManager;
 import org.glassfish.grizzly.utils.JdkVersion;
 
 /**
@@ -94,6 +95,11 @@ public class ServerFilterConfiguration {
      * graceful shutdown, or <tt>false</tt> otherwise
      */
     private boolean isGracefulShutdownSupported = true;
+
+    /**
+     * The {@link MemoryManager} used to allocate the response content buffers.
+     */
+    private MemoryManager outputMemoryManager;
     
     public ServerFilterConfiguration() {
         this("Grizzly", Grizzly.getDotedVersion());
@@ -123,6 +129,7 @@ public class ServerFilterConfiguration {
         this.maxPostSize = configuration.maxPostSize;
         this.sessionTimeoutSeconds = configuration.sessionTimeoutSeconds;
         this.sessionManager = configuration.sessionManager;
+        this.outputMemoryManager = configuration.outputMemoryManager;
     }
     
     /**
@@ -207,6 +214,27 @@ public class ServerFilterConfiguration {
         this.sendFileEnabled = sendFileEnabled;
     }
 
+    /**
+     * @return the {@link MemoryManager} used to allocate the response content
+     * buffers, or <tt>null</tt> if the {@link org.glassfish.grizzly.Connection}'s
+     * {@link MemoryManager} is used.
+     */
+    public MemoryManager getOutputMemoryManager() {
+        return outputMemoryManager;
+    }
+
+    /**
+     * Sets the {@link MemoryManager} used to allocate the response content
+     * buffers. A direct {@link MemoryManager} lets the response content be
+     * written to the socket without copying it into a temporary direct buffer.
+     *
+     * @param outputMemoryManager {@link MemoryManager}, or <tt>null</tt> to
+     *        use the {@link org.glassfish.grizzly.Connection}'s {@link MemoryManager}.
+     */
+    public void setOutputMemoryManager(final MemoryManager outputMemoryManager) {
+        this.outputMemoryManager = outputMemoryManager;
+    }
+
     /**
      * Get the HTTP request scheme, which if non-null overrides default one
      * picked up by framework during runtime.
@@ -45,6 +45,8 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.glassfish.grizzly.Buffer;
@@ -53,7 +55,9 @@ import org.glassfish.grizzly.WriteHandler;
 import org.glassfish.grizzly.filterchain.Filter;
 import org.glassfish.grizzly.filterchain.FilterChain;
 import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.http.Method;
 import org.glassfish.grizzly.http.server.filecache.FileCache;
+import org.glassfish.grizzly.http.server.util.ByteRange;
 import org.glassfish.grizzly.http.io.NIOOutputStream;
 import org.glassfish.grizzly.http.io.OutputBuffer;
 import org.glassfish.grizzly.http.util.MimeType;
@@ -71,6 +75,8 @@ import org.glassfish.grizzly.memory.MemoryManager;
  */
 public abstract class StaticHttpHandlerBase extends HttpHandler {
     private static final Logger LOGGER = Grizzly.logger(StaticHttpHandlerBase.class);
+    
+    private static final String ACCEPT_RANGES_BYTES = "bytes";
 
     private volatile int fileCacheFilterIdx = -1;
     
@@ -113,6 +119,11 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
         this.isFileCacheEnabled = isFileCacheEnabled;
     }
     
+    /**
+     * Sends the file to the client. If the GET request contains the
+     * <tt>Range</tt> header - the requested ranges are sent as a single part
+     * or <tt>multipart/byteranges</tt> 206 response.
+     */
     public static void sendFile(final Response response, final File file)
             throws IOException {
         response.setStatus(HttpStatus.OK_200);
@@ -121,16 +132,80 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
         pickupContentType(response, file.getPath());
 
         final long length = file.length();
-        response.setContentLengthLong(length);
         response.addDateHeader(Header.Date, System.currentTimeMillis());
-        if (!response.isSendFileEnabled() || response.getRequest().isSecure()) {
-            sendUsingBuffers(response, file);
+        response.setHeader(Header.AcceptRanges, ACCEPT_RANGES_BYTES);
+        
+        final List<ByteRange> ranges = getRequestedRanges(response, file, length);
+        if (ranges == null) {
+            response.setContentLengthLong(length);
+            if (!response.isSendFileEnabled() || response.getRequest().isSecure()) {
+                sendUsingBuffers(response, file, length == 0
+                        ? Collections.<ByteRange>emptyList()
+                        : Collections.singletonList(new ByteRange(0, length - 1)),
+                        null, null);
+            } else {
+                sendZeroCopy(response, file, 0, length);
+            }
+        } else if (ranges.isEmpty()) {
+            response.setStatus(HttpStatus.REQUEST_RANGE_NOT_SATISFIABLE_416);
+            response.setHeader(Header.ContentRange,
+                    ByteRange.unsatisfiedContentRange(length));
+            response.setContentLengthLong(0);
+        } else if (ranges.size() == 1) {
+            final ByteRange range = ranges.get(0);
+            response.setStatus(HttpStatus.PARTIAL_CONTENT_206);
+            response.setHeader(Header.ContentRange, range.toContentRange(length));
+            response.setContentLengthLong(range.getLength());
+            if (!response.isSendFileEnabled() || response.getRequest().isSecure()) {
+                sendUsingBuffers(response, file, ranges, null, null);
+            } else {
+                sendZeroCopy(response, file, range.getFirst(), range.getLength());
+            }
         } else {
-            sendZeroCopy(response, file);
+            final String boundary = ByteRange.generateBoundary();
+            final String contentType = response.getContentType();
+            final byte[][] partHeaders = new byte[ranges.size()][];
+            final byte[] closingBoundary = ByteRange.toClosingBoundary(boundary);
+            
+            long contentLength = closingBoundary.length;
+            for (int i = 0; i < partHeaders.length; i++) {
+                final ByteRange range = ranges.get(i);
+                partHeaders[i] = range.toPartHeader(boundary, contentType, length);
+                contentLength += partHeaders[i].length + range.getLength();
+            }
+            
+            response.setStatus(HttpStatus.PARTIAL_CONTENT_206);
+            response.setContentType(ByteRange.multipartContentType(boundary));
+            response.setContentLengthLong(contentLength);
+            sendUsingBuffers(response, file, ranges, partHeaders, closingBoundary);
         }
     }
 
-    private static void sendUsingBuffers(final Response response, final File file)
+    /**
+     * Returns the byte ranges requested by the <tt>Range</tt> header, an
+     * empty list if the ranges can't be satisfied, or <tt>null</tt> if the
+     * entire file has to be sent.
+     */
+    private static List<ByteRange> getRequestedRanges(final Response response,
+            final File file, final long length) {
+        final Request request = response.getRequest();
+        if (!Method.GET.equals(request.getMethod())) {
+            return null;
+        }
+        
+        final String rangeHeader = request.getHeader(Header.Range);
+        if (rangeHeader == null || !ByteRange.isIfRangeMatched(
+                request.getHeader(Header.IfRange),
+                response.getResponse().getHeader(Header.ETag), file.lastModified())) {
+            return null;
+        }
+        
+        return ByteRange.parse(rangeHeader, length);
+    }
+    
+    private static void sendUsingBuffers(final Response response,
+            final File file, final List<ByteRange> ranges,
+            final byte[][] partHeaders, final byte[] closingBoundary)
             throws FileNotFoundException, IOException {
         final int chunkSize = 8192;
         
@@ -140,14 +215,15 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
         
         outputStream.notifyCanWrite(
                 new NonBlockingDownloadHandler(response, outputStream,
-                        file, chunkSize));
+                        file, chunkSize, ranges, partHeaders, closingBoundary));
 
     }
 
-    private static void sendZeroCopy(final Response response, final File file)
+    private static void sendZeroCopy(final Response response, final File file,
+            final long offset, final long length)
             throws IOException {
         final OutputBuffer outputBuffer = response.getOutputBuffer();
-        outputBuffer.sendfile(file, null);
+        outputBuffer.sendfile(file, offset, length, null);
     }
 
     public final boolean addToFileCache(final Request req,
@@ -304,8 +380,10 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
     }
     
     private static class NonBlockingDownloadHandler implements WriteHandler {
-        // keep the remaining size
-        private volatile long size;
+        // the index of the range being sent
+        private volatile int rangeIdx;
+        // keep the remaining size of the current range, -1 if not started
+        private volatile long size = -1;
         
         private final Response response;
         private final NIOOutputStream outputStream;
@@ -313,9 +391,15 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
         private final MemoryManager mm;
         private final int chunkSize;
         
+        private final List<ByteRange> ranges;
+        // multipart/byteranges framing, null for a single part response
+        private final byte[][] partHeaders;
+        private final byte[] closingBoundary;
+        
         NonBlockingDownloadHandler(final Response response,
                 final NIOOutputStream outputStream, final File file,
-                final int chunkSize) {
+                final int chunkSize, final List<ByteRange> ranges,
+                final byte[][] partHeaders, final byte[] closingBoundary) {
             
             try {
                 fileChannel = new FileInputStream(file).getChannel();
@@ -323,12 +407,13 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
                 throw new IllegalStateException("File should have existed", e);
             }
             
-            size = file.length();
-            
             this.response = response;
             this.outputStream = outputStream;
             mm = response.getRequest().getContext().getMemoryManager();
             this.chunkSize = chunkSize;
+            this.ranges = ranges;
+            this.partHeaders = partHeaders;
+            this.closingBoundary = closingBoundary;
         }
         
         @Override
@@ -354,8 +439,24 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
          * Send next CHUNK_SIZE of file
          */
         private boolean sendChunk() throws IOException {
+            if (rangeIdx == ranges.size()) {
+                finishParts();
+                return false;
+            }
+            
+            if (size == -1) {
+                // start the next range
+                final ByteRange range = ranges.get(rangeIdx);
+                fileChannel.position(range.getFirst());
+                size = range.getLength();
+                
+                if (partHeaders != null) {
+                    outputStream.write(Buffers.wrap(mm, partHeaders[rangeIdx]));
+                }
+            }
+            
             // allocate Buffer
-            final Buffer buffer = mm.allocate(chunkSize);
+            final Buffer buffer = mm.allocate((int) Math.min(chunkSize, size));
             // mark it available for disposal after content is written
             buffer.allowBufferDispose(true);
 
@@ -377,13 +478,23 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
 
             // check the remaining size here to avoid extra onWritePossible() invocation
             if (size <= 0) {
-                complete(false);
-                return false;
+                size = -1;
+                if (++rangeIdx == ranges.size()) {
+                    finishParts();
+                    return false;
+                }
             }
 
             return true;
         }
 
+        private void finishParts() throws IOException {
+            if (closingBoundary != null) {
+                outputStream.write(Buffers.wrap(mm, closingBoundary));
+            }
+            complete(false);
+        }
+
         /**
          * Complete the download
          */
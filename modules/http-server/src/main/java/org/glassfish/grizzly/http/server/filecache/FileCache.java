@@ -44,8 +44,10 @@ import org.glassfish.grizzly.Grizzly;
 import org.glassfish.grizzly.http.HttpRequestPacket;
 import org.glassfish.grizzly.http.HttpResponsePacket;
 import org.glassfish.grizzly.http.server.util.SimpleDateFormats;
+import org.glassfish.grizzly.http.util.Constants;
 import org.glassfish.grizzly.http.util.FastHttpDateFormat;
 import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.http.util.HttpCodecUtils;
 import org.glassfish.grizzly.http.util.HttpStatus;
 import org.glassfish.grizzly.http.util.MimeHeaders;
 import org.glassfish.grizzly.utils.DelayedExecutor;
@@ -65,6 +67,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.GZIPOutputStream;
@@ -93,6 +96,26 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
         HEAP, MAPPED, FILE, TIMESTAMP
     }
 
+    /**
+     * The policy applied once the {@link FileCache} is full.
+     */
+    public enum EvictionPolicy {
+        /**
+         * New resources are not cached until some entries expire (the default).
+         */
+        NONE,
+        /**
+         * The least recently used entry is evicted to make room for the new one.
+         */
+        LRU,
+        /**
+         * The least recently used entry is evicted only if the new resource
+         * has been requested more often recently, according to a frequency
+         * sketch, so one-off requests can't flush out popular entries.
+         */
+        TINY_LFU
+    }
+
     public enum CacheResult {
         OK_CACHED,
         OK_CACHED_TIMESTAMP,
@@ -116,6 +139,35 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
     
     private final FileCacheEntry NULL_CACHE_ENTRY = new FileCacheEntry(this);
 
+    /**
+     * The max number of entries evicted to make room for a single resource.
+     */
+    private static final int MAX_EVICTIONS_PER_ADD = 8;
+
+    /**
+     * The eviction policy.
+     */
+    private volatile EvictionPolicy evictionPolicy = EvictionPolicy.NONE;
+
+    /**
+     * Guards the LRU list, which is formed by the entries {@link FileCacheEntry#lruPrev}
+     * and {@link FileCacheEntry#lruNext} references, {@link #lruHead} is the
+     * least recently used entry.
+     */
+    private final ReentrantLock lruLock = new ReentrantLock();
+    private final FileCacheEntry lruHead = new FileCacheEntry(this);
+
+    /**
+     * The frequency sketch of the requested resources used by
+     * {@link EvictionPolicy#TINY_LFU}, sized by the {@link #maxCacheEntries}.
+     */
+    private volatile FrequencySketch sketch;
+
+    /**
+     * The number of entries evicted to make room for new ones.
+     */
+    private final AtomicLong evictionCount = new AtomicLong();
+
     /**
      * Specifies the maximum time in seconds a resource may be cached.
      */
@@ -163,6 +215,17 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
     
     private DelayedExecutor.DelayQueue<FileCacheEntry> delayQueue;
 
+    /**
+     * <tt>true</tt>, if the cached files have to be watched for changes.
+     */
+    private volatile boolean fileWatchEnabled;
+
+    /**
+     * Invalidates the entries, whose files have been changed, or <tt>null</tt>
+     * if the files are not watched.
+     */
+    private volatile FileCacheWatcher watcher;
+
     /**
      * Folder to store compressed cached files
      */
@@ -198,6 +261,23 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
     public void initialize(final DelayedExecutor delayedExecutor) {
         delayQueue = delayedExecutor.createDelayQueue(new EntryWorker(),
                 new EntryResolver());
+
+        final FileCacheWatcher oldWatcher = watcher;
+        watcher = null;
+        if (oldWatcher != null) {
+            oldWatcher.close();
+        }
+        
+        if (fileWatchEnabled) {
+            try {
+                watcher = FileCacheWatcher.start(this,
+                        delayedExecutor.getThreadPool());
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING,
+                        LogMessages.WARNING_GRIZZLY_HTTP_SERVER_FILECACHE_GENERAL_ERROR(), e);
+                notifyProbesError(this, e);
+            }
+        }
     }
 
     /**
@@ -243,7 +323,7 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
 
         final int size = cacheSize.incrementAndGet();
         // cache is full.
-        if (size > getMaxCacheEntries()) {
+        if (size > getMaxCacheEntries() && !evict(key, null)) {
             cacheSize.decrementAndGet();
             fileCacheMap.remove(key);
             key.recycle();
@@ -257,7 +337,7 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
         
         final FileCacheEntry entry;
         if (cacheFile != null) { // If we have a file - try to create File-aware cache resource
-            entry = createEntry(cacheFile);
+            entry = createEntry(key, cacheFile);
             entry.setCanBeCompressed(canBeCompressed(cacheFile, contentType));
         } else {
             entry = new FileCacheEntry(this);
@@ -275,8 +355,29 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
         entry.host = host;
         entry.Etag = headers.getHeader(Header.ETag);
         entry.server = headers.getHeader(Header.Server);
+        entry.serverBytes = encodeHeaderValue(entry.server);
+        entry.etagBytes = encodeHeaderValue(entry.Etag);
+        entry.lastModifiedHeaderBytes = encodeHeaderValue(entry.lastModifiedHeader);
 
         fileCacheMap.put(key, entry);
+        if (evictionPolicy != EvictionPolicy.NONE) {
+            lruLock.lock();
+            try {
+                // the entry might have been removed in the meantime, the
+                // removal unlinks the entry under the lruLock once it's
+                // removed from the map, so the entry is linked only if
+                // it's still mapped
+                if (fileCacheMap.get(key) == entry) {
+                    linkLast(entry);
+                }
+            } finally {
+                lruLock.unlock();
+            }
+        }
+        
+        if (cacheFile != null) {
+            watch(entry);
+        }
         
         notifyProbesEntryAdded(this, entry);
         
@@ -301,6 +402,9 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
 
         final LazyFileCacheKey key = LazyFileCacheKey.create(request);
         final FileCacheEntry entry = fileCacheMap.get(key);
+        if (evictionPolicy == EvictionPolicy.TINY_LFU) {
+            getSketch().increment(key.hashCode());
+        }
         key.recycle();
         try {
             if (entry != null && entry != NULL_CACHE_ENTRY) {
@@ -317,6 +421,7 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
                         httpStatus :
                         HttpStatus.OK_200);
                 
+                recordAccess(entry);
                 notifyProbesEntryHit(this, entry);
                 return entry;
             }
@@ -334,17 +439,192 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
     }
 
     protected void remove(final FileCacheEntry entry) {
-        if (fileCacheMap.remove(entry.key) != null) {
-            cacheSize.decrementAndGet();
+        removeEntry(entry);
+    }
+
+    /**
+     * Removes the entry and releases its memory accounting.
+     * The entry might be removed concurrently because of expiration and
+     * eviction, so the accounting is released only by the winner.
+     *
+     * @return <tt>true</tt> if the entry has been removed by this call.
+     */
+    private boolean removeEntry(final FileCacheEntry entry) {
+        if (!fileCacheMap.remove(entry.key, entry)) {
+            return false;
+        }
+        cacheSize.decrementAndGet();
+
+        final FileCacheWatcher localWatcher = watcher;
+        if (localWatcher != null && entry.plainFile != null) {
+            localWatcher.unregister(entry);
+        }
+
+        lruLock.lock();
+        try {
+            unlink(entry);
+        } finally {
+            lruLock.unlock();
         }
 
         if (entry.type == FileCache.CacheType.MAPPED) {
-            subMappedMemorySize(entry.bb.remaining());
+            subMappedMemorySize(entry.plainFileSize);
         } else if (entry.type == FileCache.CacheType.HEAP) {
-            subHeapSize(entry.bb.remaining());
+            subHeapSize(entry.plainFileSize);
         }
 
         notifyProbesEntryRemoved(this, entry);
+        return true;
+    }
+
+    /**
+     * Encodes the header value the same way the HTTP codec does, so the
+     * cached entry headers are serialized by copying the bytes.
+     */
+    private static byte[] encodeHeaderValue(final String value) {
+        if (value == null) {
+            return null;
+        }
+        
+        final int size = value.length();
+        final byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            final byte b = (byte) value.charAt(i);
+            bytes[i] = HttpCodecUtils.isNonPrintableUsAscii(b) ? Constants.SP : b;
+        }
+        
+        return bytes;
+    }
+
+    /**
+     * Removes the entry, whose file has been changed, from the cache, so the
+     * next request will add the up-to-date file.
+     */
+    void invalidate(final FileCacheEntry entry) {
+        if (delayQueue != null) {
+            delayQueue.remove(entry);
+        }
+        removeEntry(entry);
+    }
+
+    /**
+     * Starts watching the entry file, if the files watching is enabled.
+     */
+    private void watch(final FileCacheEntry entry) {
+        final FileCacheWatcher localWatcher = watcher;
+        if (localWatcher == null || !localWatcher.register(entry)) {
+            return;
+        }
+        
+        // the entry might have been removed, or the file changed, before
+        // it was registered
+        if (fileCacheMap.get(entry.key) != entry) {
+            localWatcher.unregister(entry);
+        } else if (entry.plainFile.lastModified() != entry.lastModified) {
+            invalidate(entry);
+        }
+    }
+
+    /**
+     * Tries to evict an entry to make room for the resource with the given key.
+     *
+     * @param candidate the key of the resource to be cached.
+     * @param type the type of the entry to be evicted, or <tt>null</tt> for
+     *        any type.
+     * @return <tt>true</tt> if an entry has been evicted, or <tt>false</tt> if
+     *         there's nothing to evict or the candidate was not admitted.
+     */
+    private boolean evict(final FileCacheKey candidate, final CacheType type) {
+        final EvictionPolicy policy = evictionPolicy;
+        if (policy == EvictionPolicy.NONE) {
+            return false;
+        }
+
+        final FileCacheEntry victim;
+        lruLock.lock();
+        try {
+            FileCacheEntry e = lruHead.lruNext;
+            while (e != null && e != lruHead && type != null && e.type != type) {
+                e = e.lruNext;
+            }
+            if (e == null || e == lruHead) {
+                return false;
+            }
+
+            if (policy == EvictionPolicy.TINY_LFU) {
+                final FrequencySketch localSketch = getSketch();
+                if (localSketch.frequency(candidate.hashCode())
+                        <= localSketch.frequency(e.key.hashCode())) {
+                    return false;
+                }
+            }
+
+            // unlink now, so concurrent evictions pick other victims
+            unlink(e);
+            victim = e;
+        } finally {
+            lruLock.unlock();
+        }
+
+        if (delayQueue != null) {
+            delayQueue.remove(victim);
+        }
+        if (!removeEntry(victim)) {
+            return false;
+        }
+        evictionCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Moves the entry to the tail of the LRU list. The access is not recorded
+     * if the list is being modified by another thread, so the lookups never
+     * block.
+     */
+    private void recordAccess(final FileCacheEntry entry) {
+        if (evictionPolicy != EvictionPolicy.NONE
+                && entry.lruPrev != null && lruLock.tryLock()) {
+            try {
+                if (entry.lruPrev != null) {
+                    unlink(entry);
+                    linkLast(entry);
+                }
+            } finally {
+                lruLock.unlock();
+            }
+        }
+    }
+
+    private void linkLast(final FileCacheEntry entry) {
+        if (lruHead.lruNext == null) {
+            lruHead.lruNext = lruHead;
+            lruHead.lruPrev = lruHead;
+        }
+        final FileCacheEntry tail = lruHead.lruPrev;
+        entry.lruPrev = tail;
+        entry.lruNext = lruHead;
+        tail.lruNext = entry;
+        lruHead.lruPrev = entry;
+    }
+
+    private static void unlink(final FileCacheEntry entry) {
+        final FileCacheEntry prev = entry.lruPrev;
+        final FileCacheEntry next = entry.lruNext;
+        if (prev != null) {
+            prev.lruNext = next;
+            next.lruPrev = prev;
+            entry.lruPrev = null;
+            entry.lruNext = null;
+        }
+    }
+
+    private FrequencySketch getSketch() {
+        FrequencySketch localSketch = sketch;
+        if (localSketch == null) {
+            localSketch = new FrequencySketch(getMaxCacheEntries());
+            sketch = localSketch;
+        }
+        return localSketch;
     }
 
     protected Object createJmxManagementObject() {
@@ -356,15 +636,18 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
     /**
      * Creates {@link FileCacheEntry}.
      */
-    private FileCacheEntry createEntry(final File file) {
-        FileCacheEntry entry = tryMapFileToBuffer(file);
+    private FileCacheEntry createEntry(final FileCacheKey key, final File file) {
+        FileCacheEntry entry = tryMapFileToBuffer(key, file);
         if (entry == null) {
             entry = new FileCacheEntry(this);
             entry.type = CacheType.FILE;
         }
         
         entry.plainFile = file;
-        entry.plainFileSize = file.length();
+        if (entry.type == CacheType.FILE) {
+            // the mapped entries keep the size their memory was accounted with
+            entry.plainFileSize = file.length();
+        }
 
         return entry;
     }
@@ -373,36 +656,26 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
      * Map the file to a {@link ByteBuffer}
      * @return the preinitialized {@link FileCacheEntry}
      */
-    private FileCacheEntry tryMapFileToBuffer(final File file) {
+    private FileCacheEntry tryMapFileToBuffer(final FileCacheKey key,
+            final File file) {
         
         final long size = file.length();
         if (size > getMaxEntrySize()) {
             return null;
         }
         
-        final CacheType type;
+        final CacheType type = size > getMinEntrySize()
+                ? CacheType.MAPPED
+                : CacheType.HEAP;
+        if (!reserveMemory(key, type, size)) {
+            // Cache full
+            return null;
+        }
+
         final ByteBuffer bb;
         FileChannel fileChannel = null;
         FileInputStream stream = null;
         try {
-            if (size > getMinEntrySize()) {
-                if (addMappedMemorySize(size) > getMaxLargeFileCacheSize()) {
-                    // Cache full
-                    subMappedMemorySize(size);
-                    return null;
-                }
-                
-                type = CacheType.MAPPED;
-            } else {
-                if (addHeapSize(size) > getMaxSmallFileCacheSize()) {
-                    // Cache full
-                    subHeapSize(size);
-                    return null;
-                }
-
-                type = CacheType.HEAP;
-            }
-
             stream = new FileInputStream(file);
             fileChannel = stream.getChannel();
 
@@ -412,6 +685,11 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
                 ((MappedByteBuffer) bb).load();
             }    
         } catch (Exception e) {
+            if (type == CacheType.MAPPED) {
+                subMappedMemorySize(size);
+            } else {
+                subHeapSize(size);
+            }
             notifyProbesError(this, e);
             return null;
         } finally {
@@ -439,6 +717,39 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
         return entry;
     }
 
+    /**
+     * Reserves <tt>size</tt> bytes of the heap or mapped memory cache, evicting
+     * colder entries of the same type if needed.
+     */
+    private boolean reserveMemory(final FileCacheKey key, final CacheType type,
+            final long size) {
+        final long max = type == CacheType.MAPPED
+                ? getMaxLargeFileCacheSize()
+                : getMaxSmallFileCacheSize();
+        if (size > max) {
+            return false;
+        }
+
+        for (int i = 0; ; i++) {
+            final long newSize = type == CacheType.MAPPED
+                    ? addMappedMemorySize(size)
+                    : addHeapSize(size);
+            if (newSize <= max) {
+                return true;
+            }
+
+            if (type == CacheType.MAPPED) {
+                subMappedMemorySize(size);
+            } else {
+                subHeapSize(size);
+            }
+
+            if (i == MAX_EVICTIONS_PER_ADD || !evict(key, type)) {
+                return false;
+            }
+        }
+    }
+
     /**
      * Checks if the {@link File} with the given content-type could be compressed.
      */
@@ -478,6 +789,31 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
         this.secondsMaxAge = secondsMaxAge;
     }
 
+    /**
+     * @return <tt>true</tt> if the cached files are watched for changes,
+     *  so the changed files are removed from the cache.
+     */
+    public boolean isFileWatchEnabled() {
+        return fileWatchEnabled;
+    }
+
+    /**
+     * Enables/disables watching the cached files for changes using the
+     * {@link java.nio.file.WatchService}. Once a cached file is modified or
+     * deleted its entry is removed from the cache, so the next request will
+     * cache the up-to-date file. This way the {@link #getSecondsMaxAge()}
+     * could be left unlimited for the files, which only change on deploy.
+     * 
+     * The setting has to be applied before the cache is initialized.
+     * The files, which can't be watched, are still expired according to the
+     * {@link #getSecondsMaxAge()}.
+     *
+     * @param fileWatchEnabled <tt>true</tt> to watch the cached files.
+     */
+    public void setFileWatchEnabled(boolean fileWatchEnabled) {
+        this.fileWatchEnabled = fileWatchEnabled;
+    }
+
     /**
      * @return the maximum number of files that may be cached.
      */
@@ -492,6 +828,35 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
      */
     public void setMaxCacheEntries(int maxCacheEntries) {
         this.maxCacheEntries = maxCacheEntries;
+        sketch = null;
+    }
+
+    /**
+     * @return the {@link EvictionPolicy} applied once the cache is full.
+     */
+    public EvictionPolicy getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    /**
+     * Sets the {@link EvictionPolicy} applied once the cache is full,
+     * {@link EvictionPolicy#NONE} by default.
+     * The policy has to be set before the cache is used.
+     *
+     * @param evictionPolicy the {@link EvictionPolicy}.
+     */
+    public void setEvictionPolicy(final EvictionPolicy evictionPolicy) {
+        if (evictionPolicy == null) {
+            throw new IllegalArgumentException("evictionPolicy can't be null");
+        }
+        this.evictionPolicy = evictionPolicy;
+    }
+
+    /**
+     * @return the number of entries evicted to make room for new ones.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
     }
 
 
@@ -83,8 +83,17 @@ public final class FileCacheEntry implements Runnable {
     public String lastModifiedHeader;
     public String server;
 
+    // the invariant header values encoded once, when the entry is created
+    byte[] serverBytes;
+    byte[] etagBytes;
+    byte[] lastModifiedHeaderBytes;
+
     public volatile long timeoutMillis;
 
+    // LRU list links, guarded by the FileCache LRU lock
+    FileCacheEntry lruPrev;
+    FileCacheEntry lruNext;
+
     private final FileCache fileCache;
 
     public FileCacheEntry(FileCache fileCache) {
@@ -158,6 +167,30 @@ public final class FileCacheEntry implements Runnable {
         return isCompressed ? compressedBb : bb;
     }
     
+    /**
+     * Returns the encoded Server header value, or <tt>null</tt> if the header
+     * is not set. The returned array must not be modified.
+     */
+    public byte[] getServerBytes() {
+        return serverBytes;
+    }
+
+    /**
+     * Returns the encoded ETag header value, or <tt>null</tt> if the header
+     * is not set. The returned array must not be modified.
+     */
+    public byte[] getEtagBytes() {
+        return etagBytes;
+    }
+
+    /**
+     * Returns the encoded Last-Modified header value, or <tt>null</tt> if the
+     * header is not set. The returned array must not be modified.
+     */
+    public byte[] getLastModifiedHeaderBytes() {
+        return lastModifiedHeaderBytes;
+    }
+
     @Override
     public void run() {
         fileCache.remove(this);
@@ -0,0 +1,273 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server.filecache;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Grizzly;
+
+/**
+ * Invalidates the {@link FileCacheEntry}s, whose backing files have been
+ * modified or deleted, using {@link WatchService} notifications.
+ * 
+ * The parent directory of each cached file is registered with the
+ * {@link WatchService}, the directory is unregistered once the last entry,
+ * which belongs to it, is removed from the cache.
+ */
+final class FileCacheWatcher implements Runnable {
+    private static final Logger LOGGER = Grizzly.logger(FileCacheWatcher.class);
+
+    private final FileCache fileCache;
+    private final WatchService watchService;
+
+    // the watched files and the entries which are backed by them, guarded by "this"
+    private final Map<Path, List<FileCacheEntry>> files =
+            new HashMap<Path, List<FileCacheEntry>>();
+    // the watched directories and the number of watched files in them, guarded by "this"
+    private final Map<Path, Directory> directories =
+            new HashMap<Path, Directory>();
+
+    private volatile boolean isClosed;
+
+    private FileCacheWatcher(final FileCache fileCache,
+            final WatchService watchService) {
+        this.fileCache = fileCache;
+        this.watchService = watchService;
+    }
+
+    /**
+     * Creates the {@link FileCacheWatcher} and starts processing the
+     * {@link WatchService} events using the passed thread pool.
+     */
+    static FileCacheWatcher start(final FileCache fileCache,
+            final ExecutorService threadPool) throws IOException {
+        final FileCacheWatcher watcher = new FileCacheWatcher(fileCache,
+                FileSystems.getDefault().newWatchService());
+        try {
+            threadPool.execute(watcher);
+        } catch (RuntimeException e) {
+            watcher.close();
+            throw e;
+        }
+        
+        return watcher;
+    }
+
+    /**
+     * Starts watching the file the entry is backed by.
+     *
+     * @return <tt>false</tt> if the file can't be watched.
+     */
+    synchronized boolean register(final FileCacheEntry entry) {
+        if (isClosed) {
+            return false;
+        }
+        
+        final Path file = entry.plainFile.toPath().toAbsolutePath();
+        final Path dir = file.getParent();
+        if (dir == null) {
+            return false;
+        }
+
+        List<FileCacheEntry> entries = files.get(file);
+        if (entries == null) {
+            Directory directory = directories.get(dir);
+            if (directory == null) {
+                final WatchKey key;
+                try {
+                    key = dir.register(watchService,
+                            StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE,
+                            StandardWatchEventKinds.ENTRY_MODIFY);
+                } catch (Exception e) {
+                    LOGGER.log(Level.FINE, "Can not watch directory: " + dir, e);
+                    return false;
+                }
+
+                directory = new Directory(key);
+                directories.put(dir, directory);
+            }
+
+            directory.filesCount++;
+            entries = new ArrayList<FileCacheEntry>(2);
+            files.put(file, entries);
+        }
+
+        entries.add(entry);
+        return true;
+    }
+
+    /**
+     * Stops watching the file the entry is backed by, if there are no more
+     * entries backed by this file.
+     */
+    synchronized void unregister(final FileCacheEntry entry) {
+        if (isClosed) {
+            return;
+        }
+        
+        final Path file = entry.plainFile.toPath().toAbsolutePath();
+        final List<FileCacheEntry> entries = files.get(file);
+        if (entries == null || !entries.remove(entry) || !entries.isEmpty()) {
+            return;
+        }
+
+        files.remove(file);
+        
+        final Path dir = file.getParent();
+        final Directory directory = directories.get(dir);
+        if (directory != null && --directory.filesCount == 0) {
+            directories.remove(dir);
+            directory.key.cancel();
+        }
+    }
+
+    /**
+     * Stops watching the files.
+     */
+    void close() {
+        synchronized (this) {
+            if (isClosed) {
+                return;
+            }
+            
+            isClosed = true;
+            files.clear();
+            directories.clear();
+        }
+        
+        try {
+            watchService.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!isClosed) {
+                final WatchKey key = watchService.take();
+                final Path dir = (Path) key.watchable();
+
+                final List<FileCacheEntry> invalidated =
+                        new ArrayList<FileCacheEntry>();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // the events were lost, the entire directory is stale
+                        collectDirectory(dir, invalidated);
+                    } else {
+                        collectFile(dir.resolve((Path) event.context()),
+                                invalidated);
+                    }
+                }
+                
+                if (!key.reset()) {
+                    // the directory is not accessible anymore
+                    collectDirectory(dir, invalidated);
+                }
+                
+                for (FileCacheEntry entry : invalidated) {
+                    fileCache.invalidate(entry);
+                }
+            }
+        } catch (InterruptedException ignored) {
+        } catch (ClosedWatchServiceException ignored) {
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "FileCache watcher failed", e);
+        } finally {
+            // the entries are not watched anymore, so they could become stale
+            final List<FileCacheEntry> invalidated = new ArrayList<FileCacheEntry>();
+            synchronized (this) {
+                for (List<FileCacheEntry> entries : files.values()) {
+                    invalidated.addAll(entries);
+                }
+            }
+            
+            close();
+            
+            for (FileCacheEntry entry : invalidated) {
+                fileCache.invalidate(entry);
+            }
+        }
+    }
+
+    private synchronized void collectFile(final Path file,
+            final List<FileCacheEntry> invalidated) {
+        final List<FileCacheEntry> entries = files.get(file);
+        if (entries != null) {
+            invalidated.addAll(entries);
+        }
+    }
+
+    private synchronized void collectDirectory(final Path dir,
+            final List<FileCacheEntry> invalidated) {
+        for (Iterator<Map.Entry<Path, List<FileCacheEntry>>> it =
+                files.entrySet().iterator(); it.hasNext();) {
+            final Map.Entry<Path, List<FileCacheEntry>> mapEntry = it.next();
+            if (dir.equals(mapEntry.getKey().getParent())) {
+                invalidated.addAll(mapEntry.getValue());
+            }
+        }
+    }
+
+    private static final class Directory {
+        private final WatchKey key;
+        private int filesCount;
+
+        private Directory(final WatchKey key) {
+            this.key = key;
+        }
+    }
+}
@@ -45,6 +45,7 @@ import org.glassfish.grizzly.WriteResult;
 import org.glassfish.grizzly.filterchain.FilterChainContext;
 import org.glassfish.grizzly.http.io.OutputBuffer;
 import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.memory.MemoryManager;
 
 import java.io.File;
 import java.util.concurrent.Executor;
@@ -57,7 +58,14 @@ public class ServerOutputBuffer extends OutputBuffer {
 
     public void initialize(final Response response,
             final FilterChainContext ctx) {
-        super.initialize(response.getResponse(), response.isSendFileEnabled(), ctx);
+        initialize(response, null, ctx);
+    }
+
+    public void initialize(final Response response,
+            final MemoryManager outputMemoryManager,
+            final FilterChainContext ctx) {
+        super.initialize(response.getResponse(), response.isSendFileEnabled(),
+                outputMemoryManager, ctx);
         this.serverResponse = response;
     }
 
@@ -0,0 +1,359 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server.util;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import org.glassfish.grizzly.http.util.FastHttpDateFormat;
+import org.glassfish.grizzly.utils.Charsets;
+
+/**
+ * The byte range of a resource requested using the HTTP <tt>Range</tt>
+ * header (RFC 7233), and the utility methods to serve the partial content
+ * as a single part or <tt>multipart/byteranges</tt> response.
+ */
+public final class ByteRange {
+    /**
+     * The max number of ranges served within one response, if the client
+     * asks for more - the entire resource is sent.
+     */
+    public static final int MAX_RANGES = 16;
+    
+    private static final String BYTES_UNIT = "bytes";
+    private static final Charset ASCII = Charsets.ASCII_CHARSET;
+    
+    private static final Comparator<ByteRange> START_COMPARATOR =
+            new Comparator<ByteRange>() {
+        @Override
+        public int compare(final ByteRange r1, final ByteRange r2) {
+            return r1.first < r2.first ? -1 : (r1.first == r2.first ? 0 : 1);
+        }
+    };
+    
+    private final long first;
+    private final long last;
+
+    /**
+     * @param first the position of the first byte of the range.
+     * @param last the position of the last byte of the range (inclusive).
+     */
+    public ByteRange(final long first, final long last) {
+        if (first < 0 || last < first) {
+            throw new IllegalArgumentException("Invalid range: " + first + "-" + last);
+        }
+        
+        this.first = first;
+        this.last = last;
+    }
+
+    /**
+     * @return the position of the first byte of the range.
+     */
+    public long getFirst() {
+        return first;
+    }
+
+    /**
+     * @return the position of the last byte of the range (inclusive).
+     */
+    public long getLast() {
+        return last;
+    }
+
+    /**
+     * @return the number of bytes in the range.
+     */
+    public long getLength() {
+        return last - first + 1;
+    }
+    
+    /**
+     * Returns the <tt>Content-Range</tt> header value for the range.
+     * 
+     * @param resourceLength the complete resource length.
+     */
+    public String toContentRange(final long resourceLength) {
+        return BYTES_UNIT + ' ' + first + '-' + last + '/' + resourceLength;
+    }
+
+    /**
+     * Returns the <tt>Content-Range</tt> header value for the 416 response.
+     * 
+     * @param resourceLength the complete resource length.
+     */
+    public static String unsatisfiedContentRange(final long resourceLength) {
+        return BYTES_UNIT + " */" + resourceLength;
+    }
+    
+    /**
+     * Parses the <tt>Range</tt> header value. The overlapping ranges are
+     * coalesced, and the ranges, which start beyond the resource end, are
+     * skipped.
+     * 
+     * @param rangeHeader the <tt>Range</tt> header value.
+     * @param resourceLength the complete resource length.
+     * @return the satisfiable ranges sorted by position, an empty list if
+     *         none of the requested ranges could be satisfied, or <tt>null</tt>
+     *         if the header has to be ignored and the entire resource sent.
+     */
+    public static List<ByteRange> parse(final String rangeHeader,
+            final long resourceLength) {
+        if (rangeHeader == null) {
+            return null;
+        }
+        
+        final int eqIdx = rangeHeader.indexOf('=');
+        if (eqIdx == -1 || !BYTES_UNIT.equalsIgnoreCase(
+                rangeHeader.substring(0, eqIdx).trim())) {
+            // unknown unit
+            return null;
+        }
+        
+        final List<ByteRange> ranges = new ArrayList<ByteRange>(2);
+        int specsCount = 0;
+        int start = eqIdx + 1;
+        final int len = rangeHeader.length();
+        while (start <= len) {
+            int end = rangeHeader.indexOf(',', start);
+            if (end == -1) {
+                end = len;
+            }
+            
+            final String spec = rangeHeader.substring(start, end).trim();
+            start = end + 1;
+            
+            if (spec.isEmpty()) {
+                continue;
+            }
+            
+            if (++specsCount > MAX_RANGES) {
+                return null;
+            }
+            
+            final int dashIdx = spec.indexOf('-');
+            if (dashIdx == -1) {
+                return null;
+            }
+            
+            final long first;
+            final long last;
+            try {
+                if (dashIdx == 0) { // suffix range
+                    final long suffixLength = parseLong(spec.substring(1));
+                    if (suffixLength == 0 || resourceLength == 0) {
+                        continue;
+                    }
+                    first = Math.max(0, resourceLength - suffixLength);
+                    last = resourceLength - 1;
+                } else {
+                    first = parseLong(spec.substring(0, dashIdx));
+                    final String lastStr = spec.substring(dashIdx + 1);
+                    if (lastStr.isEmpty()) {
+                        last = resourceLength - 1;
+                    } else {
+                        final long lastRequested = parseLong(lastStr);
+                        if (lastRequested < first) {
+                            return null;
+                        }
+                        last = Math.min(lastRequested, resourceLength - 1);
+                    }
+                    
+                    if (first >= resourceLength) {
+                        continue;
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            
+            ranges.add(new ByteRange(first, last));
+        }
+        
+        if (specsCount == 0) {
+            return null;
+        }
+        
+        return coalesce(ranges);
+    }
+    
+    /**
+     * Checks the <tt>If-Range</tt> header value.
+     * 
+     * @param ifRangeHeader the <tt>If-Range</tt> header value.
+     * @param etag the resource entity tag, or <tt>null</tt>.
+     * @param lastModified the resource last modification time in milliseconds,
+     *        or <tt>-1</tt>.
+     * @return <tt>true</tt> if the <tt>Range</tt> header has to be applied, or
+     *         <tt>false</tt> if the entire resource has to be sent.
+     */
+    public static boolean isIfRangeMatched(final String ifRangeHeader,
+            final String etag, final long lastModified) {
+        if (ifRangeHeader == null) {
+            return true;
+        }
+        
+        final String value = ifRangeHeader.trim();
+        if (value.startsWith("W/")) {
+            // weak validators never match
+            return false;
+        }
+        
+        if (value.startsWith("\"")) {
+            return value.equals(etag);
+        }
+        
+        if (lastModified < 0) {
+            return false;
+        }
+        
+        final long date = FastHttpDateFormat.parseDate(value, null);
+        return date != -1 && date / 1000 == lastModified / 1000;
+    }
+
+    /**
+     * @return new <tt>multipart/byteranges</tt> boundary.
+     */
+    public static String generateBoundary() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        return Long.toHexString(random.nextLong())
+                + Long.toHexString(random.nextLong());
+    }
+    
+    /**
+     * @return the <tt>multipart/byteranges</tt> content type with the given
+     *         boundary.
+     */
+    public static String multipartContentType(final String boundary) {
+        return "multipart/byteranges; boundary=" + boundary;
+    }
+    
+    /**
+     * Returns the bytes to be sent before the range content in the
+     * <tt>multipart/byteranges</tt> response.
+     * 
+     * @param boundary the multipart boundary.
+     * @param contentType the resource content type, or <tt>null</tt>.
+     * @param resourceLength the complete resource length.
+     */
+    public byte[] toPartHeader(final String boundary, final String contentType,
+            final long resourceLength) {
+        final StringBuilder sb = new StringBuilder(128);
+        sb.append("\r\n--").append(boundary).append("\r\n");
+        if (contentType != null) {
+            sb.append("Content-Type: ").append(contentType).append("\r\n");
+        }
+        sb.append("Content-Range: ").append(toContentRange(resourceLength))
+                .append("\r\n\r\n");
+        
+        return sb.toString().getBytes(ASCII);
+    }
+
+    /**
+     * Returns the bytes closing the <tt>multipart/byteranges</tt> response.
+     * 
+     * @param boundary the multipart boundary.
+     */
+    public static byte[] toClosingBoundary(final String boundary) {
+        return ("\r\n--" + boundary + "--\r\n").getBytes(ASCII);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ByteRange)) {
+            return false;
+        }
+        
+        final ByteRange other = (ByteRange) o;
+        return first == other.first && last == other.last;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (first ^ (first >>> 32)) * 31
+                + (int) (last ^ (last >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return first + "-" + last;
+    }
+
+    private static long parseLong(final String s) {
+        final String value = s.trim();
+        if (value.isEmpty() || value.charAt(0) == '+' || value.charAt(0) == '-') {
+            throw new NumberFormatException(s);
+        }
+        
+        return Long.parseLong(value);
+    }
+    
+    private static List<ByteRange> coalesce(final List<ByteRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+        
+        Collections.sort(ranges, START_COMPARATOR);
+        
+        final List<ByteRange> result = new ArrayList<ByteRange>(ranges.size());
+        ByteRange current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            final ByteRange next = ranges.get(i);
+            if (next.first <= current.last + 1) {
+                if (next.last > current.last) {
+                    current = new ByteRange(current.first, next.last);
+                }
+            } else {
+                result.add(current);
+                current = next;
+            }
+        }
+        result.add(current);
+        
+        return result;
+    }
+}
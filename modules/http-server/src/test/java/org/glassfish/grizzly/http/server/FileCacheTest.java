@@ -74,7 +74,9 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.net.URL;
+import java.nio.file.Files;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -90,6 +92,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import org.glassfish.grizzly.http.CompressionConfig.CompressionMode;
 
 import org.glassfish.grizzly.http.server.filecache.FileCacheProbe;
+import org.glassfish.grizzly.http.util.Header;
 import org.glassfish.grizzly.http.util.MimeType;
 import org.junit.After;
 import org.junit.Before;
@@ -1118,6 +1121,264 @@ public class FileCacheTest {
     }
 
 
+    @Test
+    public void testLruEviction() throws Exception {
+        final File file1 = createTempFile();
+        final File file2 = createTempFile();
+        final File file3 = createTempFile();
+
+        final StatsCacheProbe cacheProbe = new StatsCacheProbe();
+        httpServer.getServerConfiguration().getMonitoringConfig().getFileCacheConfig().addProbes(cacheProbe);
+        startHttpServer(new StaticHttpHandler(file1.getParent()));
+
+        final FileCache fileCache = httpServer.getListener("grizzly").getFileCache();
+        fileCache.setMaxCacheEntries(2);
+        fileCache.setEvictionPolicy(FileCache.EvictionPolicy.LRU);
+
+        final ReusableFuture<HttpContent> responseFuture =
+                new ReusableFuture<HttpContent>();
+        final Connection c = getConnection("localhost", PORT, responseFuture);
+
+        requestFile(c, responseFuture, file1);
+        requestFile(c, responseFuture, file2);
+        // file1 becomes the most recently used entry
+        requestFile(c, responseFuture, file1);
+        requestFile(c, responseFuture, file3);
+
+        assertEquals(cacheProbe.toString(), 3, cacheProbe.getEntryAddedCounter());
+        assertEquals(cacheProbe.toString(), 1, cacheProbe.getEntryRemovedCounter());
+        assertEquals(1, fileCache.getEvictionCount());
+
+        // file2 has been evicted, file1 has to be served from the cache
+        final int hits = cacheProbe.getEntryHitCounter();
+        requestFile(c, responseFuture, file1);
+        assertEquals(cacheProbe.toString(), hits + 1, cacheProbe.getEntryHitCounter());
+        requestFile(c, responseFuture, file2);
+        assertEquals(cacheProbe.toString(), hits + 1, cacheProbe.getEntryHitCounter());
+    }
+
+    @Test
+    public void testTinyLfuAdmission() throws Exception {
+        final File file1 = createTempFile();
+        final File file2 = createTempFile();
+        final File file3 = createTempFile();
+
+        final StatsCacheProbe cacheProbe = new StatsCacheProbe();
+        httpServer.getServerConfiguration().getMonitoringConfig().getFileCacheConfig().addProbes(cacheProbe);
+        startHttpServer(new StaticHttpHandler(file1.getParent()));
+
+        final FileCache fileCache = httpServer.getListener("grizzly").getFileCache();
+        fileCache.setMaxCacheEntries(2);
+        fileCache.setEvictionPolicy(FileCache.EvictionPolicy.TINY_LFU);
+
+        final ReusableFuture<HttpContent> responseFuture =
+                new ReusableFuture<HttpContent>();
+        final Connection c = getConnection("localhost", PORT, responseFuture);
+
+        for (int i = 0; i < 2; i++) {
+            requestFile(c, responseFuture, file1);
+            requestFile(c, responseFuture, file2);
+        }
+        assertEquals(cacheProbe.toString(), 2, cacheProbe.getEntryAddedCounter());
+
+        // the one-off request must not replace the popular entries
+        requestFile(c, responseFuture, file3);
+        assertEquals(cacheProbe.toString(), 2, cacheProbe.getEntryAddedCounter());
+        assertEquals(0, fileCache.getEvictionCount());
+
+        // once file3 is requested more often than file1 it gets admitted
+        requestFile(c, responseFuture, file3);
+        requestFile(c, responseFuture, file3);
+        assertEquals(cacheProbe.toString(), 3, cacheProbe.getEntryAddedCounter());
+        assertEquals(cacheProbe.toString(), 1, cacheProbe.getEntryRemovedCounter());
+        assertEquals(1, fileCache.getEvictionCount());
+    }
+
+    @Test
+    public void testFileWatchInvalidation() throws Exception {
+        final File file = createTempFile();
+
+        final StatsCacheProbe cacheProbe = new StatsCacheProbe();
+        httpServer.getServerConfiguration().getMonitoringConfig().getFileCacheConfig().addProbes(cacheProbe);
+        httpServer.getListener("grizzly").getFileCache().setFileWatchEnabled(true);
+        startHttpServer(new StaticHttpHandler(file.getParent()));
+
+        final ReusableFuture<HttpContent> responseFuture =
+                new ReusableFuture<HttpContent>();
+        final Connection c = getConnection("localhost", PORT, responseFuture);
+        requestFile(c, responseFuture, file);
+        assertEquals(cacheProbe.toString(), 1, cacheProbe.getEntryAddedCounter());
+
+        final String newContent = "updated content";
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(newContent.getBytes());
+        } finally {
+            out.close();
+        }
+
+        for (int i = 0; i < 100 && cacheProbe.getEntryRemovedCounter() == 0; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(cacheProbe.toString(), 1, cacheProbe.getEntryRemovedCounter());
+
+        final HttpContent response = requestFile(c, responseFuture, file);
+        assertEquals(newContent, response.getContent().toStringContent());
+        assertEquals(cacheProbe.toString(), 2, cacheProbe.getEntryAddedCounter());
+    }
+
+    @Test
+    public void testCachedResponseHeaders() throws Exception {
+        final File file = createTempFile();
+
+        final StatsCacheProbe cacheProbe = new StatsCacheProbe();
+        httpServer.getServerConfiguration().getMonitoringConfig().getFileCacheConfig().addProbes(cacheProbe);
+        startHttpServer(new StaticHttpHandler(file.getParent()));
+
+        final ReusableFuture<HttpContent> responseFuture =
+                new ReusableFuture<HttpContent>();
+        final Connection c = getConnection("localhost", PORT, responseFuture);
+        final HttpResponsePacket response1 = (HttpResponsePacket)
+                requestFile(c, responseFuture, file).getHttpHeader();
+        final HttpContent content2 = requestFile(c, responseFuture, file);
+        final HttpResponsePacket response2 = (HttpResponsePacket) content2.getHttpHeader();
+        assertEquals(cacheProbe.toString(), 1, cacheProbe.getEntryHitCounter());
+
+        assertNotNull(response2.getHeader(Header.ETag));
+        assertEquals(response1.getHeader(Header.ETag), response2.getHeader(Header.ETag));
+        assertEquals(response1.getHeader(Header.LastModified),
+                response2.getHeader(Header.LastModified));
+        assertEquals(file.length(), response2.getContentLength());
+        assertEquals(file.length(), content2.getContent().remaining());
+        assertNotNull(response2.getHeader(Header.Date));
+    }
+
+    @Test
+    public void testRangeRequests() throws Exception {
+        final File file = createTempFile();
+        final byte[] data = Files.readAllBytes(file.toPath());
+
+        final StatsCacheProbe cacheProbe = new StatsCacheProbe();
+        httpServer.getServerConfiguration().getMonitoringConfig().getFileCacheConfig().addProbes(cacheProbe);
+        startHttpServer(new StaticHttpHandler(file.getParent()));
+
+        final ReusableFuture<HttpContent> responseFuture =
+                new ReusableFuture<HttpContent>();
+        final Connection c = getConnection("localhost", PORT, responseFuture);
+
+        // the first request is served by the handler, the second one by the cache
+        for (int i = 0; i < 2; i++) {
+            final HttpContent single = requestRange(c, responseFuture, file, "bytes=10-19");
+            final HttpResponsePacket response = (HttpResponsePacket) single.getHttpHeader();
+            assertEquals(206, response.getStatus());
+            assertEquals("bytes 10-19/" + data.length,
+                    response.getHeader(Header.ContentRange));
+            assertEquals("bytes", response.getHeader(Header.AcceptRanges));
+            assertEquals(new String(data, 10, 10), single.getContent().toStringContent());
+
+            final HttpContent multi = requestRange(c, responseFuture, file, "bytes=0-4,-5");
+            final HttpResponsePacket multiResponse = (HttpResponsePacket) multi.getHttpHeader();
+            assertEquals(206, multiResponse.getStatus());
+            assertTrue(multiResponse.getContentType(),
+                    multiResponse.getContentType().startsWith("multipart/byteranges"));
+            final String body = multi.getContent().toStringContent();
+            assertEquals(body.length(), multiResponse.getContentLength());
+            assertTrue(body, body.contains("Content-Range: bytes 0-4/" + data.length
+                    + "\r\n\r\n" + new String(data, 0, 5) + "\r\n--"));
+            assertTrue(body, body.contains("Content-Range: bytes " + (data.length - 5) + "-"
+                    + (data.length - 1) + "/" + data.length + "\r\n\r\n"
+                    + new String(data, data.length - 5, 5) + "\r\n--"));
+            assertTrue(body, body.endsWith("--\r\n"));
+
+            final HttpContent unsatisfied = requestRange(c, responseFuture, file,
+                    "bytes=" + data.length + "-");
+            final HttpResponsePacket unsatisfiedResponse =
+                    (HttpResponsePacket) unsatisfied.getHttpHeader();
+            assertEquals(416, unsatisfiedResponse.getStatus());
+            assertEquals("bytes */" + data.length,
+                    unsatisfiedResponse.getHeader(Header.ContentRange));
+            assertFalse(unsatisfied.getContent().hasRemaining());
+        }
+        assertTrue(cacheProbe.toString(), cacheProbe.getEntryHitCounter() >= 2);
+
+        // If-Range with a stale validator returns the entire resource
+        final HttpRequestPacket request = HttpRequestPacket.builder()
+                .method("GET")
+                .uri("/" + file.getName())
+                .protocol("HTTP/1.1")
+                .header("Host", "localhost")
+                .header("Range", "bytes=10-19")
+                .header("If-Range", "\"stale\"")
+                .build();
+        responseFuture.reset();
+        c.write(request);
+        final HttpContent full = responseFuture.get(10, TimeUnit.SECONDS);
+        assertEquals(200, ((HttpResponsePacket) full.getHttpHeader()).getStatus());
+        assertEquals(data.length, full.getContent().remaining());
+    }
+
+    @Test
+    public void testRangeRequestLargeFile() throws Exception {
+        final File file = File.createTempFile("grizzly-file-cache", ".bin");
+        file.deleteOnExit();
+        final long length = 64L * 1024 * 1024;
+        final long offset = length - 1024 * 1024 - 3;
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(length);
+            raf.seek(offset);
+            raf.write("range-marker".getBytes());
+        } finally {
+            raf.close();
+        }
+
+        startHttpServer(new StaticHttpHandler(file.getParent()));
+
+        final ReusableFuture<HttpContent> responseFuture =
+                new ReusableFuture<HttpContent>();
+        final Connection c = getConnection("localhost", PORT, responseFuture);
+        for (int i = 0; i < 2; i++) {
+            final HttpContent content = requestRange(c, responseFuture, file,
+                    "bytes=" + offset + "-" + (offset + 11));
+            final HttpResponsePacket response = (HttpResponsePacket) content.getHttpHeader();
+            assertEquals(206, response.getStatus());
+            assertEquals(12, response.getContentLength());
+            assertEquals("range-marker", content.getContent().toStringContent());
+        }
+    }
+
+    private HttpContent requestRange(final Connection c,
+                             final ReusableFuture<HttpContent> responseFuture,
+                             final File file,
+                             final String range) throws Exception {
+        final HttpRequestPacket request = HttpRequestPacket.builder()
+                .method("GET")
+                .uri("/" + file.getName())
+                .protocol("HTTP/1.1")
+                .header("Host", "localhost")
+                .header("Range", range)
+                .build();
+        responseFuture.reset();
+        c.write(request);
+        return responseFuture.get(10, TimeUnit.SECONDS);
+    }
+
+    private HttpContent requestFile(final Connection c,
+                             final ReusableFuture<HttpContent> responseFuture,
+                             final File file) throws Exception {
+        final HttpRequestPacket request = HttpRequestPacket.builder()
+                .method("GET")
+                .uri("/" + file.getName())
+                .protocol("HTTP/1.1")
+                .header("Host", "localhost")
+                .build();
+        responseFuture.reset();
+        c.write(request);
+        final HttpContent response = responseFuture.get(10, TimeUnit.SECONDS);
+        assertEquals(200, ((HttpResponsePacket) response.getHttpHeader()).getStatus());
+        return response;
+    }
+
     private void configureHttpServer() throws Exception {
         httpServer = new HttpServer();
         final NetworkListener listener =
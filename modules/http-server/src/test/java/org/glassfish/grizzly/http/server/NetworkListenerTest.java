@@ -41,17 +41,31 @@
 package org.glassfish.grizzly.http.server;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import org.glassfish.grizzly.Buffer;
 import org.glassfish.grizzly.EmptyCompletionHandler;
 
 import org.glassfish.grizzly.PortRange;
+import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.memory.ByteBufferArray;
+import org.glassfish.grizzly.memory.PooledMemoryManager;
 import org.glassfish.grizzly.http.server.util.Globals;
 import org.glassfish.grizzly.impl.FutureImpl;
 import org.glassfish.grizzly.utils.Charsets;
@@ -158,6 +172,83 @@ public class NetworkListenerTest {
         }
     }
     
+    @Test
+    public void testOutputMemoryManager() throws Exception {
+        final int contentLength = 100000;
+        final byte[] content = new byte[contentLength];
+        for (int i = 0; i < contentLength; i++) {
+            content[i] = (byte) ('a' + (i % 26));
+        }
+
+        final HttpServer server = HttpServer.createSimpleServer("/tmp", PORT);
+        final NetworkListener listener = server.getListener("grizzly");
+        listener.setOutputMemoryManager(new PooledMemoryManager(true));
+
+        final AtomicInteger directWrites = new AtomicInteger();
+        final AtomicInteger heapWrites = new AtomicInteger();
+        listener.registerAddOn(new AddOn() {
+            @Override
+            public void setup(final NetworkListener networkListener,
+                    final FilterChainBuilder builder) {
+                final int idx = builder.indexOfType(TransportFilter.class);
+                builder.add(idx + 1, new BaseFilter() {
+                    @Override
+                    public NextAction handleWrite(final FilterChainContext ctx)
+                            throws IOException {
+                        final Buffer buffer = ctx.getMessage();
+                        final ByteBufferArray array = buffer.toByteBufferArray();
+                        final ByteBuffer[] byteBuffers = array.getArray();
+                        for (int i = 0; i < array.size(); i++) {
+                            if (byteBuffers[i].isDirect()) {
+                                directWrites.incrementAndGet();
+                            } else {
+                                heapWrites.incrementAndGet();
+                            }
+                        }
+                        array.restore();
+                        array.recycle();
+                        return ctx.getInvokeAction();
+                    }
+                });
+            }
+        });
+
+        server.getServerConfiguration().addHttpHandler(
+                new HttpHandler() {
+                    @Override
+                    public void service(Request request, Response response)
+                            throws Exception {
+                        response.setContentLength(contentLength);
+                        final OutputStream out = response.getOutputStream();
+                        for (int i = 0; i < contentLength; i += 1000) {
+                            out.write(content, i, 1000);
+                        }
+                    }
+                }, "/test"
+        );
+        try {
+            server.start();
+            URL url = new URL("http://localhost:" + PORT + "/test");
+            HttpURLConnection c = (HttpURLConnection) url.openConnection();
+            assertEquals(200, c.getResponseCode());
+
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (InputStream in = c.getInputStream()) {
+                final byte[] buf = new byte[4096];
+                int len;
+                while ((len = in.read(buf)) != -1) {
+                    baos.write(buf, 0, len);
+                }
+            }
+
+            assertTrue(Arrays.equals(content, baos.toByteArray()));
+            assertTrue(directWrites.get() > 0);
+            assertEquals(0, heapWrites.get());
+        } finally {
+            server.shutdownNow();
+        }
+    }
+
     @Test
     public void testImmediateGracefulShutdown() throws Exception {
         HttpServer server = HttpServer.createSimpleServer("/tmp", PORT);
@@ -44,6 +44,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.math.BigInteger;
 import java.net.URL;
 import java.nio.channels.FileChannel;
@@ -196,6 +197,56 @@ public class StaticHttpHandlerTest {
         }        
     }
     
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRangeRequest() throws Exception {
+        final int fileSize = 16 * 1024 * 1024;
+        final File control = generateTempFile(fileSize);
+        final long first = 5 * 1024 * 1024 + 7;
+        final long last = fileSize - 3;
+        
+        final FutureImpl<File> result = Futures.createSafeFuture();
+
+        TCPNIOTransport client = createClient(result, new ResponseValidator() {
+            @Override
+            public void validate(HttpResponsePacket response) {
+                assertEquals(206, response.getStatus());
+                assertEquals("bytes " + first + "-" + last + "/" + fileSize,
+                        response.getHeader(Header.ContentRange));
+                assertEquals(last - first + 1, response.getContentLength());
+            }
+        }, isSslEnabled);
+        try {
+            client.start();
+            Connection c = client.connect("localhost", PORT).get(10, TimeUnit.SECONDS);
+            
+            HttpRequestPacket request =
+                    HttpRequestPacket.builder().uri("/" + control.getName())
+                        .method(Method.GET)
+                        .protocol(Protocol.HTTP_1_1)
+                        .header("Host", "localhost:" + PORT)
+                        .header("Range", "bytes=" + first + "-" + last).build();
+            c.write(request);
+            File fResult = result.get(20, TimeUnit.SECONDS);
+            assertEquals(last - first + 1, fResult.length());
+            
+            final byte[] expected = new byte[(int) (last - first + 1)];
+            final RandomAccessFile raf = new RandomAccessFile(control, "r");
+            try {
+                raf.seek(first);
+                raf.readFully(expected);
+            } finally {
+                raf.close();
+            }
+            assertTrue("Range content differs from the control file.",
+                    Arrays.equals(expected, Files.readAllBytes(fResult.toPath())));
+            
+            c.close();
+        } finally {
+            client.shutdownNow();
+        }        
+    }
+    
     /**
      * Make sure we receive 301 redirect, when trying to access directory
      * without trailing slash.
@@ -0,0 +1,123 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server.util;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link ByteRange} parsing tests.
+ */
+public class ByteRangeTest {
+
+    @Test
+    public void testSingleRanges() {
+        assertEquals(Arrays.asList(new ByteRange(0, 99)),
+                ByteRange.parse("bytes=0-99", 1000));
+        assertEquals(Arrays.asList(new ByteRange(900, 999)),
+                ByteRange.parse("bytes=-100", 1000));
+        assertEquals(Arrays.asList(new ByteRange(500, 999)),
+                ByteRange.parse("bytes=500-", 1000));
+        // last-byte-pos beyond the resource end is truncated
+        assertEquals(Arrays.asList(new ByteRange(990, 999)),
+                ByteRange.parse("bytes = 990-5000", 1000));
+        // suffix longer than the resource selects the whole resource
+        assertEquals(Arrays.asList(new ByteRange(0, 999)),
+                ByteRange.parse("bytes=-5000", 1000));
+    }
+
+    @Test
+    public void testCoalescing() {
+        final List<ByteRange> ranges =
+                ByteRange.parse("bytes=500-600,0-9,10-19,550-700, 990-", 1000);
+        assertEquals(Arrays.asList(new ByteRange(0, 19),
+                new ByteRange(500, 700), new ByteRange(990, 999)), ranges);
+    }
+
+    @Test
+    public void testUnsatisfiable() {
+        assertTrue(ByteRange.parse("bytes=1000-", 1000).isEmpty());
+        assertTrue(ByteRange.parse("bytes=-0", 1000).isEmpty());
+        assertTrue(ByteRange.parse("bytes=0-10", 0).isEmpty());
+        assertEquals("bytes */1000", ByteRange.unsatisfiedContentRange(1000));
+    }
+
+    @Test
+    public void testIgnored() {
+        assertNull(ByteRange.parse("items=0-10", 1000));
+        assertNull(ByteRange.parse("bytes=10-5", 1000));
+        assertNull(ByteRange.parse("bytes=a-b", 1000));
+        assertNull(ByteRange.parse("bytes=", 1000));
+        assertNull(ByteRange.parse("bytes=-", 1000));
+
+        final StringBuilder sb = new StringBuilder("bytes=");
+        for (int i = 0; i <= ByteRange.MAX_RANGES; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(i * 10).append('-').append(i * 10 + 1);
+        }
+        assertNull(ByteRange.parse(sb.toString(), 1000));
+    }
+
+    @Test
+    public void testContentRange() {
+        final ByteRange range = new ByteRange(10, 19);
+        assertEquals(10, range.getLength());
+        assertEquals("bytes 10-19/1000", range.toContentRange(1000));
+    }
+
+    @Test
+    public void testIfRange() {
+        final long lastModified = 1500000000000L;
+        final String date = "Fri, 14 Jul 2017 02:40:00 GMT";
+
+        assertTrue(ByteRange.isIfRangeMatched("\"abc\"", "\"abc\"", lastModified));
+        assertFalse(ByteRange.isIfRangeMatched("\"abd\"", "\"abc\"", lastModified));
+        assertFalse(ByteRange.isIfRangeMatched("W/\"abc\"", "W/\"abc\"", lastModified));
+        assertTrue(ByteRange.isIfRangeMatched(date, "\"abc\"", lastModified + 500));
+        assertFalse(ByteRange.isIfRangeMatched(date, "\"abc\"", lastModified + 1000));
+        assertFalse(ByteRange.isIfRangeMatched("garbage", "\"abc\"", lastModified));
+    }
+}
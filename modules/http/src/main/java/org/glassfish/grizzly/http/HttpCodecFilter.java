@@ -153,6 +153,11 @@ public abstract class HttpCodecFilter extends HttpBaseFilter
      * @see #setRemoveHandledContentEncodingHeaders
      */
     private boolean removeHandledContentEncodingHeaders = false;
+
+    /**
+     * @see #setOutputMemoryManager(org.glassfish.grizzly.memory.MemoryManager)
+     */
+    private volatile MemoryManager outputMemoryManager;
     
     /**
      * File cache probes
@@ -404,6 +409,31 @@ public abstract class HttpCodecFilter extends HttpBaseFilter
         this.maxPayloadRemainderToSkip = maxPayloadRemainderToSkip;
     }
 
+    /**
+     * @return the {@link MemoryManager} used to allocate the serialized
+     * outgoing HTTP messages, or <tt>null</tt> if the {@link Connection}'s
+     * {@link MemoryManager} is used.
+     */
+    public MemoryManager getOutputMemoryManager() {
+        return outputMemoryManager;
+    }
+
+    /**
+     * Sets the {@link MemoryManager} used to allocate the serialized outgoing
+     * HTTP messages. If <tt>null</tt> (default) - the {@link Connection}'s
+     * {@link MemoryManager} is used.
+     * Passing a direct {@link MemoryManager}, for example
+     * <tt>new PooledMemoryManager(true)</tt>, lets the encoded HTTP messages
+     * be written to the channel as they are, without being copied into
+     * an intermediate direct buffer by the transport.
+     *
+     * @param outputMemoryManager the {@link MemoryManager} for outgoing
+     *        HTTP messages.
+     */
+    public void setOutputMemoryManager(final MemoryManager outputMemoryManager) {
+        this.outputMemoryManager = outputMemoryManager;
+    }
+
     /**
      * @return <code>true</code> if header case will be preserved, otherwise <code>false</code>.
      *  Default is <code>false</code>.
@@ -1556,7 +1586,9 @@ public abstract class HttpCodecFilter extends HttpBaseFilter
             final HttpHeader httpHeader, final HttpContent httpContent,
             final boolean isContentAlreadyEncoded) {
         final Connection connection = ctx.getConnection();
-        final MemoryManager memoryManager = ctx.getMemoryManager();
+        final MemoryManager memoryManager = outputMemoryManager != null
+                ? outputMemoryManager
+                : ctx.getMemoryManager();
 
         Buffer encodedBuffer = null;
         
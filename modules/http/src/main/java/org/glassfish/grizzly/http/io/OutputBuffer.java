@@ -188,6 +188,23 @@ public class OutputBuffer {
     public void initialize(final HttpHeader outputHeader,
                            final boolean sendfileEnabled,
                            final FilterChainContext ctx) {
+        initialize(outputHeader, sendfileEnabled, null, ctx);
+    }
+
+    /**
+     * Initializes the <tt>OutputBuffer</tt>.
+     *
+     * @param outputHeader the {@link HttpHeader} the content belongs to.
+     * @param sendfileEnabled <tt>true</tt> if sendfile is allowed.
+     * @param outputMemoryManager the {@link MemoryManager} to allocate the
+     *        content buffers from, or <tt>null</tt> to use the
+     *        {@link Connection}'s {@link MemoryManager}.
+     * @param ctx the {@link FilterChainContext}.
+     */
+    public void initialize(final HttpHeader outputHeader,
+                           final boolean sendfileEnabled,
+                           final MemoryManager outputMemoryManager,
+                           final FilterChainContext ctx) {
 
         this.outputHeader = outputHeader;
         if (builder == null) {
@@ -199,7 +216,9 @@ public class OutputBuffer {
         this.ctx = ctx;
         httpContext = outputHeader.getProcessingState().getHttpContext();
         connection = ctx.getConnection();
-        memoryManager = ctx.getMemoryManager();
+        memoryManager = outputMemoryManager != null
+                ? outputMemoryManager
+                : ctx.getMemoryManager();
     }
 
     /**
@@ -702,6 +721,11 @@ public class OutputBuffer {
 
             assert currentBuffer != null;
             currentBuffer.put(b, off, len);
+        } else if (memoryManager.willAllocateDirect(len)
+                && canWritePayloadChunk()) {
+            // copy b[] directly to the direct buffers, which could be
+            // written by the transport without an extra copy
+            flushDirect(b, off, len);
         } else if (canWritePayloadChunk()) {
             // If b[] is too big - try to send it to wire right away (if chunking is allowed)
             
@@ -1118,6 +1142,31 @@ public class OutputBuffer {
         }
     }
 
+    private void flushDirect(final byte[] b, final int off, final int len)
+            throws IOException {
+        int written = 0;
+        if (currentBuffer != null) {
+            written = Math.min(len, currentBuffer.remaining());
+            currentBuffer.put(b, off, written);
+        }
+        
+        finishCurrentBuffer();
+        
+        final Buffer directBuffer = memoryManager.allocate(len - written);
+        directBuffer.put(b, off + written, len - written);
+        directBuffer.flip();
+        directBuffer.allowBufferDispose(true);
+        
+        checkCompositeBuffer();
+        compositeBuffer.append(directBuffer);
+        
+        doCommit();
+        flushBuffer(compositeBuffer, false, null);
+        compositeBuffer = null;
+        
+        blockAfterWriteIfNeeded();
+    }
+
     private void finishCurrentBuffer() {
         if (currentBuffer != null && currentBuffer.position() > 0) {
             currentBuffer.trim();
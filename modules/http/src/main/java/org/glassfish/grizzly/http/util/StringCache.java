@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2010-2011 Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2010-2017 Oracle and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -58,18 +58,33 @@
 
 package org.glassfish.grizzly.http.util;
 
+import org.glassfish.grizzly.Buffer;
 import org.glassfish.grizzly.Grizzly;
 
 import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.TreeMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * This class implements a String cache for ByteChunk and CharChunk.
+ * This class implements a String cache for ByteChunk, CharChunk and
+ * BufferChunk.
+ *
+ * The cache is split into shards, selected by the hash of the chunk content,
+ * so the lookup doesn't have to create a String. Each shard keeps an
+ * immutable hash table of the cached Strings, which is read without locking,
+ * and periodically rebuilds it using the sampled access frequencies, so the
+ * cache adapts to the changing traffic.
  *
  * @author Remy Maucherat
  */
@@ -103,54 +118,41 @@ public final class StringCache {
         Integer.parseInt(System.getProperty("tomcat.util.buf.StringCache.cacheSize", "200"));
     
 
-    /**
-     * Statistics hash map for byte chunk.
-     */
-    static final HashMap<ByteEntry, int[]> bcStats =
-        new HashMap<ByteEntry, int[]>(cacheSize);
+    static int sampleRate =
+        Integer.parseInt(System.getProperty("tomcat.util.buf.StringCache.sampleRate", "16"));
 
-    
-    /**
-     * toString count for byte chunk.
-     */
-    static int bcCount = 0;
-    
-    
-    /**
-     * Cache for byte chunk.
-     */
-    static ByteEntry[] bcCache = null;
-    
 
     /**
-     * Statistics hash map for char chunk.
+     * The number of the hash bits used to select a shard.
      */
-    static final HashMap<CharEntry, int[]> ccStats =
-        new HashMap<CharEntry, int[]>(cacheSize);
+    static final int SHARD_BITS = 3;
+    
 
+    static final int SHARDS_COUNT = 1 << SHARD_BITS;
+    
 
     /**
-     * toString count for char chunk.
+     * Shards for byte chunk and buffer chunk.
      */
-    static int ccCount = 0;
+    static final Shard[] bcShards = createShards();
     
 
     /**
-     * Cache for char chunk.
+     * Shards for char chunk.
      */
-    static CharEntry[] ccCache = null;
+    static final Shard[] ccShards = createShards();
 
     
     /**
      * Access count.
      */
-    static int accessCount = 0;
+    static final LongAdder accessCount = new LongAdder();
     
 
     /**
      * Hit count.
      */
-    static int hitCount = 0;
+    static final LongAdder hitCount = new LongAdder();
     
 
     // ------------------------------------------------------------ Properties
@@ -165,6 +167,8 @@ public final class StringCache {
     
     
     /**
+     * The new cache size is applied, when the cache gets rebuilt next time.
+     *
      * @param cacheSize The cacheSize to set.
      */
     public static void setCacheSize(int cacheSize) {
@@ -205,7 +209,7 @@ public final class StringCache {
     
     
     /**
-     * @return Returns the trainThreshold.
+     * @return Returns the number of toString calls between the cache rebuilds.
      */
     public static int getTrainThreshold() {
         return trainThreshold;
@@ -213,18 +217,36 @@ public final class StringCache {
     
     
     /**
-     * @param trainThreshold The trainThreshold to set.
+     * @param trainThreshold The number of toString calls between the cache
+     * rebuilds.
      */
     public static void setTrainThreshold(int trainThreshold) {
         StringCache.trainThreshold = trainThreshold;
     }
 
     
+    /**
+     * @return Returns the sampleRate, one of sampleRate toString calls is
+     * used to collect the String frequency statistics.
+     */
+    public static int getSampleRate() {
+        return sampleRate;
+    }
+    
+    
+    /**
+     * @param sampleRate The sampleRate to set.
+     */
+    public static void setSampleRate(int sampleRate) {
+        StringCache.sampleRate = sampleRate;
+    }
+
+    
     /**
      * @return Returns the accessCount.
      */
     public static int getAccessCount() {
-        return accessCount;
+        return accessCount.intValue();
     }
     
     
@@ -232,7 +254,17 @@ public final class StringCache {
      * @return Returns the hitCount.
      */
     public static int getHitCount() {
-        return hitCount;
+        return hitCount.intValue();
+    }
+
+    
+    /**
+     * @return Returns the hit rate, the ratio between the hitCount and
+     * the accessCount.
+     */
+    public static double getHitRate() {
+        final long accesses = accessCount.sum();
+        return accesses == 0 ? 0 : (double) hitCount.sum() / accesses;
     }
 
     
@@ -240,473 +272,494 @@ public final class StringCache {
 
     
     public static void reset() {
-        hitCount = 0;
-        accessCount = 0;
-        synchronized (bcStats) {
-            bcCache = null;
-            bcCount = 0;
+        hitCount.reset();
+        accessCount.reset();
+        for (Shard shard : bcShards) {
+            shard.reset();
         }
-        synchronized (ccStats) {
-            ccCache = null;
-            ccCount = 0;
+        for (Shard shard : ccShards) {
+            shard.reset();
         }
     }
     
     
     public static String toString(ByteChunk bc) {
+        if (!byteEnabled) {
+            return bc.toStringInternal();
+        }
+        
+        final byte[] b = bc.getBuffer();
+        final int start = bc.getStart();
+        final int end = bc.getEnd();
+        final Charset charset = bc.getCharset();
+        
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + b[i];
+        }
+        
+        final Shard shard = bcShards[shardIdx(hash)];
+        
+        final boolean isSample = isSample();
+        accessCount.increment();
+        ByteEntry entry = find(shard.table, hash, b, start, end, charset);
+        if (entry != null) {
+            hitCount.increment();
+        } else if (isSample) {
+            entry = new ByteEntry(hash, Arrays.copyOfRange(b, start, end),
+                    charset, bc.toStringInternal());
+        } else {
+            return bc.toStringInternal();
+        }
+        
+        if (isSample) {
+            shard.sample(entry);
+        }
+        
+        return entry.value;
+    }
 
-        // If the cache is null, then either caching is disabled, or we're
-        // still training
-        if (bcCache == null) {
-            String value = bc.toStringInternal();
-            if (byteEnabled) {
-                // If training, everything is synced
-                synchronized (bcStats) {
-                    // If the cache has been generated on a previous invocation
-                    // while waiting fot the lock, just return the toString value
-                    // we just calculated
-                    if (bcCache != null) {
-                        return value;
-                    }
-                    // Two cases: either we just exceeded the train count, in which
-                    // case the cache must be created, or we just update the count for
-                    // the string
-                    if (bcCount > trainThreshold) {
-                        long t1 = System.currentTimeMillis();
-                        // Sort the entries according to occurrence
-                        TreeMap<Integer, ArrayList<ByteEntry>> tempMap =
-                            new TreeMap<Integer, ArrayList<ByteEntry>>();
-                        Iterator<ByteEntry> entries =
-                            bcStats.keySet().iterator();
-                        while (entries.hasNext()) {
-                            ByteEntry entry = entries.next();
-                            int[] countA = bcStats.get(entry);
-                            Integer count = countA[0];
-                            // Add to the list for that count
-                            ArrayList<ByteEntry> list = tempMap.get(count);
-                            if (list == null) {
-                                // Create list
-                                list = new ArrayList<ByteEntry>();
-                                tempMap.put(count, list);
-                            }
-                            list.add(entry);
-                        }
-                        // Allocate array of the right size
-                        int size = bcStats.size();
-                        if (size > cacheSize) {
-                            size = cacheSize;
-                        }
-                        ByteEntry[] tempbcCache = new ByteEntry[size];
-                        // Fill it up using an alphabetical order
-                        // and a dumb insert sort
-                        ByteChunk tempChunk = new ByteChunk();
-                        int n = 0;
-                        while (n < size) {
-                            Object key = tempMap.lastKey();
-                            ArrayList<ByteEntry> list = tempMap.get(key);
-                            for (int i = 0; i < list.size() && n < size; i++) {
-                                ByteEntry entry = list.get(i);
-                                tempChunk.setBytes(entry.name, 0, entry.name.length);
-                                int insertPos = findClosest(tempChunk, tempbcCache, n);
-                                if (insertPos == n) {
-                                    tempbcCache[n + 1] = entry;
-                                } else {
-                                    System.arraycopy(tempbcCache, insertPos + 1, tempbcCache, 
-                                            insertPos + 2, n - insertPos - 1);
-                                    tempbcCache[insertPos + 1] = entry;
-                                }
-                                n++;
-                            }
-                            tempMap.remove(key);
-                        }
-                        bcCount = 0;
-                        bcStats.clear();
-                        bcCache = tempbcCache;
-                        if (logger.isLoggable(Level.FINEST)) {
-                            long t2 = System.currentTimeMillis();
-                            logger.log(Level.FINEST,"ByteCache generation time: " + (t2 - t1) + "ms");
-                        }
-                    } else {
-                        bcCount++;
-                        // Allocate new ByteEntry for the lookup
-                        ByteEntry entry = new ByteEntry();
-                        entry.value = value;
-                        int[] count = bcStats.get(entry);
-                        if (count == null) {
-                            int end = bc.getEnd();
-                            int start = bc.getStart();
-                            // Create byte array and copy bytes
-                            entry.name = new byte[bc.getLength()];
-                            System.arraycopy(bc.getBuffer(), start, entry.name, 0, end - start);
-                            // Set encoding
-                            entry.charset = bc.getCharset();
-                            // Initialize occurrence count to one 
-                            count = new int[1];
-                            count[0] = 1;
-                            // Set in the stats hash map
-                            bcStats.put(entry, count);
-                        } else {
-                            count[0] = count[0] + 1;
-                        }
-                    }
-                }
+
+    public static String toString(BufferChunk bc, Charset charset) {
+        final Buffer buffer = bc.getBuffer();
+        final int start = bc.getStart();
+        final int end = bc.getEnd();
+        
+        if (!byteEnabled) {
+            return buffer.toStringContent(charset, start, end);
+        }
+        
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buffer.get(i);
+        }
+        
+        final Shard shard = bcShards[shardIdx(hash)];
+        
+        final boolean isSample = isSample();
+        accessCount.increment();
+        ByteEntry entry = find(shard.table, hash, buffer, start, end, charset);
+        if (entry != null) {
+            hitCount.increment();
+        } else if (isSample) {
+            final byte[] name = new byte[end - start];
+            for (int i = 0; i < name.length; i++) {
+                name[i] = buffer.get(start + i);
             }
-            return value;
+            
+            entry = new ByteEntry(hash, name, charset,
+                    buffer.toStringContent(charset, start, end));
         } else {
-            accessCount++;
-            // Find the corresponding String
-            String result = find(bc);
-            if (result == null) {
-                return bc.toStringInternal();
-            }
-            // Note: We don't care about safety for the stats
-            hitCount++;
-            return result;
+            return buffer.toStringContent(charset, start, end);
+        }
+        
+        if (isSample) {
+            shard.sample(entry);
         }
         
+        return entry.value;
     }
-
+    
 
     public static String toString(CharChunk cc) {
+        if (!charEnabled) {
+            return cc.toStringInternal();
+        }
         
-        // If the cache is null, then either caching is disabled, or we're
-        // still training
-        if (ccCache == null) {
-            String value = cc.toStringInternal();
-            if (charEnabled) {
-                // If training, everything is synced
-                synchronized (ccStats) {
-                    // If the cache has been generated on a previous invocation
-                    // while waiting fot the lock, just return the toString value
-                    // we just calculated
-                    if (ccCache != null) {
-                        return value;
-                    }
-                    // Two cases: either we just exceeded the train count, in which
-                    // case the cache must be created, or we just update the count for
-                    // the string
-                    if (ccCount > trainThreshold) {
-                        long t1 = System.currentTimeMillis();
-                        // Sort the entries according to occurrence
-                        TreeMap<Integer, ArrayList<CharEntry>> tempMap =
-                            new TreeMap<Integer, ArrayList<CharEntry>>();
-                        Iterator<CharEntry> entries = ccStats.keySet().iterator();
-                        while (entries.hasNext()) {
-                            CharEntry entry = entries.next();
-                            int[] countA = ccStats.get(entry);
-                            Integer count = countA[0];
-                            // Add to the list for that count
-                            ArrayList<CharEntry> list = tempMap.get(count);
-                            if (list == null) {
-                                // Create list
-                                list = new ArrayList<CharEntry>();
-                                tempMap.put(count, list);
-                            }
-                            list.add(entry);
-                        }
-                        // Allocate array of the right size
-                        int size = ccStats.size();
-                        if (size > cacheSize) {
-                            size = cacheSize;
-                        }
-                        CharEntry[] tempccCache = new CharEntry[size];
-                        // Fill it up using an alphabetical order
-                        // and a dumb insert sort
-                        CharChunk tempChunk = new CharChunk();
-                        int n = 0;
-                        while (n < size) {
-                            Object key = tempMap.lastKey();
-                            ArrayList<CharEntry> list = tempMap.get(key);
-                            for (int i = 0; i < list.size() && n < size; i++) {
-                                CharEntry entry = list.get(i);
-                                tempChunk.setChars(entry.name, 0, entry.name.length);
-                                int insertPos = findClosest(tempChunk, tempccCache, n);
-                                if (insertPos == n) {
-                                    tempccCache[n + 1] = entry;
-                                } else {
-                                    System.arraycopy(tempccCache, insertPos + 1, tempccCache, 
-                                            insertPos + 2, n - insertPos - 1);
-                                    tempccCache[insertPos + 1] = entry;
-                                }
-                                n++;
-                            }
-                            tempMap.remove(key);
-                        }
-                        ccCount = 0;
-                        ccStats.clear();
-                        ccCache = tempccCache;
-                        if (logger.isLoggable(Level.FINEST)) {
-                            long t2 = System.currentTimeMillis();
-                            logger.log(Level.FINEST,"CharCache generation time: " + (t2 - t1) + "ms");
-                        }
-                    } else {
-                        ccCount++;
-                        // Allocate new CharEntry for the lookup
-                        CharEntry entry = new CharEntry();
-                        entry.value = value;
-                        int[] count = ccStats.get(entry);
-                        if (count == null) {
-                            int end = cc.getEnd();
-                            int start = cc.getStart();
-                            // Create char array and copy chars
-                            entry.name = new char[cc.getLength()];
-                            System.arraycopy(cc.getBuffer(), start, entry.name, 0, end - start);
-                            // Initialize occurrence count to one 
-                            count = new int[1];
-                            count[0] = 1;
-                            // Set in the stats hash map
-                            ccStats.put(entry, count);
-                        } else {
-                            count[0] = count[0] + 1;
-                        }
-                    }
-                }
-            }
-            return value;
+        final char[] c = cc.getBuffer();
+        final int start = cc.getStart();
+        final int end = cc.getEnd();
+        
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + c[i];
+        }
+        
+        final Shard shard = ccShards[shardIdx(hash)];
+        
+        final boolean isSample = isSample();
+        accessCount.increment();
+        CharEntry entry = find(shard.table, hash, c, start, end);
+        if (entry != null) {
+            hitCount.increment();
+        } else if (isSample) {
+            entry = new CharEntry(hash, Arrays.copyOfRange(c, start, end),
+                    cc.toStringInternal());
         } else {
-            accessCount++;
-            // Find the corresponding String
-            String result = find(cc);
-            if (result == null) {
-                return cc.toStringInternal();
-            }
-            // Note: We don't care about safety for the stats
-            hitCount++;
-            return result;
+            return cc.toStringInternal();
+        }
+        
+        if (isSample) {
+            shard.sample(entry);
         }
         
+        return entry.value;
     }
     
     
-    // ----------------------------------------------------- Protected Methods
+    // ------------------------------------------------------- Private Methods
 
 
-    /**
-     * Compare given byte chunk with byte array.
-     * Return -1, 0 or +1 if inferior, equal, or superior to the String.
-     */
-    protected static int compare(ByteChunk name, byte[] compareTo) {
-        int result = 0;
-
-        byte[] b = name.getBuffer();
-        int start = name.getStart();
-        int end = name.getEnd();
-        int len = compareTo.length;
-
-        if ((end - start) < len) {
-            len = end - start;
-        }
-        for (int i = 0; (i < len) && (result == 0); i++) {
-            if (b[i + start] > compareTo[i]) {
-                result = 1;
-            } else if (b[i + start] < compareTo[i]) {
-                result = -1;
-            }
-        }
-        if (result == 0) {
-            if (compareTo.length > (end - start)) {
-                result = -1;
-            } else if (compareTo.length < (end - start)) {
-                result = 1;
-            }
+    private static Shard[] createShards() {
+        final Shard[] shards = new Shard[SHARDS_COUNT];
+        for (int i = 0; i < SHARDS_COUNT; i++) {
+            shards[i] = new Shard(i);
         }
-        return result;
+        
+        return shards;
     }
 
     
+    static int shardIdx(final int hash) {
+        return (hash ^ (hash >>> 16)) & (SHARDS_COUNT - 1);
+    }
+    
+
     /**
-     * Find an entry given its name in the cache and return the associated String.
+     * @return the table index, the lookup for the given hash starts from.
      */
-    protected static String find(ByteChunk name) {
-        int pos = findClosest(name, bcCache, bcCache.length);
-        if ((pos < 0) || (compare(name, bcCache[pos].name) != 0)
-                || !(name.getCharset().equals(bcCache[pos].charset))) {
-            return null;
-        } else {
-            return bcCache[pos].value;
-        }
+    private static int tableIdx(final int hash, final int tableLength) {
+        return ((hash ^ (hash >>> 16)) >>> SHARD_BITS) & (tableLength - 1);
     }
 
     
+    private static boolean isSample() {
+        final int rate = sampleRate;
+        return rate <= 1 || ThreadLocalRandom.current().nextInt(rate) == 0;
+    }
+    
+
     /**
-     * Find an entry given its name in a sorted array of map elements.
-     * This will return the index for the closest inferior or equal item in the
-     * given array.
+     * Find an entry given its name in the cache table.
      */
-    protected static int findClosest(ByteChunk name, ByteEntry[] array, int len) {
-
-        int a = 0;
-        int b = len - 1;
-
-        // Special cases: -1 and 0
-        if (b == -1) {
-            return -1;
+    private static ByteEntry find(final Entry[] table, final int hash,
+            final byte[] b, final int start, final int end,
+            final Charset charset) {
+        if (table == null) {
+            return null;
         }
         
-        if (compare(name, array[0].name) < 0) {
-            return -1;
-        }         
-        if (b == 0) {
-            return 0;
-        }
-
-        int i;
-        while (true) {
-            i = (b + a) >>> 1;
-            int result = compare(name, array[i].name);
-            if (result == 1) {
-                a = i;
-            } else if (result == 0) {
-                return i;
-            } else {
-                b = i;
+        final int mask = table.length - 1;
+        for (int i = tableIdx(hash, table.length); ; i = (i + 1) & mask) {
+            final Entry e = table[i];
+            if (e == null) {
+                return null;
             }
-            if ((b - a) == 1) {
-                int result2 = compare(name, array[b].name);
-                if (result2 < 0) {
-                    return a;
-                } else {
-                    return b;
+            
+            if (e.hash == hash) {
+                final ByteEntry entry = (ByteEntry) e;
+                if (entry.matches(b, start, end, charset)) {
+                    return entry;
                 }
             }
         }
-
     }
-
+    
 
     /**
-     * Compare given char chunk with char array.
-     * Return -1, 0 or +1 if inferior, equal, or superior to the String.
+     * Find an entry given its name in the cache table.
      */
-    protected static int compare(CharChunk name, char[] compareTo) {
-        int result = 0;
-
-        char[] c = name.getBuffer();
-        int start = name.getStart();
-        int end = name.getEnd();
-        int len = compareTo.length;
-
-        if ((end - start) < len) {
-            len = end - start;
-        }
-        for (int i = 0; (i < len) && (result == 0); i++) {
-            if (c[i + start] > compareTo[i]) {
-                result = 1;
-            } else if (c[i + start] < compareTo[i]) {
-                result = -1;
-            }
+    private static ByteEntry find(final Entry[] table, final int hash,
+            final Buffer buffer, final int start, final int end,
+            final Charset charset) {
+        if (table == null) {
+            return null;
         }
-        if (result == 0) {
-            if (compareTo.length > (end - start)) {
-                result = -1;
-            } else if (compareTo.length < (end - start)) {
-                result = 1;
+        
+        final int mask = table.length - 1;
+        for (int i = tableIdx(hash, table.length); ; i = (i + 1) & mask) {
+            final Entry e = table[i];
+            if (e == null) {
+                return null;
+            }
+            
+            if (e.hash == hash) {
+                final ByteEntry entry = (ByteEntry) e;
+                if (entry.matches(buffer, start, end, charset)) {
+                    return entry;
+                }
             }
         }
-        return result;
     }
-
     
+
     /**
-     * Find an entry given its name in the cache and return the associated String.
+     * Find an entry given its name in the cache table.
      */
-    protected static String find(CharChunk name) {
-        int pos = findClosest(name, ccCache, ccCache.length);
-        if ((pos < 0) || (compare(name, ccCache[pos].name) != 0)) {
+    private static CharEntry find(final Entry[] table, final int hash,
+            final char[] c, final int start, final int end) {
+        if (table == null) {
             return null;
-        } else {
-            return ccCache[pos].value;
+        }
+        
+        final int mask = table.length - 1;
+        for (int i = tableIdx(hash, table.length); ; i = (i + 1) & mask) {
+            final Entry e = table[i];
+            if (e == null) {
+                return null;
+            }
+            
+            if (e.hash == hash) {
+                final CharEntry entry = (CharEntry) e;
+                if (entry.matches(c, start, end)) {
+                    return entry;
+                }
+            }
         }
     }
 
-    
+
+    // ------------------------------------------------------ Shard Inner Class
+
+
     /**
-     * Find an entry given its name in a sorted array of map elements.
-     * This will return the index for the closest inferior or equal item in the
-     * given array.
+     * The part of the cache, which is responsible for the Strings with
+     * the specific hash bits. The cache table is immutable and gets replaced,
+     * when the shard is rebuilt.
      */
-    protected static int findClosest(CharChunk name, CharEntry[] array, int len) {
-
-        int a = 0;
-        int b = len - 1;
+    static final class Shard {
+        
+        private final int index;
+        
+        /**
+         * Open addressing hash table of the cached entries,
+         * <tt>null</tt> if the shard hasn't been built yet.
+         */
+        volatile Entry[] table;
+        
+        /**
+         * Sampled access counts.
+         */
+        final ConcurrentHashMap<Entry, AtomicInteger> stats =
+                new ConcurrentHashMap<Entry, AtomicInteger>();
+        
+        final AtomicInteger samplesCount = new AtomicInteger();
+        
+        private final AtomicBoolean isRebuilding = new AtomicBoolean();
 
-        // Special cases: -1 and 0
-        if (b == -1) {
-            return -1;
+        Shard(final int index) {
+            this.index = index;
         }
         
-        if (compare(name, array[0].name) < 0 ) {
-            return -1;
-        }         
-        if (b == 0) {
-            return 0;
-        }
-
-        int i;
-        while (true) {
-            i = (b + a) >>> 1;
-            int result = compare(name, array[i].name);
-            if (result == 1) {
-                a = i;
-            } else if (result == 0) {
-                return i;
-            } else {
-                b = i;
+        void sample(final Entry entry) {
+            final int capacity = capacity();
+            
+            final AtomicInteger count = stats.get(entry);
+            if (count != null) {
+                count.incrementAndGet();
+            } else if (stats.size() < capacity * 8) {
+                final AtomicInteger prevCount =
+                        stats.putIfAbsent(entry, new AtomicInteger(1));
+                if (prevCount != null) {
+                    prevCount.incrementAndGet();
+                }
+            }
+            
+            final int samplesThreshold = Math.max(1, trainThreshold
+                    / Math.max(1, sampleRate) / SHARDS_COUNT);
+            if (samplesCount.incrementAndGet() >= samplesThreshold
+                    && isRebuilding.compareAndSet(false, true)) {
+                try {
+                    rebuild(capacity);
+                } finally {
+                    isRebuilding.set(false);
+                }
             }
-            if ((b - a) == 1) {
-                int result2 = compare(name, array[b].name);
-                if (result2 < 0) {
-                    return a;
+        }
+        
+        /**
+         * Builds the new cache table out of the most frequently used entries
+         * and halves the statistics, so the shard adapts, if the String mix
+         * changes.
+         */
+        private void rebuild(final int capacity) {
+            final long t1 = System.currentTimeMillis();
+            samplesCount.set(0);
+            
+            final List<Candidate> candidates =
+                    new ArrayList<Candidate>(stats.size());
+            for (Map.Entry<Entry, AtomicInteger> statsEntry : stats.entrySet()) {
+                final AtomicInteger count = statsEntry.getValue();
+                final int value = count.get();
+                candidates.add(new Candidate(statsEntry.getKey(), value));
+                
+                final int decayedValue = value >> 1;
+                if (decayedValue == 0) {
+                    stats.remove(statsEntry.getKey(), count);
                 } else {
-                    return b;
+                    count.set(decayedValue);
                 }
             }
+            
+            Collections.sort(candidates, Candidate.COMPARATOR);
+            
+            final int size = Math.min(capacity, candidates.size());
+            final Entry[] newTable = new Entry[
+                    Integer.highestOneBit(Math.max(1, size) * 2 - 1) << 1];
+            final int mask = newTable.length - 1;
+            for (int n = 0; n < size; n++) {
+                final Entry entry = candidates.get(n).entry;
+                int i = tableIdx(entry.hash, newTable.length);
+                while (newTable[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                newTable[i] = entry;
+            }
+            
+            table = newTable;
+            
+            if (logger.isLoggable(Level.FINEST)) {
+                long t2 = System.currentTimeMillis();
+                logger.log(Level.FINEST, "StringCache shard #" + index
+                        + " generation time: " + (t2 - t1) + "ms, size: " + size);
+            }
+        }
+        
+        private int capacity() {
+            return Math.max(1, (cacheSize + SHARDS_COUNT - 1) / SHARDS_COUNT);
         }
 
+        void reset() {
+            table = null;
+            stats.clear();
+            samplesCount.set(0);
+        }
     }
 
+    
+    private static final class Candidate {
+        private static final Comparator<Candidate> COMPARATOR =
+                new Comparator<Candidate>() {
+            @Override
+            public int compare(final Candidate c1, final Candidate c2) {
+                return c1.count > c2.count ? -1 : (c1.count == c2.count ? 0 : 1);
+            }
+        };
+        
+        private final Entry entry;
+        private final int count;
+
+        private Candidate(final Entry entry, final int count) {
+            this.entry = entry;
+            this.count = count;
+        }
+    }
+    
+    
+    // ------------------------------------------------------ Entry Inner Class
 
-    // -------------------------------------------------- ByteEntry Inner Class
 
+    abstract static class Entry {
 
-    protected static class ByteEntry {
+        final int hash;
+        final String value;
 
-        public byte[] name = null;
-        public Charset charset = null;
-        public String value = null;
+        Entry(final int hash, final String value) {
+            this.hash = hash;
+            this.value = value;
+        }
 
+        @Override
         public String toString() {
             return value;
         }
+        
+        @Override
         public int hashCode() {
-            return value.hashCode();
+            return hash;
         }
-        public boolean equals(Object obj) {
-            return obj instanceof ByteEntry && value.equals(((ByteEntry) obj).value);
+    }
+    
+    
+    // -------------------------------------------------- ByteEntry Inner Class
+
+
+    static final class ByteEntry extends Entry {
+
+        final byte[] name;
+        final Charset charset;
+
+        ByteEntry(final int hash, final byte[] name, final Charset charset,
+                final String value) {
+            super(hash, value);
+            this.name = name;
+            this.charset = charset;
+        }
+
+        boolean matches(final byte[] b, final int start, final int end,
+                final Charset charset) {
+            if (name.length != end - start || !this.charset.equals(charset)) {
+                return false;
+            }
+            
+            for (int i = 0; i < name.length; i++) {
+                if (name[i] != b[start + i]) {
+                    return false;
+                }
+            }
+            
+            return true;
         }
         
+        boolean matches(final Buffer buffer, final int start, final int end,
+                final Charset charset) {
+            if (name.length != end - start || !this.charset.equals(charset)) {
+                return false;
+            }
+            
+            for (int i = 0; i < name.length; i++) {
+                if (name[i] != buffer.get(start + i)) {
+                    return false;
+                }
+            }
+            
+            return true;
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ByteEntry)) {
+                return false;
+            }
+            
+            final ByteEntry entry = (ByteEntry) obj;
+            return hash == entry.hash && Arrays.equals(name, entry.name)
+                    && charset.equals(entry.charset);
+        }
     }
 
 
     // -------------------------------------------------- CharEntry Inner Class
 
 
-    protected static class CharEntry {
+    static final class CharEntry extends Entry {
 
-        public char[] name = null;
-        public String value = null;
+        final char[] name;
 
-        public String toString() {
-            return value;
+        CharEntry(final int hash, final char[] name, final String value) {
+            super(hash, value);
+            this.name = name;
         }
-        public int hashCode() {
-            return value.hashCode();
+
+        boolean matches(final char[] c, final int start, final int end) {
+            if (name.length != end - start) {
+                return false;
+            }
+            
+            for (int i = 0; i < name.length; i++) {
+                if (name[i] != c[start + i]) {
+                    return false;
+                }
+            }
+            
+            return true;
         }
+        
+        @Override
         public boolean equals(Object obj) {
-            return obj instanceof CharEntry && value.equals(((CharEntry) obj).value);
+            return obj instanceof CharEntry
+                    && hash == ((CharEntry) obj).hash
+                    && Arrays.equals(name, ((CharEntry) obj).name);
         }
-        
     }
-
-
 }
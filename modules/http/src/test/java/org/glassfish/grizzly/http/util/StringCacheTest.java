@@ -0,0 +1,168 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.util;
+
+import java.nio.charset.Charset;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StringCacheTest {
+    private static final Charset CHARSET = Constants.DEFAULT_HTTP_CHARSET;
+    
+    @Before
+    public void setUp() {
+        StringCache.reset();
+        StringCache.setByteEnabled(true);
+        StringCache.setCharEnabled(true);
+        StringCache.setSampleRate(1);
+        // rebuild a shard on each sample
+        StringCache.setTrainThreshold(StringCache.SHARDS_COUNT);
+    }
+    
+    @After
+    public void tearDown() {
+        StringCache.setByteEnabled(false);
+        StringCache.setCharEnabled(false);
+        StringCache.setSampleRate(16);
+        StringCache.setTrainThreshold(20000);
+        StringCache.setCacheSize(200);
+        StringCache.reset();
+    }
+    
+    @Test
+    public void testByteChunk() {
+        final String s1 = StringCache.toString(byteChunk("Content-Type"));
+        final String s2 = StringCache.toString(byteChunk("Content-Type"));
+        final String s3 = StringCache.toString(byteChunk("Content-Type"));
+        
+        assertEquals("Content-Type", s1);
+        assertSame(s2, s3);
+        assertEquals(3, StringCache.getAccessCount());
+        assertEquals(2, StringCache.getHitCount());
+        assertEquals(2.0 / 3, StringCache.getHitRate(), 0.001);
+        
+        final ByteChunk otherCharset = byteChunk("Content-Type");
+        otherCharset.setCharset(Charset.forName("UTF-16"));
+        assertNotSame(s3, StringCache.toString(otherCharset));
+    }
+
+    @Test
+    public void testBufferChunk() {
+        final String s1 = StringCache.toString(byteChunk("Accept-Encoding"));
+
+        final Buffer buffer = Buffers.wrap(MemoryManager.DEFAULT_MEMORY_MANAGER,
+                "GET / HTTP/1.1\r\nAccept-Encoding: gzip\r\n\r\n");
+        final BufferChunk bufferChunk = new BufferChunk();
+        bufferChunk.setBufferChunk(buffer, 16, 31);
+        
+        assertSame(s1, StringCache.toString(bufferChunk, CHARSET));
+        assertSame(s1, bufferChunk.toString());
+    }
+    
+    @Test
+    public void testCharChunk() {
+        final char[] chars = "Host".toCharArray();
+        final CharChunk cc1 = new CharChunk();
+        cc1.setChars(chars, 0, chars.length);
+        final CharChunk cc2 = new CharChunk();
+        cc2.setChars(chars, 0, chars.length);
+        
+        final String s1 = StringCache.toString(cc1);
+        assertEquals("Host", s1);
+        assertSame(s1, StringCache.toString(cc2));
+        assertSame(s1, StringCache.toString(cc2));
+    }
+    
+    @Test
+    public void testAdaptsToNewStrings() {
+        // one String per shard
+        StringCache.setCacheSize(StringCache.SHARDS_COUNT);
+        
+        for (int i = 0; i < 100; i++) {
+            StringCache.toString(byteChunk("User-Agent"));
+        }
+        
+        final String cached = StringCache.toString(byteChunk("User-Agent"));
+        assertSame(cached, StringCache.toString(byteChunk("User-Agent")));
+        
+        // find another String, which maps to the same shard
+        // (the shard hash matches String.hashCode() for ASCII)
+        final int shardIdx = StringCache.shardIdx("User-Agent".hashCode());
+        String other;
+        int n = 0;
+        do {
+            other = "X-Header-" + n++;
+        } while (StringCache.shardIdx(other.hashCode()) != shardIdx);
+        
+        for (int i = 0; i < 100; i++) {
+            StringCache.toString(byteChunk(other));
+        }
+        
+        final String newCached = StringCache.toString(byteChunk(other));
+        assertSame(newCached, StringCache.toString(byteChunk(other)));
+    }
+
+    @Test
+    public void testDisabled() {
+        StringCache.setByteEnabled(false);
+        
+        final String s1 = StringCache.toString(byteChunk("Connection"));
+        final String s2 = StringCache.toString(byteChunk("Connection"));
+        
+        assertEquals(s1, s2);
+        assertNotSame(s1, s2);
+        assertEquals(0, StringCache.getAccessCount());
+    }
+    
+    private static ByteChunk byteChunk(final String s) {
+        final byte[] bytes = s.getBytes(CHARSET);
+        final ByteChunk bc = new ByteChunk();
+        bc.setBytes(bytes, 0, bytes.length);
+        
+        return bc;
+    }
+}
@@ -0,0 +1,387 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http2;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The session level HTTP/2 stream dependency tree (RFC 7540, section 5.3),
+ * which decides what stream's output should be sent next.
+ * 
+ * Every {@link StreamNode} keeps the stream's output records, which passed
+ * stream level flow control. The output is shared between sibling streams
+ * proportionally to their weights using the "virtual time" approach: every
+ * time a stream sends N bytes, its and its ancestors' virtual time is
+ * increased by N / weight, and the next stream to be served is the one with
+ * the smallest virtual time among the siblings, which have anything to send.
+ * A stream, which has output to send, is always served before its dependants.
+ * Every node counts the streams with output in its subtree, so the streams
+ * without output are skipped without walking their dependants.
+ * 
+ * The tree is not thread-safe, it is expected to be accessed by the session
+ * writer only (see {@link Http2SessionOutputSink}), so the session's streams
+ * are reprioritized without any locking. The number of tree nodes is limited,
+ * once the limit is reached the idle nodes (the ones without output records,
+ * like closed streams or the idle streams, used as grouping placeholders)
+ * are removed in the order they have been added to the tree.
+ * 
+ * @param <E> the output record type
+ */
+final class Http2PriorityTree<E> {
+    static final int DEFAULT_WEIGHT = 16;
+    static final int MAX_WEIGHT = 256;
+    
+    static final int DEFAULT_MAX_NODES = 256;
+    
+    private final StreamNode<E> root = new StreamNode<>(0);
+    // the nodes in the order they have been added to the tree
+    private final Map<Integer, StreamNode<E>> nodes = new LinkedHashMap<>();
+    private final int maxNodes;
+
+    Http2PriorityTree() {
+        this(DEFAULT_MAX_NODES);
+    }
+    
+    /**
+     * @param maxNodes the max number of the tree nodes, which is not
+     *        exceeded as long as there are idle nodes to evict
+     */
+    Http2PriorityTree(final int maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Add the output record for the given stream.
+     * 
+     * @param streamId the stream ID
+     * @param record the output record
+     */
+    void offer(final int streamId, final E record) {
+        final StreamNode<E> node = getOrCreate(streamId);
+        if (node.records.isEmpty()) {
+            updateActive(node, 1);
+        }
+        
+        node.records.offer(record);
+    }
+
+    /**
+     * Remove the head output record of the given stream.
+     * 
+     * @param node the {@link StreamNode}
+     * @return the removed output record, or <tt>null</tt> if the stream
+     *          has no output records
+     */
+    E poll(final StreamNode<E> node) {
+        final E record = node.records.poll();
+        if (record != null && node.records.isEmpty()) {
+            updateActive(node, -1);
+        }
+        
+        return record;
+    }
+
+    /**
+     * Apply the priority information received either via HEADERS or PRIORITY
+     * frame.
+     * 
+     * @param streamId the stream ID
+     * @param dependency the ID of the stream the given stream depends on
+     * @param exclusive <tt>true</tt> if the dependency is exclusive
+     * @param weight the stream weight [1..256]
+     */
+    void prioritize(final int streamId, final int dependency,
+            final boolean exclusive, final int weight) {
+        if (streamId == 0 || streamId == dependency) {
+            return;
+        }
+        
+        final StreamNode<E> node = getOrCreate(streamId);
+        node.weight = normalizeWeight(weight);
+
+        final StreamNode<E> newParent = dependency != 0
+                ? getOrCreate(dependency)
+                : root;
+        
+        if (node.parent == null) {
+            // the node has been evicted to add the new parent node
+            return;
+        }
+        
+        if (isAncestor(node, newParent)) {
+            // the new parent depends on the reprioritized stream, so first
+            // it has to be moved to the reprioritized stream's parent
+            // (RFC 7540, section 5.3.3)
+            final Node oldParent = node.parent;
+            updateActive(newParent.parent, -newParent.active);
+            newParent.detach();
+            newParent.pass = 0;
+            oldParent.addChild(newParent);
+            updateActive(oldParent, newParent.active);
+        } else if (node.parent == newParent && !exclusive) {
+            return;
+        }
+
+        final int active = node.active;
+        updateActive(node.parent, -active);
+        node.detach();
+        node.pass = 0;
+        
+        if (exclusive) {
+            // the node adopts the new parent's dependants
+            node.active += newParent.active - newParent.ownActive();
+        }
+        
+        newParent.addChild(node, exclusive);
+        updateActive(newParent, active);
+    }
+
+    /**
+     * Remove the stream from the dependency tree, its dependants become
+     * dependants of the stream's parent.
+     * 
+     * @param streamId the stream ID
+     */
+    void remove(final int streamId) {
+        final StreamNode<E> node = nodes.remove(streamId);
+        if (node != null) {
+            removeNode(node);
+        }
+    }
+    
+    /**
+     * Remove all the streams from the tree.
+     * 
+     * @return the output records, which haven't been sent
+     */
+    List<E> clear() {
+        final List<E> records = new ArrayList<>();
+        
+        for (StreamNode<E> node : nodes.values()) {
+            records.addAll(node.records);
+            node.records.clear();
+            node.parent = node.next = node.prev = node.firstChild = null;
+        }
+
+        nodes.clear();
+        root.firstChild = null;
+        root.active = 0;
+        
+        return records;
+    }
+    
+    /**
+     * @return the {@link StreamNode}, whose output should be sent next, or
+     *          <tt>null</tt>, if there is no output available
+     */
+    StreamNode<E> next() {
+        StreamNode<E> parent = root;
+
+        while (true) {
+            final StreamNode<E> child = selectChild(parent);
+            if (child == null) {
+                return null;
+            }
+
+            if (!child.records.isEmpty()) {
+                return child;
+            }
+
+            parent = child;
+        }
+    }
+
+    /**
+     * Account the number of bytes sent by the stream.
+     * 
+     * @param node the {@link StreamNode}
+     * @param bytes the number of bytes sent
+     */
+    @SuppressWarnings("unchecked")
+    void charge(final StreamNode<E> node, final int bytes) {
+        for (Node n = node; n != null && n != root; n = n.parent) {
+            final StreamNode<E> sn = (StreamNode<E>) n;
+            sn.pass += ((long) bytes * MAX_WEIGHT) / sn.weight;
+        }
+    }
+    
+    /**
+     * @return the number of nodes in the tree
+     */
+    int size() {
+        return nodes.size();
+    }
+    
+    /**
+     * @return the number of streams, which have output to send
+     */
+    int activeStreams() {
+        return root.active;
+    }
+    
+    private StreamNode<E> getOrCreate(final int streamId) {
+        StreamNode<E> node = nodes.get(streamId);
+        if (node == null) {
+            if (nodes.size() >= maxNodes) {
+                evictIdleNode();
+            }
+            
+            node = new StreamNode<>(streamId);
+            nodes.put(streamId, node);
+            root.addChild(node);
+        }
+        
+        return node;
+    }
+    
+    /**
+     * Removes the oldest node, which doesn't have output records.
+     */
+    private void evictIdleNode() {
+        for (Iterator<StreamNode<E>> it = nodes.values().iterator(); it.hasNext(); ) {
+            final StreamNode<E> node = it.next();
+            if (node.records.isEmpty()) {
+                it.remove();
+                removeNode(node);
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Removes the node from the tree, its dependants become dependants of
+     * the node's parent, so only the node's own output is subtracted from
+     * the ancestors' counters.
+     */
+    private void removeNode(final StreamNode<E> node) {
+        updateActive(node.parent, -node.ownActive());
+        node.remove();
+    }
+    
+    /**
+     * Adds the delta to the number of the streams with output of the given
+     * node and its ancestors.
+     */
+    private static void updateActive(final Node node, final int delta) {
+        if (delta == 0) {
+            return;
+        }
+        
+        for (Node n = node; n != null; n = n.parent) {
+            ((StreamNode<?>) n).active += delta;
+        }
+    }
+    
+    /**
+     * Returns the child with the smallest virtual time among the ones, which
+     * have output to send.
+     */
+    @SuppressWarnings("unchecked")
+    private StreamNode<E> selectChild(final StreamNode<E> parent) {
+        StreamNode<E> selected = null;
+        for (Node n = parent.firstChild; n != null; n = n.next) {
+            final StreamNode<E> child = (StreamNode<E>) n;
+            if (child.active > 0) {
+                // the child might have been idle for a while, don't let it
+                // monopolize the parent's bandwidth
+                if (child.pass < parent.virtualTime) {
+                    child.pass = parent.virtualTime;
+                }
+                
+                if (selected == null || child.pass < selected.pass) {
+                    selected = child;
+                }
+            }
+        }
+        
+        if (selected != null) {
+            parent.virtualTime = selected.pass;
+        }
+        
+        return selected;
+    }
+    
+    private static boolean isAncestor(final Node ancestor, final Node node) {
+        for (Node n = node.parent; n != null; n = n.parent) {
+            if (n == ancestor) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    private static int normalizeWeight(final int weight) {
+        return weight <= 0
+                ? DEFAULT_WEIGHT
+                : Math.min(weight, MAX_WEIGHT);
+    }
+    
+    /**
+     * The dependency tree {@link Node}, which represents a stream.
+     */
+    static final class StreamNode<E> extends Node {
+        final ArrayDeque<E> records = new ArrayDeque<>(2);
+        
+        int weight = DEFAULT_WEIGHT;
+        
+        // the stream's virtual time among its siblings
+        long pass;
+        // the virtual time of the last served dependant
+        long virtualTime;
+        // the number of the streams with output in the node's subtree,
+        // including the node itself
+        int active;
+
+        StreamNode(final int id) {
+            super(id);
+        }
+        
+        int ownActive() {
+            return records.isEmpty() ? 0 : 1;
+        }
+    }
+}
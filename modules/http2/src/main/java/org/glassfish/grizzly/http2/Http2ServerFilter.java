@@ -865,7 +865,9 @@ public class Http2ServerFilter extends Http2BaseFilter {
                                               headersFrame.getStreamId(),
                                               headersFrame.getStreamDependency(),
                                               headersFrame.isExclusive(),
-                                              0);
+                                              headersFrame.isPrioritized()
+                                                      ? headersFrame.getWeight() + 1
+                                                      : 0);
         if (stream == null) { // GOAWAY has been sent, so ignoring this request
             request.recycle();
             return;
@@ -1079,6 +1079,8 @@ public class Http2Session {
             lastPeerStreamId = streamId;
         }
         
+        prioritize(streamId, parentStreamId, exclusive, priority);
+        
         return stream;
     }
 
@@ -1128,9 +1130,20 @@ public class Http2Session {
             lastLocalStreamId = streamId;
         }
         
+        prioritize(streamId, parentStreamId, exclusive, priority);
+        
         return stream;
     }
 
+    private void prioritize(final int streamId, final int parentStreamId,
+            final boolean exclusive, final int priority) {
+        // the streams with default priority will be added to the
+        // priority tree lazily
+        if (parentStreamId != 0 || exclusive || priority > 0) {
+            outputSink.prioritize(streamId, parentStreamId, exclusive, priority);
+        }
+    }
+
     /**
      * The method is called to create an {@link Http2Stream} initiated via
      * HTTP/1.1 Upgrade mechanism.
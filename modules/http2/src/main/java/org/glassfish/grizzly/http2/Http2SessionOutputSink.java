@@ -40,8 +40,11 @@
 
 package org.glassfish.grizzly.http2;
 
+import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.LockSupport;
@@ -64,6 +67,8 @@ import org.glassfish.grizzly.http2.utils.ChunkedCompletionHandler;
 /**
  * Class represents an output sink associated with specific {@link Http2Session}
  * and is responsible for session (connection) level flow control.
+ * The connection window is shared between the streams according to the
+ * stream dependencies and weights (see {@link Http2PriorityTree}).
  * 
  * @author Alexey Stashok
  */
@@ -89,10 +94,21 @@ public class Http2SessionOutputSink {
     private final List<Http2Frame> tmpFramesList = new LinkedList<>();
     private final AtomicBoolean writerLock = new AtomicBoolean();
 
+    // the stream priority tree is accessed only by the thread, which holds
+    // the writerLock. The output records and priority updates are moved
+    // to the tree from the concurrent queues.
+    private final Http2PriorityTree<OutputQueueRecord> priorityTree;
+    private final Queue<PriorityUpdate> priorityUpdates =
+            new ConcurrentLinkedQueue<>();
+    private volatile boolean isClosed;
+
     public Http2SessionOutputSink(Http2Session session) {
         this.http2Session = session;
         availConnectionWindowSize = new AtomicInteger(
                 http2Session.getDefaultConnectionWindowSize());
+        priorityTree = new Http2PriorityTree<>(
+                Math.max(Http2PriorityTree.DEFAULT_MAX_NODES,
+                        2 * http2Session.getDefaultMaxConcurrentStreams()));
     }
 
     protected Http2FrameCodec frameCodec() {
@@ -162,6 +178,35 @@ public class Http2SessionOutputSink {
         flushOutputQueue();
     }
 
+    /**
+     * Apply the stream priority information received either via HEADERS
+     * or PRIORITY frame.
+     * 
+     * @param streamId the stream ID
+     * @param dependency the ID of the stream the given stream depends on
+     * @param exclusive <tt>true</tt> if the dependency is exclusive
+     * @param weight the stream weight [1..256]
+     */
+    protected void prioritize(final int streamId, final int dependency,
+            final boolean exclusive, final int weight) {
+        priorityUpdates.offer(
+                new PriorityUpdate(streamId, dependency, exclusive, weight));
+        
+        // if the writer is busy - it will apply the update
+        if (writerLock.compareAndSet(false, true)) {
+            try {
+                applyPriorityUpdates();
+            } finally {
+                unlockWriter();
+            }
+            
+            // a writer might have skipped flushing, while we held the lock
+            if (!outputQueue.isEmpty()) {
+                flushOutputQueue();
+            }
+        }
+    }
+    
     protected void writeDataDownStream(final Http2Stream stream,
                                        final List<Http2Frame> headerFrames,
                                        Buffer data,
@@ -238,6 +283,10 @@ public class Http2SessionOutputSink {
             // get the values after the writer is locked
             availWindowSize = availConnectionWindowSize.get();
             queueSize = outputQueue.size();
+            
+            // the records are offered before the space is reserved, so all
+            // the records counted in queueSize are available now
+            drainOutputQueue();
 
             CompletionHandler<WriteResult> writeCompletionHandler = null;
             int writeCompletionHandlerBytes = 0;
@@ -251,30 +300,44 @@ public class Http2SessionOutputSink {
             while (availWindowSize > bytesToTransfer &&
                     queueSize > queueSizeToFree) {
 
-                final Http2SessionOutputSink.OutputQueueRecord record = outputQueue.poll();
+                final Http2PriorityTree.StreamNode<OutputQueueRecord> node =
+                        priorityTree.next();
 
-                if (record == null) {
+                if (node == null) {
+                    if (isClosed) {
+                        // the queued records have been failed by close()
+                        break;
+                    }
+                    
                     // keep this warning for now
                     // should be reported when null record is spotted
                     LOGGER.log(Level.WARNING, "UNEXPECTED NULL RECORD. Queue-size: {0} "
                                     + "tmpcnt={1} byteToTransfer={2} queueSizeToFree={3} queueSize={4}",
                             new Object[]{outputQueue.size(), tmpcnt, bytesToTransfer, queueSizeToFree, queueSize});
+                    break;
                 }
 
-                assert record != null;
+                final Http2SessionOutputSink.OutputQueueRecord record =
+                        node.records.peek();
 
                 final int serializedBytes = record.serializeTo(
                         tmpFramesList,
                         Math.min(MAX_FRAME_PAYLOAD_SIZE, availWindowSize - bytesToTransfer));
                 bytesToTransfer += serializedBytes;
                 queueSizeToFree += serializedBytes;
+                
+                priorityTree.charge(node, serializedBytes);
 
                 if (record.isFinished()) {
+                    priorityTree.poll(node);
+                    
                     if (record.isZeroSizeData()) {
                         queueSizeToFree++;
                     }
-                } else {
-                    outputQueue.setCurrentElement(record);
+                    
+                    if (record.isLast) {
+                        priorityTree.remove(record.streamId);
+                    }
                 }
 
                 final CompletionHandler<WriteResult> recordCompletionHandler =
@@ -322,7 +385,12 @@ public class Http2SessionOutputSink {
             }
 
             // release the writer lock, so other thread can start to write
-            writerLock.set(false);
+            unlockWriter();
+
+            if (queueSizeToFree == 0) {
+                // no progress has been made
+                break;
+            }
 
             // we don't want this thread to write all the time - so give more
             // time for another thread to start writing
@@ -335,10 +403,92 @@ public class Http2SessionOutputSink {
         }
     }
 
+    /**
+     * Move the records from the output queue to the priority tree.
+     * Must be called by the thread, which holds the writerLock.
+     */
+    private void drainOutputQueue() {
+        applyPriorityUpdates();
+        
+        OutputQueueRecord record;
+        while ((record = outputQueue.poll()) != null) {
+            priorityTree.offer(record.streamId, record);
+        }
+    }
+    
+    /**
+     * Apply the priority updates to the priority tree.
+     * Must be called by the thread, which holds the writerLock.
+     */
+    private void applyPriorityUpdates() {
+        PriorityUpdate update;
+        while ((update = priorityUpdates.poll()) != null) {
+            priorityTree.prioritize(update.streamId, update.dependency,
+                    update.exclusive, update.weight);
+        }
+    }
+    
+    /**
+     * Release the writerLock. If the sink has been closed, the records
+     * remaining in the priority tree are failed before the lock is released,
+     * so the records are failed either by close() or by the thread, which
+     * held the writerLock, when close() was called.
+     * Must be called by the thread, which holds the writerLock.
+     */
+    private void unlockWriter() {
+        final boolean wasClosed = isClosed;
+        if (wasClosed) {
+            failPrioritizedRecords();
+        }
+        
+        writerLock.set(false);
+        
+        // close() might have failed to lock the writer after the check above
+        if (!wasClosed && isClosed && writerLock.compareAndSet(false, true)) {
+            unlockWriter();
+        }
+    }
+    
+    /**
+     * Fail the records, which remain in the priority tree.
+     * Must be called by the thread, which holds the writerLock.
+     */
+    private void failPrioritizedRecords() {
+        final List<OutputQueueRecord> records = priorityTree.clear();
+        if (!records.isEmpty()) {
+            final IOException error = new IOException("Connection closed");
+            for (OutputQueueRecord record : records) {
+                record.notifyFailure(error);
+            }
+        }
+    }
+    
     public void close() {
+        isClosed = true;
         outputQueue.onClose();
+        
+        // if the writer is busy - it will fail the records before
+        // releasing the writerLock
+        if (writerLock.compareAndSet(false, true)) {
+            unlockWriter();
+        }
     }
 
+    private static final class PriorityUpdate {
+        private final int streamId;
+        private final int dependency;
+        private final boolean exclusive;
+        private final int weight;
+
+        private PriorityUpdate(final int streamId, final int dependency,
+                final boolean exclusive, final int weight) {
+            this.streamId = streamId;
+            this.dependency = dependency;
+            this.exclusive = exclusive;
+            this.weight = weight;
+        }
+    }
+    
     private static class OutputQueueRecord extends AsyncQueueRecord<WriteResult> {
         private final int streamId;
 
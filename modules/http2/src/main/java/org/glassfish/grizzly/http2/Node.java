@@ -41,17 +41,15 @@
 package org.glassfish.grizzly.http2;
 
 
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-
 /**
  * N-ary tree node implementation to support HTTP/2 stream hierarchies.
+ * 
+ * The implementation is not thread-safe, the tree is expected to be
+ * confined to a single {@link Http2Session} and guarded by its owner
+ * (see {@link Http2PriorityTree}).
  */
 public abstract class Node {
 
-    private static final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
-    protected static final ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
-    protected static final ReentrantReadWriteLock.WriteLock writeLock = lock.writeLock();
-
     protected final int id;
     protected Node next;
     protected Node prev;
@@ -76,29 +74,20 @@ public abstract class Node {
      * to the children list.
      */
     protected void exclusive() {
-        writeLock.lock();
-        try {
-            final Node p = parent;
-            p.detach(id);
-            p.addChild(this, true);
-        } finally {
-            writeLock.unlock();
-        }
+        final Node p = parent;
+        detach();
+        p.addChild(this, true);
     }
 
     /**
      * Add a sibling to this {@link Node}.
      */
     protected void addSibling(final Node sibling) {
-        writeLock.lock();
-        try {
-            sibling.next = this;
-            this.prev = sibling;
-            sibling.parent = this.parent;
-            parent.firstChild = sibling;
-        } finally {
-            writeLock.unlock();
-        }
+        sibling.next = this;
+        sibling.prev = null;
+        this.prev = sibling;
+        sibling.parent = this.parent;
+        parent.firstChild = sibling;
     }
 
     /**
@@ -114,37 +103,32 @@ public abstract class Node {
      * exclusive child.
      */
     protected void addChild(final Node nodeBeingAddedAsChild, final boolean exclusive) {
-        writeLock.lock();
-        try {
-            if (exclusive) {
-                nodeBeingAddedAsChild.exclusive = true;
-                if (nodeBeingAddedAsChild.firstChild != null && firstChild != null) {
-                    Node tail = firstChild;
-                    while (tail.next != null) {
-                        tail = tail.next;
-                    }
-                    tail.next = nodeBeingAddedAsChild.firstChild;
-                    nodeBeingAddedAsChild.firstChild.prev = tail;
-                    nodeBeingAddedAsChild.firstChild = firstChild;
-                } else if (nodeBeingAddedAsChild.firstChild == null && firstChild != null) {
-                    nodeBeingAddedAsChild.firstChild = firstChild;
-                }
-                firstChild = null;
-                if (nodeBeingAddedAsChild.firstChild != null) {
-                    Node t = nodeBeingAddedAsChild.firstChild;
-                    do {
-                        t.parent = nodeBeingAddedAsChild;
-                    } while ((t = t.next) != null);
+        if (exclusive) {
+            nodeBeingAddedAsChild.exclusive = true;
+            if (nodeBeingAddedAsChild.firstChild != null && firstChild != null) {
+                Node tail = firstChild;
+                while (tail.next != null) {
+                    tail = tail.next;
                 }
+                tail.next = nodeBeingAddedAsChild.firstChild;
+                nodeBeingAddedAsChild.firstChild.prev = tail;
+                nodeBeingAddedAsChild.firstChild = firstChild;
+            } else if (nodeBeingAddedAsChild.firstChild == null && firstChild != null) {
+                nodeBeingAddedAsChild.firstChild = firstChild;
             }
-            if (firstChild == null) {
-                firstChild = nodeBeingAddedAsChild;
-                firstChild.parent = this;
-            } else {
-                firstChild.addSibling(nodeBeingAddedAsChild);
+            firstChild = null;
+            if (nodeBeingAddedAsChild.firstChild != null) {
+                Node t = nodeBeingAddedAsChild.firstChild;
+                do {
+                    t.parent = nodeBeingAddedAsChild;
+                } while ((t = t.next) != null);
             }
-        } finally {
-            writeLock.unlock();
+        }
+        if (firstChild == null) {
+            firstChild = nodeBeingAddedAsChild;
+            firstChild.parent = this;
+        } else {
+            firstChild.addSibling(nodeBeingAddedAsChild);
         }
     }
 
@@ -163,6 +147,21 @@ public abstract class Node {
         return remove(id, false);
     }
 
+    /**
+     * Detach this {@link Node} from its parent maintaining any children.
+     */
+    protected void detach() {
+        unlink(this, true);
+    }
+
+    /**
+     * Remove this {@link Node} from its parent.  Any children will be moved
+     * up as a child of the parent.
+     */
+    protected void remove() {
+        unlink(this, false);
+    }
+
     /**
      * Top down search from this {@link Node} and any children (recursively)
      * returning the node with a matching <code>id</code>.
@@ -171,99 +170,72 @@ public abstract class Node {
         if (this.id == id) {
             return this;
         }
-        readLock.lock();
-        try {
-            if (firstChild != null) {
-                Node n = firstChild;
-                do {
-                    if (n.id == id) {
-                        return n;
-                    }
-                    Node result = n.find(id);
-                    if (result != null) {
-                        return result;
-                    }
-                } while ((n = n.next) != null);
-            }
-            return null;
-        } finally {
-            readLock.unlock();
+        if (firstChild != null) {
+            Node n = firstChild;
+            do {
+                if (n.id == id) {
+                    return n;
+                }
+                Node result = n.find(id);
+                if (result != null) {
+                    return result;
+                }
+            } while ((n = n.next) != null);
         }
+        return null;
     }
 
 
     // -------------------------------------------------------- Private Methods
 
 
-    private boolean isFirstSibling() {
-        return (next != null && prev == null);
-    }
-
-    private boolean isLastSibling() {
-        return (next == null && prev != null);
-    }
-
-    private boolean hasSiblings() {
-        return (next != null || prev != null);
-    }
-
     private Node remove(final int id, final boolean retainChildren) {
         final Node n = find(id);
         if (n != null) {
-            writeLock.lock();
-            try {
-                // remove this node from sibling pointer chains
-                if (n.hasSiblings()) {
-                    final Node left = n.prev;
-                    final Node right = n.next;
-                    if (n.isFirstSibling()) {
-                        right.parent.firstChild = right;
-                        right.prev = null;
-                    } else if (n.isLastSibling()) {
-                        left.next = null;
-                    } else {
-                        // Middle child!
-                        left.next = right;
-                        right.prev = left;
-                    }
-                }
-
-                // re-parent the children to this node's parent and
-                // push these children to the front of the child new parent child list
-                if (!retainChildren) {
-                    final Node np = n.parent;
-                    if (n.firstChild != null) {
-                        Node t = n.firstChild;
-                        Node last = null;
-                        do {
-                            t.parent = np;
-                            // quick look ahead to see if this node will be the last
-                            if (t.next == null) {
-                                last = t;
-                            }
-                        } while ((t = t.next) != null);
+            unlink(n, retainChildren);
+        }
+        return n;
+    }
 
-                        // 'push' the current child to the 'end' of children of the removed node
-                        last.next = np.firstChild;
-                        np.firstChild.prev = last;
+    private static void unlink(final Node n, final boolean retainChildren) {
+        final Node np = n.parent;
 
-                        // Set the new pointer to the new first child.
-                        np.firstChild = n.firstChild;
-                    }
-                }
+        // remove this node from sibling pointer chains
+        if (n.prev != null) {
+            n.prev.next = n.next;
+        } else if (np != null) {
+            np.firstChild = n.next;
+        }
+        if (n.next != null) {
+            n.next.prev = n.prev;
+        }
 
-                // clear pointers and return
-                n.parent = null;
-                n.next = null;
-                n.prev = null;
-                if (!retainChildren) {
-                    n.firstChild = null;
-                }
-                return n;
-            } finally {
-                writeLock.unlock();
+        // re-parent the children to this node's parent and
+        // push these children to the front of the child new parent child list
+        if (!retainChildren && np != null && n.firstChild != null) {
+            Node t = n.firstChild;
+            Node last;
+            do {
+                t.parent = np;
+                last = t;
+            } while ((t = t.next) != null);
+
+            // 'push' the current child to the 'end' of children of the removed node
+            last.next = np.firstChild;
+            if (np.firstChild != null) {
+                np.firstChild.prev = last;
             }
+
+            // Set the new pointer to the new first child.
+            np.firstChild = n.firstChild;
+        }
+
+        // clear pointers
+        n.parent = null;
+        n.next = null;
+        n.prev = null;
+        if (!retainChildren) {
+            n.firstChild = null;
         }
-        return null;
     }
 }
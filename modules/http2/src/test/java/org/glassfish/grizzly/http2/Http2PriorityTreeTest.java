@@ -0,0 +1,237 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class Http2PriorityTreeTest {
+
+    private static final int FRAME_SIZE = 16384;
+
+    // ----------------------------------------------------------- Test Methods
+
+
+    @Test
+    public void emptyTree() {
+        final Http2PriorityTree<String> tree = new Http2PriorityTree<>();
+        assertNull(tree.next());
+
+        tree.prioritize(3, 0, false, 16);
+        assertNull(tree.next());
+    }
+
+    @Test
+    public void weightedSiblings() {
+        final Http2PriorityTree<String> tree = new Http2PriorityTree<>();
+        tree.prioritize(1, 0, false, 64);
+        tree.prioritize(3, 0, false, 16);
+
+        for (int i = 0; i < 1000; i++) {
+            tree.offer(1, "a" + i);
+            tree.offer(3, "b" + i);
+        }
+
+        int stream1 = 0;
+        int stream3 = 0;
+        for (int i = 0; i < 500; i++) {
+            final Http2PriorityTree.StreamNode<String> node = sendFrame(tree);
+            if (node.id == 1) {
+                stream1++;
+            } else {
+                stream3++;
+            }
+        }
+
+        // 64:16 weights ratio
+        assertEquals(400, stream1);
+        assertEquals(100, stream3);
+    }
+
+    @Test
+    public void smallStreamIsNotStarved() {
+        final Http2PriorityTree<String> tree = new Http2PriorityTree<>();
+
+        // bulk download
+        for (int i = 0; i < 1000; i++) {
+            tree.offer(1, "bulk" + i);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            sendFrame(tree);
+        }
+
+        // small response on the same connection
+        tree.offer(3, "small");
+
+        assertEquals(3, sendFrame(tree).id);
+    }
+
+    @Test
+    public void parentIsServedFirst() {
+        final Http2PriorityTree<String> tree = new Http2PriorityTree<>();
+        tree.prioritize(3, 1, false, 16);
+        tree.offer(1, "a");
+        tree.offer(3, "b");
+
+        assertEquals(1, sendFrame(tree).id);
+        assertEquals(3, sendFrame(tree).id);
+        assertNull(tree.next());
+    }
+
+    @Test
+    public void exclusiveDependency() {
+        final Http2PriorityTree<String> tree = new Http2PriorityTree<>();
+        tree.prioritize(1, 0, false, 16);
+        tree.prioritize(3, 0, false, 16);
+        tree.prioritize(5, 0, true, 16);
+
+        tree.offer(1, "a");
+        tree.offer(3, "b");
+        tree.offer(5, "c");
+
+        assertEquals(5, sendFrame(tree).id);
+    }
+
+    @Test
+    public void reprioritizeToDependant() {
+        final Http2PriorityTree<String> tree = new Http2PriorityTree<>();
+        tree.prioritize(3, 1, false, 16);
+        tree.prioritize(5, 3, false, 16);
+
+        // 1 becomes dependent on its own descendant 5 (RFC 7540, 5.3.3)
+        tree.prioritize(1, 5, false, 16);
+
+        tree.offer(1, "a");
+        tree.offer(3, "b");
+        tree.offer(5, "c");
+
+        assertEquals(5, sendFrame(tree).id);
+        final Http2PriorityTree.StreamNode<String> node = sendFrame(tree);
+        assertTrue(node.id == 1 || node.id == 3);
+    }
+
+    @Test
+    public void removeKeepsDependants() {
+        final Http2PriorityTree<String> tree = new Http2PriorityTree<>();
+        tree.prioritize(3, 1, false, 16);
+        tree.offer(3, "b");
+
+        tree.remove(1);
+
+        final Http2PriorityTree.StreamNode<String> node = tree.next();
+        assertEquals(3, node.id);
+        assertSame("b", node.records.peek());
+    }
+
+    @Test
+    public void boundedSize() {
+        final Http2PriorityTree<String> tree = new Http2PriorityTree<>(4);
+        tree.offer(1, "a");
+
+        // idle placeholder nodes
+        for (int i = 3; i < 1000; i += 2) {
+            tree.prioritize(i, 0, false, 16);
+        }
+
+        assertEquals(4, tree.size());
+
+        // the node with output has not been evicted
+        final Http2PriorityTree.StreamNode<String> node = tree.next();
+        assertEquals(1, node.id);
+        assertSame("a", node.records.peek());
+    }
+
+    @Test
+    public void clear() {
+        final Http2PriorityTree<String> tree = new Http2PriorityTree<>();
+        tree.prioritize(3, 1, false, 16);
+        tree.offer(1, "a");
+        tree.offer(3, "b");
+
+        assertEquals(2, tree.clear().size());
+        assertNull(tree.next());
+    }
+
+    @Test
+    public void activeCountsFollowReprioritization() {
+        final Http2PriorityTree<String> tree = new Http2PriorityTree<>();
+        // 1 <- 3 <- 5, 7 depends on 1
+        tree.prioritize(3, 1, false, 16);
+        tree.prioritize(5, 3, false, 16);
+        tree.prioritize(7, 1, false, 16);
+        tree.offer(5, "c");
+        tree.offer(7, "d");
+        assertEquals(2, tree.activeStreams());
+
+        // 9 exclusively depends on 1 and adopts 3 and 7
+        tree.offer(9, "e");
+        tree.prioritize(9, 1, true, 16);
+        assertEquals(3, tree.activeStreams());
+
+        // 1 depends on its dependant 5
+        tree.prioritize(1, 5, false, 16);
+        assertEquals(3, tree.activeStreams());
+
+        tree.remove(9);
+        assertEquals(2, tree.activeStreams());
+
+        assertEquals(5, sendFrame(tree).id);
+        assertEquals(7, sendFrame(tree).id);
+        assertNull(tree.next());
+        assertEquals(0, tree.activeStreams());
+    }
+
+    // -------------------------------------------------------- Private Methods
+
+
+    private static Http2PriorityTree.StreamNode<String> sendFrame(
+            final Http2PriorityTree<String> tree) {
+        final Http2PriorityTree.StreamNode<String> node = tree.next();
+        tree.poll(node);
+        tree.charge(node, FRAME_SIZE);
+        return node;
+    }
+}
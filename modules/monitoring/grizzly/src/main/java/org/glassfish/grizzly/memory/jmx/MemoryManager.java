@@ -66,6 +66,10 @@ public class MemoryManager extends JmxObject {
     private final AtomicLong realAllocatedBytes = new AtomicLong();
     private final AtomicLong poolAllocatedBytes = new AtomicLong();
     private final AtomicLong poolReleasedBytes = new AtomicLong();
+    private final AtomicLong poolGrowthsCount = new AtomicLong();
+    private final AtomicLong poolShrinksCount = new AtomicLong();
+    private final AtomicLong leakedBuffersCount = new AtomicLong();
+    private final AtomicLong leakedBytes = new AtomicLong();
     
     public MemoryManager(org.glassfish.grizzly.memory.MemoryManager memoryManager) {
         this.memoryManager = memoryManager;
@@ -118,6 +122,30 @@ public class MemoryManager extends JmxObject {
         return poolReleasedBytes.get();
     }
 
+    @ManagedAttribute(id="pool-growths-count")
+    @Description("Number of times an adaptive memory pool increased its capacity")
+    public long getPoolGrowthsCount() {
+        return poolGrowthsCount.get();
+    }
+
+    @ManagedAttribute(id="pool-shrinks-count")
+    @Description("Number of times an adaptive memory pool decreased its capacity")
+    public long getPoolShrinksCount() {
+        return poolShrinksCount.get();
+    }
+
+    @ManagedAttribute(id="leaked-buffers-count")
+    @Description("Number of tracked buffers, which got garbage collected without being disposed")
+    public long getLeakedBuffersCount() {
+        return leakedBuffersCount.get();
+    }
+
+    @ManagedAttribute(id="leaked-bytes")
+    @Description("Total size of tracked buffers, which got garbage collected without being disposed")
+    public long getLeakedBytes() {
+        return leakedBytes.get();
+    }
+
     private class JmxMemoryProbe implements MemoryProbe {
 
         @Override
@@ -137,5 +165,21 @@ public class MemoryManager extends JmxObject {
             poolReleasedBytes.addAndGet(size);
         }
 
+        @Override
+        public void onBufferPoolResizeEvent(int size, int oldCapacity,
+                int newCapacity) {
+            if (newCapacity > oldCapacity) {
+                poolGrowthsCount.incrementAndGet();
+            } else {
+                poolShrinksCount.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void onBufferLeakEvent(int size, Throwable allocationSite) {
+            leakedBuffersCount.incrementAndGet();
+            leakedBytes.addAndGet(size);
+        }
+
     }
 }
@@ -0,0 +1,127 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.memory.jmx;
+
+import org.glassfish.gmbal.Description;
+import org.glassfish.gmbal.ManagedAttribute;
+import org.glassfish.gmbal.ManagedObject;
+
+/**
+ * {@link org.glassfish.grizzly.memory.SlabMemoryManager} JMX object.
+ */
+@ManagedObject
+@Description("Grizzly Memory Manager")
+public class SlabMemoryManager extends MemoryManager {
+
+    public SlabMemoryManager(org.glassfish.grizzly.memory.SlabMemoryManager memoryManager) {
+        super(memoryManager);
+    }
+
+    @ManagedAttribute(id="slab-size")
+    @Description("The size of a direct memory slab")
+    public int getSlabSize() {
+        return slabMemoryManager().getSlabSize();
+    }
+
+    @ManagedAttribute(id="min-chunk-size")
+    @Description("The min size of a chunk the slab is split into")
+    public int getMinChunkSize() {
+        return slabMemoryManager().getMinChunkSize();
+    }
+
+    @ManagedAttribute(id="slabs-count")
+    @Description("The number of allocated slabs")
+    public int getSlabsCount() {
+        return slabMemoryManager().getSlabsCount();
+    }
+
+    @ManagedAttribute(id="max-slabs-count")
+    @Description("The max number of slabs")
+    public int getMaxSlabsCount() {
+        return slabMemoryManager().getMaxSlabsCount();
+    }
+
+    @ManagedAttribute(id="total-bytes")
+    @Description("The total size of the allocated slabs")
+    public long getTotalBytes() {
+        return slabMemoryManager().getTotalBytes();
+    }
+
+    @ManagedAttribute(id="used-bytes")
+    @Description("The total size of the chunks in use")
+    public long getUsedBytes() {
+        return slabMemoryManager().getUsedBytes();
+    }
+
+    @ManagedAttribute(id="utilization")
+    @Description("The share (0..1) of the slabs memory in use")
+    public double getUtilization() {
+        return slabMemoryManager().getUtilization();
+    }
+
+    @ManagedAttribute(id="internal-fragmentation")
+    @Description("The share (0..1) of the used chunks memory wasted because of the chunk size rounding")
+    public double getInternalFragmentation() {
+        return slabMemoryManager().getInternalFragmentation();
+    }
+
+    @ManagedAttribute(id="external-fragmentation")
+    @Description("The share (0..1) of the free slabs memory, which is not part of the largest free chunk of its slab")
+    public double getExternalFragmentation() {
+        return slabMemoryManager().getExternalFragmentation();
+    }
+
+    @ManagedAttribute(id="fallback-allocations-count")
+    @Description("The number of buffers allocated outside of the slabs, because the slabs were full")
+    public long getFallbackAllocationsCount() {
+        return slabMemoryManager().getFallbackAllocationsCount();
+    }
+
+    @ManagedAttribute(id="direct-fallback")
+    @Description("Whether the buffers, which don't fit the slabs, are allocated in the direct memory instead of the heap")
+    public boolean isDirectFallback() {
+        return slabMemoryManager().isDirectFallback();
+    }
+
+    private org.glassfish.grizzly.memory.SlabMemoryManager slabMemoryManager() {
+        return (org.glassfish.grizzly.memory.SlabMemoryManager) memoryManager;
+    }
+}
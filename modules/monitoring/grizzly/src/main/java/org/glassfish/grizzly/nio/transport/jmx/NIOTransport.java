@@ -48,13 +48,19 @@ import org.glassfish.grizzly.Transport;
 import org.glassfish.grizzly.TransportProbe;
 import org.glassfish.grizzly.monitoring.jmx.JmxObject;
 import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.nio.AbstractNIOAsyncQueueWriter;
+import org.glassfish.grizzly.nio.LeastLoadedConnectionDistributor;
+import org.glassfish.grizzly.nio.NIOChannelDistributor;
+import org.glassfish.grizzly.nio.transport.TCPNIOAsyncQueueWriter;
 import org.glassfish.grizzly.threadpool.GrizzlyExecutorService;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import org.glassfish.gmbal.Description;
@@ -81,6 +87,7 @@ public class NIOTransport extends JmxObject {
     
     private volatile EventDate stateEvent;
     private volatile EventDate lastErrorEvent;
+    private volatile EventDate lastPendingWritesBudgetEvent;
 
     private final ConcurrentMap<Connection, String> boundConnections =
             new ConcurrentHashMap<>(4);
@@ -194,6 +201,89 @@ public class NIOTransport extends JmxObject {
         return transport.getSelectorRunnersCount();
     }
 
+    @ManagedAttribute(id="selector-threads-registered-keys")
+    @Description("The number of channels registered with each selector thread (available with the load-aware channel distributor)")
+    public String getSelectorRunnersRegisteredKeys() {
+        final NIOChannelDistributor distributor = transport.getNIOChannelDistributor();
+        if (distributor instanceof LeastLoadedConnectionDistributor) {
+            return Arrays.toString(((LeastLoadedConnectionDistributor) distributor)
+                    .getRegisteredKeysCounts());
+        }
+
+        return "N/A";
+    }
+
+    @ManagedAttribute(id="selector-threads-busy-ratios")
+    @Description("The recent share of time each selector thread spent processing events (available with the load-aware channel distributor)")
+    public String getSelectorRunnersBusyRatios() {
+        final NIOChannelDistributor distributor = transport.getNIOChannelDistributor();
+        if (distributor instanceof LeastLoadedConnectionDistributor) {
+            return Arrays.toString(((LeastLoadedConnectionDistributor) distributor)
+                    .getBusyRatios());
+        }
+
+        return "N/A";
+    }
+
+    @ManagedAttribute(id="migrated-connections-count")
+    @Description("The number of idle connections moved between selector threads by the load-aware channel distributor")
+    public long getMigratedConnectionsCount() {
+        final NIOChannelDistributor distributor = transport.getNIOChannelDistributor();
+        if (distributor instanceof LeastLoadedConnectionDistributor) {
+            return ((LeastLoadedConnectionDistributor) distributor)
+                    .getMigratedConnectionsCount();
+        }
+
+        return 0;
+    }
+
+    @ManagedAttribute(id="async-write-records-per-write")
+    @Description("The average number of queued write records gathered into one vectored write")
+    public double getAsyncWriteRecordsPerWrite() {
+        final Object writer = transport.getAsyncQueueIO().getWriter();
+        if (writer instanceof TCPNIOAsyncQueueWriter) {
+            return ((TCPNIOAsyncQueueWriter) writer).getRecordsPerWrite();
+        }
+
+        return 0;
+    }
+
+    @ManagedAttribute(id="selector-busy-poll-time-micros")
+    @Description("The time (in microseconds) a selector thread spins waiting for new events before blocking, 0 if busy polling is disabled")
+    public long getSelectorBusyPollTime() {
+        return transport.getSelectorBusyPollTime(TimeUnit.MICROSECONDS);
+    }
+
+    @ManagedAttribute(id="async-write-pending-bytes")
+    @Description("The number of bytes queued by all the connections (available if the transport pending writes budget is set)")
+    public long getAsyncWritePendingBytes() {
+        final Object writer = transport.getAsyncQueueIO().getWriter();
+        if (writer instanceof AbstractNIOAsyncQueueWriter) {
+            return ((AbstractNIOAsyncQueueWriter) writer)
+                    .getPendingWritesBudget().getPendingBytes();
+        }
+
+        return 0;
+    }
+
+    @ManagedAttribute(id="async-write-budget-overflows")
+    @Description("The number of writes rejected or throttled, because the transport pending writes budget was exceeded")
+    public long getAsyncWriteBudgetOverflows() {
+        final Object writer = transport.getAsyncQueueIO().getWriter();
+        if (writer instanceof AbstractNIOAsyncQueueWriter) {
+            return ((AbstractNIOAsyncQueueWriter) writer)
+                    .getPendingWritesBudget().getOverflowsCount();
+        }
+
+        return 0;
+    }
+
+    @ManagedAttribute(id="last-async-write-budget-event")
+    @Description("The last time the transport pending writes budget got exceeded or restored")
+    public String getLastPendingWritesBudgetEvent() {
+        return toString(lastPendingWritesBudgetEvent);
+    }
+
     @ManagedAttribute(id="thread-pool-type")
     public String getThreadPoolType() {
         return getType(transport.getWorkerThreadPool());
@@ -352,6 +442,18 @@ public class NIOTransport extends JmxObject {
                 rebuildSubTree();
             }
         }
+
+        @Override
+        public void onPendingWritesBudgetExceededEvent(Transport transport,
+                long pendingBytes) {
+            lastPendingWritesBudgetEvent = new EventDate("EXCEEDED: " + pendingBytes);
+        }
+
+        @Override
+        public void onPendingWritesBudgetRestoredEvent(Transport transport,
+                long pendingBytes) {
+            lastPendingWritesBudgetEvent = new EventDate("RESTORED: " + pendingBytes);
+        }
     }
 
     private class JmxConnectionProbe implements ConnectionProbe {
@@ -182,6 +182,15 @@ public class FileCache extends JmxObject {
         return fileCache.getMaxCacheEntries();
     }
 
+    /**
+     * @see org.glassfish.grizzly.http.server.filecache.FileCache#getEvictionPolicy()
+     */
+    @ManagedAttribute(id="eviction-policy")
+    @Description("The policy applied once the cache is full (NONE, LRU or TINY_LFU).")
+    public String getEvictionPolicy() {
+        return fileCache.getEvictionPolicy().name();
+    }
+
     /**
      * @see org.glassfish.grizzly.http.server.filecache.FileCache#getMinEntrySize()
      */
@@ -246,6 +255,26 @@ public class FileCache extends JmxObject {
         return cacheMissCount.get();
     }
 
+    /**
+     * @return the ratio of cache hits to all the cache lookups.
+     */
+    @ManagedAttribute(id="cache-hit-ratio")
+    @Description("The ratio of cache hits to all the cache lookups, since the JMX object was registered.")
+    public double getCacheHitRatio() {
+        final long hits = cacheHitCount.get();
+        final long total = hits + cacheMissCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @see org.glassfish.grizzly.http.server.filecache.FileCache#getEvictionCount()
+     */
+    @ManagedAttribute(id="cache-eviction-count")
+    @Description("The total number of entries evicted to make room for new ones.")
+    public long getCacheEvictionCount() {
+        return fileCache.getEvictionCount();
+    }
+
     /**
      * @return the total number of cache errors.
      */
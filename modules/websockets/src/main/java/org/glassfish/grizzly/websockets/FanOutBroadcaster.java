@@ -0,0 +1,418 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.websockets;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.nio.NIOConnection;
+import org.glassfish.grizzly.nio.NIOTransport;
+import org.glassfish.grizzly.nio.SelectorHandler;
+import org.glassfish.grizzly.nio.SelectorRunner;
+
+/**
+ * {@link Broadcaster}, which frames the message once and shares the resulting
+ * {@link Buffer} among all the recipients: every recipient's async write queue
+ * gets its own read-only view of the same content, so nothing is copied per
+ * recipient.
+ *
+ * Recipients whose async write queue already holds more than
+ * <tt>maxPendingBytes</tt> are considered slow consumers, the
+ * {@link SlowConsumerPolicy} decides whether the message is dropped for them,
+ * or they get disconnected.
+ *
+ * If <tt>sharded</tt> is <tt>true</tt>, the recipients are grouped by the
+ * selector thread serving their {@link Connection} and the writes are
+ * performed by these selector threads in parallel, instead of the thread
+ * calling <tt>broadcast</tt>. The order of the broadcasted messages is
+ * preserved, but a message sent directly via {@link WebSocket#send(String)}
+ * may overtake a previously broadcasted one.
+ *
+ * <tt>permessage-deflate</tt> compressed recipients, and {@link WebSocket}s,
+ * which don't extend {@link DefaultWebSocket}, get the message sent one by
+ * one as the {@link DummyBroadcaster} does.
+ *
+ * The fragments are framed by every recipient's own {@link ProtocolHandler},
+ * which keeps track of the fragmented message being sent, and written from
+ * the thread calling <tt>broadcastFragment</tt>. The {@link SlowConsumerPolicy}
+ * is applied to the first fragment only: if the message is skipped for a
+ * recipient, so are its remaining fragments, otherwise all of them are sent,
+ * because dropping a fragment in the middle would corrupt the message.
+ *
+ * @since 2.4
+ */
+public class FanOutBroadcaster implements Broadcaster {
+    private static final Logger LOGGER = Grizzly.logger(FanOutBroadcaster.class);
+
+    /**
+     * The default max number of bytes, which might be pending in a recipient's
+     * async write queue before it is considered a slow consumer.
+     */
+    public static final int DEFAULT_MAX_PENDING_BYTES = 1024 * 1024;
+
+    /**
+     * The policy applied to the recipients, which don't keep up with the
+     * broadcasted messages.
+     */
+    public interface SlowConsumerPolicy {
+        /**
+         * The method is called when the <tt>socket</tt>'s async write queue
+         * exceeds the configured limit.
+         *
+         * @param socket the slow {@link WebSocket}.
+         * @param pendingBytes the number of bytes pending in the async write queue.
+         *
+         * @return <tt>true</tt> if the message has to be queued anyway, or
+         *  <tt>false</tt> to skip it for this recipient.
+         */
+        boolean onSlowConsumer(WebSocket socket, int pendingBytes);
+    }
+
+    /**
+     * Skips the message for the slow consumer.
+     */
+    public static final SlowConsumerPolicy DROP = new SlowConsumerPolicy() {
+        @Override
+        public boolean onSlowConsumer(final WebSocket socket,
+                final int pendingBytes) {
+            return false;
+        }
+    };
+
+    /**
+     * Skips the message and closes the slow consumer's {@link WebSocket}.
+     * The closing frame would be queued after the data the consumer doesn't
+     * read, so the {@link Connection} is terminated without waiting for it.
+     */
+    public static final SlowConsumerPolicy DISCONNECT = new SlowConsumerPolicy() {
+        @Override
+        public boolean onSlowConsumer(final WebSocket socket,
+                final int pendingBytes) {
+            socket.close(WebSocket.POLICY_VIOLATION, "Slow consumer");
+            if (socket instanceof SimpleWebSocket) {
+                final Connection connection =
+                        ((SimpleWebSocket) socket).protocolHandler.getConnection();
+                if (connection != null) {
+                    connection.terminateSilently();
+                }
+            }
+            return false;
+        }
+    };
+
+    private final int maxPendingBytes;
+    private final SlowConsumerPolicy slowConsumerPolicy;
+    private final boolean sharded;
+
+    /**
+     * The recipients in the middle of a fragmented message, mapped to
+     * <tt>true</tt> if they get its fragments, or <tt>false</tt> if the message
+     * is skipped for them.
+     */
+    private final Map<WebSocket, Boolean> fragmentedRecipients =
+            Collections.synchronizedMap(new WeakHashMap<WebSocket, Boolean>());
+
+    /**
+     * Constructs a <tt>FanOutBroadcaster</tt>, which {@link #DROP}s messages for
+     * the recipients having more than {@link #DEFAULT_MAX_PENDING_BYTES}
+     * pending and writes from the caller thread.
+     */
+    public FanOutBroadcaster() {
+        this(DEFAULT_MAX_PENDING_BYTES, DROP, false);
+    }
+
+    /**
+     * @param maxPendingBytes the max number of bytes, which might be pending
+     *  in a recipient's async write queue, <tt>-1</tt> means unlimited.
+     * @param slowConsumerPolicy the {@link SlowConsumerPolicy}.
+     * @param sharded <tt>true</tt> if the writes have to be performed by the
+     *  recipients' selector threads.
+     */
+    public FanOutBroadcaster(final int maxPendingBytes,
+            final SlowConsumerPolicy slowConsumerPolicy,
+            final boolean sharded) {
+        if (slowConsumerPolicy == null) {
+            throw new IllegalArgumentException("slowConsumerPolicy can't be null");
+        }
+        this.maxPendingBytes = maxPendingBytes;
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        this.sharded = sharded;
+    }
+
+    public int getMaxPendingBytes() {
+        return maxPendingBytes;
+    }
+
+    public SlowConsumerPolicy getSlowConsumerPolicy() {
+        return slowConsumerPolicy;
+    }
+
+    public boolean isSharded() {
+        return sharded;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void broadcast(final Iterable<? extends WebSocket> recipients,
+            final String text) {
+        fanOut(recipients, new Message(text, null, true, false));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void broadcast(final Iterable<? extends WebSocket> recipients,
+            final byte[] binary) {
+        fanOut(recipients, new Message(null, binary, true, false));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void broadcastFragment(final Iterable<? extends WebSocket> recipients,
+            final String text, final boolean last) {
+        fanOutFragment(recipients, new Message(text, null, last, true));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void broadcastFragment(final Iterable<? extends WebSocket> recipients,
+            final byte[] binary, final boolean last) {
+        fanOutFragment(recipients, new Message(null, binary, last, true));
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private void fanOut(final Iterable<? extends WebSocket> recipients,
+            final Message message) {
+        Buffer shared = null;
+        Map<SelectorRunner, List<Connection>> shards = null;
+
+        for (WebSocket websocket : recipients) {
+            if (!websocket.isConnected()) {
+                continue;
+            }
+
+            if (!(websocket instanceof DefaultWebSocket)
+                    || ((DefaultWebSocket) websocket).isCompressed()) {
+                try {
+                    message.send(websocket);
+                } catch (WebSocketException ignored) {
+                }
+                continue;
+            }
+
+            final DefaultWebSocket defaultWebSocket = (DefaultWebSocket) websocket;
+            final Connection connection =
+                    defaultWebSocket.protocolHandler.getConnection();
+            if (connection == null || isSlowConsumer(defaultWebSocket, connection)) {
+                continue;
+            }
+
+            if (shared == null) {
+                shared = Buffers.wrap(connection.getTransport().getMemoryManager(),
+                        message.frame(defaultWebSocket));
+                shared.allowBufferDispose(false);
+            }
+
+            final SelectorRunner runner = sharded && connection instanceof NIOConnection
+                    ? ((NIOConnection) connection).getSelectorRunner()
+                    : null;
+            if (runner == null) {
+                write(connection, shared);
+            } else {
+                if (shards == null) {
+                    shards = new IdentityHashMap<SelectorRunner, List<Connection>>();
+                }
+                List<Connection> shard = shards.get(runner);
+                if (shard == null) {
+                    shard = new ArrayList<Connection>();
+                    shards.put(runner, shard);
+                }
+                shard.add(connection);
+            }
+        }
+
+        if (shards != null) {
+            for (Map.Entry<SelectorRunner, List<Connection>> entry : shards.entrySet()) {
+                final List<Connection> shard = entry.getValue();
+                final SelectorHandler selectorHandler =
+                        ((NIOTransport) shard.get(0).getTransport()).getSelectorHandler();
+                selectorHandler.execute(entry.getKey(),
+                        new WriteTask(shared, shard), null);
+            }
+        }
+    }
+
+    private void fanOutFragment(final Iterable<? extends WebSocket> recipients,
+            final Message message) {
+        for (WebSocket websocket : recipients) {
+            final Boolean sending = message.last
+                    ? fragmentedRecipients.remove(websocket)
+                    : fragmentedRecipients.get(websocket);
+            if (!websocket.isConnected()) {
+                fragmentedRecipients.remove(websocket);
+                continue;
+            }
+
+            final boolean send;
+            if (sending != null) {
+                send = sending;
+            } else {
+                // the first fragment of the message
+                final Connection connection = websocket instanceof DefaultWebSocket
+                        ? ((DefaultWebSocket) websocket).protocolHandler.getConnection()
+                        : null;
+                send = connection == null || !isSlowConsumer(websocket, connection);
+                if (!message.last) {
+                    fragmentedRecipients.put(websocket, send);
+                }
+            }
+
+            if (send) {
+                try {
+                    message.send(websocket);
+                } catch (WebSocketException ignored) {
+                }
+            }
+        }
+    }
+
+    private boolean isSlowConsumer(final WebSocket websocket,
+            final Connection connection) {
+        if (maxPendingBytes < 0 || !(connection instanceof NIOConnection)) {
+            return false;
+        }
+
+        final int pendingBytes =
+                ((NIOConnection) connection).getAsyncWriteQueue().spaceInBytes();
+        return pendingBytes > maxPendingBytes
+                && !slowConsumerPolicy.onSlowConsumer(websocket, pendingBytes);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void write(final Connection connection, final Buffer shared) {
+        final Buffer view = shared.asReadOnlyBuffer();
+        view.allowBufferDispose(false);
+        connection.write(view);
+    }
+
+
+    // ---------------------------------------------------------- Nested Classes
+
+
+    private static final class Message {
+        private final String text;
+        private final byte[] binary;
+        private final boolean last;
+        private final boolean fragment;
+
+        Message(final String text, final byte[] binary, final boolean last,
+                final boolean fragment) {
+            this.text = text;
+            this.binary = binary;
+            this.last = last;
+            this.fragment = fragment;
+        }
+
+        byte[] frame(final DefaultWebSocket websocket) {
+            return text != null
+                    ? websocket.toRawData(text, last)
+                    : websocket.toRawData(binary, last);
+        }
+
+        void send(final WebSocket websocket) {
+            if (text != null) {
+                if (fragment) {
+                    websocket.stream(last, text);
+                } else {
+                    websocket.send(text);
+                }
+            } else {
+                if (fragment) {
+                    websocket.stream(last, binary, 0, binary.length);
+                } else {
+                    websocket.send(binary);
+                }
+            }
+        }
+    }
+
+    private static final class WriteTask implements SelectorHandler.Task {
+        private final Buffer shared;
+        private final List<Connection> connections;
+
+        WriteTask(final Buffer shared, final List<Connection> connections) {
+            this.shared = shared;
+            this.connections = connections;
+        }
+
+        @Override
+        public boolean run() {
+            for (Connection connection : connections) {
+                try {
+                    write(connection, shared);
+                } catch (Exception e) {
+                    LOGGER.log(Level.FINE, "Broadcast write failed", e);
+                }
+            }
+            return true;
+        }
+    }
+}
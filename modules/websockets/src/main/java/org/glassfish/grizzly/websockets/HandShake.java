@@ -76,6 +76,7 @@ public abstract class HandShake {
     //private final Map<String, String[]> queryParams = new TreeMap<String, String[]>();
     private List<String> subProtocol = new ArrayList<String>();
     private List<Extension> extensions = new ArrayList<Extension>(); // client extensions
+    private PerMessageDeflate perMessageDeflate;
 
     public HandShake(URI url) {
         builder = HttpRequestPacket.builder()
@@ -193,6 +194,14 @@ public abstract class HandShake {
         this.extensions = extensions;
     }
 
+    /**
+     * @return the negotiated <tt>permessage-deflate</tt> state, or <tt>null</tt>
+     *  if the extension wasn't negotiated.
+     */
+    public PerMessageDeflate getPerMessageDeflate() {
+        return perMessageDeflate;
+    }
+
     protected final String joinExtensions(List<Extension> extensions) {
         StringBuilder sb = new StringBuilder();
         for (Extension e : extensions) {
@@ -325,6 +334,7 @@ public abstract class HandShake {
         checkForHeader(headers, Constants.UPGRADE, Constants.WEBSOCKET);
         checkForHeader(headers, Constants.CONNECTION, Constants.UPGRADE);
         checkForSubProtocol(headers);
+        checkForPerMessageDeflate(headers);
     }
 
     public void respond(final FilterChainContext ctx,
@@ -344,6 +354,10 @@ public abstract class HandShake {
             List<Extension> intersection =
                     intersection(getExtensions(),
                                  application.getSupportedExtensions());
+            if (!intersection.isEmpty()) {
+                intersection = negotiate(intersection,
+                        PerMessageDeflate.find(application.getSupportedExtensions()));
+            }
             if (!intersection.isEmpty()) {
                 application.onExtensionNegotiation(intersection);
                 response.setHeader(Constants.SEC_WS_EXTENSIONS_HEADER,
@@ -379,6 +393,44 @@ public abstract class HandShake {
         return intersection;
     }
 
+    /**
+     * Replaces the client's <tt>permessage-deflate</tt> offers with the
+     * response to the first acceptable one.
+     */
+    private List<Extension> negotiate(final List<Extension> requested,
+            final Extension supportedDeflate) {
+        final List<Extension> negotiated = new ArrayList<Extension>(requested.size());
+        for (Extension e : requested) {
+            if (!PerMessageDeflate.NAME.equals(e.getName())) {
+                negotiated.add(e);
+            } else if (perMessageDeflate == null) {
+                final Extension accepted =
+                        PerMessageDeflate.negotiate(e, supportedDeflate);
+                if (accepted != null) {
+                    perMessageDeflate = PerMessageDeflate.create(accepted, true);
+                    negotiated.add(accepted);
+                }
+            }
+        }
+        return negotiated;
+    }
+
+    private void checkForPerMessageDeflate(final HttpResponsePacket headers) {
+        final String value = headers.getHeader(Constants.SEC_WS_EXTENSIONS_HEADER);
+        if (value == null) {
+            return;
+        }
+        final Extension accepted =
+                PerMessageDeflate.find(parseExtensionsHeader(value));
+        if (accepted != null) {
+            if (PerMessageDeflate.find(getExtensions()) == null) {
+                throw new HandshakeException(String.format(
+                        "Invalid Sec-WebSocket-Extensions header returned: '%s'", value));
+            }
+            perMessageDeflate = PerMessageDeflate.create(accepted, false);
+        }
+    }
+
     protected final List<Extension> parseExtensionsHeader(final String headerValue) {
         List<Extension> resolved = new ArrayList<Extension>();
         String[] parts = headerValue.split(",");
@@ -40,11 +40,26 @@
 
 package org.glassfish.grizzly.websockets;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.security.SecureRandom;
 
 import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.memory.ByteBufferArray;
+import org.glassfish.grizzly.utils.JdkVersion;
 
+/**
+ * Masks and unmasks websocket payloads.
+ *
+ * The bulk operations XOR eight bytes at a time using <tt>long</tt> access on
+ * the {@link ByteBuffer}s backing the processed data. Heap {@link ByteBuffer}s
+ * get intrinsified <tt>long</tt> access only since JDK 9, so on older JDKs the
+ * backing array is processed with an unrolled byte loop instead.
+ */
 public class Masker {
+    private static final boolean HEAP_WORD_ACCESS =
+            JdkVersion.getJdkVersion().compareTo("1.9.0") >= 0;
+
     private Buffer buffer;
     private byte[] mask;
     private int index = 0;
@@ -69,18 +84,42 @@ public class Masker {
 
     public byte unmask() {
         final byte b = get();
-        return mask == null ? b : (byte) (b ^ mask[index++ % Constants.MASK_SIZE]);
+        return mask == null ? b : (byte) (b ^ mask[index++ & 3]);
     }
 
     public byte[] unmask(int count) {
-        byte[] bytes = get(count);
-        if (mask != null) {
-            for (int i = 0; i < bytes.length; i++) {
-                bytes[i] ^= mask[index++ % Constants.MASK_SIZE];
-            }
+        unmaskInPlace(count);
+        return get(count);
+    }
+
+    /**
+     * Unmasks <tt>count</tt> bytes following the current {@link Buffer}
+     * position in place. The {@link Buffer} position is not changed.
+     *
+     * @param count the number of bytes to unmask.
+     */
+    public void unmaskInPlace(final int count) {
+        if (mask == null || count == 0) {
+            return;
         }
 
-        return bytes;
+        final int position = buffer.position();
+        if (buffer.isComposite()) {
+            final ByteBufferArray array =
+                    buffer.toByteBufferArray(position, position + count);
+            try {
+                final ByteBuffer[] byteBuffers = array.getArray();
+                final int size = array.size();
+                for (int i = 0; i < size; i++) {
+                    xor(byteBuffers[i]);
+                }
+            } finally {
+                array.restore();
+                array.recycle();
+            }
+        } else {
+            xor(buffer.toByteBuffer(position, position + count));
+        }
     }
 
     public void generateMask() {
@@ -89,15 +128,18 @@ public class Masker {
     }
 
     public void mask(byte[] bytes, int location, byte b) {
-        bytes[location] = mask == null ? b : (byte) (b ^ mask[index++ % Constants.MASK_SIZE]);
+        bytes[location] = mask == null ? b : (byte) (b ^ mask[index++ & 3]);
     }
 
     public void mask(byte[] target, int location, byte[] bytes) {
         if(bytes != null && target != null) {
-            for (int i = 0; i < bytes.length; i++) {
-                target[location + i] = mask == null
-                        ? bytes[i]
-                        : (byte) (bytes[i] ^ mask[index++ % Constants.MASK_SIZE]);
+            System.arraycopy(bytes, 0, target, location, bytes.length);
+            if (mask != null && bytes.length > 0) {
+                if (HEAP_WORD_ACCESS) {
+                    xor(ByteBuffer.wrap(target, location, bytes.length));
+                } else {
+                    xor(target, location, location + bytes.length);
+                }
             }
         }
     }
@@ -121,4 +163,59 @@ public class Masker {
     public void readMask() {
         mask = get(Constants.MASK_SIZE);
     }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    /**
+     * XORs the bytes between the {@link ByteBuffer}'s position and limit with
+     * the mask, the position and limit are not changed.
+     */
+    private void xor(final ByteBuffer byteBuffer) {
+        final int from = byteBuffer.position();
+        final int to = byteBuffer.limit();
+        if (!HEAP_WORD_ACCESS && byteBuffer.hasArray()) {
+            final int offset = byteBuffer.arrayOffset();
+            xor(byteBuffer.array(), offset + from, offset + to);
+            return;
+        }
+
+        // each 8-byte step covers the mask twice, so the word never changes
+        long word = 0;
+        for (int i = 0; i < 8; i++) {
+            word = (word << 8) | (mask[(index + i) & 3] & 0xFF);
+        }
+        if (byteBuffer.order() == ByteOrder.LITTLE_ENDIAN) {
+            word = Long.reverseBytes(word);
+        }
+
+        int i = from;
+        for (final int end = to - 7; i < end; i += 8) {
+            byteBuffer.putLong(i, byteBuffer.getLong(i) ^ word);
+        }
+        for (; i < to; i++) {
+            byteBuffer.put(i, (byte) (byteBuffer.get(i) ^ mask[(index + i - from) & 3]));
+        }
+        index = (index + to - from) & 3;
+    }
+
+    private void xor(final byte[] bytes, final int from, final int to) {
+        final byte m0 = mask[index & 3];
+        final byte m1 = mask[(index + 1) & 3];
+        final byte m2 = mask[(index + 2) & 3];
+        final byte m3 = mask[(index + 3) & 3];
+
+        int i = from;
+        for (final int end = to - 3; i < end; i += 4) {
+            bytes[i] ^= m0;
+            bytes[i + 1] ^= m1;
+            bytes[i + 2] ^= m2;
+            bytes[i + 3] ^= m3;
+        }
+        for (; i < to; i++) {
+            bytes[i] ^= mask[(index + i - from) & 3];
+        }
+        index = (index + to - from) & 3;
+    }
 }
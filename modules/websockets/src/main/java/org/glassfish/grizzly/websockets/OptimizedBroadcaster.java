@@ -62,6 +62,14 @@ public class OptimizedBroadcaster implements Broadcaster {
             final DefaultWebSocket defaultWebSocket = (DefaultWebSocket) websocket;
             
             if (websocket.isConnected()) {
+                if (defaultWebSocket.isCompressed()) {
+                    // the compressed frames depend on the connection's context
+                    try {
+                        websocket.send(text);
+                    } catch (WebSocketException ignored) {
+                    }
+                    continue;
+                }
                 if (rawDataToSend == null) {
                     rawDataToSend = defaultWebSocket.toRawData(text);
                 }
@@ -87,6 +95,14 @@ public class OptimizedBroadcaster implements Broadcaster {
             final DefaultWebSocket defaultWebSocket = (DefaultWebSocket) websocket;
             
             if (websocket.isConnected()) {
+                if (defaultWebSocket.isCompressed()) {
+                    // the compressed frames depend on the connection's context
+                    try {
+                        websocket.send(binary);
+                    } catch (WebSocketException ignored) {
+                    }
+                    continue;
+                }
                 if (rawDataToSend == null) {
                     rawDataToSend = defaultWebSocket.toRawData(binary);
                 }
@@ -108,6 +124,14 @@ public class OptimizedBroadcaster implements Broadcaster {
             final DefaultWebSocket defaultWebSocket = (DefaultWebSocket) websocket;
             
             if (websocket.isConnected()) {
+                if (defaultWebSocket.isCompressed()) {
+                    // the compressed frames depend on the connection's context
+                    try {
+                        websocket.stream(last, text);
+                    } catch (WebSocketException ignored) {
+                    }
+                    continue;
+                }
                 if (rawDataToSend == null) {
                     rawDataToSend = defaultWebSocket.toRawData(text, last);
                 }
@@ -128,6 +152,14 @@ public class OptimizedBroadcaster implements Broadcaster {
             final DefaultWebSocket defaultWebSocket = (DefaultWebSocket) websocket;
             
             if (websocket.isConnected()) {
+                if (defaultWebSocket.isCompressed()) {
+                    // the compressed frames depend on the connection's context
+                    try {
+                        websocket.stream(last, binary, 0, binary.length);
+                    } catch (WebSocketException ignored) {
+                    }
+                    continue;
+                }
                 if (rawDataToSend == null) {
                     rawDataToSend = defaultWebSocket.toRawData(binary, last);
                 }
@@ -0,0 +1,515 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.websockets;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The state of a negotiated <tt>permessage-deflate</tt> extension
+ * (RFC 7692) for a single WebSocket connection.
+ *
+ * The extension is enabled on the server side by returning an {@link Extension}
+ * named {@link #NAME} from {@link WebSocketApplication#getSupportedExtensions()}
+ * and on the client side by adding it to the {@link HandShake#getExtensions()}.
+ * The <tt>server_no_context_takeover</tt> and <tt>client_no_context_takeover</tt>
+ * parameters of the server's supported extension are always requested from
+ * the peer.
+ *
+ * {@link Deflater}s and {@link Inflater}s hold native zlib memory, so they are
+ * borrowed from a shared pool when a message starts and, if the context is
+ * not taken over between messages, returned as soon as the message is
+ * complete. Otherwise they are kept until {@link #release()} is called, when
+ * the connection is closed.
+ *
+ * The JDK {@link Deflater} always uses a 32K LZ77 window, so offers limiting
+ * <tt>server_max_window_bits</tt> below 15 are declined. Any window size
+ * the peer chooses for its own compressor is accepted.
+ *
+ * The size of a decompressed message is limited by
+ * {@link #setMaxMessageSize(int)}, so a small compressed message can't make
+ * the endpoint inflate an unbounded amount of data.
+ *
+ * @since 2.4
+ */
+public final class PerMessageDeflate {
+
+    public static final String NAME = "permessage-deflate";
+    public static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+    public static final String CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+    public static final String SERVER_MAX_WINDOW_BITS = "server_max_window_bits";
+    public static final String CLIENT_MAX_WINDOW_BITS = "client_max_window_bits";
+
+    private static final int MAX_WINDOW_BITS = 15;
+    private static final int MIN_WINDOW_BITS = 8;
+    private static final byte[] TAIL = {0x00, 0x00, (byte) 0xFF, (byte) 0xFF};
+
+    private static final int MAX_POOL_SIZE = Integer.getInteger(
+            "org.glassfish.grizzly.websockets.PerMessageDeflate.maxPoolSize", 64);
+
+    /**
+     * The default max size of a decompressed message in bytes.
+     */
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = Integer.getInteger(
+            "org.glassfish.grizzly.websockets.PerMessageDeflate.maxMessageSize",
+            16 * 1024 * 1024);
+
+    private static final Pool<Deflater> DEFLATERS = new Pool<Deflater>() {
+        @Override
+        Deflater create() {
+            return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+
+        @Override
+        void reset(final Deflater deflater) {
+            deflater.reset();
+        }
+
+        @Override
+        void end(final Deflater deflater) {
+            deflater.end();
+        }
+    };
+
+    private static final Pool<Inflater> INFLATERS = new Pool<Inflater>() {
+        @Override
+        Inflater create() {
+            return new Inflater(true);
+        }
+
+        @Override
+        void reset(final Inflater inflater) {
+            inflater.reset();
+        }
+
+        @Override
+        void end(final Inflater inflater) {
+            inflater.end();
+        }
+    };
+
+    private final boolean compressNoContextTakeover;
+    private final boolean decompressNoContextTakeover;
+
+    private volatile int maxMessageSize = DEFAULT_MAX_MESSAGE_SIZE;
+
+    private Deflater deflater;
+    private Inflater inflater;
+    private boolean released;
+    // the number of bytes of the current incoming message decompressed so far
+    private int messageSize;
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * @param compressNoContextTakeover <tt>true</tt> if the compression
+     *  context of this endpoint must be reset after each message.
+     * @param decompressNoContextTakeover <tt>true</tt> if the peer resets its
+     *  compression context after each message.
+     */
+    public PerMessageDeflate(final boolean compressNoContextTakeover,
+            final boolean decompressNoContextTakeover) {
+        this.compressNoContextTakeover = compressNoContextTakeover;
+        this.decompressNoContextTakeover = decompressNoContextTakeover;
+    }
+
+
+    // ---------------------------------------------------------- Public Methods
+
+
+    /**
+     * Server side negotiation: checks the client's offer and returns the
+     * {@link Extension} to be sent back in the handshake response, or
+     * <tt>null</tt> if the offer has to be declined.
+     *
+     * @param offer the client's <tt>permessage-deflate</tt> offer.
+     * @param supported the server's supported extension; may be <tt>null</tt>.
+     */
+    public static Extension negotiate(final Extension offer,
+            final Extension supported) {
+        boolean serverNoContextTakeover = false;
+        boolean clientNoContextTakeover = false;
+        final Set<String> seen = new HashSet<String>();
+        for (Extension.Parameter p : offer.getParameters()) {
+            final String name = p.getName();
+            if (!seen.add(name)) {
+                return null;
+            }
+            if (SERVER_NO_CONTEXT_TAKEOVER.equals(name)) {
+                if (p.getValue() != null) {
+                    return null;
+                }
+                serverNoContextTakeover = true;
+            } else if (CLIENT_NO_CONTEXT_TAKEOVER.equals(name)) {
+                if (p.getValue() != null) {
+                    return null;
+                }
+                clientNoContextTakeover = true;
+            } else if (SERVER_MAX_WINDOW_BITS.equals(name)) {
+                if (parseWindowBits(p.getValue()) != MAX_WINDOW_BITS) {
+                    return null;
+                }
+            } else if (CLIENT_MAX_WINDOW_BITS.equals(name)) {
+                // the Inflater copes with any window size, the value is only
+                // validated; not echoing it leaves the client's window as is
+                if (p.getValue() != null && parseWindowBits(p.getValue()) == -1) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        }
+        if (supported != null) {
+            for (Extension.Parameter p : supported.getParameters()) {
+                if (SERVER_NO_CONTEXT_TAKEOVER.equals(p.getName())) {
+                    serverNoContextTakeover = true;
+                } else if (CLIENT_NO_CONTEXT_TAKEOVER.equals(p.getName())) {
+                    clientNoContextTakeover = true;
+                }
+            }
+        }
+
+        final Extension response = new Extension(NAME);
+        if (serverNoContextTakeover) {
+            response.getParameters().add(
+                    new Extension.Parameter(SERVER_NO_CONTEXT_TAKEOVER, null));
+        }
+        if (clientNoContextTakeover) {
+            response.getParameters().add(
+                    new Extension.Parameter(CLIENT_NO_CONTEXT_TAKEOVER, null));
+        }
+        return response;
+    }
+
+    /**
+     * Creates the per-connection state from the negotiated extension, as it
+     * was sent in the server's handshake response.
+     *
+     * @param response the accepted <tt>permessage-deflate</tt> extension.
+     * @param server <tt>true</tt> if the state is for the server endpoint.
+     *
+     * @throws HandshakeException if the response contains parameters this
+     *  endpoint can't honor.
+     */
+    public static PerMessageDeflate create(final Extension response,
+            final boolean server) {
+        boolean serverNoContextTakeover = false;
+        boolean clientNoContextTakeover = false;
+        final Set<String> seen = new HashSet<String>();
+        for (Extension.Parameter p : response.getParameters()) {
+            final String name = p.getName();
+            if (!seen.add(name)) {
+                throw new HandshakeException("Duplicate " + NAME
+                        + " parameter: " + name);
+            }
+            if (SERVER_NO_CONTEXT_TAKEOVER.equals(name)) {
+                serverNoContextTakeover = true;
+            } else if (CLIENT_NO_CONTEXT_TAKEOVER.equals(name)) {
+                clientNoContextTakeover = true;
+            } else if (SERVER_MAX_WINDOW_BITS.equals(name)) {
+                if (parseWindowBits(p.getValue()) == -1) {
+                    throw new HandshakeException("Invalid " + NAME
+                            + " parameter: " + p);
+                }
+            } else if (CLIENT_MAX_WINDOW_BITS.equals(name)) {
+                final int bits = parseWindowBits(p.getValue());
+                if (bits == -1 || (!server && bits != MAX_WINDOW_BITS)) {
+                    throw new HandshakeException("Unsupported " + NAME
+                            + " parameter: " + p);
+                }
+            } else {
+                throw new HandshakeException("Unknown " + NAME
+                        + " parameter: " + p);
+            }
+        }
+
+        return server
+                ? new PerMessageDeflate(serverNoContextTakeover, clientNoContextTakeover)
+                : new PerMessageDeflate(clientNoContextTakeover, serverNoContextTakeover);
+    }
+
+    /**
+     * Looks up the first <tt>permessage-deflate</tt> {@link Extension} in the
+     * list.
+     */
+    public static Extension find(final List<Extension> extensions) {
+        for (Extension e : extensions) {
+            if (NAME.equals(e.getName())) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    public boolean isCompressNoContextTakeover() {
+        return compressNoContextTakeover;
+    }
+
+    public boolean isDecompressNoContextTakeover() {
+        return decompressNoContextTakeover;
+    }
+
+    /**
+     * @return the max size of a decompressed message in bytes, <tt>-1</tt>
+     *  means no limit.
+     */
+    public int getMaxMessageSize() {
+        return maxMessageSize;
+    }
+
+    /**
+     * Sets the max size of a decompressed message in bytes, <tt>-1</tt>
+     * means no limit. Once the limit is exceeded, the decompression stops and
+     * the connection is failed with the {@link WebSocket#MESSAGE_TOO_BIG}
+     * close code.
+     */
+    public void setMaxMessageSize(final int maxMessageSize) {
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    /**
+     * Compresses the payload of a single frame of an outgoing message.
+     *
+     * @param data the uncompressed payload.
+     * @param last <tt>true</tt> if this is the final frame of the message.
+     *
+     * @return the compressed frame payload.
+     */
+    public synchronized byte[] compress(final byte[] data, final boolean last) {
+        if (deflater == null) {
+            deflater = DEFLATERS.acquire();
+        }
+        final Deflater localDeflater = deflater;
+        localDeflater.setInput(data);
+        byte[] out = new byte[Math.max(64, data.length + (data.length >> 4) + 16)];
+        int length = 0;
+        for (;;) {
+            length += localDeflater.deflate(out, length, out.length - length,
+                    Deflater.SYNC_FLUSH);
+            if (length < out.length) {
+                break;
+            }
+            out = copyOf(out, length, out.length << 1);
+        }
+
+        if (last) {
+            // RFC 7692, 7.2.1: remove the trailing empty stored block
+            if (length >= TAIL.length && endsWithTail(out, length)) {
+                length -= TAIL.length;
+            }
+            if (compressNoContextTakeover || released) {
+                DEFLATERS.release(localDeflater);
+                deflater = null;
+            }
+        }
+
+        return copyOf(out, length, length);
+    }
+
+    /**
+     * Decompresses the payload of a single frame of an incoming compressed
+     * message.
+     *
+     * @param data the compressed payload.
+     * @param last <tt>true</tt> if this is the final frame of the message.
+     *
+     * @return the uncompressed frame payload.
+     *
+     * @throws ProtocolError if the data couldn't be decompressed or the
+     *  decompressed message exceeds the max message size.
+     */
+    public synchronized byte[] decompress(final byte[] data, final boolean last) {
+        if (inflater == null) {
+            inflater = INFLATERS.acquire();
+        }
+        final Inflater localInflater = inflater;
+        // the number of bytes this frame may be inflated to, the buffer is
+        // never grown more than one byte beyond it to detect the overflow
+        final long limit = maxMessageSize < 0
+                ? Integer.MAX_VALUE - 1
+                : Math.max(0, maxMessageSize - messageSize);
+        byte[] out = new byte[(int) Math.max(64,
+                Math.min((long) data.length << 2, limit + 1))];
+        int length = 0;
+        try {
+            // RFC 7692, 7.2.2: the stripped empty stored block is appended
+            // to the final frame before it gets inflated
+            for (int i = 0; i < (last ? 2 : 1) && !localInflater.finished(); i++) {
+                localInflater.setInput(i == 0 ? data : TAIL);
+                while (!localInflater.finished()) {
+                    if (length == out.length) {
+                        if (length > limit) {
+                            break;
+                        }
+                        out = copyOf(out, length,
+                                (int) Math.min((long) out.length << 1, limit + 1));
+                    }
+                    final int n = localInflater.inflate(out, length, out.length - length);
+                    length += n;
+                    if (n == 0 && (localInflater.needsInput()
+                            || localInflater.needsDictionary())) {
+                        break;
+                    }
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new ProtocolError("Invalid " + NAME + " data: "
+                    + e.getMessage());
+        }
+
+        if (length > limit) {
+            throw new ProtocolError("Decompressed message exceeds the max"
+                    + " message size of " + maxMessageSize + " bytes",
+                    WebSocket.MESSAGE_TOO_BIG);
+        }
+        messageSize = last ? 0 : messageSize + length;
+
+        if (last && (decompressNoContextTakeover || released
+                || localInflater.finished())) {
+            INFLATERS.release(localInflater);
+            inflater = null;
+        }
+
+        return length == out.length ? out : copyOf(out, length, length);
+    }
+
+    /**
+     * Returns the {@link Deflater} and {@link Inflater} held by this connection
+     * to the pool. The method is called once the connection is closed.
+     */
+    public synchronized void release() {
+        released = true;
+        if (deflater != null) {
+            DEFLATERS.release(deflater);
+            deflater = null;
+        }
+        if (inflater != null) {
+            INFLATERS.release(inflater);
+            inflater = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PerMessageDeflate{compressNoContextTakeover="
+                + compressNoContextTakeover
+                + ", decompressNoContextTakeover="
+                + decompressNoContextTakeover + '}';
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private static int parseWindowBits(final String value) {
+        if (value == null) {
+            return -1;
+        }
+        String v = value;
+        if (v.length() > 1 && v.charAt(0) == '"' && v.charAt(v.length() - 1) == '"') {
+            v = v.substring(1, v.length() - 1);
+        }
+        try {
+            final int bits = Integer.parseInt(v);
+            return bits >= MIN_WINDOW_BITS && bits <= MAX_WINDOW_BITS ? bits : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static boolean endsWithTail(final byte[] out, final int length) {
+        for (int i = 0; i < TAIL.length; i++) {
+            if (out[length - TAIL.length + i] != TAIL[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] copyOf(final byte[] src, final int length,
+            final int newSize) {
+        final byte[] dst = new byte[newSize];
+        System.arraycopy(src, 0, dst, 0, length);
+        return dst;
+    }
+
+
+    // ---------------------------------------------------------- Nested Classes
+
+
+    private abstract static class Pool<E> {
+        private final Queue<E> queue = new ConcurrentLinkedQueue<E>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        abstract E create();
+
+        abstract void reset(E e);
+
+        abstract void end(E e);
+
+        E acquire() {
+            final E e = queue.poll();
+            if (e == null) {
+                return create();
+            }
+            size.decrementAndGet();
+            return e;
+        }
+
+        void release(final E e) {
+            reset(e);
+            if (size.incrementAndGet() <= MAX_POOL_SIZE) {
+                queue.offer(e);
+            } else {
+                size.decrementAndGet();
+                end(e);
+            }
+        }
+    }
+}
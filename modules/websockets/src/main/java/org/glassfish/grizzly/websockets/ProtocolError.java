@@ -42,24 +42,33 @@ package org.glassfish.grizzly.websockets;
 
 public class ProtocolError extends FramingException {
 
+    private final int closingCode;
+
     // ------------------------------------------------------------ Constructors
 
 
         public ProtocolError(String s) {
+            this(s, WebSocket.PROTOCOL_ERROR);
+        }
+
+        public ProtocolError(String s, int closingCode) {
             super(s);
+            this.closingCode = closingCode;
         }
 
         public ProtocolError(String s, Throwable throwable) {
             super(s, throwable);
+            closingCode = WebSocket.PROTOCOL_ERROR;
         }
 
         public ProtocolError(Throwable throwable) {
             super(throwable);
+            closingCode = WebSocket.PROTOCOL_ERROR;
         }
 
         @Override
         public int getClosingCode() {
-            return WebSocket.PROTOCOL_ERROR;
+            return closingCode;
         }
 
 }
@@ -40,6 +40,7 @@
 
 package org.glassfish.grizzly.websockets;
 
+import java.io.IOException;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
@@ -48,6 +49,9 @@ import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CoderResult;
 
 import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.CloseListener;
+import org.glassfish.grizzly.CloseType;
+import org.glassfish.grizzly.Closeable;
 import org.glassfish.grizzly.CompletionHandler;
 import org.glassfish.grizzly.Connection;
 import org.glassfish.grizzly.EmptyCompletionHandler;
@@ -74,6 +78,9 @@ public abstract class ProtocolHandler {
     protected final CharsetDecoder currentDecoder = utf8.newDecoder();
     protected ByteBuffer remainder;
     protected WebSocketMappingData mappingData;
+    protected PerMessageDeflate perMessageDeflate;
+    protected int maxDecompressedMessageSize =
+            PerMessageDeflate.DEFAULT_MAX_MESSAGE_SIZE;
     
     public ProtocolHandler(boolean maskData) {
         this.maskData = maskData;
@@ -90,6 +97,7 @@ public abstract class ProtocolHandler {
                 ((HttpRequestPacket) request.getHttpHeader()).getResponse();
         
         handshake.respond(ctx, app, response);
+        setPerMessageDeflate(handshake.getPerMessageDeflate());
         return handshake;
     }
 
@@ -134,6 +142,59 @@ public abstract class ProtocolHandler {
         this.webSocket = webSocket;
     }
 
+    /**
+     * @return the <tt>permessage-deflate</tt> state of this connection, or
+     *  <tt>null</tt> if the extension wasn't negotiated.
+     */
+    public PerMessageDeflate getPerMessageDeflate() {
+        return perMessageDeflate;
+    }
+
+    /**
+     * Enables <tt>permessage-deflate</tt> compression of the data frames.
+     * The compressor state is released once the {@link Connection} is closed.
+     */
+    public void setPerMessageDeflate(final PerMessageDeflate perMessageDeflate) {
+        this.perMessageDeflate = perMessageDeflate;
+        if (perMessageDeflate == null) {
+            return;
+        }
+        
+        perMessageDeflate.setMaxMessageSize(maxDecompressedMessageSize);
+        final Connection localConnection = connection;
+        if (localConnection != null) {
+            localConnection.addCloseListener(new CloseListener<Closeable, CloseType>() {
+                @Override
+                public void onClosed(final Closeable closeable,
+                        final CloseType type) throws IOException {
+                    perMessageDeflate.release();
+                }
+            });
+        }
+    }
+
+    /**
+     * @return the max size in bytes of a <tt>permessage-deflate</tt>
+     *  compressed message once it's decompressed, <tt>-1</tt> means no limit.
+     */
+    public int getMaxDecompressedMessageSize() {
+        return maxDecompressedMessageSize;
+    }
+
+    /**
+     * Sets the max size in bytes of a <tt>permessage-deflate</tt> compressed
+     * message once it's decompressed, <tt>-1</tt> means no limit. If the limit
+     * is exceeded, the connection is failed with the
+     * {@link WebSocket#MESSAGE_TOO_BIG} close code.
+     */
+    public void setMaxDecompressedMessageSize(final int maxDecompressedMessageSize) {
+        this.maxDecompressedMessageSize = maxDecompressedMessageSize;
+        final PerMessageDeflate localDeflate = perMessageDeflate;
+        if (localDeflate != null) {
+            localDeflate.setMaxMessageSize(maxDecompressedMessageSize);
+        }
+    }
+
     public boolean isMaskData() {
         return maskData;
     }
@@ -208,7 +269,6 @@ public abstract class ProtocolHandler {
                 });
     }
 
-    @SuppressWarnings({"unchecked"})
     private GrizzlyFuture<DataFrame> write(final DataFrame frame,
             final CompletionHandler<DataFrame> completionHandler) {
         
@@ -218,7 +278,24 @@ public abstract class ProtocolHandler {
         }
         
         final FutureImpl<DataFrame> localFuture = SafeFutureImpl.create();
+        final PerMessageDeflate localDeflate = perMessageDeflate;
+        if (localDeflate == null) {
+            write(localConnection, frame, completionHandler, localFuture);
+        } else {
+            // the compression context is shared by all the messages, so the
+            // frames have to be queued in the order they were compressed
+            synchronized (localDeflate) {
+                write(localConnection, frame, completionHandler, localFuture);
+            }
+        }
+
+        return localFuture;
+    }
 
+    @SuppressWarnings({"unchecked"})
+    private void write(final Connection localConnection, final DataFrame frame,
+            final CompletionHandler<DataFrame> completionHandler,
+            final FutureImpl<DataFrame> localFuture) {
         localConnection.write(frame, new EmptyCompletionHandler() {
             @Override
             public void completed(final Object result) {
@@ -238,8 +315,6 @@ public abstract class ProtocolHandler {
                 localFuture.failure(throwable);
             }
         });
-
-        return localFuture;
     }
 
     public DataFrame unframe(Buffer buffer) {
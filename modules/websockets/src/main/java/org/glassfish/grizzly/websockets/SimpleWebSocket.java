@@ -298,6 +298,15 @@ public class SimpleWebSocket implements WebSocket {
         }
     }
 
+    /**
+     * @return <tt>true</tt> if the data frames of this websocket are
+     *  <tt>permessage-deflate</tt> compressed, so raw frames can't be shared
+     *  with other websockets.
+     */
+    protected boolean isCompressed() {
+        return protocolHandler.getPerMessageDeflate() != null;
+    }
+
     protected byte[] toRawData(String text) {
         return toRawData(text, true);
     }
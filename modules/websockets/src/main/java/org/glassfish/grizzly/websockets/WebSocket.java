@@ -81,6 +81,16 @@ public interface WebSocket {
      * without sending or receiving a Close control frame.
      */
     int ABNORMAL_CLOSE = 1006;
+    /**
+     * Indicates that an endpoint is terminating the connection because it has received a message that violates its
+     * policy, or, more generally, because no other status code is suitable.
+     */
+    int POLICY_VIOLATION = 1008;
+    /**
+     * Indicates that an endpoint is terminating the connection because it has received a message that is too big for
+     * it to process.
+     */
+    int MESSAGE_TOO_BIG = 1009;
 
     /**
      * <p>
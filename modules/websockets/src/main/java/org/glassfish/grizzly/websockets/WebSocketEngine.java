@@ -93,6 +93,9 @@ public class WebSocketEngine {
     private final HttpResponsePacket.Builder unsupportedVersionsResponseBuilder;
 
     private Mapper mapper = new Mapper();
+    
+    private volatile int maxDecompressedMessageSize =
+            PerMessageDeflate.DEFAULT_MAX_MESSAGE_SIZE;
 
 
     private WebSocketEngine() {
@@ -107,6 +110,23 @@ public class WebSocketEngine {
         return engine;
     }
 
+    /**
+     * @return the max size in bytes of a <tt>permessage-deflate</tt>
+     *  compressed message once it's decompressed, <tt>-1</tt> means no limit.
+     */
+    public int getMaxDecompressedMessageSize() {
+        return maxDecompressedMessageSize;
+    }
+
+    /**
+     * Sets the max size in bytes of a <tt>permessage-deflate</tt> compressed
+     * message once it's decompressed, <tt>-1</tt> means no limit. The limit
+     * is applied to the websocket connections upgraded after the call.
+     */
+    public void setMaxDecompressedMessageSize(final int maxDecompressedMessageSize) {
+        this.maxDecompressedMessageSize = maxDecompressedMessageSize;
+    }
+
 
 
     public WebSocketApplication getApplication(HttpRequestPacket request) {
@@ -199,6 +219,8 @@ public class WebSocketEngine {
                 protocolHandler.setFilterChainContext(ctx);
                 protocolHandler.setConnection(connection);
                 protocolHandler.setMappingData(reg.mappingData);
+                protocolHandler.setMaxDecompressedMessageSize(
+                        maxDecompressedMessageSize);
                 
                 ctx.setMessage(null); // remove the message from the context, so underlying layers will not try to update it.
                 
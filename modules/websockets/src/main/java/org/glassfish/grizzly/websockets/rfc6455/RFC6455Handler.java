@@ -63,6 +63,7 @@ import java.util.Locale;
 public class RFC6455Handler extends ProtocolHandler {
 
     private final ParsingState state = new ParsingState();
+    private boolean inCompressed;
 
     // ------------------------------------------------------------ Constructors
 
@@ -89,7 +90,14 @@ public class RFC6455Handler extends ProtocolHandler {
     @Override
     public byte[] frame(DataFrame frame) {
         byte opcode = checkForLastFrame(frame, getOpcode(frame.getType()));
-        final byte[] bytes = frame.getType().getBytes(frame);
+        byte[] bytes = frame.getType().getBytes(frame);
+        if (perMessageDeflate != null && !isControlFrame(opcode)) {
+            bytes = perMessageDeflate.compress(bytes, frame.isLast());
+            if (!isContinuationFrame((byte) (opcode & 0x0F))) {
+                // RSV1 marks the first frame of a compressed message
+                opcode |= 0x40;
+            }
+        }
         final byte[] lengthBytes = encodeLength(bytes.length);
 
         int length = 1 + lengthBytes.length + bytes.length + (maskData
@@ -126,15 +134,19 @@ public class RFC6455Handler extends ProtocolHandler {
                     }
 
                     byte opcode = buffer.get();
-                    boolean rsvBitSet = isBitSet(opcode, 6)
-                            || isBitSet(opcode, 5)
-                            || isBitSet(opcode, 4);
+                    state.finalFragment = isBitSet(opcode, 7);
+                    state.controlFrame = isControlFrame(opcode);
+                    state.opcode = (byte) (opcode & 0x0f);
+                    state.compressed = isBitSet(opcode, 6);
+                    boolean rsvBitSet = isBitSet(opcode, 5)
+                            || isBitSet(opcode, 4)
+                            || (state.compressed
+                                    && (perMessageDeflate == null
+                                            || state.controlFrame
+                                            || isContinuationFrame(state.opcode)));
                     if (rsvBitSet) {
                         throw new ProtocolError("RSV bit(s) incorrectly set.");
                     }
-                    state.finalFragment = isBitSet(opcode, 7);
-                    state.controlFrame = isControlFrame(opcode);
-                    state.opcode = (byte) (opcode & 0x7f);
                     state.frameType = valueOf(inFragmentedType, state.opcode);
                     if (!state.finalFragment && state.controlFrame) {
                         throw new ProtocolError("Fragmented control frame");
@@ -151,6 +163,9 @@ public class RFC6455Handler extends ProtocolHandler {
                             throw new ProtocolError(
                                     "Fragment sent but opcode was not 0");
                         }
+                        if (!isContinuationFrame(state.opcode)) {
+                            inCompressed = state.compressed;
+                        }
                         if (!state.finalFragment && !isContinuationFrame(
                                 state.opcode)) {
                             processingFragment = true;
@@ -207,13 +222,17 @@ public class RFC6455Handler extends ProtocolHandler {
                     }
 
                     state.masker.setBuffer(buffer);
-                    final byte[] data = state.masker.unmask((int) state.length);
+                    byte[] data = state.masker.unmask((int) state.length);
                     if (data.length != state.length) {
                         throw new ProtocolError(String.format(
                                 "Data read (%s) is not the expected" +
                                         " size (%s)", data.length,
                                 state.length));
                     }
+                    if (!state.controlFrame && inCompressed) {
+                        data = perMessageDeflate.decompress(data,
+                                state.finalFragment);
+                    }
                     dataFrame =
                             state.frameType.create(state.finalFragment, data);
 
@@ -225,6 +244,7 @@ public class RFC6455Handler extends ProtocolHandler {
                     if (!state.controlFrame && state.finalFragment) {
                         inFragmentedType = 0;
                         processingFragment = false;
+                        inCompressed = false;
                     }
                     state.recycle();
 
@@ -318,6 +338,7 @@ public class RFC6455Handler extends ProtocolHandler {
         Masker masker;
         boolean finalFragment;
         boolean controlFrame;
+        boolean compressed;
         private byte lengthCode = -1;
 
         void recycle() {
@@ -329,6 +350,7 @@ public class RFC6455Handler extends ProtocolHandler {
             masker = null;
             finalFragment = false;
             controlFrame = false;
+            compressed = false;
             frameType = null;
         }
     }
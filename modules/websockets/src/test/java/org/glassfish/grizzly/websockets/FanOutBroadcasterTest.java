@@ -0,0 +1,328 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.websockets;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.nio.NIOConnection;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class FanOutBroadcasterTest extends BaseWebSocketTestUtilities {
+    private static final int MAX_PENDING_BYTES = 64 * 1024;
+    private static final int MAX_BROADCASTS = 4096;
+
+    @Test
+    public void testDropSlowConsumer() throws Exception {
+        final CountingPolicy policy = new CountingPolicy(FanOutBroadcaster.DROP);
+        final FanOutBroadcaster broadcaster =
+                new FanOutBroadcaster(MAX_PENDING_BYTES, policy, false);
+
+        final SlowConsumerApplication app = new SlowConsumerApplication();
+        final WebSocketServer server = WebSocketServer.createServer(PORT);
+        server.register("", "/slow", app);
+        server.start();
+        final Socket client = connectNonReadingClient();
+        try {
+            final DefaultWebSocket websocket = app.awaitWebSocket();
+            final byte[] message = new byte[8192];
+
+            // the client doesn't read, so the messages pile up in the
+            // server's async write queue until the limit is reached
+            fillUp(broadcaster, websocket, message, policy);
+
+            final int pendingBytes = pendingBytes(websocket);
+            assertTrue("pendingBytes=" + pendingBytes,
+                    pendingBytes > MAX_PENDING_BYTES);
+            assertTrue("pendingBytes=" + pendingBytes,
+                    pendingBytes <= MAX_PENDING_BYTES + message.length + 16);
+
+            // the further messages are dropped for the slow consumer
+            final int slowCount = policy.count.get();
+            for (int i = 0; i < 10; i++) {
+                broadcaster.broadcast(Collections.singleton(websocket), message);
+            }
+            assertEquals(slowCount + 10, policy.count.get());
+            assertTrue(pendingBytes(websocket) <= pendingBytes);
+            assertTrue(websocket.isConnected());
+        } finally {
+            client.close();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testDisconnectSlowConsumer() throws Exception {
+        final CountingPolicy policy = new CountingPolicy(FanOutBroadcaster.DISCONNECT);
+        final FanOutBroadcaster broadcaster =
+                new FanOutBroadcaster(MAX_PENDING_BYTES, policy, false);
+
+        final SlowConsumerApplication app = new SlowConsumerApplication();
+        final WebSocketServer server = WebSocketServer.createServer(PORT);
+        server.register("", "/slow", app);
+        server.start();
+        final Socket client = connectNonReadingClient();
+        try {
+            final DefaultWebSocket websocket = app.awaitWebSocket();
+            final byte[] message = new byte[8192];
+
+            fillUp(broadcaster, websocket, message, policy);
+            assertEquals(1, policy.count.get());
+
+            // the slow consumer's connection is closed, so it doesn't get
+            // the further messages
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (websocket.isConnected()
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertFalse(websocket.isConnected());
+            assertFalse(websocket.protocolHandler.getConnection().isOpen());
+
+            broadcaster.broadcast(Collections.singleton(websocket), message);
+            assertEquals(1, policy.count.get());
+        } finally {
+            client.close();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testSlowConsumerFragments() throws Exception {
+        final CountingPolicy policy = new CountingPolicy(FanOutBroadcaster.DROP);
+        final FanOutBroadcaster broadcaster =
+                new FanOutBroadcaster(MAX_PENDING_BYTES, policy, false);
+
+        final SlowConsumerApplication app = new SlowConsumerApplication();
+        final WebSocketServer server = WebSocketServer.createServer(PORT);
+        server.register("", "/slow", app);
+        server.start();
+        final Socket client = connectNonReadingClient();
+        final FragmentCollector collector = new FragmentCollector();
+        final WebSocketClient fastClient = new WebSocketClient(
+                "ws://localhost:" + PORT + "/slow", collector);
+        try {
+            final DefaultWebSocket slow = app.awaitWebSocket();
+            fastClient.connect(5, TimeUnit.SECONDS);
+            final DefaultWebSocket fast = app.awaitWebSocket();
+            final List<DefaultWebSocket> recipients = Arrays.asList(slow, fast);
+
+            // the slow consumer gets the first fragment, so it has to get
+            // the whole message even though it exceeds the limit in the middle
+            final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            broadcastFragment(broadcaster, recipients, 1, false, expected);
+            for (int i = 0; i < MAX_BROADCASTS
+                    && pendingBytes(slow) <= MAX_PENDING_BYTES; i++) {
+                broadcastFragment(broadcaster, recipients, 1, false, expected);
+            }
+            assertTrue(pendingBytes(slow) > MAX_PENDING_BYTES);
+            broadcastFragment(broadcaster, recipients, 1, false, expected);
+            broadcastFragment(broadcaster, recipients, 1, true, expected);
+
+            assertEquals(0, policy.count.get());
+            assertEquals(0, slow.protocolHandler.outFragmentedType);
+            assertArrayEquals(expected.toByteArray(), collector.awaitMessage());
+
+            // the next message is skipped for the slow consumer as a whole
+            final int pendingBytes = pendingBytes(slow);
+            expected.reset();
+            broadcastFragment(broadcaster, recipients, 2, false, expected);
+            broadcastFragment(broadcaster, recipients, 2, false, expected);
+            broadcastFragment(broadcaster, recipients, 2, true, expected);
+
+            assertEquals(1, policy.count.get());
+            assertTrue(pendingBytes(slow) <= pendingBytes);
+            assertEquals(0, slow.protocolHandler.outFragmentedType);
+            assertArrayEquals(expected.toByteArray(), collector.awaitMessage());
+            assertTrue(slow.isConnected());
+        } finally {
+            fastClient.close();
+            client.close();
+            server.stop();
+        }
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+    private static void broadcastFragment(final FanOutBroadcaster broadcaster,
+            final List<? extends WebSocket> recipients, final int content,
+            final boolean last, final ByteArrayOutputStream expected) {
+        final byte[] fragment = new byte[8192];
+        Arrays.fill(fragment, (byte) content);
+        broadcaster.broadcastFragment(recipients, fragment, last);
+        expected.write(fragment, 0, fragment.length);
+    }
+
+
+    private static void fillUp(final FanOutBroadcaster broadcaster,
+            final WebSocket websocket, final byte[] message,
+            final CountingPolicy policy) {
+        for (int i = 0; i < MAX_BROADCASTS && policy.count.get() == 0; i++) {
+            broadcaster.broadcast(Collections.singleton(websocket), message);
+        }
+        assertTrue("The slow consumer policy hasn't been applied",
+                policy.count.get() > 0);
+    }
+
+    private static int pendingBytes(final DefaultWebSocket websocket) {
+        return ((NIOConnection) websocket.protocolHandler.getConnection())
+                .getAsyncWriteQueue().spaceInBytes();
+    }
+
+    /**
+     * Completes the websocket handshake and never reads from the socket
+     * afterwards.
+     */
+    private static Socket connectNonReadingClient() throws IOException {
+        final Socket socket = new Socket();
+        socket.setReceiveBufferSize(1024);
+        socket.connect(new InetSocketAddress("localhost", PORT));
+
+        final OutputStream out = socket.getOutputStream();
+        out.write(("GET /slow HTTP/1.1\r\n"
+                + "Host: localhost:" + PORT + "\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n"
+                + "Sec-WebSocket-Version: 13\r\n\r\n").getBytes("ISO-8859-1"));
+        out.flush();
+
+        // read the handshake response byte by byte to not consume any frame
+        final InputStream in = socket.getInputStream();
+        int state = 0;
+        while (state < 4) {
+            final int b = in.read();
+            if (b == -1) {
+                throw new IOException("Connection closed during the handshake");
+            }
+            state = b == (state % 2 == 0 ? '\r' : '\n')
+                    ? state + 1
+                    : (b == '\r' ? 1 : 0);
+        }
+
+        return socket;
+    }
+
+
+    // ---------------------------------------------------------- Nested Classes
+
+
+    private static final class SlowConsumerApplication extends WebSocketApplication {
+        private final BlockingQueue<DefaultWebSocket> websockets =
+                new LinkedBlockingQueue<DefaultWebSocket>();
+
+        @Override
+        public boolean isApplicationRequest(final HttpRequestPacket request) {
+            return "/slow".equals(request.getRequestURI());
+        }
+
+        @Override
+        public void onConnect(final WebSocket socket) {
+            super.onConnect(socket);
+            websockets.offer((DefaultWebSocket) socket);
+        }
+
+        DefaultWebSocket awaitWebSocket() throws InterruptedException {
+            final DefaultWebSocket websocket =
+                    websockets.poll(10, TimeUnit.SECONDS);
+            assertNotNull(websocket);
+            return websocket;
+        }
+    }
+
+    private static final class FragmentCollector extends WebSocketAdapter {
+        private final BlockingQueue<byte[]> messages =
+                new LinkedBlockingQueue<byte[]>();
+        private final ByteArrayOutputStream current = new ByteArrayOutputStream();
+
+        @Override
+        public void onFragment(final WebSocket socket, final byte[] fragment,
+                final boolean last) {
+            current.write(fragment, 0, fragment.length);
+            if (last) {
+                messages.offer(current.toByteArray());
+                current.reset();
+            }
+        }
+
+        byte[] awaitMessage() throws InterruptedException {
+            final byte[] message = messages.poll(10, TimeUnit.SECONDS);
+            assertNotNull(message);
+            return message;
+        }
+    }
+
+    private static final class CountingPolicy
+            implements FanOutBroadcaster.SlowConsumerPolicy {
+        private final FanOutBroadcaster.SlowConsumerPolicy delegate;
+        private final AtomicInteger count = new AtomicInteger();
+
+        CountingPolicy(final FanOutBroadcaster.SlowConsumerPolicy delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean onSlowConsumer(final WebSocket socket,
+                final int pendingBytes) {
+            count.incrementAndGet();
+            return delegate.onSlowConsumer(socket, pendingBytes);
+        }
+    }
+}
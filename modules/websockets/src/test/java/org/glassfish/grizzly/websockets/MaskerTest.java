@@ -0,0 +1,187 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.websockets;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.BuffersBuffer;
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class MaskerTest {
+
+    private static final MemoryManager MM = MemoryManager.DEFAULT_MEMORY_MANAGER;
+    private static final int[] SIZES = {0, 1, 3, 4, 7, 8, 9, 15, 16, 17, 125, 1024, 65537};
+
+    private final Random random = new Random(13);
+
+    @Test
+    public void testMask() {
+        for (int size : SIZES) {
+            final byte[] payload = randomBytes(size);
+            final Masker masker = new Masker();
+            final byte[] target = new byte[size + 3];
+            masker.mask(target, 3, payload);
+
+            final byte[] masked = new byte[size];
+            System.arraycopy(target, 3, masked, 0, size);
+            assertArrayEquals("size=" + size,
+                    xor(payload, masker.getMask(), 0), masked);
+        }
+    }
+
+    @Test
+    public void testUnmaskHeap() {
+        for (int size : SIZES) {
+            final byte[] mask = randomBytes(Constants.MASK_SIZE);
+            final byte[] payload = randomBytes(size);
+            final Buffer buffer = Buffers.wrap(MM, frame(mask, payload));
+            assertUnmask(buffer, mask, payload);
+        }
+    }
+
+    @Test
+    public void testUnmaskDirect() {
+        for (int size : SIZES) {
+            final byte[] mask = randomBytes(Constants.MASK_SIZE);
+            final byte[] payload = randomBytes(size);
+            final byte[] frame = frame(mask, payload);
+            final ByteBuffer direct = ByteBuffer.allocateDirect(frame.length);
+            direct.put(frame).flip();
+            assertUnmask(Buffers.wrap(MM, direct), mask, payload);
+        }
+    }
+
+    @Test
+    public void testUnmaskComposite() {
+        for (int size : SIZES) {
+            final byte[] mask = randomBytes(Constants.MASK_SIZE);
+            final byte[] payload = randomBytes(size);
+            final byte[] frame = frame(mask, payload);
+
+            // split the frame into heap and direct segments of odd sizes
+            final BuffersBuffer composite = BuffersBuffer.create(MM);
+            int offset = 0;
+            boolean direct = false;
+            while (offset < frame.length) {
+                final int length = Math.min(frame.length - offset, 1 + random.nextInt(13));
+                final Buffer segment;
+                if (direct) {
+                    final ByteBuffer bb = ByteBuffer.allocateDirect(length);
+                    bb.put(frame, offset, length).flip();
+                    segment = Buffers.wrap(MM, bb);
+                } else {
+                    segment = Buffers.wrap(MM, frame, offset, length);
+                }
+                composite.append(segment);
+                offset += length;
+                direct = !direct;
+            }
+            assertUnmask(composite, mask, payload);
+        }
+    }
+
+    @Test
+    public void testUnmaskInPlace() {
+        final byte[] mask = randomBytes(Constants.MASK_SIZE);
+        final byte[] payload = randomBytes(100);
+        final Buffer buffer = Buffers.wrap(MM, frame(mask, payload));
+
+        final Masker masker = new Masker(buffer);
+        masker.readMask();
+        final int position = buffer.position();
+        masker.unmaskInPlace(payload.length);
+        assertEquals(position, buffer.position());
+
+        final byte[] content = new byte[payload.length];
+        buffer.get(content);
+        assertArrayEquals(payload, content);
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private void assertUnmask(final Buffer buffer, final byte[] mask,
+            final byte[] payload) {
+        final Masker masker = new Masker(buffer);
+        masker.readMask();
+
+        // unmask in two steps to check the mask index is carried over
+        final int first = payload.length / 3;
+        final byte[] head = masker.unmask(first);
+        final byte[] tail = masker.unmask(payload.length - first);
+
+        final byte[] result = new byte[payload.length];
+        System.arraycopy(head, 0, result, 0, head.length);
+        System.arraycopy(tail, 0, result, head.length, tail.length);
+        assertArrayEquals("size=" + payload.length, payload, result);
+        assertEquals(0, buffer.remaining());
+    }
+
+    private static byte[] frame(final byte[] mask, final byte[] payload) {
+        final byte[] frame = new byte[Constants.MASK_SIZE + payload.length];
+        System.arraycopy(mask, 0, frame, 0, Constants.MASK_SIZE);
+        final byte[] masked = xor(payload, mask, 0);
+        System.arraycopy(masked, 0, frame, Constants.MASK_SIZE, masked.length);
+        return frame;
+    }
+
+    private static byte[] xor(final byte[] bytes, final byte[] mask, final int index) {
+        final byte[] result = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            result[i] = (byte) (bytes[i] ^ mask[(index + i) % Constants.MASK_SIZE]);
+        }
+        return result;
+    }
+
+    private byte[] randomBytes(final int size) {
+        final byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
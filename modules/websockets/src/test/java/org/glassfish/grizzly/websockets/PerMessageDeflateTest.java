@@ -0,0 +1,258 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.websockets;
+
+import java.util.Arrays;
+
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.websockets.frametypes.PingFrameType;
+import org.glassfish.grizzly.websockets.rfc6455.RFC6455Handler;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PerMessageDeflateTest {
+
+    private static final String TEXT =
+            "The quick brown fox jumps over the lazy dog. "
+            + "The quick brown fox jumps over the lazy dog. "
+            + "The quick brown fox jumps over the lazy dog.";
+
+    @Test
+    public void testNegotiation() {
+        Extension response = PerMessageDeflate.negotiate(
+                offer("client_max_window_bits"), null);
+        assertNotNull(response);
+        assertEquals(PerMessageDeflate.NAME, response.toString());
+
+        response = PerMessageDeflate.negotiate(
+                offer("server_no_context_takeover", "server_max_window_bits=15"), null);
+        assertNotNull(response);
+        assertEquals("permessage-deflate; server_no_context_takeover",
+                response.toString());
+
+        final Extension supported = new Extension(PerMessageDeflate.NAME);
+        supported.getParameters().add(new Extension.Parameter(
+                PerMessageDeflate.CLIENT_NO_CONTEXT_TAKEOVER, null));
+        response = PerMessageDeflate.negotiate(offer(), supported);
+        assertNotNull(response);
+        assertEquals("permessage-deflate; client_no_context_takeover",
+                response.toString());
+
+        assertNull(PerMessageDeflate.negotiate(
+                offer("server_max_window_bits=10"), null));
+        assertNull(PerMessageDeflate.negotiate(
+                offer("client_max_window_bits=16"), null));
+        assertNull(PerMessageDeflate.negotiate(offer("unknown"), null));
+        assertNull(PerMessageDeflate.negotiate(
+                offer("server_no_context_takeover", "server_no_context_takeover"), null));
+    }
+
+    @Test
+    public void testClientRejectsSmallWindow() {
+        try {
+            PerMessageDeflate.create(offer("client_max_window_bits=9"), false);
+            fail("HandshakeException expected");
+        } catch (HandshakeException expected) {
+        }
+
+        final PerMessageDeflate deflate = PerMessageDeflate.create(
+                offer("server_no_context_takeover", "server_max_window_bits=9"), false);
+        assertFalse(deflate.isCompressNoContextTakeover());
+        assertTrue(deflate.isDecompressNoContextTakeover());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        final RFC6455Handler client = handler(true, new PerMessageDeflate(false, false));
+        final RFC6455Handler server = handler(false, new PerMessageDeflate(false, false));
+
+        final byte[] first = client.frame(client.toDataFrame(TEXT));
+        assertEquals(0x40, first[0] & 0x40);
+        assertTrue(first.length < TEXT.length());
+        assertEquals(TEXT, server.parse(wrap(first)).getTextPayload());
+
+        // the second message refers to the first one's context
+        final byte[] second = client.frame(client.toDataFrame(TEXT));
+        assertTrue(second.length < first.length);
+        assertEquals(TEXT, server.parse(wrap(second)).getTextPayload());
+
+        final byte[] binary = new byte[4096];
+        final byte[] response = server.frame(server.toDataFrame(binary));
+        assertArrayEquals(binary, client.parse(wrap(response)).getBytes());
+    }
+
+    @Test
+    public void testNoContextTakeover() {
+        final RFC6455Handler client = handler(true, new PerMessageDeflate(true, false));
+        final RFC6455Handler server = handler(false, new PerMessageDeflate(false, true));
+
+        final byte[] first = client.frame(client.toDataFrame(TEXT));
+        final byte[] second = client.frame(client.toDataFrame(TEXT));
+        assertEquals(first.length, second.length);
+        assertEquals(TEXT, server.parse(wrap(first)).getTextPayload());
+        assertEquals(TEXT, server.parse(wrap(second)).getTextPayload());
+    }
+
+    @Test
+    public void testFragmentedMessage() {
+        final RFC6455Handler client = handler(true, new PerMessageDeflate(false, false));
+        final RFC6455Handler server = handler(false, new PerMessageDeflate(false, false));
+
+        final byte[] start = client.frame(client.toDataFrame(TEXT, false));
+        final byte[] end = client.frame(client.toDataFrame(TEXT, true));
+        assertEquals(0x40, start[0] & 0x40);
+        assertEquals(0, end[0] & 0x40);
+
+        final StringBuilder sb = new StringBuilder();
+        sb.append(server.parse(wrap(start)).getTextPayload());
+        sb.append(server.parse(wrap(end)).getTextPayload());
+        assertEquals(TEXT + TEXT, sb.toString());
+    }
+
+    @Test
+    public void testControlFramesAreNotCompressed() {
+        final RFC6455Handler client = handler(true, new PerMessageDeflate(false, false));
+        final RFC6455Handler server = handler(false, new PerMessageDeflate(false, false));
+
+        final byte[] payload = "ping".getBytes();
+        final byte[] ping = client.frame(new DataFrame(new PingFrameType(), payload));
+        assertEquals(0, ping[0] & 0x40);
+        assertArrayEquals(payload, server.parse(wrap(ping)).getBytes());
+    }
+
+    @Test
+    public void testCompressedFrameWithoutNegotiation() {
+        final RFC6455Handler client = handler(true, new PerMessageDeflate(false, false));
+        final RFC6455Handler server = handler(false, null);
+
+        try {
+            server.parse(wrap(client.frame(client.toDataFrame(TEXT))));
+            fail("ProtocolError expected");
+        } catch (ProtocolError expected) {
+        }
+    }
+
+    @Test
+    public void testEmptyMessage() {
+        final RFC6455Handler client = handler(true, new PerMessageDeflate(false, false));
+        final RFC6455Handler server = handler(false, new PerMessageDeflate(false, false));
+
+        for (int i = 0; i < 2; i++) {
+            final byte[] frame = client.frame(client.toDataFrame(new byte[0]));
+            assertEquals(0, server.parse(wrap(frame)).getBytes().length);
+        }
+    }
+
+    @Test
+    public void testMaxMessageSize() {
+        final RFC6455Handler client = handler(true, new PerMessageDeflate(false, false));
+        final RFC6455Handler server = handler(false, new PerMessageDeflate(false, false));
+        server.setMaxDecompressedMessageSize(1024);
+
+        // the limit is not exceeded
+        final byte[] atLimit = client.frame(client.toDataFrame(new byte[1024]));
+        assertEquals(1024, server.parse(wrap(atLimit)).getBytes().length);
+
+        // a small compressed frame, which inflates beyond the limit
+        final byte[] bomb = client.frame(client.toDataFrame(new byte[1024 * 1024]));
+        assertTrue(bomb.length < 2048);
+        try {
+            server.parse(wrap(bomb));
+            fail("ProtocolError expected");
+        } catch (ProtocolError expected) {
+            assertEquals(WebSocket.MESSAGE_TOO_BIG, expected.getClosingCode());
+        }
+    }
+
+    @Test
+    public void testMaxFragmentedMessageSize() {
+        final RFC6455Handler client = handler(true, new PerMessageDeflate(false, false));
+        final RFC6455Handler server = handler(false, new PerMessageDeflate(false, false));
+        server.setMaxDecompressedMessageSize(1024);
+
+        // the limit applies to the whole message, not to a single fragment
+        final byte[] start = client.frame(client.toDataFrame(new byte[600], false));
+        final byte[] end = client.frame(client.toDataFrame(new byte[600], true));
+        assertEquals(600, server.parse(wrap(start)).getBytes().length);
+        try {
+            server.parse(wrap(end));
+            fail("ProtocolError expected");
+        } catch (ProtocolError expected) {
+            assertEquals(WebSocket.MESSAGE_TOO_BIG, expected.getClosingCode());
+        }
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private static RFC6455Handler handler(final boolean mask,
+            final PerMessageDeflate deflate) {
+        final RFC6455Handler handler = new RFC6455Handler(mask);
+        handler.setPerMessageDeflate(deflate);
+        return handler;
+    }
+
+    private static Extension offer(final String... parameters) {
+        final Extension e = new Extension(PerMessageDeflate.NAME);
+        for (String p : parameters) {
+            final int idx = p.indexOf('=');
+            e.getParameters().add(idx < 0
+                    ? new Extension.Parameter(p, null)
+                    : new Extension.Parameter(p.substring(0, idx), p.substring(idx + 1)));
+        }
+        return e;
+    }
+
+    private static Buffer wrap(final byte[] bytes) {
+        return Buffers.wrap(MemoryManager.DEFAULT_MEMORY_MANAGER,
+                Arrays.copyOf(bytes, bytes.length));
+    }
+}
@@ -61,7 +61,10 @@ public class ServerSideBroadcastTest extends BaseWebSocketTestUtilities {
     
     @Parameterized.Parameters
     public static List<Object[]> parameters() {
-        final Broadcaster[] broadcasters = {new DummyBroadcaster(), new OptimizedBroadcaster()};
+        final Broadcaster[] broadcasters = {new DummyBroadcaster(), new OptimizedBroadcaster(),
+            new FanOutBroadcaster(),
+            new FanOutBroadcaster(FanOutBroadcaster.DEFAULT_MAX_PENDING_BYTES,
+                    FanOutBroadcaster.DISCONNECT, true)};
         
         final List<Object[]> versions = BaseWebSocketTestUtilities.parameters();
         final List<Object[]> resultList = new ArrayList<Object[]>();